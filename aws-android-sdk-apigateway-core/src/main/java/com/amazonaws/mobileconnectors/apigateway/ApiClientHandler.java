@@ -42,8 +42,13 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Invocation handler responsible for serializing a request and deserializing a
@@ -65,6 +70,11 @@ class ApiClientHandler implements InvocationHandler {
     private final HttpClient client;
     private final HttpRequestFactory requestFactory;
     private final ClientConfiguration clientConfiguration;
+    private final URI endpointUri;
+
+    // plans of the methods invoked so far
+    private final ConcurrentMap<Method, OperationPlan> plans =
+            new ConcurrentHashMap<Method, OperationPlan>();
 
     ApiClientHandler(String endpoint, String apiName,
             Signer signer, AWSCredentialsProvider provider, String apiKey, ClientConfiguration clientConfiguration) {
@@ -74,6 +84,7 @@ class ApiClientHandler implements InvocationHandler {
         this.provider = provider;
         this.apiKey = apiKey;
         this.clientConfiguration = clientConfiguration;
+        this.endpointUri = URI.create(endpoint);
 
         client = new UrlHttpClient(this.clientConfiguration);
         requestFactory = new HttpRequestFactory();
@@ -116,38 +127,27 @@ class ApiClientHandler implements InvocationHandler {
      * @return a {@link Request} object
      */
     Request<?> buildRequest(Method method, Object[] args) {
-        Operation op = method.getAnnotation(Operation.class);
-        if (op == null) {
-            throw new IllegalArgumentException("Method isn't annotated with Operation");
-        }
+        OperationPlan plan = getPlan(method);
 
         Request<?> request = new DefaultRequest<Object>(apiName);
-        request.setResourcePath(op.path());
-        request.setEndpoint(URI.create(endpoint));
+        request.setResourcePath(plan.resourcePath(args));
+        request.setEndpoint(endpointUri);
 
-        String content = null;
-        Annotation[][] annotations = method.getParameterAnnotations();
-        int length = annotations.length;
-        for (int i = 0; i < length; i++) {
-            // content body
-            if (annotations[i].length == 0) {
-                if (content != null) {
-                    throw new IllegalStateException("Can't have more than one Body");
-                }
-                content = args[i] == null ? null : gson.toJson(args[i]);
-                continue;
-            }
+        for (ParameterBinding binding : plan.bindings) {
+            processParameter(request, binding.parameter, args[binding.index]);
+        }
 
-            for (Annotation annotation : annotations[i]) {
-                if (annotation instanceof Parameter) {
-                    processParameter(request, (Parameter) annotation, args[i]);
-                    break;
-                }
-            }
+        String content = null;
+        if (plan.bodyIndex >= 0 && args[plan.bodyIndex] != null) {
+            content = gson.toJson(args[plan.bodyIndex]);
         }
 
         boolean hasContent = content != null;
-        setHttpMethod(request, op.method(), hasContent);
+        if (plan.httpMethodName != null) {
+            request.setHttpMethod(plan.httpMethodName);
+        } else {
+            setHttpMethod(request, plan.httpMethod, hasContent);
+        }
 
         if (hasContent) {
             byte[] contentBytes = content.getBytes(StringUtils.UTF8);
@@ -167,6 +167,24 @@ class ApiClientHandler implements InvocationHandler {
         return request;
     }
 
+    /**
+     * Gets the plan of the given method, building it on first use.
+     *
+     * @param method method that annotated with {@link Operation}
+     * @return the plan of the method
+     */
+    OperationPlan getPlan(Method method) {
+        OperationPlan plan = plans.get(method);
+        if (plan == null) {
+            plan = new OperationPlan(method);
+            OperationPlan existing = plans.putIfAbsent(method, plan);
+            if (existing != null) {
+                plan = existing;
+            }
+        }
+        return plan;
+    }
+
     /**
      * Process an argument annotated with {@link Parameter}.
      *
@@ -182,7 +200,7 @@ class ApiClientHandler implements InvocationHandler {
             request.addHeader(name, String.valueOf(arg));
         } else if ("path".equals(location)) {
             String path = request.getResourcePath();
-            path = path.replaceAll("\\{" + name + "\\}", String.valueOf(arg));
+            path = path.replace("{" + name + "}", String.valueOf(arg));
             request.setResourcePath(path);
         } else if ("query".equals(location)) {
             if (Map.class.isAssignableFrom(arg.getClass())) {
@@ -279,4 +297,131 @@ class ApiClientHandler implements InvocationHandler {
         }
         return sb.toString();
     }
+
+    /**
+     * What an invocation of a method needs from its annotations, read once
+     * per method: the resource path split around its path parameters, the
+     * header and query parameters, and the argument sent as the body.
+     */
+    static final class OperationPlan {
+        final String httpMethod;
+        /** the HTTP method, or null if it has to be tunneled */
+        final HttpMethodName httpMethodName;
+        /** index of the argument sent as the body, or -1 if there is none */
+        final int bodyIndex;
+        /** header and query parameters, in argument order */
+        final ParameterBinding[] bindings;
+        /** literal parts of the resource path, around the path parameters */
+        private final String[] pathParts;
+        /** index of the argument substituted after each literal part but the last */
+        private final int[] pathArgs;
+
+        OperationPlan(Method method) {
+            Operation op = method.getAnnotation(Operation.class);
+            if (op == null) {
+                throw new IllegalArgumentException("Method isn't annotated with Operation");
+            }
+            httpMethod = op.method();
+            HttpMethodName name;
+            try {
+                name = HttpMethodName.valueOf(httpMethod);
+            } catch (IllegalArgumentException iae) {
+                name = null;
+            }
+            httpMethodName = name;
+
+            Map<String, Integer> pathParameters = new HashMap<String, Integer>();
+            List<ParameterBinding> parameters = new ArrayList<ParameterBinding>();
+            int body = -1;
+            Annotation[][] annotations = method.getParameterAnnotations();
+            for (int i = 0; i < annotations.length; i++) {
+                // content body
+                if (annotations[i].length == 0) {
+                    if (body >= 0) {
+                        throw new IllegalStateException("Can't have more than one Body");
+                    }
+                    body = i;
+                    continue;
+                }
+
+                for (Annotation annotation : annotations[i]) {
+                    if (annotation instanceof Parameter) {
+                        Parameter p = (Parameter) annotation;
+                        if ("path".equals(p.location())) {
+                            pathParameters.put(p.name(), i);
+                        } else {
+                            parameters.add(new ParameterBinding(p, i));
+                        }
+                        break;
+                    }
+                }
+            }
+            bodyIndex = body;
+            bindings = parameters.toArray(new ParameterBinding[parameters.size()]);
+
+            // split the path around the {name} of each path parameter
+            List<String> parts = new ArrayList<String>();
+            List<Integer> args = new ArrayList<Integer>();
+            String path = op.path();
+            StringBuilder literal = new StringBuilder();
+            int pos = 0;
+            while (pos < path.length()) {
+                int open = path.indexOf('{', pos);
+                int close = open < 0 ? -1 : path.indexOf('}', open + 1);
+                if (close < 0) {
+                    break;
+                }
+                Integer arg = pathParameters.get(path.substring(open + 1, close));
+                if (arg == null) {
+                    // not a parameter, keep it as it is
+                    literal.append(path, pos, open + 1);
+                    pos = open + 1;
+                    continue;
+                }
+                literal.append(path, pos, open);
+                parts.add(literal.toString());
+                literal.setLength(0);
+                args.add(arg);
+                pos = close + 1;
+            }
+            literal.append(path, pos, path.length());
+            parts.add(literal.toString());
+
+            pathParts = parts.toArray(new String[parts.size()]);
+            pathArgs = new int[args.size()];
+            for (int i = 0; i < pathArgs.length; i++) {
+                pathArgs[i] = args.get(i);
+            }
+        }
+
+        /**
+         * Returns the resource path with the path parameters substituted.
+         *
+         * @param args arguments of the method
+         * @return the resource path
+         */
+        String resourcePath(Object[] args) {
+            if (pathArgs.length == 0) {
+                return pathParts[0];
+            }
+            StringBuilder sb = new StringBuilder(pathParts[0]);
+            for (int i = 0; i < pathArgs.length; i++) {
+                sb.append(String.valueOf(args[pathArgs[i]])).append(pathParts[i + 1]);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * A header or query parameter and the index of its argument.
+     */
+    static final class ParameterBinding {
+        final Parameter parameter;
+        final int index;
+
+        ParameterBinding(Parameter parameter, int index) {
+            this.parameter = parameter;
+            this.index = index;
+        }
+    }
 }
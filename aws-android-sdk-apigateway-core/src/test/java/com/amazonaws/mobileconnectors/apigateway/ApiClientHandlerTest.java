@@ -0,0 +1,162 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.apigateway;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.Request;
+import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.mobileconnectors.apigateway.annotation.Operation;
+import com.amazonaws.mobileconnectors.apigateway.annotation.Parameter;
+import com.amazonaws.util.IOUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ApiClientHandlerTest {
+
+    private ApiClientHandler handler;
+
+    @Before
+    public void setup() {
+        handler = new ApiClientHandler("https://abc.execute-api.us-east-1.amazonaws.com/prod",
+                "TestApi", null, null, "key", new ClientConfiguration());
+    }
+
+    static interface TestApi {
+        @Operation(path = "/items/{id}/parts/{part}", method = "GET")
+        void getPart(@Parameter(name = "part", location = "path") int part,
+                @Parameter(name = "id", location = "path") String id);
+
+        @Operation(path = "/items/{id}/{version}", method = "GET")
+        void missingPathParameter(@Parameter(name = "id", location = "path") String id);
+
+        @Operation(path = "/search", method = "GET")
+        void search(@Parameter(name = "X-Trace", location = "header") String trace,
+                @Parameter(name = "q", location = "query") String query,
+                @Parameter(name = "tags", location = "query") List<String> tags,
+                @Parameter(name = "extra", location = "query") Map<String, Object> extra);
+
+        @Operation(path = "/items/{id}", method = "PUT")
+        void put(@Parameter(name = "id", location = "path") String id, Item item);
+
+        @Operation(path = "/items", method = "OPTIONS")
+        void options(Item item);
+    }
+
+    static class Item {
+        String name = "widget";
+    }
+
+    @Test
+    public void testTemplatedPath() throws Exception {
+        Request<?> request = build("getPart", 7, "abc");
+        assertEquals("/items/abc/parts/7", request.getResourcePath());
+        assertEquals(HttpMethodName.GET, request.getHttpMethod());
+        assertEquals("https://abc.execute-api.us-east-1.amazonaws.com/prod",
+                request.getEndpoint().toString());
+        assertEquals("key", request.getHeaders().get("x-api-key"));
+    }
+
+    @Test
+    public void testPathValuesAreLiterals() throws Exception {
+        Request<?> request = build("getPart", 1, "a$1\\b{part}");
+        assertEquals("/items/a$1\\b{part}/parts/1", request.getResourcePath());
+    }
+
+    @Test
+    public void testMissingPathParameter() throws Exception {
+        Request<?> request = build("missingPathParameter", "abc");
+        assertEquals("/items/abc/{version}", request.getResourcePath());
+
+        request = build("missingPathParameter", new Object[] { null });
+        assertEquals("/items/null/{version}", request.getResourcePath());
+    }
+
+    @Test
+    public void testQueryAndHeaderBindings() throws Exception {
+        Map<String, Object> extra = new LinkedHashMap<String, Object>();
+        extra.put("page", 2);
+        extra.put("size", "10");
+        Request<?> request = build("search", "trace-1", "shoes",
+                Arrays.asList("red", "blue"), extra);
+
+        assertEquals("/search", request.getResourcePath());
+        assertEquals("trace-1", request.getHeaders().get("X-Trace"));
+        Map<String, String> parameters = request.getParameters();
+        assertEquals(4, parameters.size());
+        assertEquals("shoes", parameters.get("q"));
+        assertEquals("red,blue", parameters.get("tags"));
+        assertEquals("2", parameters.get("page"));
+        assertEquals("10", parameters.get("size"));
+        assertNull(request.getContent());
+    }
+
+    @Test
+    public void testBody() throws Exception {
+        Request<?> request = build("put", "abc", new Item());
+        assertEquals("/items/abc", request.getResourcePath());
+        assertEquals(HttpMethodName.PUT, request.getHttpMethod());
+        assertEquals("{\"name\":\"widget\"}", IOUtils.toString(request.getContent()));
+        assertEquals("17", request.getHeaders().get("Content-Length"));
+        assertEquals("application/json", request.getHeaders().get("Content-Type"));
+    }
+
+    @Test
+    public void testUnsupportedMethodIsTunneled() throws Exception {
+        Request<?> request = build("options", new Item());
+        assertEquals(HttpMethodName.POST, request.getHttpMethod());
+        assertEquals("OPTIONS", request.getHeaders().get("X-HTTP-Method-Override"));
+
+        request = build("options", new Object[] { null });
+        assertEquals(HttpMethodName.GET, request.getHttpMethod());
+        assertFalse(request.getHeaders().containsKey("Content-Length"));
+    }
+
+    @Test
+    public void testPlanIsCached() throws Exception {
+        Method method = method("getPart");
+        assertSame(handler.getPlan(method), handler.getPlan(method));
+        // a cached plan doesn't keep the values of an earlier call
+        assertEquals("/items/x/parts/1", handler.buildRequest(method,
+                new Object[] { 1, "x" }).getResourcePath());
+        assertEquals("/items/y/parts/2", handler.buildRequest(method,
+                new Object[] { 2, "y" }).getResourcePath());
+    }
+
+    private Request<?> build(String name, Object... args) throws Exception {
+        return handler.buildRequest(method(name), args);
+    }
+
+    private static Method method(String name) {
+        for (Method method : TestApi.class.getDeclaredMethods()) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+}
@@ -15,11 +15,9 @@
 
 package com.amazonaws.services.cognitosync.model.transform;
 
-import static com.amazonaws.util.StringUtils.UTF8;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.OutputStreamWriter;
-import java.io.StringWriter;
 import java.io.Writer;
 
 import com.amazonaws.AmazonClientException;
@@ -30,9 +28,7 @@ import com.amazonaws.services.cognitosync.model.*;
 import com.amazonaws.transform.Marshaller;
 import com.amazonaws.util.BinaryUtils;
 import com.amazonaws.util.StringUtils;
-import com.amazonaws.util.StringInputStream;
-import com.amazonaws.util.json.AwsJsonWriter;
-import com.amazonaws.util.json.JsonUtils;
+import com.amazonaws.util.json.Utf8JsonWriter;
 
 /**
  * JSON request marshaller for RegisterDeviceRequest
@@ -61,8 +57,7 @@ public class RegisterDeviceRequestMarshaller implements
                         .fromString(registerDeviceRequest.getIdentityId()));
         request.setResourcePath(uriResourcePath);
         try {
-            StringWriter stringWriter = new StringWriter();
-            AwsJsonWriter jsonWriter = JsonUtils.getJsonWriter(stringWriter);
+            Utf8JsonWriter jsonWriter = new Utf8JsonWriter();
             jsonWriter.beginObject();
 
             if (registerDeviceRequest.getPlatform() != null) {
@@ -77,10 +72,9 @@ public class RegisterDeviceRequestMarshaller implements
             }
 
             jsonWriter.endObject();
+            byte[] content = jsonWriter.toByteArray();
             jsonWriter.close();
-            String snippet = stringWriter.toString();
-            byte[] content = snippet.getBytes(UTF8);
-            request.setContent(new StringInputStream(snippet));
+            request.setContent(new ByteArrayInputStream(content));
             request.addHeader("Content-Length", Integer.toString(content.length));
         } catch (Throwable t) {
             throw new AmazonClientException(
@@ -17,6 +17,7 @@ package com.amazonaws.auth;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.Request;
+import com.amazonaws.internal.FIFOCache;
 import com.amazonaws.util.AwsHostNameUtils;
 import com.amazonaws.util.BinaryUtils;
 import com.amazonaws.util.DateUtils;
@@ -47,6 +48,17 @@ public class AWS4Signer extends AbstractAWSSigner
 
     /** Seconds in a week, which is the max expiration time Sig-v4 accepts */
     private final static long MAX_EXPIRATION_TIME_IN_SECONDS = 60 * 60 * 24 * 7;
+
+    /** Maximum number of derived signing keys kept in memory */
+    static final int MAX_SIGNING_KEY_CACHE_SIZE = 300;
+
+    /**
+     * Signing keys derived from (secret key, date, region, service). A signing
+     * key is valid for a whole day, so caching it saves four chained HMAC
+     * computations on every request. Shared by all signer instances.
+     */
+    private static final FIFOCache<SignerKey> SIGNER_CACHE =
+            new FIFOCache<SignerKey>(MAX_SIGNING_KEY_CACHE_SIZE);
     /**
      * Service name override for use when the endpoint can't be used to
      * determine the service name.
@@ -289,18 +301,53 @@ public class AWS4Signer extends AbstractAWSSigner
         String stringToSign = getStringToSign(algorithm, timeStamp, scope,
                 getCanonicalRequest(request, contentSha256));
 
+        byte[] kSigning = deriveSigningKey(sanitizedCredentials, dateStamp,
+                regionName, serviceName);
+
+        byte[] signature = sign(stringToSign.getBytes(StringUtils.UTF8), kSigning,
+                SigningAlgorithm.HmacSHA256);
+        return new HeaderSigningResult(timeStamp, scope, kSigning, signature);
+    }
+
+    /**
+     * Returns the signing key for the given scope, deriving it and adding it
+     * to the signing key cache if it isn't already there.
+     */
+    private byte[] deriveSigningKey(AWSCredentials credentials, String dateStamp,
+            String regionName, String serviceName) {
+        String cacheKey = computeSigningCacheKeyName(credentials, regionName, serviceName);
+        SignerKey signerKey = SIGNER_CACHE.get(cacheKey);
+        if (signerKey != null && dateStamp.equals(signerKey.getDateStamp())) {
+            return signerKey.getSigningKey();
+        }
+
         // AWS4 uses a series of derived keys, formed by hashing different
         // pieces of data
-        byte[] kSecret = ("AWS4" + sanitizedCredentials.getAWSSecretKey())
+        byte[] kSecret = ("AWS4" + credentials.getAWSSecretKey())
                 .getBytes(StringUtils.UTF8);
         byte[] kDate = sign(dateStamp, kSecret, SigningAlgorithm.HmacSHA256);
         byte[] kRegion = sign(regionName, kDate, SigningAlgorithm.HmacSHA256);
         byte[] kService = sign(serviceName, kRegion, SigningAlgorithm.HmacSHA256);
         byte[] kSigning = sign(TERMINATOR, kService, SigningAlgorithm.HmacSHA256);
 
-        byte[] signature = sign(stringToSign.getBytes(StringUtils.UTF8), kSigning,
-                SigningAlgorithm.HmacSHA256);
-        return new HeaderSigningResult(timeStamp, scope, kSigning, signature);
+        SIGNER_CACHE.add(cacheKey, new SignerKey(dateStamp, kSigning));
+        return kSigning;
+    }
+
+    /**
+     * Computes the name used to look up a signing key in the cache. The secret
+     * key is folded into a fingerprint so that it is not kept around as a
+     * plain map key.
+     */
+    private String computeSigningCacheKeyName(AWSCredentials credentials,
+            String regionName, String serviceName) {
+        String secretKey = credentials.getAWSSecretKey();
+        String fingerprint = secretKey == null ? "" : BinaryUtils.toHex(hash(secretKey));
+        return new StringBuilder(fingerprint.length() + 64)
+                .append(fingerprint).append('-')
+                .append(regionName).append('-')
+                .append(serviceName)
+                .toString();
     }
 
     protected final String getTimeStamp(long dateMilli) {
@@ -401,6 +448,30 @@ public class AWS4Signer extends AbstractAWSSigner
         }
     }
 
+    /**
+     * A derived signing key along with the date stamp it was derived for.
+     */
+    static final class SignerKey {
+
+        private final String dateStamp;
+        private final byte[] signingKey;
+
+        SignerKey(String dateStamp, byte[] signingKey) {
+            this.dateStamp = dateStamp;
+            this.signingKey = signingKey;
+        }
+
+        String getDateStamp() {
+            return dateStamp;
+        }
+
+        byte[] getSigningKey() {
+            byte[] signingKeyCopy = new byte[signingKey.length];
+            System.arraycopy(signingKey, 0, signingKeyCopy, 0, signingKey.length);
+            return signingKeyCopy;
+        }
+    }
+
     @Override
     public void presignRequest(Request<?> request, AWSCredentials credentials,
             Date expiration) {
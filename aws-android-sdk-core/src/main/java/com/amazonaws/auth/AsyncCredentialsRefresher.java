@@ -0,0 +1,180 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.auth;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Date;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Support for the async refresh mode of the session credentials providers.
+ * Keeps a snapshot of the current session credentials that callers read
+ * without locking, and runs the provider's refresh on a background thread,
+ * one at a time, once the credentials are within the refresh threshold.
+ * Callers only have to wait for new credentials, under the provider's lock,
+ * when the current ones are within {@link #EXPIRATION_MARGIN_MILLIS} of
+ * expiring.
+ */
+class AsyncCredentialsRefresher<C extends AWSCredentials> {
+
+    private static final Log log = LogFactory.getLog(AsyncCredentialsRefresher.class);
+
+    /** Credentials this close to expiring are not handed out any more */
+    static final long EXPIRATION_MARGIN_MILLIS = 60 * 1000;
+
+    /** Delay before trying again after a failed background refresh */
+    static final long RETRY_DELAY_MILLIS = 10 * 1000;
+
+    private final Runnable refresh;
+    private final Executor executor;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private volatile Snapshot<C> snapshot;
+    /** {@link #nanoTime()} of the last failed background refresh */
+    private volatile long lastFailure;
+    private volatile boolean failed;
+
+    /**
+     * @param refresh refreshes the provider's credentials and calls
+     *            {@link #update(AWSCredentials, Date)}. It should do nothing
+     *            if another thread refreshed them already.
+     */
+    AsyncCredentialsRefresher(Runnable refresh) {
+        this(refresh, DefaultExecutor.INSTANCE);
+    }
+
+    /**
+     * @param refresh refreshes the provider's credentials, see
+     *            {@link #AsyncCredentialsRefresher(Runnable)}
+     * @param executor runs the background refreshes
+     */
+    AsyncCredentialsRefresher(Runnable refresh, Executor executor) {
+        this.refresh = refresh;
+        this.executor = executor;
+    }
+
+    /**
+     * Publishes new session credentials.
+     *
+     * @param credentials the session credentials, or null to clear them
+     * @param expiration their expiration, or null to clear them
+     */
+    void update(C credentials, Date expiration) {
+        snapshot = credentials == null || expiration == null ? null
+                : new Snapshot<C>(credentials, expiration.getTime());
+    }
+
+    /**
+     * Returns the current credentials without blocking, starting a background
+     * refresh if they are within the refresh threshold.
+     *
+     * @param now the current time in milliseconds
+     * @param refreshThresholdMillis how long before the expiration the
+     *            credentials should be refreshed
+     * @return the current credentials, or null if there are none or they are
+     *         about to expire, in which case the caller has to refresh them
+     */
+    C getCredentials(long now, long refreshThresholdMillis) {
+        Snapshot<C> current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        long timeRemaining = current.expiration - now;
+        if (timeRemaining < EXPIRATION_MARGIN_MILLIS) {
+            return null;
+        }
+        if (timeRemaining < refreshThresholdMillis && !isBackingOff()) {
+            refreshAsync();
+        }
+        return current.credentials;
+    }
+
+    private boolean isBackingOff() {
+        return failed && nanoTime() - lastFailure
+                < TimeUnit.MILLISECONDS.toNanos(RETRY_DELAY_MILLIS);
+    }
+
+    private void refreshAsync() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        refresh.run();
+                        failed = false;
+                    } catch (RuntimeException e) {
+                        lastFailure = nanoTime();
+                        failed = true;
+                        log.warn("Failed to refresh credentials in the background", e);
+                    } finally {
+                        refreshing.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.set(false);
+            log.warn("Background credentials refresh was rejected", e);
+        }
+    }
+
+    /**
+     * @return the current time in nanoseconds, overridden by tests
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private static final class Snapshot<C> {
+        private final C credentials;
+        private final long expiration;
+
+        private Snapshot(C credentials, long expiration) {
+            this.credentials = credentials;
+            this.expiration = expiration;
+        }
+    }
+
+    /**
+     * Shared pool of daemon threads for background refreshes. Idle threads
+     * are released after a minute.
+     */
+    private static final class DefaultExecutor {
+        static final ExecutorService INSTANCE = Executors.newCachedThreadPool(
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r,
+                                "aws-credentials-refresh-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+}
@@ -426,7 +426,19 @@ public class CognitoCachingCredentialsProvider
     }
 
     @Override
-    synchronized public AWSSessionCredentials getCredentials() {
+    public AWSSessionCredentials getCredentials() {
+        if (isAsyncRefresh()) {
+            // lock-free while the current credentials are usable, see
+            // setAsyncRefresh()
+            AWSSessionCredentials credentials = getCurrentCredentials();
+            if (credentials != null) {
+                return credentials;
+            }
+        }
+        return loadOrFetchCredentials();
+    }
+
+    synchronized private AWSSessionCredentials loadOrFetchCredentials() {
         if (sessionCredentials == null) {
             loadCachedCredentials();
         }
@@ -454,6 +466,7 @@ public class CognitoCachingCredentialsProvider
 
         saveCredentials(sessionCredentials,
                 getSessionCredentitalsExpiration().getTime());
+        publishCredentials();
 
         return sessionCredentials;
     }
@@ -537,6 +550,7 @@ public class CognitoCachingCredentialsProvider
         String ST = prefs.getString(namespace(ST_KEY), null);
 
         sessionCredentials = new BasicSessionCredentials(AK, SK, ST);
+        publishCredentials();
     }
 
     /**
@@ -78,6 +78,17 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
 
     protected boolean useEnhancedFlow;
 
+    /** Whether credentials are refreshed in the background */
+    private volatile boolean asyncRefresh;
+
+    private final AsyncCredentialsRefresher<AWSSessionCredentials> refresher =
+            new AsyncCredentialsRefresher<AWSSessionCredentials>(new Runnable() {
+                @Override
+                public void run() {
+                    refreshInBackground();
+                }
+            });
+
     /**
      * Constructs a new {@link CognitoCredentialsProvider}, which will use the
      * specified Amazon Cognito identity pool to make a request, using the basic
@@ -350,6 +361,7 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
 
     public void setSessionCredentialsExpiration(Date expiration) {
         sessionCredentialsExpiration = expiration;
+        publishCredentials();
     }
 
     public Date getSessionCredentitalsExpiration() {
@@ -367,12 +379,98 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
      */
     @Override
     public AWSSessionCredentials getCredentials() {
+        if (asyncRefresh) {
+            AWSSessionCredentials credentials = getCurrentCredentials();
+            if (credentials != null) {
+                return credentials;
+            }
+            synchronized (this) {
+                if (needsNewSession()) {
+                    startSession();
+                }
+                publishCredentials();
+                return sessionCredentials;
+            }
+        }
         if (needsNewSession()) {
             startSession();
         }
         return sessionCredentials;
     }
 
+    /**
+     * Enables or disables the async refresh mode. In this mode, once the
+     * session credentials are within the refresh threshold, they are
+     * refreshed on a background thread while {@link #getCredentials()} keeps
+     * returning the current ones without locking. Callers only wait for new
+     * credentials when there are none yet, or when the current ones are about
+     * to expire, within a minute, because the background refresh hasn't
+     * succeeded in time. Disabled by default.
+     *
+     * @param asyncRefresh true to refresh credentials in the background
+     */
+    public void setAsyncRefresh(boolean asyncRefresh) {
+        this.asyncRefresh = asyncRefresh;
+        if (asyncRefresh) {
+            synchronized (this) {
+                publishCredentials();
+            }
+        }
+    }
+
+    /**
+     * Enables or disables the async refresh mode. Returns a reference to the
+     * object so methods can be chained.
+     *
+     * @see #setAsyncRefresh(boolean)
+     * @param asyncRefresh true to refresh credentials in the background
+     * @return A reference to this updated object so that method calls can be
+     *         chained together.
+     */
+    public CognitoCredentialsProvider withAsyncRefresh(boolean asyncRefresh) {
+        this.setAsyncRefresh(asyncRefresh);
+        return this;
+    }
+
+    /**
+     * @return true if credentials are refreshed in the background
+     * @see #setAsyncRefresh(boolean)
+     */
+    public boolean isAsyncRefresh() {
+        return asyncRefresh;
+    }
+
+    /**
+     * In async refresh mode, returns the current session credentials without
+     * locking, and starts a background refresh if they are within the
+     * refresh threshold.
+     *
+     * @return the current credentials, or null if the caller has to wait for
+     *         new ones
+     */
+    AWSSessionCredentials getCurrentCredentials() {
+        long currentTime = System.currentTimeMillis()
+                - SDKGlobalConfiguration.getGlobalTimeOffset() * 1000;
+        return refresher.getCredentials(currentTime, refreshThreshold * 1000L);
+    }
+
+    /**
+     * Makes the current session credentials visible to
+     * {@link #getCurrentCredentials()}. Must be called with the lock held
+     * after they change.
+     */
+    void publishCredentials() {
+        refresher.update(sessionCredentials, sessionCredentialsExpiration);
+    }
+
+    private void refreshInBackground() {
+        synchronized (this) {
+            if (needsNewSession()) {
+                refresh();
+            }
+        }
+    }
+
     /**
      * Set the duration of the session credentials created by this client in
      * seconds. Values must be supported by AssumeRoleWithWebIdentityRequest.
@@ -525,6 +623,7 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
     @Override
     public void refresh() {
         startSession();
+        publishCredentials();
     }
 
     /**
@@ -545,6 +644,7 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
     public void clearCredentials() {
         sessionCredentials = null;
         sessionCredentialsExpiration = null;
+        refresher.update(null, null);
     }
 
     /**
@@ -33,6 +33,12 @@ public class STSSessionCredentialsProvider implements AWSCredentialsProvider {
     /** Default duration for started sessions */
     public static final int DEFAULT_DURATION_SECONDS = 3600;
 
+    /**
+     * How long before their expiration session credentials are refreshed in
+     * the background, in async refresh mode
+     */
+    public static final int DEFAULT_ASYNC_REFRESH_THRESHOLD_SECONDS = 300;
+
     /** The client for starting STS sessions */
     private final AWSSecurityTokenService securityTokenService;
 
@@ -42,6 +48,21 @@ public class STSSessionCredentialsProvider implements AWSCredentialsProvider {
     /** The expiration time for the current session credentials */
     private Date sessionCredentialsExpiration;
 
+    /** Whether credentials are refreshed in the background */
+    private volatile boolean asyncRefresh;
+
+    private final AsyncCredentialsRefresher<AWSSessionCredentials> refresher =
+            new AsyncCredentialsRefresher<AWSSessionCredentials>(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (STSSessionCredentialsProvider.this) {
+                        if (needsNewSession(DEFAULT_ASYNC_REFRESH_THRESHOLD_SECONDS)) {
+                            startSession();
+                        }
+                    }
+                }
+            });
+
     /**
      * Constructs a new STSSessionCredentialsProvider, which will use the
      * specified long lived AWS credentials to make a request to the AWS
@@ -121,11 +142,51 @@ public class STSSessionCredentialsProvider implements AWSCredentialsProvider {
      */
     public void setSTSClientEndpoint(String endpoint) {
         securityTokenService.setEndpoint(endpoint);
-        sessionCredentials = null;
+        synchronized (this) {
+            sessionCredentials = null;
+            refresher.update(null, null);
+        }
+    }
+
+    /**
+     * Enables or disables the async refresh mode. In this mode, session
+     * credentials are refreshed on a background thread once they are within
+     * {@link #DEFAULT_ASYNC_REFRESH_THRESHOLD_SECONDS} of expiring, while
+     * {@link #getCredentials()} keeps returning the current ones without
+     * locking. Callers only wait for new credentials when there are none yet,
+     * or when the current ones are about to expire, within a minute, because
+     * the background refresh hasn't succeeded in time. Disabled by default.
+     *
+     * @param asyncRefresh true to refresh credentials in the background
+     */
+    public void setAsyncRefresh(boolean asyncRefresh) {
+        this.asyncRefresh = asyncRefresh;
+    }
+
+    /**
+     * @return true if credentials are refreshed in the background
+     * @see #setAsyncRefresh(boolean)
+     */
+    public boolean isAsyncRefresh() {
+        return asyncRefresh;
     }
 
     @Override
     public AWSCredentials getCredentials() {
+        if (asyncRefresh) {
+            AWSCredentials credentials = refresher.getCredentials(System.currentTimeMillis(),
+                    DEFAULT_ASYNC_REFRESH_THRESHOLD_SECONDS * 1000L);
+            if (credentials != null) {
+                return credentials;
+            }
+            synchronized (this) {
+                if (needsNewSession()) {
+                    startSession();
+                }
+                return sessionCredentials;
+            }
+        }
+
         if (needsNewSession())
             startSession();
 
@@ -153,6 +214,7 @@ public class STSSessionCredentialsProvider implements AWSCredentialsProvider {
                 stsCredentials.getSecretAccessKey(),
                 stsCredentials.getSessionToken());
         sessionCredentialsExpiration = stsCredentials.getExpiration();
+        refresher.update(sessionCredentials, sessionCredentialsExpiration);
     }
 
     /**
@@ -163,11 +225,15 @@ public class STSSessionCredentialsProvider implements AWSCredentialsProvider {
      * @return True if a new STS session needs to be started.
      */
     private boolean needsNewSession() {
+        return needsNewSession(60);
+    }
+
+    private boolean needsNewSession(int thresholdSeconds) {
         if (sessionCredentials == null)
             return true;
 
         long timeRemaining = sessionCredentialsExpiration.getTime() - System.currentTimeMillis();
-        return timeRemaining < (60 * 1000);
+        return timeRemaining < (thresholdSeconds * 1000);
     }
 
 }
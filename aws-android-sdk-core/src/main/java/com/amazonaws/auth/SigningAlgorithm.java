@@ -15,9 +15,49 @@
 
 package com.amazonaws.auth;
 
+import com.amazonaws.AmazonClientException;
+
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.Mac;
+
 public enum SigningAlgorithm {
 
     HmacSHA1,
     HmacSHA256;
 
+    /**
+     * Per-thread {@link Mac} instance for this algorithm. Looking up a Mac
+     * through the JCA provider list is expensive, so each thread keeps one
+     * around and re-initializes it with the key of the current signing
+     * operation.
+     */
+    private final ThreadLocal<Mac> macReference;
+
+    private SigningAlgorithm() {
+        final String algorithmName = this.toString();
+        macReference = new ThreadLocal<Mac>() {
+            @Override
+            protected Mac initialValue() {
+                try {
+                    return Mac.getInstance(algorithmName);
+                } catch (NoSuchAlgorithmException e) {
+                    throw new AmazonClientException("Unable to fetch Mac instance for Algorithm "
+                            + algorithmName + ": " + e.getMessage(), e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the thread local reference for the crypto algorithm. The
+     * returned instance must be initialized with a key before use and must
+     * not be shared with other threads.
+     *
+     * @return the {@link Mac} instance for this algorithm, bound to the
+     *         calling thread
+     */
+    public Mac getMac() {
+        return macReference.get();
+    }
 }
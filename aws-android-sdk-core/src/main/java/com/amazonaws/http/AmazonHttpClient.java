@@ -46,27 +46,24 @@ import org.apache.commons.logging.LogFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Future;
 
 public class AmazonHttpClient {
 
     private static final String HEADER_USER_AGENT = "User-Agent";
-    private static final String HEADER_SDK_TRANSACTION_ID = "aws-sdk-invocation-id";
-    private static final String HEADER_SDK_RETRY_INFO = "aws-sdk-retry";
+    static final String HEADER_SDK_TRANSACTION_ID = "aws-sdk-invocation-id";
+    static final String HEADER_SDK_RETRY_INFO = "aws-sdk-retry";
 
     /**
      * Logger providing detailed information on requests/responses. Users can
      * enable this logger to get access to AWS request IDs for responses,
      * individual requests and parameters sent to AWS, etc.
      */
-    private static final Log requestLog = LogFactory.getLog("com.amazonaws.request");
+    static final Log requestLog = LogFactory.getLog("com.amazonaws.request");
 
     /**
      * Logger for more detailed debugging information, that might not be as
@@ -89,7 +86,14 @@ public class AmazonHttpClient {
      */
     private final RequestMetricCollector requestMetricCollector;
 
-    private final HttpRequestFactory requestFactory = new HttpRequestFactory();
+    final HttpRequestFactory requestFactory = new HttpRequestFactory();
+
+    /**
+     * Client for {@link #executeAsync}: the internal client if it is an
+     * {@link AsyncHttpClient}, otherwise created on first use to run the
+     * internal client on a bounded pool of threads.
+     */
+    private volatile AsyncHttpClient asyncHttpClient;
 
     /**
      * Constructs a new AWS client using the specified client configuration
@@ -207,6 +211,64 @@ public class AmazonHttpClient {
         }
     }
 
+    /**
+     * Starts executing the request and returns without waiting for the
+     * response. The request goes through the same steps as with
+     * {@link #execute(Request, HttpResponseHandler, HttpResponseHandler, ExecutionContext)}
+     * , but the HTTP requests are made with an {@link AsyncHttpClient}, and
+     * retries are scheduled on a timer rather than waited for, so no thread
+     * of the caller is held while the request is in flight. If the internal
+     * {@link HttpClient} is not an {@link AsyncHttpClient} its requests run on
+     * an {@link ExecutorAsyncHttpClient} with up to
+     * {@link ClientConfiguration#getMaxConnections()} threads.
+     * <p>
+     * Cancelling the returned future stops further attempts; the callback is
+     * not invoked in that case.
+     *
+     * @param request The AmazonWebServices request to send to the remote server
+     * @param responseHandler A response handler to accept a successful response
+     *            from the remote server
+     * @param errorResponseHandler A response handler to accept an unsuccessful
+     *            response from the remote server
+     * @param executionContext Additional information about the context of this
+     *            web service call, with the credentials or their provider
+     *            set. Credentials from the provider are fetched on a thread
+     *            of the execution, not the caller's.
+     * @param callback The callback notified of the outcome; can be null.
+     * @return A future for the response, failing with the exception that
+     *         {@link #execute} would have thrown.
+     */
+    public <T> Future<Response<T>> executeAsync(Request<?> request,
+            HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+            HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            ExecutionContext executionContext, ResponseCallback<T> callback) {
+        if (executionContext == null)
+            throw new AmazonClientException(
+                    "Internal SDK Error: No execution context parameter specified.");
+        SettableFuture<Response<T>> future = new SettableFuture<Response<T>>();
+        new AsyncRequestExecution<T>(this, getAsyncHttpClient(), request, responseHandler,
+                errorResponseHandler, executionContext, callback, future).start();
+        return future;
+    }
+
+    AsyncHttpClient getAsyncHttpClient() {
+        if (httpClient instanceof AsyncHttpClient) {
+            return (AsyncHttpClient) httpClient;
+        }
+        AsyncHttpClient client = asyncHttpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = asyncHttpClient;
+                if (client == null) {
+                    client = new ExecutorAsyncHttpClient(httpClient,
+                            Math.max(1, config.getMaxConnections()));
+                    asyncHttpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
     void afterError(Request<?> request, Response<?> response,
             List<RequestHandler2> requestHandler2s, AmazonClientException e) {
         for (RequestHandler2 handler2 : requestHandler2s) {
@@ -266,32 +328,10 @@ public class AmazonHttpClient {
          */
         boolean leaveHttpConnectionOpen = false;
         AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
-        /*
-         * add the service endpoint to the logs. You can infer service name from
-         * service endpoint
-         */
-        awsRequestMetrics.addProperty(Field.ServiceName, request.getServiceName());
-        awsRequestMetrics.addProperty(Field.ServiceEndpoint, request.getEndpoint());
-
-        // Apply whatever request options we know how to handle, such as
-        // user-agent.
-        setUserAgent(request);
-        request.addHeader(HEADER_SDK_TRANSACTION_ID, UUID.randomUUID().toString());
-        int requestCount = 0;
-        long lastBackoffDelay = 0;
-        URI redirectedURI = null;
-        AmazonClientException retriedException = null;
-
+        beforeExecution(request, awsRequestMetrics);
         // Make a copy of the original request params and headers so that we can
         // permute it in this loop and start over with the original every time.
-        Map<String, String> originalParameters = new LinkedHashMap<String, String>(
-                request.getParameters());
-        Map<String, String> originalHeaders = new HashMap<String, String>(request.getHeaders());
-        // mark input stream if supported
-        InputStream originalContent = request.getContent();
-        if (originalContent != null && originalContent.markSupported()) {
-            originalContent.mark(-1);
-        }
+        RequestRetryState retryState = new RequestRetryState(request, awsRequestMetrics);
 
         final AWSCredentials credentials = executionContext.getCredentials();
         Signer signer = null;
@@ -299,49 +339,17 @@ public class AmazonHttpClient {
         HttpRequest httpRequest = null;
 
         while (true) {
-            ++requestCount;
-            awsRequestMetrics.setCounter(Field.RequestCount, requestCount);
-            if (requestCount > 1) { // retry
-                request.setParameters(originalParameters);
-                request.setHeaders(originalHeaders);
-                request.setContent(originalContent);
-            }
-            if (redirectedURI != null) {
-                request.setEndpoint(URI.create(
-                        redirectedURI.getScheme() + "://" + redirectedURI.getAuthority()));
-                request.setResourcePath(redirectedURI.getPath());
-            }
-
             try {
-                if (requestCount > 1) { // retry
+                if (retryState.getRequestCount() > 0) { // retry
                     awsRequestMetrics.startEvent(Field.RetryPauseTime);
                     try {
-                        lastBackoffDelay = pauseBeforeNextRetry(request.getOriginalRequest(),
-                                retriedException,
-                                requestCount,
-                                config.getRetryPolicy());
+                        pauseBeforeNextRetry(retryState);
                     } finally {
                         awsRequestMetrics.endEvent(Field.RetryPauseTime);
                     }
-                    InputStream content = request.getContent();
-                    if (content != null && content.markSupported()) {
-                        content.reset();
-                    }
-                }
-                request.addHeader(HEADER_SDK_RETRY_INFO,
-                        (requestCount - 1) + "/" + lastBackoffDelay);
-
-                // Sign the request if a signer was provided
-                if (signer == null)
-                    signer = executionContext.getSignerByURI(request.getEndpoint());
-                if (signer != null && credentials != null) {
-                    awsRequestMetrics.startEvent(Field.RequestSigningTime);
-                    try {
-                        signer.sign(request, credentials);
-                    } finally {
-                        awsRequestMetrics.endEvent(Field.RequestSigningTime);
-                    }
                 }
+                retryState.beginAttempt();
+                signer = sign(request, signer, credentials, executionContext);
 
                 if (requestLog.isDebugEnabled()) {
                     requestLog.debug("Sending Request: " + request.toString());
@@ -350,7 +358,7 @@ public class AmazonHttpClient {
                 httpRequest = requestFactory.createHttpRequest(request, config,
                         executionContext);
 
-                retriedException = null;
+                retryState.sending();
                 awsRequestMetrics.startEvent(Field.HttpRequestTime);
                 try {
                     httpResponse = httpClient.execute(httpRequest);
@@ -370,19 +378,7 @@ public class AmazonHttpClient {
                             executionContext);
                     return new Response<T>(response, httpResponse);
                 } else if (isTemporaryRedirect(httpResponse)) {
-                    /*
-                     * S3 sends 307 Temporary Redirects if you try to delete an
-                     * EU bucket from the US endpoint. If we get a 307, we'll
-                     * point the HTTP method to the redirected location, and let
-                     * the next retry deliver the request to the right location.
-                     */
-                    String redirectedLocation = httpResponse.getHeaders().get("Location");
-                    log.debug("Redirecting to: " + redirectedLocation);
-                    // set redirect uri and retry
-                    redirectedURI = URI.create(redirectedLocation);
-                    awsRequestMetrics.addProperty(Field.StatusCode, httpResponse.getStatusCode());
-                    awsRequestMetrics.addProperty(Field.RedirectLocation, redirectedLocation);
-                    awsRequestMetrics.addProperty(Field.AWSRequestID, null);
+                    retryState.redirect(httpResponse);
                 } else {
                     leaveHttpConnectionOpen = errorResponseHandler.needsConnectionLeftOpen();
                     AmazonServiceException ase = handleErrorResponse(request, errorResponseHandler,
@@ -391,48 +387,15 @@ public class AmazonHttpClient {
                     awsRequestMetrics.addProperty(Field.AWSErrorCode, ase.getErrorCode());
                     awsRequestMetrics.addProperty(Field.StatusCode, ase.getStatusCode());
 
-                    if (!shouldRetry(request.getOriginalRequest(),
-                            httpRequest.getContent(),
-                            ase,
-                            requestCount,
-                            config.getRetryPolicy())) {
+                    if (!retryAfterErrorResponse(retryState, httpRequest, httpResponse, ase)) {
                         throw ase;
                     }
-
-                    // Cache the retryable exception
-                    retriedException = ase;
-                    /*
-                     * Checking for clock skew error again because we don't want
-                     * to set the global time offset for every service
-                     * exception.
-                     */
-                    if (RetryUtils.isClockSkewError(ase)) {
-                        int timeOffset = parseClockSkewOffset(httpResponse, ase);
-                        SDKGlobalConfiguration.setGlobalTimeOffset(timeOffset);
-                    }
-                    resetRequestAfterError(request, ase);
                 }
             } catch (IOException ioe) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
-                }
-                awsRequestMetrics.incrementCounter(Field.Exception);
-                awsRequestMetrics.addProperty(Field.Exception, ioe);
-                awsRequestMetrics.addProperty(Field.AWSRequestID, null);
-
-                AmazonClientException ace = new AmazonClientException(
-                        "Unable to execute HTTP request: " + ioe.getMessage(), ioe);
-                if (!shouldRetry(request.getOriginalRequest(),
-                        httpRequest.getContent(),
-                        ace,
-                        requestCount,
-                        config.getRetryPolicy())) {
+                AmazonClientException ace = handleIOException(ioe, awsRequestMetrics);
+                if (!retryAfterIOException(retryState, httpRequest, ace, ioe)) {
                     throw ace;
                 }
-
-                // Cache the retryable exception
-                retriedException = ace;
-                resetRequestAfterError(request, ioe);
             } catch (RuntimeException e) {
                 throw handleUnexpectedFailure(e, awsRequestMetrics);
             } catch (Error e) {
@@ -446,22 +409,148 @@ public class AmazonHttpClient {
                  * up resources.
                  */
                 if (!leaveHttpConnectionOpen && httpResponse != null) {
-                    try {
-                        if (httpResponse.getRawContent() != null) {
-                            httpResponse.getRawContent().close();
-                        }
-                    } catch (IOException e) {
-                        log.warn("Cannot close the response content.", e);
-                    }
+                    closeResponseContent(httpResponse);
                 }
             }
         } /* end while (true) */
     }
 
+    /**
+     * Adds the service name and endpoint to the metrics, and the user agent
+     * and invocation id headers to a request about to be executed.
+     */
+    void beforeExecution(Request<?> request, AWSRequestMetrics awsRequestMetrics) {
+        /*
+         * add the service endpoint to the logs. You can infer service name from
+         * service endpoint
+         */
+        awsRequestMetrics.addProperty(Field.ServiceName, request.getServiceName());
+        awsRequestMetrics.addProperty(Field.ServiceEndpoint, request.getEndpoint());
+
+        // Apply whatever request options we know how to handle, such as
+        // user-agent.
+        setUserAgent(request);
+        request.addHeader(HEADER_SDK_TRANSACTION_ID, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Signs an attempt of the request if a signer is provided for its
+     * endpoint and there are credentials.
+     *
+     * @param signer the signer of the previous attempt, or null
+     * @return the signer, for the next attempts
+     */
+    Signer sign(Request<?> request, Signer signer, AWSCredentials credentials,
+            ExecutionContext executionContext) {
+        if (signer == null)
+            signer = executionContext.getSignerByURI(request.getEndpoint());
+        if (signer != null && credentials != null) {
+            AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+            awsRequestMetrics.startEvent(Field.RequestSigningTime);
+            try {
+                signer.sign(request, credentials);
+            } finally {
+                awsRequestMetrics.endEvent(Field.RequestSigningTime);
+            }
+        }
+        return signer;
+    }
+
+    /**
+     * Decides whether to retry after an error response. If so, records the
+     * error for the backoff strategy, adjusts the clock skew and resets the
+     * request content.
+     *
+     * @return true if the request should be retried, false if the error
+     *         should be thrown
+     */
+    boolean retryAfterErrorResponse(RequestRetryState retryState, HttpRequest httpRequest,
+            HttpResponse httpResponse, AmazonServiceException ase) {
+        Request<?> request = retryState.getRequest();
+        if (!shouldRetry(request.getOriginalRequest(),
+                httpRequest.getContent(),
+                ase,
+                retryState.getRequestCount(),
+                config.getRetryPolicy())) {
+            return false;
+        }
+
+        // Cache the retryable exception
+        retryState.retrying(ase);
+        /*
+         * Checking for clock skew error again because we don't want to set the
+         * global time offset for every service exception.
+         */
+        if (RetryUtils.isClockSkewError(ase)) {
+            int timeOffset = parseClockSkewOffset(httpResponse, ase);
+            SDKGlobalConfiguration.setGlobalTimeOffset(timeOffset);
+        }
+        resetRequestAfterError(request, ase);
+        return true;
+    }
+
+    /**
+     * Records a failure to execute the HTTP request in the metrics and wraps
+     * it in the exception to throw if it isn't retried.
+     */
+    AmazonClientException handleIOException(IOException ioe,
+            AWSRequestMetrics awsRequestMetrics) {
+        if (log.isDebugEnabled()) {
+            log.debug("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+        }
+        awsRequestMetrics.incrementCounter(Field.Exception);
+        awsRequestMetrics.addProperty(Field.Exception, ioe);
+        awsRequestMetrics.addProperty(Field.AWSRequestID, null);
+
+        return new AmazonClientException(
+                "Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+    }
+
+    /**
+     * Decides whether to retry after a failure to execute the HTTP request.
+     * If so, records the failure for the backoff strategy and resets the
+     * request content.
+     *
+     * @param httpRequest the HTTP request of the attempt, or null if it
+     *            couldn't be created
+     * @return true if the request should be retried, false if the exception
+     *         should be thrown
+     */
+    boolean retryAfterIOException(RequestRetryState retryState, HttpRequest httpRequest,
+            AmazonClientException ace, IOException ioe) {
+        Request<?> request = retryState.getRequest();
+        if (!shouldRetry(request.getOriginalRequest(),
+                httpRequest == null ? null : httpRequest.getContent(),
+                ace,
+                retryState.getRequestCount(),
+                config.getRetryPolicy())) {
+            return false;
+        }
+
+        // Cache the retryable exception
+        retryState.retrying(ace);
+        resetRequestAfterError(request, ioe);
+        return true;
+    }
+
+    /**
+     * Closes the content of a response that the response handler doesn't
+     * need left open.
+     */
+    void closeResponseContent(HttpResponse httpResponse) {
+        try {
+            if (httpResponse.getRawContent() != null) {
+                httpResponse.getRawContent().close();
+            }
+        } catch (IOException e) {
+            log.warn("Cannot close the response content.", e);
+        }
+    }
+
     /**
      * Handles an unexpected failure, returning the Throwable instance as given.
      */
-    private <T extends Throwable> T handleUnexpectedFailure(T t, AWSRequestMetrics awsRequestMetrics) {
+    <T extends Throwable> T handleUnexpectedFailure(T t, AWSRequestMetrics awsRequestMetrics) {
         awsRequestMetrics.incrementCounter(Field.Exception);
         awsRequestMetrics.addProperty(Field.Exception, t);
         return t;
@@ -539,7 +628,13 @@ public class AmazonHttpClient {
      * Once a client has been shutdown, it cannot be used to make more requests.
      */
     public void shutdown() {
-        httpClient.shutdown();
+        AsyncHttpClient client = asyncHttpClient;
+        if (client != null) {
+            // also shuts down httpClient
+            client.shutdown();
+        } else {
+            httpClient.shutdown();
+        }
     }
 
     /**
@@ -553,7 +648,7 @@ public class AmazonHttpClient {
      *            attempted.
      * @return True if the failed request should be retried.
      */
-    private boolean shouldRetry(AmazonWebServiceRequest originalRequest,
+    boolean shouldRetry(AmazonWebServiceRequest originalRequest,
             InputStream inputStream,
             AmazonClientException exception,
             int requestCount,
@@ -589,14 +684,14 @@ public class AmazonHttpClient {
                 retries);
     }
 
-    private static boolean isTemporaryRedirect(HttpResponse response) {
+    static boolean isTemporaryRedirect(HttpResponse response) {
         int statusCode = response.getStatusCode();
         String location = response.getHeaders().get("Location");
         return statusCode == 307 &&
                 location != null && !location.isEmpty();
     }
 
-    private boolean isRequestSuccessful(HttpResponse response) {
+    static boolean isRequestSuccessful(HttpResponse response) {
         int statusCode = response.getStatusCode();
         return statusCode >= 200 && statusCode < 300;
     }
@@ -717,6 +812,38 @@ public class AmazonHttpClient {
      * Sleep for a period of time on failed request to avoid flooding a service
      * with retries.
      *
+     * @param retryState the state of the request being retried
+     */
+    private void pauseBeforeNextRetry(RequestRetryState retryState) {
+        long delay = delayBeforeNextAttempt(retryState);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the time to wait before the next attempt of a failed request,
+     * and records it for the retry info header of that attempt.
+     *
+     * @param retryState the state of the request being retried
+     * @return the delay in milliseconds
+     */
+    long delayBeforeNextAttempt(RequestRetryState retryState) {
+        long delay = delayBeforeNextRetry(retryState.getRequest().getOriginalRequest(),
+                retryState.getRetriedException(),
+                retryState.getRequestCount() + 1,
+                config.getRetryPolicy());
+        retryState.setLastBackoffDelay(delay);
+        return delay;
+    }
+
+    /**
+     * Returns the time to wait before the next attempt of a failed request,
+     * according to the backoff strategy of the retry policy.
+     *
      * @param originalRequest The original service request that is being
      *            executed.
      * @param previousException Exception information for the previous attempt,
@@ -724,8 +851,9 @@ public class AmazonHttpClient {
      * @param requestCount current request count (including the next attempt
      *            after the delay)
      * @param retryPolicy The retry policy configured in this http client.
+     * @return the delay in milliseconds
      */
-    private long pauseBeforeNextRetry(AmazonWebServiceRequest originalRequest,
+    private long delayBeforeNextRetry(AmazonWebServiceRequest originalRequest,
             AmazonClientException previousException,
             int requestCount,
             RetryPolicy retryPolicy) {
@@ -740,14 +868,7 @@ public class AmazonHttpClient {
             log.debug("Retriable error detected, " +
                     "will retry in " + delay + "ms, attempt number: " + retries);
         }
-
-        try {
-            Thread.sleep(delay);
-            return delay;
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new AmazonClientException(e.getMessage(), e);
-        }
+        return delay;
     }
 
     /**
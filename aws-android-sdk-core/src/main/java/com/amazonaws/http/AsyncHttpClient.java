@@ -0,0 +1,67 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import java.io.IOException;
+
+/**
+ * An {@link HttpClient} that can also execute a request without blocking the
+ * calling thread, for
+ * {@link AmazonHttpClient#executeAsync(com.amazonaws.Request, HttpResponseHandler, HttpResponseHandler, ExecutionContext, ResponseCallback)}
+ * . The requirements of {@link HttpClient} apply to both ways of executing a
+ * request.
+ * <p>
+ * A transport built on non-blocking I/O implements this interface directly.
+ * {@link ExecutorAsyncHttpClient} adapts a blocking {@link HttpClient}, such
+ * as {@link UrlHttpClient}, by running it on a bounded pool of threads.
+ */
+public interface AsyncHttpClient extends HttpClient {
+
+    /**
+     * Starts executing a {@link HttpRequest} and returns without waiting for
+     * the response. The callback is invoked exactly once, from a thread of the
+     * client, when the response has been received or the request has failed.
+     * The callback reads the content of the response from that thread, so the
+     * content should be buffered or otherwise readable without waiting long
+     * for the network.
+     *
+     * @param request a HTTP request
+     * @param callback the callback to notify of the outcome
+     */
+    void execute(HttpRequest request, Callback callback);
+
+    /**
+     * Receives the outcome of
+     * {@link AsyncHttpClient#execute(HttpRequest, Callback)}.
+     */
+    interface Callback {
+
+        /**
+         * Invoked when the response has been received.
+         *
+         * @param response the response
+         */
+        void onResponse(HttpResponse response);
+
+        /**
+         * Invoked when the request could not be executed, such as in case of a
+         * connection problem.
+         *
+         * @param exception the cause of the failure
+         */
+        void onFailure(IOException exception);
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceResponse;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.Signer;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The execution of one request by
+ * {@link AmazonHttpClient#executeAsync(Request, HttpResponseHandler, HttpResponseHandler, ExecutionContext, ResponseCallback)}
+ * . It goes through the same steps as
+ * {@link AmazonHttpClient#executeHelper(Request, HttpResponseHandler, HttpResponseHandler, ExecutionContext)}
+ * , sharing its retry helpers and {@link RequestRetryState}, but no thread
+ * waits for it: each attempt is signed and handed to the
+ * {@link AsyncHttpClient}, the response is handled in its callback, and the
+ * next attempt after a retriable error is scheduled on a shared timer instead
+ * of sleeping.
+ * <p>
+ * The credentials are fetched, and the attempts prepared and signed, on a
+ * shared pool of request threads. The timer only hands the next attempt over
+ * to that pool, so a slow credentials provider or signer holds up neither the
+ * caller nor the retries of other requests.
+ * <p>
+ * Attempts never overlap, and each one is started after the previous one has
+ * ended, so the state of the execution is only accessed by one thread at a
+ * time.
+ */
+final class AsyncRequestExecution<T> implements AsyncHttpClient.Callback {
+
+    private final AmazonHttpClient client;
+    private final AsyncHttpClient asyncHttpClient;
+    private final Request<?> request;
+    private final HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler;
+    private final HttpResponseHandler<AmazonServiceException> errorResponseHandler;
+    private final ExecutionContext executionContext;
+    private final AWSRequestMetrics awsRequestMetrics;
+    private final ResponseCallback<T> callback;
+    private final SettableFuture<Response<T>> future;
+
+    private List<RequestHandler2> requestHandler2s;
+    private RequestRetryState retryState;
+    private AWSCredentials credentials;
+    private Signer signer;
+    private HttpRequest httpRequest;
+
+    AsyncRequestExecution(AmazonHttpClient client, AsyncHttpClient asyncHttpClient,
+            Request<?> request,
+            HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+            HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            ExecutionContext executionContext, ResponseCallback<T> callback,
+            SettableFuture<Response<T>> future) {
+        this.client = client;
+        this.asyncHttpClient = asyncHttpClient;
+        this.request = request;
+        this.responseHandler = responseHandler;
+        this.errorResponseHandler = errorResponseHandler;
+        this.executionContext = executionContext;
+        this.awsRequestMetrics = executionContext.getAwsRequestMetrics();
+        this.callback = callback;
+        this.future = future;
+    }
+
+    /**
+     * Starts the execution on a request thread and returns.
+     */
+    void start() {
+        RequestExecutor.INSTANCE.execute(new Runnable() {
+            @Override
+            public void run() {
+                begin();
+            }
+        });
+    }
+
+    /**
+     * Fetches the credentials if needed, runs the request handlers and starts
+     * the first attempt, unless the future has been cancelled.
+     */
+    private void begin() {
+        if (future.isCancelled()) {
+            return;
+        }
+        try {
+            credentials = executionContext.getCredentials();
+            AWSCredentialsProvider credentialsProvider = executionContext
+                    .getCredentialsProvider();
+            if (credentials == null && credentialsProvider != null) {
+                awsRequestMetrics.startEvent(Field.CredentialsRequestTime);
+                try {
+                    credentials = credentialsProvider.getCredentials();
+                } finally {
+                    awsRequestMetrics.endEvent(Field.CredentialsRequestTime);
+                }
+                // for the CredentialsRequestHandlers
+                executionContext.setCredentials(credentials);
+            }
+            requestHandler2s = client.requestHandler2s(request, executionContext);
+            client.beforeExecution(request, awsRequestMetrics);
+            retryState = new RequestRetryState(request, awsRequestMetrics);
+        } catch (RuntimeException e) {
+            fail(e);
+            return;
+        }
+        attempt();
+    }
+
+    /**
+     * Signs the request and hands it to the HTTP client, unless the future
+     * has been cancelled.
+     */
+    private void attempt() {
+        if (future.isCancelled()) {
+            return;
+        }
+        try {
+            retryState.beginAttempt();
+            signer = client.sign(request, signer, credentials, executionContext);
+
+            if (AmazonHttpClient.requestLog.isDebugEnabled()) {
+                AmazonHttpClient.requestLog.debug("Sending Request: " + request.toString());
+            }
+
+            httpRequest = client.requestFactory.createHttpRequest(request, client.config,
+                    executionContext);
+        } catch (IOException ioe) {
+            handleIOException(ioe);
+            return;
+        } catch (Throwable t) {
+            fail(client.handleUnexpectedFailure(t, awsRequestMetrics));
+            return;
+        }
+
+        retryState.sending();
+        awsRequestMetrics.startEvent(Field.HttpRequestTime);
+        asyncHttpClient.execute(httpRequest, this);
+    }
+
+    @Override
+    public void onResponse(HttpResponse httpResponse) {
+        awsRequestMetrics.endEvent(Field.HttpRequestTime);
+        boolean leaveHttpConnectionOpen = false;
+        Response<T> response = null;
+        boolean retry = false;
+        IOException ioException = null;
+        Throwable failure = null;
+        try {
+            if (AmazonHttpClient.isRequestSuccessful(httpResponse)) {
+                awsRequestMetrics.addProperty(Field.StatusCode, httpResponse.getStatusCode());
+                leaveHttpConnectionOpen = responseHandler.needsConnectionLeftOpen();
+                T result = client.handleResponse(request, responseHandler, httpResponse,
+                        executionContext);
+                response = new Response<T>(result, httpResponse);
+            } else if (AmazonHttpClient.isTemporaryRedirect(httpResponse)) {
+                retryState.redirect(httpResponse);
+                retry = true;
+            } else {
+                leaveHttpConnectionOpen = errorResponseHandler.needsConnectionLeftOpen();
+                AmazonServiceException ase = client.handleErrorResponse(request,
+                        errorResponseHandler, httpResponse);
+                awsRequestMetrics.addProperty(Field.AWSRequestID, ase.getRequestId());
+                awsRequestMetrics.addProperty(Field.AWSErrorCode, ase.getErrorCode());
+                awsRequestMetrics.addProperty(Field.StatusCode, ase.getStatusCode());
+
+                if (client.retryAfterErrorResponse(retryState, httpRequest, httpResponse, ase)) {
+                    retry = true;
+                } else {
+                    failure = client.handleUnexpectedFailure(ase, awsRequestMetrics);
+                }
+            }
+        } catch (IOException ioe) {
+            ioException = ioe;
+        } catch (Throwable t) {
+            failure = client.handleUnexpectedFailure(t, awsRequestMetrics);
+        } finally {
+            if (!leaveHttpConnectionOpen) {
+                client.closeResponseContent(httpResponse);
+            }
+        }
+
+        if (response != null) {
+            succeed(response);
+        } else if (ioException != null) {
+            handleIOException(ioException);
+        } else if (failure != null) {
+            fail(failure);
+        } else if (retry) {
+            scheduleRetry();
+        }
+    }
+
+    @Override
+    public void onFailure(IOException exception) {
+        awsRequestMetrics.endEvent(Field.HttpRequestTime);
+        handleIOException(exception);
+    }
+
+    private void handleIOException(IOException ioe) {
+        AmazonClientException ace = client.handleIOException(ioe, awsRequestMetrics);
+        try {
+            if (!client.retryAfterIOException(retryState, httpRequest, ace, ioe)) {
+                fail(ace);
+                return;
+            }
+        } catch (Throwable t) {
+            fail(t);
+            return;
+        }
+        scheduleRetry();
+    }
+
+    /**
+     * Schedules the next attempt after the delay of the backoff strategy. When
+     * the delay is over, the timer hands the attempt over to a request thread.
+     */
+    private void scheduleRetry() {
+        long delay;
+        try {
+            delay = client.delayBeforeNextAttempt(retryState);
+        } catch (Throwable t) {
+            fail(t);
+            return;
+        }
+        awsRequestMetrics.startEvent(Field.RetryPauseTime);
+        final Runnable nextAttempt = new Runnable() {
+            @Override
+            public void run() {
+                awsRequestMetrics.endEvent(Field.RetryPauseTime);
+                attempt();
+            }
+        };
+        RetryTimer.INSTANCE.schedule(new Runnable() {
+            @Override
+            public void run() {
+                RequestExecutor.INSTANCE.execute(nextAttempt);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void succeed(Response<T> response) {
+        try {
+            TimingInfo timingInfo = awsRequestMetrics.getTimingInfo().endTiming();
+            client.afterResponse(request, requestHandler2s, response, timingInfo);
+        } catch (Throwable t) {
+            fail(t);
+            return;
+        }
+        if (callback != null) {
+            try {
+                callback.onResponse(response);
+            } catch (RuntimeException e) {
+                AmazonHttpClient.log.warn("Exception thrown by the response callback", e);
+            }
+        }
+        future.set(response);
+    }
+
+    private void fail(Throwable t) {
+        Exception exception = t instanceof Exception ? (Exception) t
+                : new AmazonClientException("Unexpected error: " + t, t);
+        if (exception instanceof AmazonClientException && requestHandler2s != null) {
+            try {
+                client.afterError(request, null, requestHandler2s,
+                        (AmazonClientException) exception);
+            } catch (RuntimeException e) {
+                AmazonHttpClient.log.warn("Exception thrown by a request handler", e);
+            }
+        }
+        if (callback != null) {
+            try {
+                callback.onError(exception);
+            } catch (RuntimeException e) {
+                AmazonHttpClient.log.warn("Exception thrown by the response callback", e);
+            }
+        }
+        future.setException(exception);
+    }
+
+    /**
+     * Shared daemon thread handing the attempts that wait for a retry delay
+     * over to the request threads once the delay is over.
+     */
+    private static final class RetryTimer {
+        static final ScheduledExecutorService INSTANCE = Executors
+                .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "aws-retry-timer");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Shared pool of daemon threads fetching the credentials of the requests
+     * and preparing their attempts, bounded by the number of processors since
+     * none of that work waits for the network, apart from a credentials
+     * provider fetching new credentials, which the other requests would wait
+     * for anyway. Idle threads are released after a minute.
+     */
+    private static final class RequestExecutor {
+        private static final long IDLE_THREAD_TIMEOUT_SECONDS = 60;
+
+        static final ExecutorService INSTANCE = newExecutor(
+                Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+        private static ExecutorService newExecutor(int threads) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                    IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r,
+                                    "aws-request-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+/**
+ * Snapshot of the connection usage of a {@link UrlHttpClient}, for all hosts
+ * or for a single one.
+ * <p>
+ * {@link java.net.HttpURLConnection} keeps a connection alive for the next
+ * request to the same host once its response has been read to the end, so
+ * {@link #getReusableCount()} counts the responses that left their connection
+ * ready for reuse, and {@link #getClosedEarlyCount()} the ones whose
+ * connection may have been dropped.
+ */
+public final class ConnectionStatistics {
+
+    private final long requestCount;
+    private final long reusableCount;
+    private final long closedEarlyCount;
+    private final long waitCount;
+    private final long reclaimedCount;
+    private final int leasedCount;
+    private final int peakLeasedCount;
+
+    ConnectionStatistics(long requestCount, long reusableCount, long closedEarlyCount,
+            long waitCount, long reclaimedCount, int leasedCount, int peakLeasedCount) {
+        this.requestCount = requestCount;
+        this.reusableCount = reusableCount;
+        this.closedEarlyCount = closedEarlyCount;
+        this.waitCount = waitCount;
+        this.reclaimedCount = reclaimedCount;
+        this.leasedCount = leasedCount;
+        this.peakLeasedCount = peakLeasedCount;
+    }
+
+    /**
+     * @return the number of requests executed
+     */
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * @return the number of responses read to the end, or without a body,
+     *         which left their connection ready for the next request
+     */
+    public long getReusableCount() {
+        return reusableCount;
+    }
+
+    /**
+     * @return the number of requests that failed or whose response was closed
+     *         before the end
+     */
+    public long getClosedEarlyCount() {
+        return closedEarlyCount;
+    }
+
+    /**
+     * @return the number of requests that had to wait for a connection because
+     *         {@link com.amazonaws.ClientConfiguration#getMaxConnections()}
+     *         were in use
+     */
+    public long getWaitCount() {
+        return waitCount;
+    }
+
+    /**
+     * @return the number of connections taken back from responses that were
+     *         neither read to the end nor closed, and went unread for longer
+     *         than the socket timeout; they are included in
+     *         {@link #getClosedEarlyCount()}
+     */
+    public long getReclaimedCount() {
+        return reclaimedCount;
+    }
+
+    /**
+     * @return the number of connections in use, from the start of a request
+     *         until its response is read or closed
+     */
+    public int getLeasedCount() {
+        return leasedCount;
+    }
+
+    /**
+     * @return the largest number of connections in use at the same time
+     */
+    public int getPeakLeasedCount() {
+        return peakLeasedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "{requests=" + requestCount + ", reusable=" + reusableCount
+                + ", closedEarly=" + closedEarlyCount + ", waits=" + waitCount
+                + ", reclaimed=" + reclaimedCount
+                + ", leased=" + leasedCount + ", peakLeased=" + peakLeasedCount + "}";
+    }
+}
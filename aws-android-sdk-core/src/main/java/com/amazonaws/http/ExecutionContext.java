@@ -17,6 +17,7 @@ package com.amazonaws.http;
 
 import com.amazonaws.AmazonWebServiceClient;
 import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.Signer;
 import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.util.AWSRequestMetrics;
@@ -37,6 +38,12 @@ public class ExecutionContext {
      */
     private AWSCredentials credentials;
 
+    /**
+     * Optional provider the credentials are fetched from by the non-blocking
+     * execution path, when no credentials are set.
+     */
+    private AWSCredentialsProvider credentialsProvider;
+
     /** For testing purposes. */
     @Deprecated
     public ExecutionContext(boolean isMetricEnabled) {
@@ -114,4 +121,30 @@ public class ExecutionContext {
     public void setCredentials(AWSCredentials credentials) {
         this.credentials = credentials;
     }
+
+    /**
+     * Returns the optional provider of the credentials used to sign the
+     * associated request.
+     *
+     * @return The optional provider of the credentials used to sign the
+     *         associated request.
+     */
+    public AWSCredentialsProvider getCredentialsProvider() {
+        return credentialsProvider;
+    }
+
+    /**
+     * Sets the optional provider of the credentials used to sign the
+     * associated request. When no credentials are set,
+     * {@link AmazonHttpClient#executeAsync} fetches them from the provider on
+     * one of its own threads rather than the caller's, since the provider may
+     * have to wait for the network. The blocking execution path only uses
+     * the credentials set with {@link #setCredentials(AWSCredentials)}.
+     *
+     * @param credentialsProvider The optional provider of the credentials used
+     *            to sign the associated request.
+     */
+    public void setCredentialsProvider(AWSCredentialsProvider credentialsProvider) {
+        this.credentialsProvider = credentialsProvider;
+    }
 }
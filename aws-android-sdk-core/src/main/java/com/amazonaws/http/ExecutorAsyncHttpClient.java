@@ -0,0 +1,126 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link AsyncHttpClient} that executes the requests of a blocking
+ * {@link HttpClient} on a pool of threads. The pool is bounded, so any number
+ * of requests can be in flight while at most as many threads as the client has
+ * connections are blocked on I/O; the other requests wait in the queue of the
+ * pool without holding a thread.
+ */
+public class ExecutorAsyncHttpClient implements AsyncHttpClient {
+
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 60;
+
+    private final HttpClient httpClient;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    /**
+     * Constructs a client that executes requests on its own pool of daemon
+     * threads. Idle threads are released after a minute.
+     *
+     * @param httpClient the client executing the requests
+     * @param maxThreads the maximum number of requests executed at the same
+     *            time, usually
+     *            {@link com.amazonaws.ClientConfiguration#getMaxConnections()}
+     */
+    public ExecutorAsyncHttpClient(HttpClient httpClient, int maxThreads) {
+        if (maxThreads <= 0) {
+            throw new IllegalArgumentException("Invalid number of threads: " + maxThreads);
+        }
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads,
+                IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "aws-http-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        this.httpClient = httpClient;
+        this.executor = pool;
+        this.ownsExecutor = true;
+    }
+
+    /**
+     * Constructs a client that executes requests on the given executor. The
+     * executor is not shut down with this client.
+     *
+     * @param httpClient the client executing the requests
+     * @param executor the executor running the requests
+     */
+    public ExecutorAsyncHttpClient(HttpClient httpClient, ExecutorService executor) {
+        this.httpClient = httpClient;
+        this.executor = executor;
+        this.ownsExecutor = false;
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        return httpClient.execute(request);
+    }
+
+    @Override
+    public void execute(final HttpRequest request, final Callback callback) {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    HttpResponse response;
+                    try {
+                        response = httpClient.execute(request);
+                    } catch (IOException e) {
+                        callback.onFailure(e);
+                        return;
+                    } catch (RuntimeException e) {
+                        callback.onFailure(new IOException(e.toString(), e));
+                        return;
+                    }
+                    callback.onResponse(response);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            callback.onFailure(new IOException("The HTTP client has been shut down", e));
+        }
+    }
+
+    /**
+     * Shuts down the underlying client and, if it was created by this client,
+     * the pool of threads.
+     */
+    @Override
+    public void shutdown() {
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        }
+        httpClient.shutdown();
+    }
+}
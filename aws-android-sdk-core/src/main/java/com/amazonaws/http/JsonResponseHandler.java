@@ -32,7 +32,6 @@ import org.apache.commons.logging.LogFactory;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.zip.GZIPInputStream;
@@ -102,8 +101,7 @@ public class JsonResponseHandler<T> implements HttpResponseHandler<AmazonWebServ
             content = new GZIPInputStream(content);
         }
 
-        AwsJsonReader jsonReader = JsonUtils.getJsonReader(new InputStreamReader(content,
-                StringUtils.UTF8));
+        AwsJsonReader jsonReader = JsonUtils.getJsonReader(content);
 
         try {
             AmazonWebServiceResponse<T> awsResponse = new AmazonWebServiceResponse<T>();
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.Request;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The state one request keeps across its attempts, shared by the blocking and
+ * the non-blocking paths of {@link AmazonHttpClient}: the original parameters,
+ * headers and content every attempt starts from, the number of attempts, the
+ * last backoff delay, the location of a temporary redirect and the exception
+ * that caused the current retry.
+ */
+final class RequestRetryState {
+
+    private final Request<?> request;
+    private final AWSRequestMetrics awsRequestMetrics;
+    private final Map<String, String> originalParameters;
+    private final Map<String, String> originalHeaders;
+    private final InputStream originalContent;
+
+    private int requestCount;
+    private long lastBackoffDelay;
+    private URI redirectedURI;
+    private AmazonClientException retriedException;
+
+    /**
+     * Copies the parameters and headers of the request, and marks its content
+     * if supported, so that every attempt can start over from them.
+     *
+     * @param request the request being executed
+     * @param awsRequestMetrics the metrics of the request
+     */
+    RequestRetryState(Request<?> request, AWSRequestMetrics awsRequestMetrics) {
+        this.request = request;
+        this.awsRequestMetrics = awsRequestMetrics;
+        originalParameters = new LinkedHashMap<String, String>(request.getParameters());
+        originalHeaders = new HashMap<String, String>(request.getHeaders());
+        originalContent = request.getContent();
+        if (originalContent != null && originalContent.markSupported()) {
+            originalContent.mark(-1);
+        }
+    }
+
+    Request<?> getRequest() {
+        return request;
+    }
+
+    /**
+     * @return the number of attempts started so far
+     */
+    int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * @return the exception that caused the current retry, or null
+     */
+    AmazonClientException getRetriedException() {
+        return retriedException;
+    }
+
+    /**
+     * Starts a new attempt: restores the original parameters, headers and
+     * content of the request for a retry, points it at the redirected
+     * location if any, rewinds the content and adds the retry info header.
+     *
+     * @throws IOException if the content can't be rewound
+     */
+    void beginAttempt() throws IOException {
+        ++requestCount;
+        awsRequestMetrics.setCounter(Field.RequestCount, requestCount);
+        if (requestCount > 1) { // retry
+            request.setParameters(originalParameters);
+            request.setHeaders(originalHeaders);
+            request.setContent(originalContent);
+        }
+        if (redirectedURI != null) {
+            request.setEndpoint(URI.create(
+                    redirectedURI.getScheme() + "://" + redirectedURI.getAuthority()));
+            request.setResourcePath(redirectedURI.getPath());
+        }
+        if (requestCount > 1) {
+            InputStream content = request.getContent();
+            if (content != null && content.markSupported()) {
+                content.reset();
+            }
+        }
+        request.addHeader(AmazonHttpClient.HEADER_SDK_RETRY_INFO,
+                (requestCount - 1) + "/" + lastBackoffDelay);
+    }
+
+    /**
+     * Called once the attempt is signed and about to be sent.
+     */
+    void sending() {
+        retriedException = null;
+    }
+
+    /**
+     * Records a temporary redirect, which the next attempt follows.
+     *
+     * @param httpResponse the 307 response
+     */
+    void redirect(HttpResponse httpResponse) {
+        /*
+         * S3 sends 307 Temporary Redirects if you try to delete an EU bucket
+         * from the US endpoint. If we get a 307, we'll point the HTTP method to
+         * the redirected location, and let the next retry deliver the request
+         * to the right location.
+         */
+        String redirectedLocation = httpResponse.getHeaders().get("Location");
+        AmazonHttpClient.log.debug("Redirecting to: " + redirectedLocation);
+        redirectedURI = URI.create(redirectedLocation);
+        awsRequestMetrics.addProperty(Field.StatusCode, httpResponse.getStatusCode());
+        awsRequestMetrics.addProperty(Field.RedirectLocation, redirectedLocation);
+        awsRequestMetrics.addProperty(Field.AWSRequestID, null);
+    }
+
+    /**
+     * Records the exception that caused a retry, for the backoff strategy.
+     */
+    void retrying(AmazonClientException exception) {
+        retriedException = exception;
+    }
+
+    /**
+     * Records the delay before the next attempt, for its retry info header.
+     */
+    void setLastBackoffDelay(long lastBackoffDelay) {
+        this.lastBackoffDelay = lastBackoffDelay;
+    }
+}
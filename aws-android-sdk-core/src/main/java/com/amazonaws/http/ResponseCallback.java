@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import com.amazonaws.Response;
+
+/**
+ * Receives the outcome of a request executed with
+ * {@link AmazonHttpClient#executeAsync(com.amazonaws.Request, HttpResponseHandler, HttpResponseHandler, ExecutionContext, ResponseCallback)}
+ * . Exactly one of the methods is invoked, from a thread of the
+ * {@link AsyncHttpClient} or of the timer scheduling retries, so they should
+ * return quickly and never block.
+ *
+ * @param <T> The type of the result of the request
+ */
+public interface ResponseCallback<T> {
+
+    /**
+     * Invoked when the request has succeeded.
+     *
+     * @param response the response, as would be returned by
+     *            {@link AmazonHttpClient#execute(com.amazonaws.Request, HttpResponseHandler, HttpResponseHandler, ExecutionContext)}
+     */
+    void onResponse(Response<T> response);
+
+    /**
+     * Invoked when the request has failed, after any retries.
+     *
+     * @param exception the exception, as would be thrown by
+     *            {@link AmazonHttpClient#execute(com.amazonaws.Request, HttpResponseHandler, HttpResponseHandler, ExecutionContext)}
+     *            , usually an {@link com.amazonaws.AmazonClientException}
+     */
+    void onError(Exception exception);
+}
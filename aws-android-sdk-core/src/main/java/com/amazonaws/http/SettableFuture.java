@@ -0,0 +1,75 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A {@link java.util.concurrent.Future} completed by calling
+ * {@link #set(Object)} or {@link #setException(Throwable)} instead of by
+ * running a task, for results delivered by a callback. Only the first
+ * completion, or cancellation, has an effect.
+ *
+ * @param <T> The type of the result
+ */
+public class SettableFuture<T> extends FutureTask<T> {
+
+    private static final Callable<Object> NO_TASK = new Callable<Object>() {
+        @Override
+        public Object call() {
+            throw new IllegalStateException("SettableFuture is completed with set()");
+        }
+    };
+
+    /**
+     * Constructs a future that is not yet completed.
+     */
+    @SuppressWarnings("unchecked")
+    public SettableFuture() {
+        super((Callable<T>) NO_TASK);
+    }
+
+    /**
+     * Completes this future with the given result.
+     *
+     * @param result the result of the computation
+     */
+    @Override
+    public void set(T result) {
+        super.set(result);
+    }
+
+    /**
+     * Completes this future with the given exception, which
+     * {@link #get()} throws wrapped in an
+     * {@link java.util.concurrent.ExecutionException}.
+     *
+     * @param exception the cause of the failure
+     */
+    @Override
+    public void setException(Throwable exception) {
+        super.setException(exception);
+    }
+
+    /**
+     * Does nothing: this future is only completed with {@link #set(Object)}
+     * or {@link #setException(Throwable)}.
+     */
+    @Override
+    public void run() {
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of connections {@link UrlHttpClient} uses per host and
+ * keeps track of their use. {@link java.net.HttpURLConnection} pools the
+ * connections itself, but opens as many as there are concurrent requests;
+ * a connection is leased here from the start of a request until its response
+ * is read to the end or closed, which is when the underlying connection goes
+ * back to the pool of {@link java.net.HttpURLConnection}.
+ * <p>
+ * A caller that neither reads a response to the end nor closes it would hold
+ * its connection forever. When the limit is reached, the connections of
+ * responses that have not been read for longer than the idle timeout are
+ * therefore taken back. Their streams stay usable, they just no longer count
+ * against the limit.
+ */
+final class UrlConnectionManager {
+
+    /** The idle timeout when none is given, in milliseconds. */
+    static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60 * 1000;
+
+    private final int maxConnectionsPerHost;
+    private final long leaseTimeoutMillis;
+    private final long idleTimeoutNanos;
+    private final ConcurrentMap<String, HostConnections> hosts =
+            new ConcurrentHashMap<String, HostConnections>();
+
+    /**
+     * @param maxConnectionsPerHost the maximum number of connections in use
+     *            per host, or 0 or less for no limit
+     * @param leaseTimeoutMillis how long to wait for a connection, or 0 to
+     *            wait until one is available
+     */
+    UrlConnectionManager(int maxConnectionsPerHost, long leaseTimeoutMillis) {
+        this(maxConnectionsPerHost, leaseTimeoutMillis, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param maxConnectionsPerHost the maximum number of connections in use
+     *            per host, or 0 or less for no limit
+     * @param leaseTimeoutMillis how long to wait for a connection, or 0 to
+     *            wait until one is available
+     * @param idleTimeoutMillis how long a response may go unread before its
+     *            connection can be taken back, or 0 or less for
+     *            {@link #DEFAULT_IDLE_TIMEOUT_MILLIS}
+     */
+    UrlConnectionManager(int maxConnectionsPerHost, long leaseTimeoutMillis,
+            long idleTimeoutMillis) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.leaseTimeoutMillis = leaseTimeoutMillis;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(
+                idleTimeoutMillis > 0 ? idleTimeoutMillis : DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Leases a connection to the host of the given URL, waiting for one if
+     * the maximum number of connections to the host are in use.
+     *
+     * @param url the URL of the request
+     * @return the lease, to release once the response is consumed
+     * @throws SocketTimeoutException if no connection was available in time
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    Lease lease(URL url) throws IOException {
+        String key = hostKey(url);
+        HostConnections host = hosts.get(key);
+        if (host == null) {
+            host = new HostConnections(maxConnectionsPerHost);
+            HostConnections existing = hosts.putIfAbsent(key, host);
+            if (existing != null) {
+                host = existing;
+            }
+        }
+        host.acquire(key, leaseTimeoutMillis, idleTimeoutNanos);
+        return new Lease(host);
+    }
+
+    /**
+     * @return the statistics of all the hosts
+     */
+    ConnectionStatistics getStatistics() {
+        long requests = 0;
+        long reusable = 0;
+        long closedEarly = 0;
+        long waits = 0;
+        long reclaimed = 0;
+        int leased = 0;
+        int peak = 0;
+        for (HostConnections host : hosts.values()) {
+            requests += host.requests.get();
+            reusable += host.reusable.get();
+            closedEarly += host.closedEarly.get();
+            waits += host.waits.get();
+            reclaimed += host.reclaimed.get();
+            leased += host.leased.get();
+            peak = Math.max(peak, host.peakLeased.get());
+        }
+        return new ConnectionStatistics(requests, reusable, closedEarly, waits, reclaimed,
+                leased, peak);
+    }
+
+    /**
+     * @return the statistics of each host, keyed by scheme, host and port,
+     *         such as "https://dynamodb.us-east-1.amazonaws.com:443"
+     */
+    Map<String, ConnectionStatistics> getStatisticsByHost() {
+        Map<String, ConnectionStatistics> statistics = new HashMap<String, ConnectionStatistics>();
+        for (Map.Entry<String, HostConnections> entry : hosts.entrySet()) {
+            statistics.put(entry.getKey(), entry.getValue().getStatistics());
+        }
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    static String hostKey(URL url) {
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        return url.getProtocol() + "://" + url.getHost() + ":" + port;
+    }
+
+    private static final class HostConnections {
+        /** null when the number of connections is not limited */
+        private final Semaphore permits;
+        /** the leases whose response is being read, null without a limit */
+        private final Set<Lease> open;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong reusable = new AtomicLong();
+        private final AtomicLong closedEarly = new AtomicLong();
+        private final AtomicLong waits = new AtomicLong();
+        private final AtomicLong reclaimed = new AtomicLong();
+        private final AtomicInteger leased = new AtomicInteger();
+        private final AtomicInteger peakLeased = new AtomicInteger();
+
+        HostConnections(int maxConnections) {
+            permits = maxConnections > 0 ? new Semaphore(maxConnections) : null;
+            open = maxConnections > 0
+                    ? Collections.newSetFromMap(new ConcurrentHashMap<Lease, Boolean>())
+                    : null;
+        }
+
+        void acquire(String key, long timeoutMillis, long idleTimeoutNanos)
+                throws IOException {
+            if (permits != null && !permits.tryAcquire()) {
+                waits.incrementAndGet();
+                long deadline = System.nanoTime()
+                        + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                try {
+                    while (!permits.tryAcquire()) {
+                        if (reclaimIdle(idleTimeoutNanos) > 0) {
+                            continue;
+                        }
+                        // wakes up at least once per idle timeout to look for
+                        // abandoned responses again
+                        long wait = idleTimeoutNanos;
+                        if (timeoutMillis > 0) {
+                            long remaining = deadline - System.nanoTime();
+                            if (remaining <= 0) {
+                                throw new SocketTimeoutException(
+                                        "Timeout waiting for a connection to " + key);
+                            }
+                            wait = Math.min(wait, remaining);
+                        }
+                        if (permits.tryAcquire(wait, TimeUnit.NANOSECONDS)) {
+                            break;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException(
+                            "Interrupted while waiting for a connection to " + key);
+                }
+            }
+            requests.incrementAndGet();
+            int current = leased.incrementAndGet();
+            int peak;
+            while (current > (peak = peakLeased.get())) {
+                if (peakLeased.compareAndSet(peak, current)) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Takes back the connections of the responses that have not been read
+         * for the given time.
+         *
+         * @return the number of connections taken back
+         */
+        private int reclaimIdle(long idleTimeoutNanos) {
+            int count = 0;
+            long now = System.nanoTime();
+            for (Lease lease : open) {
+                if (now - lease.lastReadNanos >= idleTimeoutNanos && lease.reclaim()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        void release(boolean reused) {
+            (reused ? reusable : closedEarly).incrementAndGet();
+            leased.decrementAndGet();
+            if (permits != null) {
+                permits.release();
+            }
+        }
+
+        ConnectionStatistics getStatistics() {
+            return new ConnectionStatistics(requests.get(), reusable.get(), closedEarly.get(),
+                    waits.get(), reclaimed.get(), leased.get(), peakLeased.get());
+        }
+    }
+
+    /**
+     * A connection in use by a request. Releasing it more than once has no
+     * effect.
+     */
+    static final class Lease {
+        private final HostConnections host;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile long lastReadNanos;
+
+        private Lease(HostConnections host) {
+            this.host = host;
+        }
+
+        /**
+         * Releases the connection.
+         *
+         * @param reusable true if the response was consumed, leaving the
+         *            connection ready for another request
+         */
+        void release(boolean reusable) {
+            if (released.compareAndSet(false, true)) {
+                if (host.open != null) {
+                    host.open.remove(this);
+                }
+                host.release(reusable);
+            }
+        }
+
+        /**
+         * Releases the connection of a response nobody reads, without
+         * touching its stream, which may still be in use by another thread.
+         *
+         * @return true if the connection was released by this call
+         */
+        private boolean reclaim() {
+            if (released.compareAndSet(false, true)) {
+                host.open.remove(this);
+                host.reclaimed.incrementAndGet();
+                host.release(false);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Wraps the content of the response so that the connection is
+         * released when the content is read to the end or closed.
+         */
+        InputStream wrap(InputStream content) {
+            lastReadNanos = System.nanoTime();
+            if (host.open != null) {
+                host.open.add(this);
+            }
+            return new LeasedInputStream(content, this);
+        }
+    }
+
+    private static final class LeasedInputStream extends FilterInputStream {
+        private final Lease lease;
+
+        LeasedInputStream(InputStream in, Lease lease) {
+            super(in);
+            this.lease = lease;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            lease.lastReadNanos = System.nanoTime();
+            if (b < 0) {
+                lease.release(true);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            lease.lastReadNanos = System.nanoTime();
+            if (n < 0) {
+                lease.release(true);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                in.close();
+            } finally {
+                lease.release(false);
+            }
+        }
+    }
+}
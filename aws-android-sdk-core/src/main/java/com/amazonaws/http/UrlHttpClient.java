@@ -18,10 +18,16 @@ package com.amazonaws.http;
 import static com.amazonaws.SDKGlobalConfiguration.DISABLE_CERT_CHECKING_SYSTEM_PROPERTY;
 
 import com.amazonaws.ClientConfiguration;
+import com.amazonaws.util.BufferPool;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
 import java.net.ProtocolException;
 import java.net.URL;
@@ -49,25 +55,96 @@ import javax.net.ssl.X509TrustManager;
  */
 public class UrlHttpClient implements HttpClient {
 
+    private static final Log log = LogFactory.getLog(UrlHttpClient.class);
+
+    private static final int BUFFER_SIZE = 1024 * 8;
+    /** Copy buffers shared by all the clients */
+    private static final BufferPool BUFFERS = new BufferPool(BUFFER_SIZE, 16);
+
+    /**
+     * setFixedLengthStreamingMode(long), available from API level 19, or null
+     * if unavailable
+     */
+    private static final Method SET_FIXED_LENGTH_STREAMING_MODE_LONG;
+    static {
+        Method method = null;
+        try {
+            method = HttpURLConnection.class.getMethod("setFixedLengthStreamingMode",
+                    long.class);
+        } catch (NoSuchMethodException e) {
+            // before API level 19
+        }
+        SET_FIXED_LENGTH_STREAMING_MODE_LONG = method;
+    }
+
     private final ClientConfiguration config;
+    private final UrlConnectionManager connectionManager;
 
     public UrlHttpClient(ClientConfiguration config) {
         this.config = config;
+        this.connectionManager = new UrlConnectionManager(config.getMaxConnections(),
+                config.getConnectionTimeout(), config.getSocketTimeout());
     }
 
+    /**
+     * Executes the request, once fewer than
+     * {@link ClientConfiguration#getMaxConnections()} connections to its host
+     * are in use. The connection is in use until the content of the response
+     * is read to the end or closed, or, if neither happens, until the content
+     * goes unread for longer than {@link ClientConfiguration#getSocketTimeout()}
+     * while another request waits for a connection.
+     */
     @Override
     public HttpResponse execute(HttpRequest request) throws IOException {
         URL url = request.getUri().toURL();
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        UrlConnectionManager.Lease lease = connectionManager.lease(url);
+        boolean success = false;
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
 
-        configureConnection(connection);
-        applyHeadersAndMethod(request, connection);
-        writeContentToConnection(request, connection);
-        return createHttpResponse(request, connection);
+            configureConnection(connection);
+            applyHeadersAndMethod(request, connection);
+            writeContentToConnection(request, connection);
+            HttpResponse response = createHttpResponse(request, connection, lease);
+            success = true;
+            return response;
+        } finally {
+            if (!success) {
+                lease.release(false);
+            }
+        }
+    }
+
+    /**
+     * Returns the connection usage of this client across all hosts.
+     *
+     * @return the connection statistics
+     */
+    public ConnectionStatistics getConnectionStatistics() {
+        return connectionManager.getStatistics();
+    }
+
+    /**
+     * Returns the connection usage of this client per host.
+     *
+     * @return the connection statistics, keyed by scheme, host and port, such
+     *         as "https://dynamodb.us-east-1.amazonaws.com:443"
+     */
+    public Map<String, ConnectionStatistics> getConnectionStatisticsByHost() {
+        return connectionManager.getStatisticsByHost();
     }
 
     HttpResponse createHttpResponse(HttpRequest request, HttpURLConnection connection)
             throws IOException {
+        return createHttpResponse(request, connection, null);
+    }
+
+    /**
+     * @param lease the connection lease to release once the content is read
+     *            or closed, or null
+     */
+    HttpResponse createHttpResponse(HttpRequest request, HttpURLConnection connection,
+            UrlConnectionManager.Lease lease) throws IOException {
 
         String statusText = connection.getResponseMessage();
         int statusCode = connection.getResponseCode();
@@ -83,6 +160,13 @@ public class UrlHttpClient implements HttpClient {
                 }
             }
         }
+        if (lease != null) {
+            if (content == null) {
+                lease.release(true);
+            } else {
+                content = lease.wrap(content);
+            }
+        }
 
         HttpResponse.Builder builder = HttpResponse.builder()
                 .statusCode(statusCode)
@@ -122,9 +206,7 @@ public class UrlHttpClient implements HttpClient {
         // will silently change the method to POST.
         if (request.getContent() != null && request.getContentLength() >= 0) {
             connection.setDoOutput(true);
-            // This is for backward compatibility, because
-            // setFixedLengthStreamingMode(long) is available in API level 19.
-            connection.setFixedLengthStreamingMode((int) request.getContentLength());
+            setFixedLengthStreamingMode(connection, request.getContentLength());
             OutputStream os = connection.getOutputStream();
             write(request.getContent(), os);
             os.flush();
@@ -165,11 +247,38 @@ public class UrlHttpClient implements HttpClient {
         return connection;
     }
 
+    /**
+     * Sets the content length of the request. Lengths over 2 GB need
+     * setFixedLengthStreamingMode(long), available in API level 19; before
+     * that such content is sent in chunks.
+     */
+    void setFixedLengthStreamingMode(HttpURLConnection connection, long contentLength) {
+        if (contentLength <= Integer.MAX_VALUE) {
+            connection.setFixedLengthStreamingMode((int) contentLength);
+            return;
+        }
+        if (SET_FIXED_LENGTH_STREAMING_MODE_LONG != null) {
+            try {
+                SET_FIXED_LENGTH_STREAMING_MODE_LONG.invoke(connection, contentLength);
+                return;
+            } catch (IllegalAccessException e) {
+                log.debug("Unable to set a long content length", e);
+            } catch (InvocationTargetException e) {
+                log.debug("Unable to set a long content length", e.getCause());
+            }
+        }
+        connection.setChunkedStreamingMode(BUFFER_SIZE);
+    }
+
     private void write(InputStream is, OutputStream os) throws IOException {
-        byte[] buf = new byte[1024 * 8];
-        int len;
-        while ((len = is.read(buf)) != -1) {
-            os.write(buf, 0, len);
+        byte[] buf = BUFFERS.acquire();
+        try {
+            int len;
+            while ((len = is.read(buf)) != -1) {
+                os.write(buf, 0, len);
+            }
+        } finally {
+            BUFFERS.release(buf);
         }
     }
 
@@ -62,6 +62,9 @@ import java.util.Set;
  * implementation of the collector via
  * {@link #setMetricCollector(MetricCollector)}.
  * <p>
+ * To keep the metrics in memory, such as to look at the latency percentiles of
+ * each operation, use an {@link InProcessMetricCollector}.
+ * <p>
  * Alternatively, for limited customization of the internal collector
  * implementation provided by the AWS SDK, one can extend the internal Amazon
  * CloudWatch metric collector. See the javadoc at
@@ -0,0 +1,475 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.metrics;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A metric collector that keeps the request metrics in memory instead of
+ * uploading them anywhere. For every service and operation it keeps latency
+ * histograms of the client execution, HTTP request, request signing and
+ * response processing times, in microseconds, and counts the requests,
+ * retries, throttled attempts, failed requests and bytes sent and received.
+ * <p>
+ * Recording the metrics of a request does not take any lock. The metrics
+ * collected so far are available through {@link #getMetrics()}, and can also
+ * be handed to a {@link Listener} periodically while the collector is
+ * running. To use it for all the clients:
+ *
+ * <pre>
+ * InProcessMetricCollector collector = new InProcessMetricCollector(listener, 1, TimeUnit.MINUTES);
+ * collector.start();
+ * AwsSdkMetrics.setMetricCollector(collector);
+ * </pre>
+ *
+ * It can also be used for a single client or request through
+ * {@link #getRequestMetricCollector()}.
+ */
+public class InProcessMetricCollector extends MetricCollector {
+
+    private static final Log log = LogFactory.getLog(InProcessMetricCollector.class);
+
+    private static final String UNKNOWN_OPERATION = "Unknown";
+
+    /**
+     * Receives the metrics collected so far, at the interval given to the
+     * collector.
+     */
+    public static interface Listener {
+        /**
+         * Called from a background thread with the metrics of every operation
+         * invoked so far.
+         */
+        public void onMetrics(List<OperationMetrics> metrics);
+    }
+
+    private final ConcurrentMap<String, ConcurrentMap<Class<?>, OperationStats>> services =
+            new ConcurrentHashMap<String, ConcurrentMap<Class<?>, OperationStats>>();
+    private final Listener listener;
+    private final long intervalMillis;
+    private final RequestMetricCollector requestMetricCollector = new RequestCollector();
+
+    private volatile boolean enabled;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a collector that only keeps the metrics, for
+     * {@link #getMetrics()}.
+     */
+    public InProcessMetricCollector() {
+        this(null, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a collector that also hands the metrics to the given listener
+     * at a fixed interval while it is running.
+     *
+     * @param listener the listener, or null for none
+     * @param interval the interval between two calls to the listener
+     * @param unit the unit of the interval
+     */
+    public InProcessMetricCollector(Listener listener, long interval, TimeUnit unit) {
+        if (listener != null && interval <= 0) {
+            throw new IllegalArgumentException("Invalid interval: " + interval);
+        }
+        this.listener = listener;
+        this.intervalMillis = unit.toMillis(interval);
+    }
+
+    @Override
+    public synchronized boolean start() {
+        if (enabled) {
+            return false;
+        }
+        if (listener != null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "aws-metrics-dump");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            scheduler.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    dump();
+                }
+            }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        enabled = true;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean stop() {
+        if (!enabled) {
+            return false;
+        }
+        enabled = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public RequestMetricCollector getRequestMetricCollector() {
+        return requestMetricCollector;
+    }
+
+    @Override
+    public ServiceMetricCollector getServiceMetricCollector() {
+        return ServiceMetricCollector.NONE;
+    }
+
+    /**
+     * Hands the metrics collected so far to the listener, if any. Called at
+     * the interval given to the collector while it is running.
+     */
+    public void dump() {
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onMetrics(getMetrics());
+        } catch (RuntimeException e) {
+            log.warn("Metrics listener failed", e);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the metrics of every operation invoked so far,
+     * sorted by service and operation name.
+     */
+    public List<OperationMetrics> getMetrics() {
+        List<OperationMetrics> metrics = new ArrayList<OperationMetrics>();
+        for (Map<Class<?>, OperationStats> operations : services.values()) {
+            for (OperationStats stats : operations.values()) {
+                metrics.add(stats.snapshot());
+            }
+        }
+        Collections.sort(metrics);
+        return metrics;
+    }
+
+    /**
+     * Returns a snapshot of the metrics of an operation.
+     *
+     * @param serviceName the service name, as in
+     *            {@link Request#getServiceName()}
+     * @param operationName the operation name, which is the request class name
+     *            without the "Request" suffix, such as "PutItem"
+     * @return the metrics of the operation, or null if it was never invoked
+     */
+    public OperationMetrics getMetrics(String serviceName, String operationName) {
+        Map<Class<?>, OperationStats> operations = services.get(serviceName);
+        if (operations != null) {
+            for (OperationStats stats : operations.values()) {
+                if (stats.operationName.equals(operationName)) {
+                    return stats.snapshot();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Discards the metrics collected so far.
+     */
+    public void reset() {
+        services.clear();
+    }
+
+    private OperationStats statsFor(Request<?> request) {
+        String serviceName = request.getServiceName();
+        ConcurrentMap<Class<?>, OperationStats> operations = services.get(serviceName);
+        if (operations == null) {
+            operations = new ConcurrentHashMap<Class<?>, OperationStats>();
+            ConcurrentMap<Class<?>, OperationStats> existing =
+                    services.putIfAbsent(serviceName, operations);
+            if (existing != null) {
+                operations = existing;
+            }
+        }
+        AmazonWebServiceRequest original = request.getOriginalRequest();
+        Class<?> operation = original == null ? AmazonWebServiceRequest.class
+                : original.getClass();
+        OperationStats stats = operations.get(operation);
+        if (stats == null) {
+            stats = new OperationStats(serviceName, operationName(operation));
+            OperationStats existing = operations.putIfAbsent(operation, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    private static String operationName(Class<?> requestClass) {
+        if (requestClass == AmazonWebServiceRequest.class) {
+            return UNKNOWN_OPERATION;
+        }
+        String name = requestClass.getSimpleName();
+        if (name.endsWith("Request") && name.length() > "Request".length()) {
+            name = name.substring(0, name.length() - "Request".length());
+        }
+        return name;
+    }
+
+    /**
+     * Records the metrics of each request in the stats of its operation.
+     */
+    private final class RequestCollector extends RequestMetricCollector {
+        @Override
+        public void collectMetrics(Request<?> request, Response<?> response) {
+            if (!enabled || request == null || request.getServiceName() == null) {
+                return;
+            }
+            statsFor(request).record(request, response);
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+    }
+
+    private static final class OperationStats {
+        private final String serviceName;
+        private final String operationName;
+        private final LatencyHistogram clientExecuteTime = new LatencyHistogram();
+        private final LatencyHistogram httpRequestTime = new LatencyHistogram();
+        private final LatencyHistogram requestSigningTime = new LatencyHistogram();
+        private final LatencyHistogram responseProcessingTime = new LatencyHistogram();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong throttles = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+
+        private OperationStats(String serviceName, String operationName) {
+            this.serviceName = serviceName;
+            this.operationName = operationName;
+        }
+
+        void record(Request<?> request, Response<?> response) {
+            AWSRequestMetrics metrics = request.getAWSRequestMetrics();
+            TimingInfo timingInfo = metrics.getTimingInfo();
+            recordAll(clientExecuteTime, timingInfo, Field.ClientExecuteTime);
+            recordAll(httpRequestTime, timingInfo, Field.HttpRequestTime);
+            recordAll(requestSigningTime, timingInfo, Field.RequestSigningTime);
+            recordAll(responseProcessingTime, timingInfo, Field.ResponseProcessingTime);
+
+            requests.incrementAndGet();
+            Number attempts = timingInfo.getCounter(Field.RequestCount.name());
+            if (attempts != null && attempts.longValue() > 1) {
+                retries.addAndGet(attempts.longValue() - 1);
+            }
+            List<Object> errorCodes = metrics.getProperty(Field.AWSErrorCode);
+            if (errorCodes != null) {
+                for (Object errorCode : errorCodes) {
+                    if (errorCode instanceof String
+                            && RetryUtils.isThrottlingErrorCode((String) errorCode)) {
+                        throttles.incrementAndGet();
+                    }
+                }
+            }
+            if (response == null) {
+                errors.incrementAndGet();
+            }
+
+            bytesSent.addAndGet(contentLength(request.getHeaders()));
+            HttpResponse httpResponse = response == null ? null : response.getHttpResponse();
+            if (httpResponse != null) {
+                bytesReceived.addAndGet(contentLength(httpResponse.getHeaders()));
+            }
+        }
+
+        private static void recordAll(LatencyHistogram histogram, TimingInfo timingInfo,
+                Field field) {
+            List<TimingInfo> measurements = timingInfo.getAllSubMeasurements(field.name());
+            if (measurements == null) {
+                return;
+            }
+            for (TimingInfo measurement : measurements) {
+                Long end = measurement.getEndTimeNanoIfKnown();
+                if (end != null) {
+                    histogram.recordValue(TimeUnit.NANOSECONDS.toMicros(
+                            end - measurement.getStartTimeNano()));
+                }
+            }
+        }
+
+        private static long contentLength(Map<String, String> headers) {
+            String value = headers == null ? null : headers.get("Content-Length");
+            if (value != null) {
+                try {
+                    return Math.max(0, Long.parseLong(value.trim()));
+                } catch (NumberFormatException ignored) {
+                    // not counted
+                }
+            }
+            return 0;
+        }
+
+        OperationMetrics snapshot() {
+            return new OperationMetrics(this);
+        }
+    }
+
+    /**
+     * Snapshot of the metrics of one operation of a service. Latencies are in
+     * microseconds.
+     */
+    public static final class OperationMetrics implements Comparable<OperationMetrics> {
+        private final String serviceName;
+        private final String operationName;
+        private final long requestCount;
+        private final long retryCount;
+        private final long throttleCount;
+        private final long errorCount;
+        private final long bytesSent;
+        private final long bytesReceived;
+        private final LatencyHistogram.Snapshot clientExecuteTime;
+        private final LatencyHistogram.Snapshot httpRequestTime;
+        private final LatencyHistogram.Snapshot requestSigningTime;
+        private final LatencyHistogram.Snapshot responseProcessingTime;
+
+        private OperationMetrics(OperationStats stats) {
+            serviceName = stats.serviceName;
+            operationName = stats.operationName;
+            requestCount = stats.requests.get();
+            retryCount = stats.retries.get();
+            throttleCount = stats.throttles.get();
+            errorCount = stats.errors.get();
+            bytesSent = stats.bytesSent.get();
+            bytesReceived = stats.bytesReceived.get();
+            clientExecuteTime = stats.clientExecuteTime.snapshot();
+            httpRequestTime = stats.httpRequestTime.snapshot();
+            requestSigningTime = stats.requestSigningTime.snapshot();
+            responseProcessingTime = stats.responseProcessingTime.snapshot();
+        }
+
+        /** Returns the service name, such as "AmazonDynamoDB". */
+        public String getServiceName() {
+            return serviceName;
+        }
+
+        /** Returns the operation name, such as "PutItem". */
+        public String getOperationName() {
+            return operationName;
+        }
+
+        /** Returns the number of calls to the operation. */
+        public long getRequestCount() {
+            return requestCount;
+        }
+
+        /** Returns the number of times a call was retried. */
+        public long getRetryCount() {
+            return retryCount;
+        }
+
+        /** Returns the number of attempts the service throttled. */
+        public long getThrottleCount() {
+            return throttleCount;
+        }
+
+        /** Returns the number of calls that failed. */
+        public long getErrorCount() {
+            return errorCount;
+        }
+
+        /** Returns the number of request body bytes sent. */
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        /** Returns the number of response body bytes received. */
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        /** Returns the time taken by the calls, retries included. */
+        public LatencyHistogram.Snapshot getClientExecuteTime() {
+            return clientExecuteTime;
+        }
+
+        /** Returns the time taken by each HTTP request. */
+        public LatencyHistogram.Snapshot getHttpRequestTime() {
+            return httpRequestTime;
+        }
+
+        /** Returns the time taken to sign each request. */
+        public LatencyHistogram.Snapshot getRequestSigningTime() {
+            return requestSigningTime;
+        }
+
+        /** Returns the time taken to handle each response. */
+        public LatencyHistogram.Snapshot getResponseProcessingTime() {
+            return responseProcessingTime;
+        }
+
+        @Override
+        public int compareTo(OperationMetrics other) {
+            int c = serviceName.compareTo(other.serviceName);
+            return c != 0 ? c : operationName.compareTo(other.operationName);
+        }
+
+        @Override
+        public String toString() {
+            return serviceName + "." + operationName
+                    + " requests=" + requestCount
+                    + " retries=" + retryCount
+                    + " throttles=" + throttleCount
+                    + " errors=" + errorCount
+                    + " bytesSent=" + bytesSent
+                    + " bytesReceived=" + bytesReceived
+                    + " clientExecuteTime=" + clientExecuteTime
+                    + " httpRequestTime=" + httpRequestTime;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values, such as latencies in
+ * microseconds. Values are counted in log-linear buckets: each power of two
+ * is split into {@value #SUB_BUCKET_COUNT} linear sub-buckets, so that
+ * values below {@code 2 * SUB_BUCKET_COUNT} are counted exactly and larger
+ * values with a relative error of at most {@code 1 / SUB_BUCKET_COUNT}.
+ * Values larger than {@link #MAX_TRACKABLE_VALUE} are counted as
+ * {@link #MAX_TRACKABLE_VALUE}.
+ * <p>
+ * Recording a value is a couple of atomic increments and never blocks, so the
+ * histogram can be updated from any number of threads. Snapshots are taken
+ * without stopping the writers, and so may miss values being recorded at the
+ * same time.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    /** Number of linear sub-buckets per power of two */
+    public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_BITS = 36;
+    /** Largest value told apart from bigger ones, about 19 hours in microseconds */
+    public static final long MAX_TRACKABLE_VALUE = (1L << MAX_BITS) - 1;
+
+    private final AtomicLongArray counts =
+            new AtomicLongArray(indexOf(MAX_TRACKABLE_VALUE) + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value.
+     *
+     * @param value the value; negative values are counted as zero
+     */
+    public void recordValue(long value) {
+        if (value < 0) {
+            value = 0;
+        } else if (value > MAX_TRACKABLE_VALUE) {
+            value = MAX_TRACKABLE_VALUE;
+        }
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of values recorded so far.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns a point in time copy of this histogram.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[counts.length()];
+        long n = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            n += copy[i];
+        }
+        return new Snapshot(copy, n, total.get(), max.get());
+    }
+
+    static int indexOf(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the largest value counted in the bucket with the given index.
+     */
+    static long highestValueAt(int index) {
+        int shift = Math.max(0, (index >> SUB_BUCKET_BITS) - 1);
+        long subBucket = index - (shift << SUB_BUCKET_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Immutable copy of a {@link LatencyHistogram}.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long total;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long total, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        /** Returns the number of values recorded. */
+        public long getCount() {
+            return count;
+        }
+
+        /** Returns the largest value recorded, or 0 if there is none. */
+        public long getMax() {
+            return max;
+        }
+
+        /** Returns the mean of the values recorded, or 0 if there is none. */
+        public double getMean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /**
+         * Returns the value that the given percentage of the recorded values
+         * are less than or equal to, within the precision of the histogram.
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return the value at the percentile, or 0 if no value was recorded
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Invalid percentile: " + percentile);
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueAt(i), max);
+                }
+            }
+            return max;
+        }
+
+        /** Returns the median. */
+        public long getP50() {
+            return getValueAtPercentile(50);
+        }
+
+        /** Returns the 99th percentile. */
+        public long getP99() {
+            return getValueAtPercentile(99);
+        }
+
+        /** Returns the 99.9th percentile. */
+        public long getP999() {
+            return getValueAtPercentile(99.9);
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + count + ", mean=" + Math.round(getMean())
+                    + ", p50=" + getP50() + ", p99=" + getP99() + ", p999=" + getP999()
+                    + ", max=" + max + "}";
+        }
+    }
+}
@@ -19,12 +19,15 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Contains the unmarshalling state for the parsing of an XML response. The
@@ -36,11 +39,32 @@ import java.util.Map;
  */
 public class StaxUnmarshallerContext {
 
+    /**
+     * Compiled expressions, shared by all contexts. Expressions are string
+     * constants of the unmarshallers, so the cache stays small; the limit only
+     * guards against callers building expressions dynamically.
+     */
+    private static final Map<String, PathExpression> EXPRESSIONS =
+            new ConcurrentHashMap<String, PathExpression>();
+    private static final int MAX_CACHED_EXPRESSIONS = 4096;
+
     private int currentEventType;
     private final XmlPullParser xpp;
 
-    public final Deque<String> stack = new LinkedList<String>();
-    private String stackString = "";
+    /** Names of the elements from the root to the current position */
+    private String[] elements = new String[16];
+    private int depth;
+
+    /**
+     * The paths of the elements from the current position to the root, such
+     * as "/a/b/c", "/a/b", "/a". A read-only view built from the current
+     * element names when read.
+     *
+     * @deprecated Use {@link #testExpression(String)} and
+     *             {@link #getCurrentDepth()} instead.
+     */
+    @Deprecated
+    public final Deque<String> stack = new PathStack();
 
     private Map<String, String> metadata = new HashMap<String, String>();
     private List<MetadataExpression> metadataExpressions = new ArrayList<MetadataExpression>();
@@ -114,7 +138,7 @@ public class StaxUnmarshallerContext {
      *         document being parsed.
      */
     public int getCurrentDepth() {
-        return stack.size();
+        return depth;
     }
 
     /**
@@ -145,16 +169,18 @@ public class StaxUnmarshallerContext {
         if (expression.equals("."))
             return true;
 
-        int index = -1;
-        while ((index = expression.indexOf("/", index + 1)) > -1) {
-            // Don't consider attributes a new depth level
-            if (expression.charAt(index + 1) != '@') {
-                startingStackDepth++;
+        return compile(expression).matches(elements, depth, startingStackDepth);
+    }
+
+    private static PathExpression compile(String expression) {
+        PathExpression compiled = EXPRESSIONS.get(expression);
+        if (compiled == null) {
+            compiled = new PathExpression(expression);
+            if (EXPRESSIONS.size() < MAX_CACHED_EXPRESSIONS) {
+                EXPRESSIONS.put(expression, compiled);
             }
         }
-
-        return (getCurrentDepth() == startingStackDepth
-        && stackString.endsWith("/" + expression));
+        return compiled;
     }
 
     /**
@@ -190,7 +216,7 @@ public class StaxUnmarshallerContext {
         // look for meta data
         if (currentEventType == XmlPullParser.START_TAG) {
             for (MetadataExpression metadataExpression : metadataExpressions) {
-                if (testExpression(metadataExpression.expression,
+                if (metadataExpression.expression.matches(elements, depth,
                         metadataExpression.targetDepth)) {
                     metadata.put(metadataExpression.key, readText());
                     break;
@@ -225,7 +251,8 @@ public class StaxUnmarshallerContext {
      *            data.
      */
     public void registerMetadataExpression(String expression, int targetDepth, String storageKey) {
-        metadataExpressions.add(new MetadataExpression(expression, targetDepth, storageKey));
+        metadataExpressions.add(new MetadataExpression(compile(expression), targetDepth,
+                storageKey));
     }
 
     /*
@@ -237,24 +264,255 @@ public class StaxUnmarshallerContext {
      * unmarshaller context is looking for.
      */
     private static class MetadataExpression {
-        public String expression;
+        public PathExpression expression;
         public int targetDepth;
         public String key;
 
-        public MetadataExpression(String expression, int targetDepth, String key) {
+        public MetadataExpression(PathExpression expression, int targetDepth, String key) {
             this.expression = expression;
             this.targetDepth = targetDepth;
             this.key = key;
         }
     }
 
+    /**
+     * A pseudo-xpath expression split into its element names, so that testing
+     * it against the current position compares names from the innermost
+     * element outwards without building any string.
+     */
+    private static final class PathExpression {
+        private final String[] names;
+
+        /**
+         * Attributes are not elements of the stack, so an expression
+         * selecting one never matches the current position.
+         */
+        private final boolean selectsAttribute;
+
+        PathExpression(String expression) {
+            List<String> parts = new ArrayList<String>();
+            boolean attribute = false;
+            int start = 0;
+            int index;
+            while ((index = expression.indexOf('/', start)) > -1) {
+                parts.add(expression.substring(start, index).intern());
+                start = index + 1;
+            }
+            parts.add(expression.substring(start).intern());
+            for (String part : parts) {
+                if (part.startsWith("@")) {
+                    attribute = true;
+                }
+            }
+            this.names = parts.toArray(new String[parts.size()]);
+            this.selectsAttribute = attribute;
+        }
+
+        /**
+         * @param elements element names from the root to the current position
+         * @param depth the current depth
+         * @param startingStackDepth the depth where the expression must start
+         *            matching
+         * @return true if the last elements are the names of the expression
+         *         and the first of them is at the starting depth
+         */
+        boolean matches(String[] elements, int depth, int startingStackDepth) {
+            if (selectsAttribute || depth != startingStackDepth + names.length - 1
+                    || names.length > depth) {
+                return false;
+            }
+            for (int i = names.length - 1, e = depth - 1; i >= 0; i--, e--) {
+                if (!names[i].equals(elements[e])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The view of the element paths behind {@link #stack}. The first path is
+     * the innermost, as when they were pushed on a stack.
+     */
+    private final class PathStack extends AbstractCollection<String> implements Deque<String> {
+
+        /**
+         * @param index the index in the stack, 0 for the innermost element
+         */
+        private String path(int index) {
+            StringBuilder path = new StringBuilder();
+            for (int i = 0; i < depth - index; i++) {
+                path.append('/').append(elements[i]);
+            }
+            return path.toString();
+        }
+
+        @Override
+        public int size() {
+            return depth;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new PathIterator(false);
+        }
+
+        @Override
+        public Iterator<String> descendingIterator() {
+            return new PathIterator(true);
+        }
+
+        @Override
+        public String peekFirst() {
+            return depth == 0 ? null : path(0);
+        }
+
+        @Override
+        public String peekLast() {
+            return depth == 0 ? null : path(depth - 1);
+        }
+
+        @Override
+        public String getFirst() {
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+            return path(0);
+        }
+
+        @Override
+        public String getLast() {
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+            return path(depth - 1);
+        }
+
+        @Override
+        public String peek() {
+            return peekFirst();
+        }
+
+        @Override
+        public String element() {
+            return getFirst();
+        }
+
+        @Override
+        public void addFirst(String e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addLast(String e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean offerFirst(String e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean offerLast(String e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean offer(String e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void push(String e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String removeFirst() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String removeLast() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String pollFirst() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String pollLast() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String poll() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String pop() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean removeFirstOccurrence(Object o) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean removeLastOccurrence(Object o) {
+            throw new UnsupportedOperationException();
+        }
+
+        private final class PathIterator implements Iterator<String> {
+            private final boolean descending;
+            private int next;
+
+            PathIterator(boolean descending) {
+                this.descending = descending;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < depth;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int index = descending ? depth - 1 - next : next;
+                next++;
+                return path(index);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+
     private void updateContext() {
         if (currentEventType == XmlPullParser.START_TAG) {
-            stackString += "/" + xpp.getName();
-            stack.push(stackString);
+            if (depth == elements.length) {
+                String[] grown = new String[depth * 2];
+                System.arraycopy(elements, 0, grown, 0, depth);
+                elements = grown;
+            }
+            elements[depth++] = xpp.getName();
         } else if (currentEventType == XmlPullParser.END_TAG) {
-            stack.pop();
-            stackString = stack.isEmpty() ? "" : stack.peek();
+            elements[--depth] = null;
         }
     }
 }
@@ -27,6 +27,8 @@ import java.util.Locale;
  * Utilities for encoding and decoding binary data to and from different forms.
  */
 public class BinaryUtils {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     /**
      * Converts byte data to a Hex-encoded string.
      *
@@ -34,19 +36,13 @@ public class BinaryUtils {
      * @return hex-encoded string.
      */
     public static String toHex(byte[] data) {
-        StringBuilder sb = new StringBuilder(data.length * 2);
+        char[] hex = new char[data.length * 2];
         for (int i = 0; i < data.length; i++) {
-            String hex = Integer.toHexString(data[i]);
-            if (hex.length() == 1) {
-                // Append leading zero.
-                sb.append("0");
-            } else if (hex.length() == 8) {
-                // Remove ff prefix from negative numbers.
-                hex = hex.substring(6);
-            }
-            sb.append(hex);
+            int b = data[i] & 0xff;
+            hex[2 * i] = HEX_DIGITS[b >>> 4];
+            hex[2 * i + 1] = HEX_DIGITS[b & 0x0f];
         }
-        return StringUtils.lowerCase(sb.toString());
+        return new String(hex);
     }
 
     /**
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A small pool of byte arrays of one size, for buffers that are needed for
+ * the duration of an operation only, such as copying a stream. When the pool
+ * is empty a new buffer is allocated, and buffers released to a full pool are
+ * left to the garbage collector, so the pool never holds more than its
+ * capacity.
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class BufferPool {
+
+    private final int bufferSize;
+    private final BlockingQueue<byte[]> buffers;
+
+    /**
+     * @param bufferSize the size of the buffers
+     * @param capacity the maximum number of idle buffers kept
+     */
+    public BufferPool(int bufferSize, int capacity) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<byte[]>(capacity);
+    }
+
+    /**
+     * @return the size of the buffers of this pool
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Takes a buffer from the pool, or allocates one if the pool is empty.
+     * The content of the buffer is undefined.
+     *
+     * @return a buffer of {@link #getBufferSize()} bytes
+     */
+    public byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer must not be used afterwards.
+     *
+     * @param buffer a buffer taken from this pool, ignored if null or of a
+     *            different size
+     */
+    public void release(byte[] buffer) {
+        if (buffer != null && buffer.length == bufferSize) {
+            buffers.offer(buffer);
+        }
+    }
+}
@@ -35,6 +35,38 @@ import java.security.NoSuchAlgorithmException;
 public class Md5Utils {
     private static final int SIXTEEN_K = 1 << 14;
 
+    /**
+     * Read buffers, shared by the hashes of streams and files so that hashing
+     * a large upload does not allocate a new buffer each time.
+     */
+    private static final BufferPool BUFFERS = new BufferPool(SIXTEEN_K * 4, 4);
+
+    /**
+     * Per-thread MD5 digest, reused across calls to avoid a provider lookup
+     * for every hash.
+     */
+    private static final ThreadLocal<MessageDigest> MD5_MESSAGE_DIGEST =
+            new ThreadLocal<MessageDigest>() {
+                @Override
+                protected MessageDigest initialValue() {
+                    try {
+                        return MessageDigest.getInstance("MD5");
+                    } catch (NoSuchAlgorithmException e) {
+                        // should never get here
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+
+    /**
+     * Returns the MD5 digest of the current thread, reset and ready for use.
+     */
+    private static MessageDigest getMessageDigest() {
+        MessageDigest messageDigest = MD5_MESSAGE_DIGEST.get();
+        messageDigest.reset();
+        return messageDigest;
+    }
+
     /**
      * Computes the MD5 hash of the data in the given input stream and returns
      * it as an array of bytes. Note this method closes the given input stream
@@ -43,16 +75,7 @@ public class Md5Utils {
     public static byte[] computeMD5Hash(InputStream is) throws IOException {
         BufferedInputStream bis = new BufferedInputStream(is);
         try {
-            MessageDigest messageDigest = MessageDigest.getInstance("MD5");
-            byte[] buffer = new byte[SIXTEEN_K];
-            int bytesRead;
-            while ((bytesRead = bis.read(buffer, 0, buffer.length)) != -1) {
-                messageDigest.update(buffer, 0, bytesRead);
-            }
-            return messageDigest.digest();
-        } catch (NoSuchAlgorithmException e) {
-            // should never get here
-            throw new IllegalStateException(e);
+            return digest(bis);
         } finally {
             try {
                 bis.close();
@@ -63,6 +86,24 @@ public class Md5Utils {
         }
     }
 
+    /**
+     * Reads the given stream to the end through a pooled buffer and returns
+     * its MD5.
+     */
+    private static byte[] digest(InputStream is) throws IOException {
+        MessageDigest messageDigest = getMessageDigest();
+        byte[] buffer = BUFFERS.acquire();
+        try {
+            int bytesRead;
+            while ((bytesRead = is.read(buffer, 0, buffer.length)) != -1) {
+                messageDigest.update(buffer, 0, bytesRead);
+            }
+            return messageDigest.digest();
+        } finally {
+            BUFFERS.release(buffer);
+        }
+    }
+
     /**
      * Returns the MD5 in base64 for the data from the given input stream. Note
      * this method closes the given input stream upon completion.
@@ -76,13 +117,7 @@ public class Md5Utils {
      * bytes.
      */
     public static byte[] computeMD5Hash(byte[] input) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            return md.digest(input);
-        } catch (NoSuchAlgorithmException e) {
-            // should never get here
-            throw new IllegalStateException(e);
-        }
+        return getMessageDigest().digest(input);
     }
 
     /**
@@ -93,10 +128,20 @@ public class Md5Utils {
     }
 
     /**
-     * Computes the MD5 of the given file.
+     * Computes the MD5 of the given file, read through a pooled buffer.
      */
     public static byte[] computeMD5Hash(File file) throws FileNotFoundException, IOException {
-        return computeMD5Hash(new FileInputStream(file));
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            return digest(fis);
+        } finally {
+            try {
+                fis.close();
+            } catch (Exception e) {
+                LogFactory.getLog(Md5Utils.class).debug(
+                        "Unable to close file of hash candidate: " + e);
+            }
+        }
     }
 
     /**
@@ -16,8 +16,11 @@
 package com.amazonaws.util.json;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.util.StringUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -54,7 +57,13 @@ public class JsonUtils {
          * @see <a
          *      href="https://github.com/FasterXML/jackson-core">jackson-core</a>
          */
-        Jackson
+        Jackson,
+        /**
+         * The SDK's own engine, which parses UTF-8 encoded service responses
+         * from their bytes, without decoding them to characters first.
+         * Writing is done by Gson.
+         */
+        Utf8
     }
 
     /**
@@ -70,6 +79,9 @@ public class JsonUtils {
             case Jackson:
                 factory = new JacksonFactory();
                 break;
+            case Utf8:
+                factory = new Utf8JsonFactory();
+                break;
             default:
                 throw new RuntimeException("Unsupported json engine");
         }
@@ -101,6 +113,25 @@ public class JsonUtils {
         return factory.getJsonReader(in);
     }
 
+    /**
+     * Gets a JSON reader of UTF-8 encoded bytes. The {@link JsonEngine#Utf8}
+     * engine parses the bytes directly, the others decode them with an
+     * {@link InputStreamReader} first.
+     *
+     * @param in input stream
+     * @return a JSON reader
+     */
+    public static AwsJsonReader getJsonReader(InputStream in) {
+        AwsJsonFactory current = factory;
+        if (current == null) {
+            throw new IllegalStateException("Json engine is unavailable.");
+        }
+        if (current instanceof Utf8JsonFactory) {
+            return ((Utf8JsonFactory) current).getJsonReader(in);
+        }
+        return current.getJsonReader(new InputStreamReader(in, StringUtils.UTF8));
+    }
+
     /**
      * Gets a JSON writer. If no JSON engine is available, an
      * {@link AmazonClientException} will be thrown.
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util.json;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * An implementation of {@link AwsJsonFactory} with {@link Utf8JsonReader}.
+ * Service responses are parsed from their bytes with
+ * {@link #getJsonReader(InputStream)}. Character input and output are read
+ * and written by Gson.
+ */
+final class Utf8JsonFactory implements AwsJsonFactory {
+
+    private final GsonFactory gsonFactory = new GsonFactory();
+
+    /**
+     * Creates a JSON reader of UTF-8 encoded bytes.
+     *
+     * @param in input stream
+     * @return a JSON reader
+     */
+    public AwsJsonReader getJsonReader(InputStream in) {
+        return new Utf8JsonReader(in);
+    }
+
+    /**
+     * Creates a JSON reader of characters. They are read incrementally by
+     * Gson rather than encoded back to UTF-8, which would need the whole input
+     * in memory.
+     *
+     * @param in reader
+     * @return a JSON reader
+     */
+    @Override
+    public AwsJsonReader getJsonReader(Reader in) {
+        return gsonFactory.getJsonReader(in);
+    }
+
+    @Override
+    public AwsJsonWriter getJsonWriter(Writer out) {
+        return gsonFactory.getJsonWriter(out);
+    }
+}
@@ -0,0 +1,600 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util.json;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link AwsJsonReader} tokenizing UTF-8 encoded bytes directly, without
+ * decoding the whole input to characters first. Only strings and names are
+ * decoded, straight from the byte buffer into a reusable character buffer;
+ * numbers and literals are read as ASCII. Values are reported the same way as
+ * by the Gson engine, but a top-level value may be a string, a number or a
+ * literal, which the strict Gson engine rejects.
+ * <p>
+ * Malformed UTF-8 sequences are replaced with U+FFFD, as an
+ * {@link java.io.InputStreamReader} would do. Instances are not thread-safe.
+ */
+public final class Utf8JsonReader implements AwsJsonReader {
+
+    static final int BUFFER_SIZE = 8 * 1024;
+    private static final char REPLACEMENT = 0xfffd;
+    private static final int NAME_CACHE_SIZE = 256;
+
+    /** Nesting scopes, as in Gson's JsonReader */
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+    private static final int CLOSED = 8;
+
+    /** Peeked tokens. Strings and names are consumed by the next call. */
+    private static final int PEEKED_NONE = 0;
+    private static final int PEEKED_BEGIN_OBJECT = 1;
+    private static final int PEEKED_END_OBJECT = 2;
+    private static final int PEEKED_BEGIN_ARRAY = 3;
+    private static final int PEEKED_END_ARRAY = 4;
+    private static final int PEEKED_NAME = 5;
+    private static final int PEEKED_STRING = 6;
+    private static final int PEEKED_NUMBER = 7;
+    private static final int PEEKED_TRUE = 8;
+    private static final int PEEKED_FALSE = 9;
+    private static final int PEEKED_NULL = 10;
+    private static final int PEEKED_END_DOCUMENT = 11;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+
+    /** Decoded string, or the text of a peeked number */
+    private char[] chars = new char[64];
+    private int charCount;
+
+    private final String[] names = new String[NAME_CACHE_SIZE];
+
+    private int peeked = PEEKED_NONE;
+    private int[] stack = new int[32];
+    private int stackSize;
+
+    /**
+     * @param in UTF-8 encoded JSON
+     */
+    public Utf8JsonReader(InputStream in) {
+        if (in == null) {
+            throw new IllegalArgumentException("in can't be null");
+        }
+        this.in = in;
+        stack[stackSize++] = EMPTY_DOCUMENT;
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        expect(PEEKED_BEGIN_ARRAY, "BEGIN_ARRAY");
+        push(EMPTY_ARRAY);
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        expect(PEEKED_END_ARRAY, "END_ARRAY");
+        stackSize--;
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        expect(PEEKED_BEGIN_OBJECT, "BEGIN_OBJECT");
+        push(EMPTY_OBJECT);
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        expect(PEEKED_END_OBJECT, "END_OBJECT");
+        stackSize--;
+    }
+
+    @Override
+    public boolean isContainer() throws IOException {
+        int p = doPeek();
+        return p == PEEKED_BEGIN_ARRAY || p == PEEKED_BEGIN_OBJECT;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        int p = doPeek();
+        return p != PEEKED_END_OBJECT && p != PEEKED_END_ARRAY && p != PEEKED_END_DOCUMENT;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        expect(PEEKED_NAME, "FIELD_NAME");
+        readString();
+        return name();
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        int p = doPeek();
+        switch (p) {
+            case PEEKED_STRING:
+                peeked = PEEKED_NONE;
+                readString();
+                return new String(chars, 0, charCount);
+            case PEEKED_NUMBER:
+                peeked = PEEKED_NONE;
+                return new String(chars, 0, charCount);
+            case PEEKED_TRUE:
+                peeked = PEEKED_NONE;
+                return "true";
+            case PEEKED_FALSE:
+                peeked = PEEKED_NONE;
+                return "false";
+            case PEEKED_NULL:
+                peeked = PEEKED_NONE;
+                return null;
+            default:
+                throw new IOException("Expected a value but was " + token(p));
+        }
+    }
+
+    @Override
+    public AwsJsonToken peek() throws IOException {
+        try {
+            return token(doPeek());
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            int p = doPeek();
+            peeked = PEEKED_NONE;
+            switch (p) {
+                case PEEKED_BEGIN_ARRAY:
+                    push(EMPTY_ARRAY);
+                    depth++;
+                    break;
+                case PEEKED_BEGIN_OBJECT:
+                    push(EMPTY_OBJECT);
+                    depth++;
+                    break;
+                case PEEKED_END_ARRAY:
+                case PEEKED_END_OBJECT:
+                    stackSize--;
+                    depth--;
+                    break;
+                case PEEKED_NAME:
+                case PEEKED_STRING:
+                    skipString();
+                    break;
+                case PEEKED_END_DOCUMENT:
+                    throw new EOFException("End of input");
+                default:
+                    break;
+            }
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        peeked = PEEKED_NONE;
+        stack[0] = CLOSED;
+        stackSize = 1;
+        in.close();
+    }
+
+    private void expect(int expected, String name) throws IOException {
+        int p = doPeek();
+        if (p != expected) {
+            throw new IOException("Expected " + name + " but was " + token(p));
+        }
+        peeked = PEEKED_NONE;
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            int[] newStack = new int[stackSize * 2];
+            System.arraycopy(stack, 0, newStack, 0, stackSize);
+            stack = newStack;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    /**
+     * Reads up to the next token, following the structure of Gson's strict
+     * JsonReader. A string or name is left in the buffer, right after its
+     * opening quote.
+     */
+    private int doPeek() throws IOException {
+        if (peeked != PEEKED_NONE) {
+            return peeked;
+        }
+
+        int peekStack = stack[stackSize - 1];
+        int c;
+        if (peekStack == EMPTY_ARRAY) {
+            stack[stackSize - 1] = NONEMPTY_ARRAY;
+        } else if (peekStack == NONEMPTY_ARRAY) {
+            c = nextNonWhitespace(true);
+            if (c == ']') {
+                return peeked = PEEKED_END_ARRAY;
+            } else if (c != ',') {
+                throw syntaxError("Unterminated array");
+            }
+        } else if (peekStack == EMPTY_OBJECT || peekStack == NONEMPTY_OBJECT) {
+            stack[stackSize - 1] = DANGLING_NAME;
+            if (peekStack == NONEMPTY_OBJECT) {
+                c = nextNonWhitespace(true);
+                if (c == '}') {
+                    return peeked = PEEKED_END_OBJECT;
+                } else if (c != ',') {
+                    throw syntaxError("Unterminated object");
+                }
+            }
+            c = nextNonWhitespace(true);
+            if (c == '"') {
+                return peeked = PEEKED_NAME;
+            } else if (c == '}' && peekStack == EMPTY_OBJECT) {
+                return peeked = PEEKED_END_OBJECT;
+            }
+            throw syntaxError("Expected name");
+        } else if (peekStack == DANGLING_NAME) {
+            stack[stackSize - 1] = NONEMPTY_OBJECT;
+            if (nextNonWhitespace(true) != ':') {
+                throw syntaxError("Expected ':'");
+            }
+        } else if (peekStack == EMPTY_DOCUMENT) {
+            stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+        } else if (peekStack == NONEMPTY_DOCUMENT) {
+            if (nextNonWhitespace(false) == -1) {
+                return peeked = PEEKED_END_DOCUMENT;
+            }
+            throw syntaxError("Expected end of document");
+        } else if (peekStack == CLOSED) {
+            throw new IllegalStateException("JsonReader is closed");
+        }
+
+        c = nextNonWhitespace(true);
+        switch (c) {
+            case ']':
+                if (peekStack == EMPTY_ARRAY) {
+                    return peeked = PEEKED_END_ARRAY;
+                }
+                throw syntaxError("Unexpected value");
+            case '"':
+                return peeked = PEEKED_STRING;
+            case '[':
+                return peeked = PEEKED_BEGIN_ARRAY;
+            case '{':
+                return peeked = PEEKED_BEGIN_OBJECT;
+            case 't':
+                return peeked = readLiteral("rue", PEEKED_TRUE);
+            case 'f':
+                return peeked = readLiteral("alse", PEEKED_FALSE);
+            case 'n':
+                return peeked = readLiteral("ull", PEEKED_NULL);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    readNumber(c);
+                    return peeked = PEEKED_NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private int readLiteral(String rest, int result) throws IOException {
+        int length = rest.length();
+        if (!fill(length)) {
+            throw new EOFException("End of input");
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer[pos + i] != rest.charAt(i)) {
+                throw syntaxError("Unexpected literal");
+            }
+        }
+        pos += length;
+        return result;
+    }
+
+    /**
+     * Copies the text of a number, whose first character has been read, to
+     * {@link #chars}. The text is validated by whoever parses it, as with the
+     * other engines, which hand out numbers as strings too.
+     */
+    private void readNumber(int first) throws IOException {
+        chars[0] = (char) first;
+        charCount = 1;
+        while (pos < limit || fill(1)) {
+            int c = buffer[pos];
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '-'
+                    || c == '+') {
+                appendChar((char) c);
+                pos++;
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Decodes a string, whose opening quote has been read, to {@link #chars}.
+     */
+    private void readString() throws IOException {
+        charCount = 0;
+        while (true) {
+            // copy the run of plain ASCII characters in the buffer at once
+            ensureCapacity(charCount + limit - pos);
+            char[] c = chars;
+            int n = charCount;
+            int p = pos;
+            while (p < limit) {
+                int b = buffer[p];
+                if (b == '"' || b == '\\' || b < 0) {
+                    break;
+                }
+                c[n++] = (char) b;
+                p++;
+            }
+            charCount = n;
+            pos = p;
+
+            if (pos == limit && !fill(1)) {
+                throw syntaxError("Unterminated string");
+            }
+            int b = buffer[pos++];
+            if (b == '"') {
+                return;
+            } else if (b == '\\') {
+                appendChar(readEscapeCharacter());
+            } else if (b >= 0) {
+                appendChar((char) b);
+            } else {
+                readMultiByte(b & 0xff);
+            }
+        }
+    }
+
+    private void readMultiByte(int b) throws IOException {
+        int continuations;
+        int codePoint;
+        int min;
+        if ((b & 0xe0) == 0xc0) {
+            continuations = 1;
+            codePoint = b & 0x1f;
+            min = 0x80;
+        } else if ((b & 0xf0) == 0xe0) {
+            continuations = 2;
+            codePoint = b & 0x0f;
+            min = 0x800;
+        } else if ((b & 0xf8) == 0xf0) {
+            continuations = 3;
+            codePoint = b & 0x07;
+            min = 0x10000;
+        } else {
+            appendChar(REPLACEMENT);
+            return;
+        }
+
+        fill(continuations);
+        for (int i = 0; i < continuations; i++) {
+            if (pos == limit || (buffer[pos] & 0xc0) != 0x80) {
+                appendChar(REPLACEMENT);
+                return;
+            }
+            codePoint = (codePoint << 6) | (buffer[pos++] & 0x3f);
+        }
+
+        if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+                || (codePoint >= Character.MIN_SURROGATE
+                && codePoint <= Character.MAX_SURROGATE)) {
+            appendChar(REPLACEMENT);
+        } else if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            appendChar((char) codePoint);
+        } else {
+            codePoint -= Character.MIN_SUPPLEMENTARY_CODE_POINT;
+            appendChar((char) (Character.MIN_HIGH_SURROGATE + (codePoint >>> 10)));
+            appendChar((char) (Character.MIN_LOW_SURROGATE + (codePoint & 0x3ff)));
+        }
+    }
+
+    private char readEscapeCharacter() throws IOException {
+        if (pos == limit && !fill(1)) {
+            throw syntaxError("Unterminated escape sequence");
+        }
+        int escaped = buffer[pos++];
+        switch (escaped) {
+            case 'u':
+                if (!fill(4)) {
+                    throw syntaxError("Unterminated escape sequence");
+                }
+                int result = 0;
+                for (int i = 0; i < 4; i++) {
+                    int c = buffer[pos++];
+                    result <<= 4;
+                    if (c >= '0' && c <= '9') {
+                        result += c - '0';
+                    } else if (c >= 'a' && c <= 'f') {
+                        result += c - 'a' + 10;
+                    } else if (c >= 'A' && c <= 'F') {
+                        result += c - 'A' + 10;
+                    } else {
+                        throw syntaxError("Invalid escape sequence");
+                    }
+                }
+                return (char) result;
+            case 't':
+                return '\t';
+            case 'b':
+                return '\b';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 'f':
+                return '\f';
+            case '"':
+            case '\\':
+            case '/':
+            case '\'':
+                return (char) escaped;
+            default:
+                throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    /**
+     * Skips a string, whose opening quote has been read, without decoding it.
+     * The bytes of multi-byte characters never match a quote or a backslash.
+     */
+    private void skipString() throws IOException {
+        while (true) {
+            if (pos == limit && !fill(1)) {
+                throw syntaxError("Unterminated string");
+            }
+            int b = buffer[pos++];
+            if (b == '"') {
+                return;
+            } else if (b == '\\') {
+                if (pos == limit && !fill(1)) {
+                    throw syntaxError("Unterminated escape sequence");
+                }
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * Returns the decoded name, reusing the instance of an earlier name with
+     * the same characters if it is still cached. Responses repeat the same few
+     * names many times.
+     */
+    private String name() {
+        int hash = 0;
+        for (int i = 0; i < charCount; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int index = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+        String cached = names[index];
+        if (cached != null && cached.length() == charCount) {
+            int i = 0;
+            while (i < charCount && cached.charAt(i) == chars[i]) {
+                i++;
+            }
+            if (i == charCount) {
+                return cached;
+            }
+        }
+        String name = new String(chars, 0, charCount);
+        names[index] = name;
+        return name;
+    }
+
+    private void appendChar(char c) {
+        if (charCount == chars.length) {
+            ensureCapacity(charCount + 1);
+        }
+        chars[charCount++] = c;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > chars.length) {
+            char[] newChars = new char[Math.max(capacity, chars.length * 2)];
+            System.arraycopy(chars, 0, newChars, 0, charCount);
+            chars = newChars;
+        }
+    }
+
+    /**
+     * @return the next non-whitespace byte, or -1 at the end of the input if
+     *         {@code throwOnEof} is false
+     */
+    private int nextNonWhitespace(boolean throwOnEof) throws IOException {
+        while (pos < limit || fill(1)) {
+            int c = buffer[pos++];
+            if (c != ' ' && c != '\n' && c != '\t' && c != '\r') {
+                return c & 0xff;
+            }
+        }
+        if (throwOnEof) {
+            throw new EOFException("End of input");
+        }
+        return -1;
+    }
+
+    /**
+     * Makes sure at least {@code minimum} bytes are buffered from
+     * {@link #pos}, moving the unread ones to the start of the buffer first.
+     *
+     * @return false if the input ends before that
+     */
+    private boolean fill(int minimum) throws IOException {
+        if (limit - pos >= minimum) {
+            return true;
+        }
+        if (pos > 0) {
+            limit -= pos;
+            System.arraycopy(buffer, pos, buffer, 0, limit);
+            pos = 0;
+        }
+        int total;
+        while ((total = in.read(buffer, limit, buffer.length - limit)) != -1) {
+            limit += total;
+            if (limit >= minimum) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message);
+    }
+
+    private static AwsJsonToken token(int peeked) {
+        switch (peeked) {
+            case PEEKED_BEGIN_ARRAY:
+                return AwsJsonToken.BEGIN_ARRAY;
+            case PEEKED_END_ARRAY:
+                return AwsJsonToken.END_ARRAY;
+            case PEEKED_BEGIN_OBJECT:
+                return AwsJsonToken.BEGIN_OBJECT;
+            case PEEKED_END_OBJECT:
+                return AwsJsonToken.END_OBJECT;
+            case PEEKED_NAME:
+                return AwsJsonToken.FIELD_NAME;
+            case PEEKED_TRUE:
+            case PEEKED_FALSE:
+                return AwsJsonToken.VALUE_BOOLEAN;
+            case PEEKED_NUMBER:
+                return AwsJsonToken.VALUE_NUMBER;
+            case PEEKED_NULL:
+                return AwsJsonToken.VALUE_NULL;
+            case PEEKED_STRING:
+                return AwsJsonToken.VALUE_STRING;
+            case PEEKED_END_DOCUMENT:
+                return null;
+            default:
+                return AwsJsonToken.UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,486 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util.json;
+
+import com.amazonaws.util.BufferPool;
+import com.amazonaws.util.StringUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+/**
+ * An {@link AwsJsonWriter} encoding UTF-8 directly into a growable byte
+ * buffer, so that a request body is produced as bytes without going through a
+ * character buffer and a {@link String} first. The output is the same as the
+ * Gson engine's: compact, with the same string escapes.
+ * <p>
+ * Buffers of {@value #INITIAL_SIZE} bytes are taken from a small shared
+ * {@link BufferPool} and returned to it by {@link #close()}, so marshalling a
+ * request that fits in one only allocates the final {@link #toByteArray()}
+ * copy once the pool is warm. Larger bodies grow into buffers that are not
+ * kept.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class Utf8JsonWriter implements AwsJsonWriter {
+
+    static final int INITIAL_SIZE = 8 * 1024;
+    private static final BufferPool BUFFERS = new BufferPool(INITIAL_SIZE, 4);
+
+    private static final byte[] HEX = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+    private static final byte[] BASE64 =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+                    .getBytes(StringUtils.UTF8);
+    private static final char LINE_SEPARATOR = 0x2028;
+    private static final char PARAGRAPH_SEPARATOR = 0x2029;
+    private static final byte[] TRUE = {
+            't', 'r', 'u', 'e'
+    };
+    private static final byte[] FALSE = {
+            'f', 'a', 'l', 's', 'e'
+    };
+    private static final byte[] NULL = {
+            'n', 'u', 'l', 'l'
+    };
+
+    /** Nesting scopes, as in Gson's JsonWriter */
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+
+    private byte[] buf;
+    private int count;
+
+    private int[] stack = new int[32];
+    private int stackSize;
+
+    /**
+     * Creates a writer with a buffer from the pool.
+     */
+    public Utf8JsonWriter() {
+        buf = BUFFERS.acquire();
+        stack[stackSize++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * @return the number of bytes written so far
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return a copy of the bytes written so far
+     */
+    public byte[] toByteArray() {
+        checkOpen();
+        byte[] copy = new byte[count];
+        System.arraycopy(buf, 0, copy, 0, count);
+        return copy;
+    }
+
+    /**
+     * Writes the bytes written so far to the given stream, without copying
+     * them.
+     *
+     * @param out the stream to write to
+     * @throws IOException
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        checkOpen();
+        out.write(buf, 0, count);
+    }
+
+    @Override
+    public AwsJsonWriter beginArray() throws IOException {
+        beforeValue(true);
+        push(EMPTY_ARRAY);
+        write('[');
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter endArray() throws IOException {
+        return closeScope(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+    }
+
+    @Override
+    public AwsJsonWriter beginObject() throws IOException {
+        beforeValue(true);
+        push(EMPTY_OBJECT);
+        write('{');
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter endObject() throws IOException {
+        return closeScope(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+    }
+
+    @Override
+    public AwsJsonWriter name(String name) throws IOException {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        int context = peek();
+        if (context == NONEMPTY_OBJECT) {
+            write(',');
+        } else if (context != EMPTY_OBJECT) {
+            throw new IllegalStateException("Nesting problem.");
+        }
+        stack[stackSize - 1] = DANGLING_NAME;
+        string(name);
+        write(':');
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return value();
+        }
+        beforeValue(false);
+        string(value);
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter value(boolean value) throws IOException {
+        beforeValue(false);
+        write(value ? TRUE : FALSE);
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        beforeValue(false);
+        writeAscii(Double.toString(value));
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter value(long value) throws IOException {
+        beforeValue(false);
+        writeLong(value);
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return value();
+        }
+        String string = value.toString();
+        if (string.equals("-Infinity") || string.equals("Infinity") || string.equals("NaN")) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        beforeValue(false);
+        writeAscii(string);
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter value(Date value) throws IOException {
+        if (value == null) {
+            return value();
+        }
+        beforeValue(false);
+        writeAscii(BigDecimal.valueOf(value.getTime()).scaleByPowerOfTen(-3).toPlainString());
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter value(ByteBuffer value) throws IOException {
+        if (value == null) {
+            return value();
+        }
+        beforeValue(false);
+        write('"');
+        base64(value);
+        write('"');
+        return this;
+    }
+
+    @Override
+    public AwsJsonWriter value() throws IOException {
+        beforeValue(false);
+        write(NULL);
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        checkOpen();
+    }
+
+    /**
+     * Returns the buffer to the pool. The content must be retrieved with
+     * {@link #toByteArray()} or {@link #writeTo(OutputStream)} before.
+     */
+    @Override
+    public void close() throws IOException {
+        if (buf == null) {
+            return;
+        }
+        BUFFERS.release(buf);
+        buf = null;
+    }
+
+    private void checkOpen() {
+        if (buf == null) {
+            throw new IllegalStateException("JsonWriter is closed.");
+        }
+    }
+
+    private int peek() {
+        if (stackSize == 0) {
+            throw new IllegalStateException("JsonWriter is closed.");
+        }
+        return stack[stackSize - 1];
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            int[] grown = new int[stackSize * 2];
+            System.arraycopy(stack, 0, grown, 0, stackSize);
+            stack = grown;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private AwsJsonWriter closeScope(int empty, int nonempty, char bracket) {
+        int context = peek();
+        if (context != nonempty && context != empty) {
+            throw new IllegalStateException("Nesting problem.");
+        }
+        stackSize--;
+        write(bracket);
+        return this;
+    }
+
+    /**
+     * @param root whether the value is an array or an object; like the Gson
+     *            engine, the top-level value must be one
+     */
+    private void beforeValue(boolean root) {
+        switch (peek()) {
+            case NONEMPTY_DOCUMENT:
+                throw new IllegalStateException("JSON must have only one top-level value.");
+            case EMPTY_DOCUMENT:
+                if (!root) {
+                    throw new IllegalStateException("JSON must start with an array or an object.");
+                }
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                break;
+            case EMPTY_ARRAY:
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                break;
+            case NONEMPTY_ARRAY:
+                write(',');
+                break;
+            case DANGLING_NAME:
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                break;
+            default:
+                throw new IllegalStateException("Nesting problem.");
+        }
+    }
+
+    private void ensureCapacity(int additional) {
+        checkOpen();
+        int required = count + additional;
+        if (required > buf.length) {
+            byte[] grown = new byte[Math.max(required, buf.length * 2)];
+            System.arraycopy(buf, 0, grown, 0, count);
+            // the pool ignores buffers that have already grown
+            BUFFERS.release(buf);
+            buf = grown;
+        }
+    }
+
+    private void write(char c) {
+        ensureCapacity(1);
+        buf[count++] = (byte) c;
+    }
+
+    private void write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+    }
+
+    private void writeAscii(String s) {
+        int length = s.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buf[count++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buf[count++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = count + digits - 1; i >= count; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        count += digits;
+    }
+
+    /**
+     * Writes a quoted string, escaping it as Gson does and encoding it as
+     * UTF-8. Unpaired surrogates are replaced with '?', like
+     * {@link String#getBytes(java.nio.charset.Charset)} does.
+     */
+    private void string(String s) {
+        int length = s.length();
+        ensureCapacity(length + 2);
+        byte[] b = buf;
+        int n = count;
+        b[n++] = '"';
+        for (int i = 0; i < length; i++) {
+            // a char takes at most six bytes, as an escape; keep room for
+            // the rest of the string assuming it's ASCII, and the quote
+            if (n + 6 + (length - i) >= b.length) {
+                count = n;
+                ensureCapacity(6 + (length - i) + 1);
+                b = buf;
+            }
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    b[n++] = (byte) c;
+                    continue;
+                }
+                b[n++] = '\\';
+                switch (c) {
+                    case '"':
+                    case '\\':
+                        b[n++] = (byte) c;
+                        break;
+                    case '\t':
+                        b[n++] = 't';
+                        break;
+                    case '\b':
+                        b[n++] = 'b';
+                        break;
+                    case '\n':
+                        b[n++] = 'n';
+                        break;
+                    case '\r':
+                        b[n++] = 'r';
+                        break;
+                    case '\f':
+                        b[n++] = 'f';
+                        break;
+                    default:
+                        n = unicodeEscape(b, n, c);
+                }
+            } else if (c < 0x800) {
+                b[n++] = (byte) (0xc0 | (c >> 6));
+                b[n++] = (byte) (0x80 | (c & 0x3f));
+            } else if (c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR) {
+                b[n++] = '\\';
+                n = unicodeEscape(b, n, c);
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                char low = i + 1 < length ? s.charAt(i + 1) : 0;
+                if (Character.isHighSurrogate(c) && Character.isLowSurrogate(low)) {
+                    int cp = Character.toCodePoint(c, low);
+                    i++;
+                    b[n++] = (byte) (0xf0 | (cp >> 18));
+                    b[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    b[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    b[n++] = (byte) (0x80 | (cp & 0x3f));
+                } else {
+                    b[n++] = '?';
+                }
+            } else {
+                b[n++] = (byte) (0xe0 | (c >> 12));
+                b[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                b[n++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        b[n++] = '"';
+        count = n;
+    }
+
+    private static int unicodeEscape(byte[] b, int n, char c) {
+        b[n++] = 'u';
+        b[n++] = HEX[(c >> 12) & 0xf];
+        b[n++] = HEX[(c >> 8) & 0xf];
+        b[n++] = HEX[(c >> 4) & 0xf];
+        b[n++] = HEX[c & 0xf];
+        return n;
+    }
+
+    /**
+     * Writes the remaining bytes of the buffer in Base64, leaving its position
+     * unchanged.
+     */
+    private void base64(ByteBuffer value) {
+        int length = value.remaining();
+        ensureCapacity((length + 2) / 3 * 4);
+        byte[] b = buf;
+        int n = count;
+        int p = value.position();
+        int end = p + (length - length % 3);
+        for (; p < end; p += 3) {
+            int bits = (value.get(p) & 0xff) << 16 | (value.get(p + 1) & 0xff) << 8
+                    | (value.get(p + 2) & 0xff);
+            b[n++] = BASE64[(bits >> 18) & 0x3f];
+            b[n++] = BASE64[(bits >> 12) & 0x3f];
+            b[n++] = BASE64[(bits >> 6) & 0x3f];
+            b[n++] = BASE64[bits & 0x3f];
+        }
+        if (length % 3 == 1) {
+            int bits = (value.get(p) & 0xff) << 16;
+            b[n++] = BASE64[(bits >> 18) & 0x3f];
+            b[n++] = BASE64[(bits >> 12) & 0x3f];
+            b[n++] = '=';
+            b[n++] = '=';
+        } else if (length % 3 == 2) {
+            int bits = (value.get(p) & 0xff) << 16 | (value.get(p + 1) & 0xff) << 8;
+            b[n++] = BASE64[(bits >> 18) & 0x3f];
+            b[n++] = BASE64[(bits >> 12) & 0x3f];
+            b[n++] = BASE64[(bits >> 6) & 0x3f];
+            b[n++] = '=';
+        }
+        count = n;
+    }
+}
@@ -120,6 +120,44 @@ public class AWS4SignerTest {
         assertNull(request.getHeaders().get("Authorization"));
     }
 
+    /**
+     * Tests that cached signing keys produce the same signature as freshly
+     * derived ones, and that they are not shared across secret keys or days.
+     */
+    @Test
+    public void testSigningKeyCache() throws Exception {
+        final String EXPECTED_AUTHORIZATION_HEADER =
+                "AWS4-HMAC-SHA256 Credential=access/19810216/us-east-1/demo/aws4_request, SignedHeaders=host;x-amz-archive-description;x-amz-date, Signature=77fe7c02927966018667f21d1dc3dfad9057e58401cbb9ed64f1b7868288e35a";
+
+        Calendar c = new GregorianCalendar();
+        c.set(1981, 1, 16, 6, 30, 0);
+        c.setTimeZone(TimeZone.getTimeZone("UTC"));
+        signer.overrideDate(c.getTime());
+
+        for (int i = 0; i < 3; i++) {
+            Request<?> request = generateBasicRequest();
+            signer.sign(request, new BasicAWSCredentials("access", "secret"));
+            assertEquals(EXPECTED_AUTHORIZATION_HEADER,
+                    request.getHeaders().get("Authorization"));
+        }
+
+        Request<?> otherSecret = generateBasicRequest();
+        signer.sign(otherSecret, new BasicAWSCredentials("access", "other-secret"));
+        assertFalse(EXPECTED_AUTHORIZATION_HEADER.equals(
+                otherSecret.getHeaders().get("Authorization")));
+
+        c.set(1981, 1, 17, 6, 30, 0);
+        signer.overrideDate(c.getTime());
+        Request<?> nextDay = generateBasicRequest();
+        signer.sign(nextDay, new BasicAWSCredentials("access", "secret"));
+        assertTrue(nextDay.getHeaders().get("Authorization")
+                .startsWith("AWS4-HMAC-SHA256 Credential=access/19810217/"));
+        assertFalse(EXPECTED_AUTHORIZATION_HEADER.substring(
+                EXPECTED_AUTHORIZATION_HEADER.indexOf("Signature=")).equals(
+                nextDay.getHeaders().get("Authorization").substring(
+                        nextDay.getHeaders().get("Authorization").indexOf("Signature="))));
+    }
+
     private Request<?> generateBasicRequest() {
         Request<?> request = new DefaultRequest<Void>("Foo");
         request.setContent(new ByteArrayInputStream("{\"TableName\": \"foo\"}"
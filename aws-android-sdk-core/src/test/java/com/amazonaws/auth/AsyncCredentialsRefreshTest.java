@@ -0,0 +1,270 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.cognitoidentity.AmazonCognitoIdentityClient;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncCredentialsRefreshTest {
+
+    private static final long SESSION_MILLIS = 60 * 60 * 1000;
+    private static final long THRESHOLD_MILLIS = 5 * 60 * 1000;
+
+    @Test
+    public void testCallersDoNotWaitForBackgroundRefresh() throws Exception {
+        final StubProvider provider = new StubProvider();
+        provider.refresh();
+        provider.expireIn(provider.getRefreshThreshold() * 1000L - 10000);
+        provider.gate = new CountDownLatch(1);
+        provider.started.drainPermits();
+        provider.withAsyncRefresh(true);
+
+        // the background fetch waits for the gate, so callers that return
+        // didn't wait for it
+        final AWSSessionCredentials first = provider.getCredentials();
+        assertTrue("fetch started", provider.started.tryAcquire(5, TimeUnit.SECONDS));
+        final int threads = 4;
+        final AtomicInteger stale = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        if (provider.getCredentials() != first) {
+                            stale.incrementAndGet();
+                        }
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        assertTrue("callers returned", done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, stale.get());
+        assertEquals("a single refresh", 2, provider.fetches.get());
+
+        provider.published.drainPermits();
+        provider.gate.countDown();
+        assertTrue("refreshed", provider.published.tryAcquire(5, TimeUnit.SECONDS));
+        assertEquals("AKID2", provider.getCredentials().getAWSAccessKeyId());
+        assertNotSame(first, provider.getCredentials());
+    }
+
+    @Test
+    public void testExpiringCredentialsBlock() {
+        StubProvider provider = new StubProvider();
+        provider.refresh();
+        provider.expireIn(30 * 1000);
+        provider.setAsyncRefresh(true);
+
+        AWSSessionCredentials expiring = provider.sessionCredentials;
+        AWSSessionCredentials credentials = provider.getCredentials();
+        assertNotSame(expiring, credentials);
+        assertEquals(2, provider.fetches.get());
+    }
+
+    @Test
+    public void testFirstCallBlocks() {
+        StubProvider provider = new StubProvider();
+        provider.setAsyncRefresh(true);
+        assertEquals("AKID1", provider.getCredentials().getAWSAccessKeyId());
+        assertSame(provider.getCredentials(), provider.getCredentials());
+        assertEquals(1, provider.fetches.get());
+    }
+
+    @Test
+    public void testSynchronousRefreshByDefault() {
+        StubProvider provider = new StubProvider();
+        provider.refresh();
+        provider.expireIn(provider.getRefreshThreshold() * 1000L - 10000);
+
+        assertEquals("AKID2", provider.getCredentials().getAWSAccessKeyId());
+        assertEquals(2, provider.fetches.get());
+    }
+
+    @Test
+    public void testFailedBackgroundRefreshKeepsCredentials() throws Exception {
+        StubProvider provider = new StubProvider();
+        provider.refresh();
+        provider.expireIn(provider.getRefreshThreshold() * 1000L - 10000);
+        provider.started.drainPermits();
+        provider.setAsyncRefresh(true);
+        provider.failing = true;
+
+        AWSSessionCredentials current = provider.getCredentials();
+        assertTrue("fetch started", provider.started.tryAcquire(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertSame(current, provider.getCredentials());
+        }
+    }
+
+    @Test
+    public void testFailedRefreshRetriedAfterDelay() {
+        final AtomicInteger attempts = new AtomicInteger();
+        FakeClockRefresher refresher = new FakeClockRefresher(new Runnable() {
+            @Override
+            public void run() {
+                attempts.incrementAndGet();
+                throw new AmazonClientException("failed");
+            }
+        });
+        AWSSessionCredentials credentials = new BasicSessionCredentials("AKID", "secret",
+                "token");
+        long now = System.currentTimeMillis();
+        refresher.update(credentials, new Date(now + THRESHOLD_MILLIS / 2));
+
+        assertSame(credentials, refresher.getCredentials(now, THRESHOLD_MILLIS));
+        assertEquals(1, attempts.get());
+        refresher.advanceMs(AsyncCredentialsRefresher.RETRY_DELAY_MILLIS - 1);
+        assertSame(credentials, refresher.getCredentials(now, THRESHOLD_MILLIS));
+        assertEquals("no new attempt before the retry delay", 1, attempts.get());
+        refresher.advanceMs(1);
+        assertSame(credentials, refresher.getCredentials(now, THRESHOLD_MILLIS));
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void testRefreshOnlyWithinThreshold() {
+        final AtomicInteger attempts = new AtomicInteger();
+        FakeClockRefresher refresher = new FakeClockRefresher(new Runnable() {
+            @Override
+            public void run() {
+                attempts.incrementAndGet();
+            }
+        });
+        AWSSessionCredentials credentials = new BasicSessionCredentials("AKID", "secret",
+                "token");
+        long now = System.currentTimeMillis();
+        refresher.update(credentials, new Date(now + THRESHOLD_MILLIS + 1));
+
+        assertSame(credentials, refresher.getCredentials(now, THRESHOLD_MILLIS));
+        assertEquals(0, attempts.get());
+        assertSame(credentials, refresher.getCredentials(now + 2, THRESHOLD_MILLIS));
+        assertEquals(1, attempts.get());
+        assertNull("about to expire", refresher.getCredentials(
+                now + THRESHOLD_MILLIS + 1 - AsyncCredentialsRefresher.EXPIRATION_MARGIN_MILLIS
+                        + 1, THRESHOLD_MILLIS));
+    }
+
+    @Test
+    public void testClearCredentials() {
+        StubProvider provider = new StubProvider();
+        provider.setAsyncRefresh(true);
+        AWSSessionCredentials first = provider.getCredentials();
+        provider.clearCredentials();
+        assertNotSame(first, provider.getCredentials());
+        assertEquals(2, provider.fetches.get());
+    }
+
+    /**
+     * Fetches credentials named after the number of fetches. When
+     * {@link #gate} is set, fetches wait for it to be counted down.
+     */
+    private static final class StubProvider extends CognitoCredentialsProvider {
+        private final AtomicInteger fetches = new AtomicInteger();
+        /** Released when a fetch starts */
+        private final Semaphore started = new Semaphore(0);
+        /** Released when credentials are published */
+        private final Semaphore published = new Semaphore(0);
+        private volatile CountDownLatch gate;
+        private volatile boolean failing;
+
+        StubProvider() {
+            super((AWSCognitoIdentityProvider) Proxy.newProxyInstance(
+                    AWSCognitoIdentityProvider.class.getClassLoader(), new Class<?>[] {
+                        AWSCognitoIdentityProvider.class
+                    }, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            return null;
+                        }
+                    }), (AmazonCognitoIdentityClient) null);
+        }
+
+        @Override
+        protected void startSession() {
+            int fetch = fetches.incrementAndGet();
+            started.release();
+            CountDownLatch current = gate;
+            try {
+                if (current != null && !current.await(5, TimeUnit.SECONDS)) {
+                    throw new AmazonClientException("fetch " + fetch + " timed out");
+                }
+            } catch (InterruptedException e) {
+                throw new AmazonClientException("interrupted", e);
+            }
+            if (failing) {
+                throw new AmazonClientException("fetch " + fetch + " failed");
+            }
+            sessionCredentials = new BasicSessionCredentials("AKID" + fetch, "secret", "token");
+            sessionCredentialsExpiration = new Date(System.currentTimeMillis() + SESSION_MILLIS);
+        }
+
+        @Override
+        void publishCredentials() {
+            super.publishCredentials();
+            published.release();
+        }
+
+        void expireIn(long millis) {
+            setSessionCredentialsExpiration(new Date(System.currentTimeMillis() + millis));
+        }
+    }
+
+    /**
+     * Runs refreshes on the calling thread, with a clock the test advances.
+     */
+    private static final class FakeClockRefresher
+            extends AsyncCredentialsRefresher<AWSSessionCredentials> {
+        private long nanos = TimeUnit.SECONDS.toNanos(1);
+
+        FakeClockRefresher(Runnable refresh) {
+            super(refresh, new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            });
+        }
+
+        void advanceMs(long ms) {
+            nanos += TimeUnit.MILLISECONDS.toNanos(ms);
+        }
+
+        @Override
+        long nanoTime() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.AmazonWebServiceResponse;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.auth.Signer;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AsyncRequestExecutionTest {
+
+    private static final long BACKOFF_MILLIS = 20;
+
+    @Test
+    public void testSuccess() throws Exception {
+        FakeAsyncHttpClient transport = new FakeAsyncHttpClient(200);
+        AmazonHttpClient client = new AmazonHttpClient(new ClientConfiguration(), transport);
+        RecordingCallback callback = new RecordingCallback();
+
+        Future<Response<String>> future = client.executeAsync(newRequest(),
+                new StringResponseHandler(), new ErrorResponseHandler(),
+                new ExecutionContext(), callback);
+
+        assertEquals("result", future.get(5, TimeUnit.SECONDS).getAwsResponse());
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+        assertEquals("result", callback.response.get().getAwsResponse());
+        assertNull(callback.exception.get());
+        assertEquals(1, transport.requests.size());
+        assertEquals("0/0", transport.requests.get(0).getHeaders().get("aws-sdk-retry"));
+        assertNotSame(Thread.currentThread(), callback.thread.get());
+    }
+
+    @Test
+    public void testRetryIsScheduled() throws Exception {
+        FakeAsyncHttpClient transport = new FakeAsyncHttpClient(500, 503, 200);
+        AmazonHttpClient client = new AmazonHttpClient(newConfig(3), transport);
+
+        long start = System.nanoTime();
+        Future<Response<String>> future = client.executeAsync(newRequest(),
+                new StringResponseHandler(), new ErrorResponseHandler(),
+                new ExecutionContext(), null);
+
+        assertEquals("result", future.get(5, TimeUnit.SECONDS).getAwsResponse());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis >= 2 * BACKOFF_MILLIS);
+        assertEquals(3, transport.requests.size());
+        assertEquals("1/" + BACKOFF_MILLIS,
+                transport.requests.get(1).getHeaders().get("aws-sdk-retry"));
+        assertEquals("2/" + BACKOFF_MILLIS,
+                transport.requests.get(2).getHeaders().get("aws-sdk-retry"));
+    }
+
+    @Test
+    public void testServiceErrorAfterRetries() throws Exception {
+        FakeAsyncHttpClient transport = new FakeAsyncHttpClient(500, 500, 500);
+        AmazonHttpClient client = new AmazonHttpClient(newConfig(2), transport);
+        RecordingCallback callback = new RecordingCallback();
+
+        Future<Response<String>> future = client.executeAsync(newRequest(),
+                new StringResponseHandler(), new ErrorResponseHandler(),
+                new ExecutionContext(), callback);
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expected a service exception");
+        } catch (ExecutionException e) {
+            AmazonServiceException ase = (AmazonServiceException) e.getCause();
+            assertEquals(500, ase.getStatusCode());
+            assertSame(ase, callback.exception.get());
+        }
+        assertNull(callback.response.get());
+        assertEquals(3, transport.requests.size());
+    }
+
+    @Test
+    public void testIOExceptionNotRetried() throws Exception {
+        final IOException exception = new IOException("BOOM");
+        FakeAsyncHttpClient transport = new FakeAsyncHttpClient(200) {
+            @Override
+            public void execute(HttpRequest request, Callback callback) {
+                requests.add(request);
+                callback.onFailure(exception);
+            }
+        };
+        AmazonHttpClient client = new AmazonHttpClient(newConfig(0), transport);
+
+        Future<Response<String>> future = client.executeAsync(newRequest(),
+                new StringResponseHandler(), new ErrorResponseHandler(),
+                new ExecutionContext(), null);
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expected a client exception");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AmazonClientException);
+            assertSame(exception, e.getCause().getCause());
+        }
+        assertEquals(1, transport.requests.size());
+    }
+
+    @Test
+    public void testCancelStopsRetries() throws Exception {
+        FakeAsyncHttpClient transport = new FakeAsyncHttpClient(500, 500, 500, 500);
+        RetryPolicy slowRetries = new RetryPolicy(PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION,
+                new FixedBackoff(500), 3, false);
+        AmazonHttpClient client = new AmazonHttpClient(
+                new ClientConfiguration().withRetryPolicy(slowRetries), transport);
+
+        Future<Response<String>> future = client.executeAsync(newRequest(),
+                new StringResponseHandler(), new ErrorResponseHandler(),
+                new ExecutionContext(), null);
+        assertTrue(transport.sent.tryAcquire(5, TimeUnit.SECONDS));
+        assertTrue(future.cancel(false));
+        Thread.sleep(700);
+
+        assertTrue(future.isCancelled());
+        assertEquals(1, transport.requests.size());
+    }
+
+    @Test
+    public void testCredentialsFetchedOffCallerThread() throws Exception {
+        FakeAsyncHttpClient transport = new FakeAsyncHttpClient(200);
+        AmazonHttpClient client = new AmazonHttpClient(new ClientConfiguration(), transport);
+        final CountDownLatch fetchAllowed = new CountDownLatch(1);
+        final AtomicReference<Thread> fetchThread = new AtomicReference<Thread>();
+        RecordingSigner signer = new RecordingSigner();
+        ExecutionContext context = new SignerExecutionContext(signer);
+        context.setCredentialsProvider(new AWSCredentialsProvider() {
+            @Override
+            public AWSCredentials getCredentials() {
+                fetchThread.set(Thread.currentThread());
+                try {
+                    fetchAllowed.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new AmazonClientException("interrupted", e);
+                }
+                return new BasicAWSCredentials("access", "secret");
+            }
+
+            @Override
+            public void refresh() {
+            }
+        });
+
+        // returns while the provider is still fetching
+        Future<Response<String>> future = client.executeAsync(newRequest(),
+                new StringResponseHandler(), new ErrorResponseHandler(), context, null);
+        fetchAllowed.countDown();
+
+        assertEquals("result", future.get(5, TimeUnit.SECONDS).getAwsResponse());
+        assertNotSame(Thread.currentThread(), fetchThread.get());
+        assertEquals("access", signer.credentials.get(0).getAWSAccessKeyId());
+    }
+
+    @Test
+    public void testRetriesPreparedOffTimerThread() throws Exception {
+        FakeAsyncHttpClient transport = new FakeAsyncHttpClient(500, 200);
+        AmazonHttpClient client = new AmazonHttpClient(newConfig(1), transport);
+        RecordingSigner signer = new RecordingSigner();
+        ExecutionContext context = new SignerExecutionContext(signer);
+        context.setCredentials(new BasicAWSCredentials("access", "secret"));
+
+        Future<Response<String>> future = client.executeAsync(newRequest(),
+                new StringResponseHandler(), new ErrorResponseHandler(), context, null);
+
+        assertEquals("result", future.get(5, TimeUnit.SECONDS).getAwsResponse());
+        assertEquals(2, signer.threads.size());
+        for (Thread thread : signer.threads) {
+            assertTrue(thread.getName(), thread.getName().startsWith("aws-request-"));
+        }
+    }
+
+    @Test
+    public void testExecutorAsyncHttpClientBoundsThreads() throws Exception {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        HttpClient blocking = new HttpClient() {
+            @Override
+            public HttpResponse execute(HttpRequest request) throws IOException {
+                int current = inFlight.incrementAndGet();
+                synchronized (maxInFlight) {
+                    maxInFlight.set(Math.max(maxInFlight.get(), current));
+                }
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    throw new IOException(e.toString());
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                return newResponse(200);
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+        ClientConfiguration config = new ClientConfiguration().withMaxConnections(2);
+        AmazonHttpClient client = new AmazonHttpClient(config, blocking);
+
+        List<Future<Response<String>>> futures = new ArrayList<Future<Response<String>>>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(client.executeAsync(newRequest(), new StringResponseHandler(),
+                    new ErrorResponseHandler(), new ExecutionContext(), null));
+        }
+        for (Future<Response<String>> future : futures) {
+            assertEquals("result", future.get(5, TimeUnit.SECONDS).getAwsResponse());
+        }
+        assertTrue(maxInFlight.get() <= 2);
+        client.shutdown();
+    }
+
+    @Test
+    public void testSettableFuture() throws Exception {
+        SettableFuture<String> future = new SettableFuture<String>();
+        assertFalse(future.isDone());
+        future.set("a");
+        future.set("b");
+        future.setException(new RuntimeException());
+        assertEquals("a", future.get());
+        assertFalse(future.cancel(true));
+    }
+
+    private static ClientConfiguration newConfig(int maxErrorRetry) {
+        return new ClientConfiguration().withRetryPolicy(new RetryPolicy(
+                PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION,
+                new FixedBackoff(BACKOFF_MILLIS), maxErrorRetry, false));
+    }
+
+    private static Request<?> newRequest() {
+        Request<?> request = new DefaultRequest<Object>("testsvc");
+        request.setEndpoint(URI.create("http://testsvc.region.amazonaws.com"));
+        request.addHeader(HttpHeader.CONTENT_LENGTH, "0");
+        request.setContent(new ByteArrayInputStream(new byte[0]));
+        return request;
+    }
+
+    private static HttpResponse newResponse(int statusCode) {
+        return HttpResponse.builder()
+                .content(new ByteArrayInputStream(new byte[0]))
+                .statusCode(statusCode)
+                .statusText(statusCode == 200 ? "OK" : "Error")
+                .build();
+    }
+
+    /**
+     * Answers the requests with the given status codes in turn, from another
+     * thread.
+     */
+    private static class FakeAsyncHttpClient implements AsyncHttpClient {
+        final List<HttpRequest> requests = new ArrayList<HttpRequest>();
+        /** Released for each request */
+        final Semaphore sent = new Semaphore(0);
+        private final int[] statusCodes;
+
+        FakeAsyncHttpClient(int... statusCodes) {
+            this.statusCodes = statusCodes;
+        }
+
+        @Override
+        public HttpResponse execute(HttpRequest request) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void execute(HttpRequest request, final Callback callback) {
+            final int statusCode;
+            synchronized (requests) {
+                requests.add(request);
+                statusCode = statusCodes[requests.size() - 1];
+            }
+            sent.release();
+            new Thread() {
+                @Override
+                public void run() {
+                    callback.onResponse(newResponse(statusCode));
+                }
+            }.start();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    /**
+     * Records the credentials and the threads of the requests it signs.
+     */
+    private static class RecordingSigner implements Signer {
+        final List<AWSCredentials> credentials = new CopyOnWriteArrayList<AWSCredentials>();
+        final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+
+        @Override
+        public void sign(Request<?> request, AWSCredentials credentials) {
+            this.credentials.add(credentials);
+            threads.add(Thread.currentThread());
+        }
+    }
+
+    private static class SignerExecutionContext extends ExecutionContext {
+        private final Signer signer;
+
+        SignerExecutionContext(Signer signer) {
+            this.signer = signer;
+        }
+
+        @Override
+        public Signer getSignerByURI(URI uri) {
+            return signer;
+        }
+    }
+
+    private static class FixedBackoff implements RetryPolicy.BackoffStrategy {
+        private final long delay;
+
+        FixedBackoff(long delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public long delayBeforeNextRetry(AmazonWebServiceRequest originalRequest,
+                AmazonClientException exception, int retriesAttempted) {
+            return delay;
+        }
+    }
+
+    private static class StringResponseHandler implements
+            HttpResponseHandler<AmazonWebServiceResponse<String>> {
+        @Override
+        public AmazonWebServiceResponse<String> handle(HttpResponse response) {
+            AmazonWebServiceResponse<String> awsResponse = new AmazonWebServiceResponse<String>();
+            awsResponse.setResult("result");
+            return awsResponse;
+        }
+
+        @Override
+        public boolean needsConnectionLeftOpen() {
+            return false;
+        }
+    }
+
+    private static class ErrorResponseHandler implements
+            HttpResponseHandler<AmazonServiceException> {
+        @Override
+        public AmazonServiceException handle(HttpResponse response) {
+            AmazonServiceException ase = new AmazonServiceException("error");
+            ase.setErrorCode("InternalFailure");
+            return ase;
+        }
+
+        @Override
+        public boolean needsConnectionLeftOpen() {
+            return false;
+        }
+    }
+
+    private static class RecordingCallback implements ResponseCallback<String> {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<Response<String>> response = new AtomicReference<Response<String>>();
+        final AtomicReference<Exception> exception = new AtomicReference<Exception>();
+        final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+
+        @Override
+        public void onResponse(Response<String> r) {
+            thread.set(Thread.currentThread());
+            response.set(r);
+            done.countDown();
+        }
+
+        @Override
+        public void onError(Exception e) {
+            thread.set(Thread.currentThread());
+            exception.set(e);
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.util.IOUtils;
+import com.amazonaws.util.StringUtils;
+
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class UrlConnectionManagerTest {
+
+    @Test
+    public void testLimitPerHost() throws Exception {
+        final UrlConnectionManager manager = new UrlConnectionManager(2, 0);
+        final URL url = new URL("https://www.test.com/a");
+        UrlConnectionManager.Lease first = manager.lease(url);
+        manager.lease(new URL("https://www.test.com:443/b"));
+        // another host isn't affected
+        manager.lease(new URL("http://www.test.com/")).release(true);
+
+        final CountDownLatch leased = new CountDownLatch(1);
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    manager.lease(url);
+                    leased.countDown();
+                } catch (IOException e) {
+                    // fails the test below
+                }
+            }
+        }.start();
+        assertFalse(leased.await(100, TimeUnit.MILLISECONDS));
+        first.release(true);
+        // releasing twice has no effect
+        first.release(false);
+        assertTrue(leased.await(5, TimeUnit.SECONDS));
+
+        ConnectionStatistics statistics = manager.getStatisticsByHost()
+                .get("https://www.test.com:443");
+        assertEquals(3, statistics.getRequestCount());
+        assertEquals(1, statistics.getWaitCount());
+        assertEquals(2, statistics.getLeasedCount());
+        assertEquals(2, statistics.getPeakLeasedCount());
+        assertEquals(1, statistics.getReusableCount());
+        assertEquals(0, statistics.getClosedEarlyCount());
+        assertEquals(4, manager.getStatistics().getRequestCount());
+    }
+
+    @Test
+    public void testLeaseTimeout() throws IOException {
+        UrlConnectionManager manager = new UrlConnectionManager(1, 50);
+        URL url = new URL("https://www.test.com");
+        manager.lease(url);
+        try {
+            manager.lease(url);
+            fail("Expected a timeout");
+        } catch (SocketTimeoutException expected) {
+        }
+    }
+
+    @Test
+    public void testReclaimAbandonedResponse() throws IOException {
+        UrlConnectionManager manager = new UrlConnectionManager(2, 5000, 50);
+        URL url = new URL("https://www.test.com");
+        // a request in progress isn't taken back
+        manager.lease(url);
+        // a response nobody reads or closes
+        InputStream abandoned = manager.lease(url).wrap(
+                new ByteArrayInputStream(new byte[] { 1, 2 }));
+
+        long start = System.nanoTime();
+        manager.lease(url);
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("waited " + waitedMillis + " ms", waitedMillis < 1000);
+
+        ConnectionStatistics statistics = manager.getStatistics();
+        assertEquals(1, statistics.getWaitCount());
+        assertEquals(1, statistics.getReclaimedCount());
+        assertEquals(1, statistics.getClosedEarlyCount());
+        assertEquals(2, statistics.getLeasedCount());
+
+        // the stream is still usable, and releasing it again has no effect
+        assertEquals(1, abandoned.read());
+        abandoned.close();
+        assertEquals(2, manager.getStatistics().getLeasedCount());
+        assertEquals(1, manager.getStatistics().getClosedEarlyCount());
+    }
+
+    @Test
+    public void testRecentlyReadResponseIsNotReclaimed() throws IOException {
+        UrlConnectionManager manager = new UrlConnectionManager(1, 100, 5000);
+        URL url = new URL("https://www.test.com");
+        manager.lease(url).wrap(new ByteArrayInputStream(new byte[] { 1, 2 })).read();
+        try {
+            manager.lease(url);
+            fail("Expected a timeout");
+        } catch (SocketTimeoutException expected) {
+        }
+        assertEquals(0, manager.getStatistics().getReclaimedCount());
+    }
+
+    @Test
+    public void testNoLimit() throws IOException {
+        UrlConnectionManager manager = new UrlConnectionManager(0, 0);
+        URL url = new URL("https://www.test.com");
+        for (int i = 0; i < 100; i++) {
+            manager.lease(url);
+        }
+        assertEquals(100, manager.getStatistics().getLeasedCount());
+        assertEquals(0, manager.getStatistics().getWaitCount());
+    }
+
+    @Test
+    public void testExecuteAgainstLocalServer() throws Exception {
+        final ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        serve(server.accept());
+                    }
+                } catch (IOException e) {
+                    // server closed
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+        try {
+            UrlHttpClient client = new UrlHttpClient(
+                    new ClientConfiguration().withMaxConnections(2));
+            URI uri = new URI("http://127.0.0.1:" + server.getLocalPort() + "/");
+            for (int i = 0; i < 5; i++) {
+                HttpResponse response = client.execute(new HttpRequest("GET", uri));
+                assertEquals(200, response.getStatusCode());
+                assertEquals("hello", IOUtils.toString(response.getContent()));
+            }
+            HttpResponse response = client.execute(new HttpRequest("GET", uri));
+            response.getContent().close();
+
+            ConnectionStatistics statistics = client.getConnectionStatistics();
+            assertEquals(6, statistics.getRequestCount());
+            assertEquals(5, statistics.getReusableCount());
+            assertEquals(1, statistics.getClosedEarlyCount());
+            assertEquals(0, statistics.getLeasedCount());
+            Map<String, ConnectionStatistics> byHost = client.getConnectionStatisticsByHost();
+            assertEquals(6, byHost.get("http://127.0.0.1:" + server.getLocalPort())
+                    .getRequestCount());
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * Answers "hello" to each request on the connection.
+     */
+    private static void serve(final Socket socket) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    InputStream in = new BufferedInputStream(socket.getInputStream());
+                    OutputStream out = socket.getOutputStream();
+                    byte[] response = ("HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nhello")
+                            .getBytes(StringUtils.UTF8);
+                    int matched = 0;
+                    int b;
+                    while ((b = in.read()) >= 0) {
+                        // requests have no body, so a response follows each
+                        // blank line
+                        matched = (b == '\r' || b == '\n') ? matched + 1 : 0;
+                        if (matched == 4) {
+                            out.write(response);
+                            out.flush();
+                            matched = 0;
+                        }
+                    }
+                    socket.close();
+                } catch (IOException e) {
+                    // client went away
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -161,6 +161,46 @@ public class UrlHttpClientTest {
         ByteArrayOutputStream connOs = (ByteArrayOutputStream) connection.getOutputStream();
         assertEquals(new String(connOs.toByteArray(), StringUtils.UTF8), "Content");
     }
+
+    @Test
+    public void testLongContentLength() throws IOException {
+        MockHttpURLConnection connection = new MockHttpURLConnection(
+                new URL("https://www.test.com"));
+        client.setFixedLengthStreamingMode(connection, 7);
+        assertEquals(7, connection.getFixedContentLength());
+
+        long length = 3L * Integer.MAX_VALUE;
+        connection = new MockHttpURLConnection(new URL("https://www.test.com"));
+        client.setFixedLengthStreamingMode(connection, length);
+        assertEquals(length, connection.getFixedContentLengthLong());
+    }
+
+    @Test
+    public void testResponseContentReleasesConnection() throws URISyntaxException, IOException {
+        UrlConnectionManager manager = new UrlConnectionManager(1, 0);
+        HttpRequest request = new HttpRequest("GET", new URI("https://www.test.com"));
+        MockHttpURLConnection conn = new MockHttpURLConnection(new URL("https://www.test.com"));
+        conn.setHeaderFields(new HashMap<String, List<String>>());
+        conn.setResponseCode(200);
+        conn.setInputStream(new ByteArrayInputStream("test".getBytes(StringUtils.UTF8)));
+
+        HttpResponse response = client.createHttpResponse(request, conn,
+                manager.lease(new URL("https://www.test.com")));
+        assertEquals(1, manager.getStatistics().getLeasedCount());
+        InputStream content = response.getContent();
+        while (content.read() >= 0) {
+        }
+        content.close();
+        assertEquals(0, manager.getStatistics().getLeasedCount());
+        assertEquals(1, manager.getStatistics().getReusableCount());
+        assertEquals(0, manager.getStatistics().getClosedEarlyCount());
+
+        // no body
+        conn.setInputStream(null);
+        client.createHttpResponse(request, conn, manager.lease(new URL("https://www.test.com")));
+        assertEquals(0, manager.getStatistics().getLeasedCount());
+        assertEquals(2, manager.getStatistics().getReusableCount());
+    }
 }
 
 class MockHttpURLConnection extends HttpsURLConnection {
@@ -231,6 +271,14 @@ class MockHttpURLConnection extends HttpsURLConnection {
         this.headerFields = headerFields;
     }
 
+    public int getFixedContentLength() {
+        return fixedContentLength;
+    }
+
+    public long getFixedContentLengthLong() {
+        return fixedContentLengthLong;
+    }
+
     @Override
     public void disconnect() {
     }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class FIFOCacheTest {
+
+    @Test
+    public void testEvictsEarliestEntry() {
+        FIFOCache<String> cache = new FIFOCache<String>(2);
+        assertEquals(2, cache.getMaxSize());
+        cache.add("k1", "v1");
+        cache.add("k2", "v2");
+        assertEquals("v1", cache.get("k1"));
+        cache.add("k3", "v3");
+        assertEquals(2, cache.size());
+        assertNull(cache.get("k1"));
+        assertEquals("v2", cache.get("k2"));
+        assertEquals("v3", cache.get("k3"));
+    }
+
+    @Test
+    public void testReplaceExistingEntry() {
+        FIFOCache<String> cache = new FIFOCache<String>(2);
+        cache.add("k1", "v1");
+        assertEquals("v1", cache.add("k1", "v2"));
+        assertEquals(1, cache.size());
+        assertEquals("v2", cache.get("k1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxSize() {
+        new FIFOCache<String>(0);
+    }
+}
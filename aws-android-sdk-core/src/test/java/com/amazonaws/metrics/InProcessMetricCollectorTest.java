@@ -0,0 +1,179 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.metrics.InProcessMetricCollector.OperationMetrics;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.AWSRequestMetricsFullSupport;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class InProcessMetricCollectorTest {
+
+    @Test
+    public void testCollectsPerOperation() {
+        InProcessMetricCollector collector = new InProcessMetricCollector();
+        RequestMetricCollector requestCollector = collector.getRequestMetricCollector();
+        assertFalse(requestCollector.isEnabled());
+        assertTrue(collector.start());
+        assertTrue(requestCollector.isEnabled());
+
+        requestCollector.collectMetrics(request(new PutItemRequest(), 1), response(100));
+        requestCollector.collectMetrics(request(new PutItemRequest(), 3), response(50));
+        requestCollector.collectMetrics(request(new GetItemRequest(), 1), null);
+
+        List<OperationMetrics> metrics = collector.getMetrics();
+        assertEquals(2, metrics.size());
+        assertEquals("GetItem", metrics.get(0).getOperationName());
+        assertEquals("PutItem", metrics.get(1).getOperationName());
+
+        OperationMetrics putItem = collector.getMetrics("AmazonTest", "PutItem");
+        assertEquals("AmazonTest", putItem.getServiceName());
+        assertEquals(2, putItem.getRequestCount());
+        assertEquals(2, putItem.getRetryCount());
+        assertEquals(2, putItem.getThrottleCount());
+        assertEquals(0, putItem.getErrorCount());
+        assertEquals(20, putItem.getBytesSent());
+        assertEquals(150, putItem.getBytesReceived());
+        assertEquals(2, putItem.getClientExecuteTime().getCount());
+        assertEquals(4, putItem.getHttpRequestTime().getCount());
+        assertEquals(4, putItem.getRequestSigningTime().getCount());
+        assertEquals(0, putItem.getResponseProcessingTime().getCount());
+
+        OperationMetrics getItem = collector.getMetrics("AmazonTest", "GetItem");
+        assertEquals(1, getItem.getErrorCount());
+        assertEquals(0, getItem.getRetryCount());
+        assertEquals(0, getItem.getBytesReceived());
+
+        assertNull(collector.getMetrics("AmazonTest", "Query"));
+        collector.reset();
+        assertTrue(collector.getMetrics().isEmpty());
+
+        assertTrue(collector.stop());
+        assertFalse(collector.stop());
+        requestCollector.collectMetrics(request(new PutItemRequest(), 1), response(100));
+        assertTrue(collector.getMetrics().isEmpty());
+    }
+
+    @Test
+    public void testLatencies() throws InterruptedException {
+        InProcessMetricCollector collector = new InProcessMetricCollector();
+        collector.start();
+        Request<?> request = new DefaultRequest<Void>(new PutItemRequest(), "AmazonTest");
+        AWSRequestMetrics metrics = new AWSRequestMetricsFullSupport();
+        request.setAWSRequestMetrics(metrics);
+        metrics.startEvent(Field.ClientExecuteTime);
+        Thread.sleep(20);
+        metrics.endEvent(Field.ClientExecuteTime);
+        collector.getRequestMetricCollector().collectMetrics(request, response(0));
+
+        LatencyHistogram.Snapshot latency = collector.getMetrics("AmazonTest", "PutItem")
+                .getClientExecuteTime();
+        assertEquals(1, latency.getCount());
+        assertTrue(latency.getP50() >= TimeUnit.MILLISECONDS.toMicros(20));
+        assertTrue(latency.getP50() < TimeUnit.SECONDS.toMicros(10));
+        assertEquals(latency.getP50(), latency.getP999());
+        collector.stop();
+    }
+
+    @Test
+    public void testPeriodicDump() throws InterruptedException {
+        final AtomicReference<List<OperationMetrics>> dumped =
+                new AtomicReference<List<OperationMetrics>>();
+        final CountDownLatch latch = new CountDownLatch(2);
+        InProcessMetricCollector collector = new InProcessMetricCollector(
+                new InProcessMetricCollector.Listener() {
+                    @Override
+                    public void onMetrics(List<OperationMetrics> metrics) {
+                        dumped.set(metrics);
+                        latch.countDown();
+                    }
+                }, 10, TimeUnit.MILLISECONDS);
+        assertTrue(collector.start());
+        assertFalse(collector.start());
+        collector.getRequestMetricCollector().collectMetrics(
+                request(new PutItemRequest(), 1), response(1));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(collector.stop());
+        assertEquals("PutItem", dumped.get().get(0).getOperationName());
+    }
+
+    @Test
+    public void testSdkLevelCollector() {
+        InProcessMetricCollector collector = new InProcessMetricCollector();
+        collector.start();
+        AwsSdkMetrics.setMetricCollector(collector);
+        try {
+            assertTrue(AwsSdkMetrics.isMetricsEnabled());
+            assertTrue(AwsSdkMetrics.getRequestMetricCollector() == collector
+                    .getRequestMetricCollector());
+        } finally {
+            AwsSdkMetrics.setMetricCollector(MetricCollector.NONE);
+        }
+        assertFalse(collector.isEnabled());
+    }
+
+    /**
+     * Returns a request which took the given number of attempts, all but the
+     * last one throttled.
+     */
+    private static Request<?> request(AmazonWebServiceRequest original, int attempts) {
+        Request<?> request = new DefaultRequest<Void>(original, "AmazonTest");
+        request.addHeader("Content-Length", "10");
+        AWSRequestMetrics metrics = new AWSRequestMetricsFullSupport();
+        request.setAWSRequestMetrics(metrics);
+        metrics.startEvent(Field.ClientExecuteTime);
+        for (int i = 1; i <= attempts; i++) {
+            metrics.setCounter(Field.RequestCount, i);
+            metrics.startEvent(Field.RequestSigningTime);
+            metrics.endEvent(Field.RequestSigningTime);
+            metrics.startEvent(Field.HttpRequestTime);
+            metrics.endEvent(Field.HttpRequestTime);
+            if (i < attempts) {
+                metrics.addProperty(Field.AWSErrorCode, "ThrottlingException");
+            }
+        }
+        metrics.endEvent(Field.ClientExecuteTime);
+        return request;
+    }
+
+    private static Response<?> response(int contentLength) {
+        return new Response<Object>(null, HttpResponse.builder().statusCode(200)
+                .header("Content-Length", String.valueOf(contentLength)).build());
+    }
+
+    private static class PutItemRequest extends AmazonWebServiceRequest {
+    }
+
+    private static class GetItemRequest extends AmazonWebServiceRequest {
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsAreContiguous() {
+        for (long value = 0; value < 1 << 20; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            long lowest = index == 0 ? 0 : LatencyHistogram.highestValueAt(index - 1) + 1;
+            assertTrue(value + " in bucket " + index, value >= lowest);
+            assertTrue(value + " in bucket " + index,
+                    value <= LatencyHistogram.highestValueAt(index));
+        }
+        int last = LatencyHistogram.indexOf(LatencyHistogram.MAX_TRACKABLE_VALUE);
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_VALUE, LatencyHistogram.highestValueAt(last));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 50; i++) {
+            histogram.recordValue(i);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(50, snapshot.getCount());
+        assertEquals(25, snapshot.getP50());
+        assertEquals(50, snapshot.getP99());
+        assertEquals(50, snapshot.getMax());
+        assertEquals(1, snapshot.getValueAtPercentile(0));
+        assertEquals(25.5, snapshot.getMean(), 0.0001);
+    }
+
+    @Test
+    public void testPercentilesWithinPrecision() {
+        Random random = new Random(42);
+        long[] values = new long[100000];
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 16);
+            histogram.recordValue(values[i]);
+        }
+        Arrays.sort(values);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        for (double percentile : new double[] {
+                50, 90, 99, 99.9, 100
+        }) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long actual = snapshot.getValueAtPercentile(percentile);
+            assertTrue(percentile + ": " + actual + " vs " + expected, actual >= expected);
+            assertTrue(percentile + ": " + actual + " vs " + expected,
+                    actual <= expected + expected / LatencyHistogram.SUB_BUCKET_COUNT);
+        }
+    }
+
+    @Test
+    public void testOutOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordValue(-5);
+        histogram.recordValue(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getValueAtPercentile(50));
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_VALUE, snapshot.getMax());
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_VALUE, snapshot.getP99());
+    }
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getP999());
+        assertEquals(0, snapshot.getMean(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        new LatencyHistogram().snapshot().getValueAtPercentile(101);
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int threads = 4;
+        final int perThread = 100000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        histogram.recordValue(i % 1000);
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(threads * perThread, snapshot.getCount());
+        assertEquals(999, snapshot.getMax());
+        assertEquals(499.5, snapshot.getMean(), 0.0001);
+    }
+}
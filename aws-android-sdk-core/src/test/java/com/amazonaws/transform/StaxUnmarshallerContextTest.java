@@ -20,6 +20,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import org.junit.Test;
 import org.xmlpull.v1.XmlPullParser;
@@ -28,6 +29,8 @@ import org.xmlpull.v1.XmlPullParserFactory;
 
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -105,6 +108,66 @@ public class StaxUnmarshallerContextTest {
         assertFalse("expression not match", context.testExpression("imageSet/item_id", 2));
     }
 
+    @Test
+    public void testExpressionEdgeCases() throws Exception {
+        context = getContext(XML_STRING, null);
+        while (context.getCurrentDepth() < 4) {
+            context.nextEvent();
+        }
+
+        assertFalse("attributes are not on the stack", context.testExpression("item/@id", 3));
+        assertFalse("longer than the stack", context.testExpression(
+                "DescribeImagesResponse/imageSet/item/id", 0));
+        assertTrue(context.testExpression("DescribeImagesResponse/imageSet/item/id", 1));
+        assertFalse("partial element name", context.testExpression("tem/id", 3));
+        assertFalse("not the innermost element", context.testExpression("item", 3));
+    }
+
+    @Test
+    public void testDeepDocument() throws Exception {
+        StringBuilder xml = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            xml.append("<e").append(i).append('>');
+        }
+        for (int i = 39; i >= 0; i--) {
+            xml.append("</e").append(i).append('>');
+        }
+        context = getContext(xml.toString(), null);
+        while (context.getCurrentDepth() < 40) {
+            context.nextEvent();
+        }
+        assertTrue(context.testExpression("e38/e39", 39));
+        while (context.nextEvent() != XmlPullParser.END_DOCUMENT)
+            ;
+        assertEquals(0, context.getCurrentDepth());
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testDeprecatedStack() throws Exception {
+        context = getContext(XML_STRING, null);
+        assertTrue(context.stack.isEmpty());
+        assertNull(context.stack.peek());
+        while (context.getCurrentDepth() < 4) {
+            context.nextEvent();
+        }
+
+        assertEquals(4, context.stack.size());
+        assertEquals("/DescribeImagesResponse/imageSet/item/id", context.stack.peek());
+        assertEquals("/DescribeImagesResponse", context.stack.peekLast());
+        assertEquals(Arrays.asList("/DescribeImagesResponse/imageSet/item/id",
+                "/DescribeImagesResponse/imageSet/item",
+                "/DescribeImagesResponse/imageSet",
+                "/DescribeImagesResponse"), new ArrayList<String>(context.stack));
+        assertEquals("/DescribeImagesResponse", context.stack.descendingIterator().next());
+        try {
+            context.stack.pop();
+            fail("Expected the stack to be read-only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
     @Test
     public void testMetadata() throws Exception {
         String key = "AWS_REQUEST_ID";
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testBuffersAreReused() {
+        BufferPool pool = new BufferPool(16, 1);
+        byte[] first = pool.acquire();
+        assertEquals(16, first.length);
+        byte[] second = pool.acquire();
+        assertNotSame(first, second);
+
+        pool.release(first);
+        // the pool is full
+        pool.release(second);
+        assertSame(first, pool.acquire());
+        assertNotSame(second, pool.acquire());
+    }
+
+    @Test
+    public void testForeignBuffersAreIgnored() {
+        BufferPool pool = new BufferPool(16, 2);
+        pool.release(null);
+        pool.release(new byte[8]);
+        assertEquals(16, pool.acquire().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new BufferPool(0, 1);
+    }
+}
@@ -15,6 +15,7 @@
 
 package com.amazonaws.util;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import org.apache.commons.io.FileUtils;
@@ -22,7 +23,9 @@ import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.Random;
 
 public class Md5UtilsTest {
 
@@ -57,4 +60,19 @@ public class Md5UtilsTest {
         String b64 = Md5Utils.md5AsBase64(f);
         assertEquals("C09QO463cUzhJAJAaJXPaA==", b64);
     }
+
+    @Test
+    public void testLargeFile() throws Exception {
+        File f = File.createTempFile("Md5UtilsTest-", "bin");
+        f.deleteOnExit();
+        byte[] content = new byte[(3 << 20) + 17];
+        new Random(42).nextBytes(content);
+        FileUtils.writeByteArrayToFile(f, content);
+
+        byte[] expected = Md5Utils.computeMD5Hash(content);
+        assertArrayEquals(expected, Md5Utils.computeMD5Hash(f));
+        assertArrayEquals(expected, Md5Utils.computeMD5Hash(new FileInputStream(f)));
+        // the pooled buffer is reused by the next hash
+        assertArrayEquals(expected, Md5Utils.computeMD5Hash(f));
+    }
 }
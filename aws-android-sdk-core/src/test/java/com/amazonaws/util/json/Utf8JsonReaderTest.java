@@ -0,0 +1,206 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.util.StringUtils;
+import com.amazonaws.util.json.JsonUtils.JsonEngine;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.Map;
+
+public class Utf8JsonReaderTest {
+
+    private static final String[] DOCUMENTS = {
+            "{}",
+            "[]",
+            " \n\t{ \"a\" : [ 1 , -2.5e+3 , 0.001E-2 , true , false , null ] }\r\n",
+            "{\"string\":\"string\",\"long\":123,\"double\":123.45,\"null\":null,"
+                    + "\"encoding\":\"Chloë 日本語 😀\","
+                    + "\"escapes\":\"\\\" \\\\ \\/ \\b \\f \\n \\r \\t \\u00e9 \\u2028 \\ud83d\\ude00\","
+                    + "\"nested\":[[],{},[{\"k\":[1,{\"x\":\"y\"}]}]],"
+                    + "\"empty\":\"\"}"
+    };
+
+    @After
+    public void tearDown() {
+        JsonUtils.setJsonEngine(JsonEngine.Gson);
+    }
+
+    @Test
+    public void testMatchesGson() throws IOException {
+        for (String json : DOCUMENTS) {
+            assertEquals(json, gsonTokens(json), tokens(reader(json, false)));
+        }
+    }
+
+    @Test
+    public void testInputSplitAcrossReads() throws IOException {
+        for (String json : DOCUMENTS) {
+            assertEquals(json, gsonTokens(json), tokens(reader(json, true)));
+        }
+    }
+
+    @Test
+    public void testStringsLongerThanBuffer() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Utf8JsonReader.BUFFER_SIZE; i++) {
+            sb.append(i % 3 == 0 ? "é" : i % 3 == 1 ? "\\n" : "😀");
+        }
+        String json = "{\"" + sb + "\":[\"" + sb + "\"," + sb.length() + "]}";
+        assertEquals(gsonTokens(json), tokens(reader(json, false)));
+    }
+
+    @Test
+    public void testSkipValue() throws IOException {
+        AwsJsonReader reader = reader(DOCUMENTS[3], true);
+        reader.beginObject();
+        int names = 0;
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            names++;
+            if (name.equals("empty")) {
+                assertEquals("", reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        assertEquals(8, names);
+        assertNull(reader.peek());
+    }
+
+    @Test
+    public void testMalformedUtf8IsReplaced() throws IOException {
+        byte[] bytes = {
+                '[', '"', 'a', (byte) 0xc3, '"', ',', '"', (byte) 0xff, 'b', '"', ']'
+        };
+        AwsJsonReader reader = new Utf8JsonReader(new ByteArrayInputStream(bytes));
+        reader.beginArray();
+        assertEquals("a�", reader.nextString());
+        assertEquals("�b", reader.nextString());
+        reader.endArray();
+    }
+
+    @Test
+    public void testSyntaxErrors() throws IOException {
+        String[] invalid = {
+                "{\"a\" 1}", "{\"a\":1,}", "[1 2]", "{1:2}", "[tru]", "[\"a\\x\"]", "{} {}",
+                "[\"unterminated"
+        };
+        for (String json : invalid) {
+            try {
+                tokens(reader(json, false));
+                fail("Expected a syntax error for " + json);
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    /**
+     * Unlike the strict Gson engine, a top-level value may be a scalar.
+     */
+    @Test
+    public void testTopLevelScalars() throws IOException {
+        assertEquals("VALUE_STRING top level string ", tokens(reader("\"top level string\"", true)));
+        assertEquals("VALUE_NUMBER 42 ", tokens(reader("42", false)));
+    }
+
+    @Test
+    public void testEmptyInput() throws IOException {
+        AwsJsonReader reader = reader("  ", false);
+        assertNull(reader.peek());
+    }
+
+    @Test
+    public void testJsonUtils() throws IOException {
+        JsonUtils.setJsonEngine(JsonEngine.Utf8);
+        Map<String, String> map = JsonUtils.jsonToMap(DOCUMENTS[3]);
+        assertEquals("123.45", map.get("double"));
+        assertEquals("Chloë 日本語 😀", map.get("encoding"));
+        assertNull(map.get("nested"));
+
+        AwsJsonReader reader = JsonUtils.getJsonReader(
+                new ByteArrayInputStream("{\"a\":\"b\"}".getBytes(StringUtils.UTF8)));
+        assertTrue(reader instanceof Utf8JsonReader);
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        assertEquals("b", reader.nextString());
+        assertFalse(reader.hasNext());
+        reader.endObject();
+    }
+
+    private static AwsJsonReader reader(String json, boolean oneByteAtATime) {
+        InputStream in = new ByteArrayInputStream(json.getBytes(StringUtils.UTF8));
+        if (oneByteAtATime) {
+            in = new FilterInputStream(in) {
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    return super.read(b, off, Math.min(len, 1));
+                }
+            };
+        }
+        return new Utf8JsonReader(in);
+    }
+
+    private static String gsonTokens(String json) throws IOException {
+        return tokens(new GsonFactory().getJsonReader(new StringReader(json)));
+    }
+
+    /**
+     * Walks through a document, recording each token and value.
+     */
+    private static String tokens(AwsJsonReader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        writeValue(reader, sb);
+        assertNull(reader.peek());
+        reader.close();
+        return sb.toString();
+    }
+
+    private static void writeValue(AwsJsonReader reader, StringBuilder sb) throws IOException {
+        AwsJsonToken token = reader.peek();
+        sb.append(token).append(' ');
+        if (token == AwsJsonToken.BEGIN_ARRAY) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                writeValue(reader, sb);
+            }
+            reader.endArray();
+        } else if (token == AwsJsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                sb.append(reader.nextName()).append(' ');
+                writeValue(reader, sb);
+            }
+            reader.endObject();
+        } else {
+            sb.append(reader.nextString()).append(' ');
+        }
+    }
+}
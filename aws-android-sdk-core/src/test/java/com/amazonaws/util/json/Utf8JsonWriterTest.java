@@ -0,0 +1,173 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util.json;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.util.StringUtils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+public class Utf8JsonWriterTest {
+
+    private static final String[] STRINGS = {
+            "",
+            "plain",
+            "quote \" backslash \\ slash /",
+            "controls \t\b\n\r\f \u0000 \u001f",
+            "Chlo\u00eb, na\u00efve, \u65e5\u672c\u8a9e",
+            "separators \u2028 \u2029",
+            "emoji \ud83d\ude00 end",
+            "lone \ud83d surrogate \ude00",
+            "html <>&='"
+    };
+
+    @Test
+    public void testMatchesGsonOutput() throws IOException {
+        for (String s : STRINGS) {
+            assertSameOutput(s);
+        }
+    }
+
+    @Test
+    public void testLongStringGrowsBuffer() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Utf8JsonWriter.INITIAL_SIZE; i++) {
+            sb.append("\u0001\u00e9");
+        }
+        assertSameOutput(sb.toString());
+    }
+
+    @Test
+    public void testBinaryLengths() throws IOException {
+        for (int length = 0; length < 10; length++) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = (byte) (i * 37 - 100);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            buffer.position(length > 0 ? 1 : 0);
+
+            Utf8JsonWriter writer = new Utf8JsonWriter();
+            writer.beginArray().value(buffer).endArray();
+            assertEquals(length > 0 ? 1 : 0, buffer.position());
+
+            StringWriter out = new StringWriter();
+            AwsJsonWriter gson = new GsonFactory().getJsonWriter(out);
+            gson.beginArray().value(buffer).endArray();
+            gson.close();
+
+            assertEquals(out.toString(), new String(writer.toByteArray(), StringUtils.UTF8));
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testWriteToStream() throws IOException {
+        Utf8JsonWriter writer = new Utf8JsonWriter();
+        writer.beginArray().value(1).value("a").endArray();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        assertArrayEquals(writer.toByteArray(), out.toByteArray());
+        assertEquals(out.size(), writer.size());
+        writer.close();
+    }
+
+    @Test
+    public void testNestingErrors() throws IOException {
+        Utf8JsonWriter writer = new Utf8JsonWriter();
+        writer.beginObject();
+        try {
+            writer.value("no name");
+            fail("Expected a nesting error");
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            writer.endArray();
+            fail("Expected a nesting error");
+        } catch (IllegalStateException expected) {
+        }
+        writer.close();
+
+        writer = new Utf8JsonWriter();
+        try {
+            writer.value("top level");
+            fail("Expected a top-level scalar to be rejected, as by the Gson engine");
+        } catch (IllegalStateException expected) {
+        }
+        writer.close();
+        try {
+            writer.toByteArray();
+            fail("Expected the writer to be closed");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testNonFiniteNumbersAreRejected() throws IOException {
+        Utf8JsonWriter writer = new Utf8JsonWriter();
+        writer.beginArray();
+        try {
+            writer.value(Double.NaN);
+            fail("Expected NaN to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            writer.value(Double.valueOf(Double.POSITIVE_INFINITY));
+            fail("Expected infinity to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+        writer.close();
+    }
+
+    private static void assertSameOutput(String s) throws IOException {
+        StringWriter out = new StringWriter();
+        AwsJsonWriter gson = new GsonFactory().getJsonWriter(out);
+        Utf8JsonWriter writer = new Utf8JsonWriter();
+        for (AwsJsonWriter w : new AwsJsonWriter[] {
+                gson, writer
+        }) {
+            w.beginObject()
+                    .name(s).value(s)
+                    .name("numbers").beginArray()
+                    .value(0L).value(-42L).value(Long.MIN_VALUE).value(Long.MAX_VALUE)
+                    .value(1.5).value(-0.0).value(1e300)
+                    .value(new BigDecimal("123.4500")).value(Integer.valueOf(7))
+                    .endArray()
+                    .name("date").value(new Date(1423875641895L))
+                    .name("booleans").beginArray().value(true).value(false).endArray()
+                    .name("null").value()
+                    .name("nullString").value((String) null)
+                    .name("empty").beginObject().endObject()
+                    .name("nested").beginArray().beginArray().endArray().beginObject()
+                    .name("a").value("b").endObject().endArray()
+                    .endObject();
+        }
+        gson.close();
+        // compare the encoded bytes, which is what the marshallers used to send
+        assertArrayEquals(out.toString().getBytes(StringUtils.UTF8), writer.toByteArray());
+        writer.close();
+    }
+}
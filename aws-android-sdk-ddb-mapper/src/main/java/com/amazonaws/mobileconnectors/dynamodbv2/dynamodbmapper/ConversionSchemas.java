@@ -94,11 +94,14 @@ import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Pre-defined strategies for mapping between Java types and DynamoDB types.
@@ -196,6 +199,11 @@ public final class ConversionSchemas {
         }
     }
 
+    /**
+     * Converts items with a codec compiled once per mapped class, see
+     * {@link ItemCodec}. Converters are meant to be reused; the codecs live
+     * as long as the converter that compiled them.
+     */
     static class StandardItemConverter implements ItemConverter {
 
         private final MarshallerSet marshallerSet;
@@ -203,6 +211,9 @@ public final class ConversionSchemas {
         private final DynamoDBReflector reflector;
         private final S3ClientCache s3cc;
 
+        private final ConcurrentMap<Class<?>, ItemCodec> codecs =
+                new ConcurrentHashMap<Class<?>, ItemCodec>();
+
         public StandardItemConverter(
                 MarshallerSet marshallerSet,
                 UnmarshallerSet unmarshallerSet,
@@ -264,19 +275,18 @@ public final class ConversionSchemas {
                 return null;
             }
 
-            Class<?> clazz = object.getClass();
+            ItemCodec codec = getCodec(object.getClass());
             Map<String, AttributeValue> result =
                     new HashMap<String, AttributeValue>();
 
-            for (Method getter : reflector.getRelevantGetters(clazz)) {
+            for (int i = 0; i < codec.getters.length; i++) {
                 Object getterResult =
-                        ReflectionUtils.safeInvoke(getter, object);
+                        ReflectionUtils.safeInvoke(codec.getters[i], object);
 
                 if (getterResult != null) {
-                    AttributeValue value = convert(getter, getterResult);
+                    AttributeValue value = codec.marshall(this, i, getterResult);
                     if (value != null) {
-                        String name = reflector.getAttributeName(getter);
-                        result.put(name, value);
+                        result.put(codec.names[i], value);
                     }
                 }
             }
@@ -284,6 +294,54 @@ public final class ConversionSchemas {
             return result;
         }
 
+        /**
+         * Returns the codec of the given class, compiling it on first use.
+         */
+        ItemCodec getCodec(Class<?> clazz) {
+            ItemCodec codec = codecs.get(clazz);
+            if (codec == null) {
+                codec = compile(clazz);
+                ItemCodec existing = codecs.putIfAbsent(clazz, codec);
+                if (existing != null) {
+                    codec = existing;
+                }
+            }
+            return codec;
+        }
+
+        private ItemCodec compile(Class<?> clazz) {
+            Collection<Method> relevantGetters = reflector.getRelevantGetters(clazz);
+            int size = relevantGetters.size();
+            Method[] getters = new Method[size];
+            Method[] setters = new Method[size];
+            ArgumentMarshaller[] marshallers = new ArgumentMarshaller[size];
+            ArgumentUnmarshaller[] unmarshallers = new ArgumentUnmarshaller[size];
+
+            int i = 0;
+            for (Method getter : relevantGetters) {
+                getters[i] = getter;
+
+                // Properties that can't be converted only fail when a value
+                // is actually converted, as they did before codecs; leave
+                // them unresolved so that the error is raised at that point.
+                try {
+                    marshallers[i] = getMarshaller(getter);
+                } catch (RuntimeException e) {
+                    LOGGER.debug("Not precompiling the marshaller of " + getter, e);
+                }
+                try {
+                    setters[i] = reflector.getSetter(getter);
+                    unmarshallers[i] = getUnmarshaller(getter, setters[i]);
+                } catch (RuntimeException e) {
+                    LOGGER.debug("Not precompiling the unmarshaller of " + getter, e);
+                }
+                i++;
+            }
+
+            return new ItemCodec(reflector, clazz, getters, setters, marshallers,
+                    unmarshallers);
+        }
+
         private ArgumentMarshaller getMarshaller(Method getter) {
             ArgumentMarshaller marshaller =
                     marshallerSet.getMarshaller(getter);
@@ -413,30 +471,17 @@ public final class ConversionSchemas {
                 return result;
             }
 
-            for (Method m : reflector.getRelevantGetters(clazz)) {
-                String attributeName = reflector.getAttributeName(m);
-                AttributeValue av = value.get(attributeName);
+            ItemCodec codec = getCodec(clazz);
+            for (int i = 0; i < codec.names.length; i++) {
+                AttributeValue av = value.get(codec.names[i]);
                 if (av != null) {
-                    setValue(result, m, av);
+                    codec.unmarshallInto(this, result, i, av);
                 }
             }
 
             return result;
         }
 
-        private void setValue(
-                Object target,
-                Method getter,
-                AttributeValue value) {
-
-            Method setter = reflector.getSetter(getter);
-            ArgumentUnmarshaller unmarshaller =
-                    getUnmarshaller(getter, setter);
-
-            Object unmarshalled = unmarshall(unmarshaller, setter, value);
-            ReflectionUtils.safeInvoke(setter, target, unmarshalled);
-        }
-
         private ArgumentUnmarshaller getUnmarshaller(
                 Method getter,
                 Method setter) {
@@ -601,6 +646,106 @@ public final class ConversionSchemas {
 
     }
 
+    /**
+     * The conversion of one mapped class, resolved once by a
+     * {@link StandardItemConverter}: for each relevant getter, in the order of
+     * {@link DynamoDBReflector#getRelevantGetters(Class)}, the attribute name,
+     * the getter and setter, the marshaller and the unmarshaller, and whether
+     * it is a key, an auto-generated key or the version attribute. Converting
+     * or saving an item is then a loop over these arrays, without cache
+     * lookups or locks.
+     * <p>
+     * A null marshaller, setter or unmarshaller means it couldn't be resolved;
+     * it is resolved again when used so that the usual exception is thrown.
+     * Instances are immutable.
+     */
+    static final class ItemCodec {
+
+        final String[] names;
+        final Method[] getters;
+        final boolean[] keys;
+        final boolean[] assignableKeys;
+        final boolean[] versions;
+        private final Method[] setters;
+        private final ArgumentMarshaller[] marshallers;
+        private final ArgumentUnmarshaller[] unmarshallers;
+
+        ItemCodec(
+                DynamoDBReflector reflector,
+                Class<?> clazz,
+                Method[] getters,
+                Method[] setters,
+                ArgumentMarshaller[] marshallers,
+                ArgumentUnmarshaller[] unmarshallers) {
+
+            this.getters = getters;
+            this.setters = setters;
+            this.marshallers = marshallers;
+            this.unmarshallers = unmarshallers;
+
+            Collection<Method> keyGetters = reflector.getPrimaryKeyGetters(clazz);
+            names = new String[getters.length];
+            keys = new boolean[getters.length];
+            assignableKeys = new boolean[getters.length];
+            versions = new boolean[getters.length];
+            for (int i = 0; i < getters.length; i++) {
+                names[i] = reflector.getAttributeName(getters[i]);
+                keys[i] = keyGetters.contains(getters[i]);
+                assignableKeys[i] = reflector.isAssignableKey(getters[i]);
+                versions[i] = reflector.isVersionAttributeGetter(getters[i]);
+            }
+        }
+
+        /**
+         * Returns a codec of the given class which resolves nothing ahead of
+         * time, for the converters of custom conversion schemas: its values
+         * are converted with {@link ItemConverter#convert(Method, Object)}.
+         */
+        static ItemCodec unresolved(DynamoDBReflector reflector, Class<?> clazz) {
+            Method[] getters = reflector.getRelevantGetters(clazz).toArray(new Method[0]);
+            return new ItemCodec(reflector, clazz, getters, new Method[getters.length],
+                    new ArgumentMarshaller[getters.length],
+                    new ArgumentUnmarshaller[getters.length]);
+        }
+
+        /**
+         * Converts the value of the property at the given index, or returns
+         * null for a null value.
+         */
+        AttributeValue marshall(
+                ItemConverter converter,
+                int index,
+                Object value) {
+
+            if (value == null) {
+                return null;
+            }
+            ArgumentMarshaller marshaller = marshallers[index];
+            if (marshaller == null) {
+                return converter.convert(getters[index], value);
+            }
+            return marshaller.marshall(value);
+        }
+
+        void unmarshallInto(
+                StandardItemConverter converter,
+                Object target,
+                int index,
+                AttributeValue value) {
+
+            Method setter = setters[index];
+            ArgumentUnmarshaller unmarshaller = unmarshallers[index];
+            if (setter == null || unmarshaller == null) {
+                setter = converter.reflector.getSetter(getters[index]);
+                unmarshaller = converter.getUnmarshaller(getters[index], setter);
+            }
+
+            Object unmarshalled = StandardItemConverter.unmarshall(
+                    unmarshaller, setter, value);
+            ReflectionUtils.safeInvoke(setter, target, unmarshalled);
+        }
+    }
+
     static interface MarshallerSet {
         ArgumentMarshaller getMarshaller(Method getter);
 
@@ -1261,11 +1406,11 @@ public final class ConversionSchemas {
 
     static class CachingMarshallerSet implements MarshallerSet {
 
-        private final Map<Method, ArgumentMarshaller> cache =
-                new HashMap<Method, ArgumentMarshaller>();
+        private final ConcurrentMap<Method, ArgumentMarshaller> cache =
+                new ConcurrentHashMap<Method, ArgumentMarshaller>();
 
-        private final Map<Type, ArgumentMarshaller> memberCache =
-                new HashMap<Type, ArgumentMarshaller>();
+        private final ConcurrentMap<Type, ArgumentMarshaller> memberCache =
+                new ConcurrentHashMap<Type, ArgumentMarshaller>();
 
         private final MarshallerSet wrapped;
 
@@ -1275,40 +1420,36 @@ public final class ConversionSchemas {
 
         @Override
         public ArgumentMarshaller getMarshaller(Method getter) {
-            synchronized (cache) {
-                ArgumentMarshaller marshaler = cache.get(getter);
-                if (marshaler != null) {
-                    return marshaler;
-                }
-
-                marshaler = wrapped.getMarshaller(getter);
-                cache.put(getter, marshaler);
+            ArgumentMarshaller marshaler = cache.get(getter);
+            if (marshaler != null) {
                 return marshaler;
             }
+
+            marshaler = wrapped.getMarshaller(getter);
+            ArgumentMarshaller existing = cache.putIfAbsent(getter, marshaler);
+            return existing == null ? marshaler : existing;
         }
 
         @Override
         public ArgumentMarshaller getMemberMarshaller(Type memberType) {
-            synchronized (memberCache) {
-                ArgumentMarshaller marshaller = memberCache.get(memberType);
-                if (marshaller != null) {
-                    return marshaller;
-                }
-
-                marshaller = wrapped.getMemberMarshaller(memberType);
-                memberCache.put(memberType, marshaller);
+            ArgumentMarshaller marshaller = memberCache.get(memberType);
+            if (marshaller != null) {
                 return marshaller;
             }
+
+            marshaller = wrapped.getMemberMarshaller(memberType);
+            ArgumentMarshaller existing = memberCache.putIfAbsent(memberType, marshaller);
+            return existing == null ? marshaller : existing;
         }
     }
 
     static class CachingUnmarshallerSet implements UnmarshallerSet {
 
-        private final Map<Method, ArgumentUnmarshaller> cache =
-                new HashMap<Method, ArgumentUnmarshaller>();
+        private final ConcurrentMap<Method, ArgumentUnmarshaller> cache =
+                new ConcurrentHashMap<Method, ArgumentUnmarshaller>();
 
-        private final Map<Type, ArgumentUnmarshaller> memberCache =
-                new HashMap<Type, ArgumentUnmarshaller>();
+        private final ConcurrentMap<Type, ArgumentUnmarshaller> memberCache =
+                new ConcurrentHashMap<Type, ArgumentUnmarshaller>();
 
         private final UnmarshallerSet wrapped;
 
@@ -1321,30 +1462,26 @@ public final class ConversionSchemas {
                 Method getter,
                 Method setter) {
 
-            synchronized (cache) {
-                ArgumentUnmarshaller unmarshaler = cache.get(getter);
-                if (unmarshaler != null) {
-                    return unmarshaler;
-                }
-
-                unmarshaler = wrapped.getUnmarshaller(getter, setter);
-                cache.put(getter, unmarshaler);
+            ArgumentUnmarshaller unmarshaler = cache.get(getter);
+            if (unmarshaler != null) {
                 return unmarshaler;
             }
+
+            unmarshaler = wrapped.getUnmarshaller(getter, setter);
+            ArgumentUnmarshaller existing = cache.putIfAbsent(getter, unmarshaler);
+            return existing == null ? unmarshaler : existing;
         }
 
         @Override
         public ArgumentUnmarshaller getMemberUnmarshaller(Type memberType) {
-            synchronized (memberCache) {
-                ArgumentUnmarshaller unmarshaller = memberCache.get(memberType);
-                if (unmarshaller != null) {
-                    return unmarshaller;
-                }
-
-                unmarshaller = wrapped.getMemberUnmarshaller(memberType);
-                memberCache.put(memberType, unmarshaller);
+            ArgumentUnmarshaller unmarshaller = memberCache.get(memberType);
+            if (unmarshaller != null) {
                 return unmarshaller;
             }
+
+            unmarshaller = wrapped.getMemberUnmarshaller(memberType);
+            ArgumentUnmarshaller existing = memberCache.putIfAbsent(memberType, unmarshaller);
+            return existing == null ? unmarshaller : existing;
         }
     }
 
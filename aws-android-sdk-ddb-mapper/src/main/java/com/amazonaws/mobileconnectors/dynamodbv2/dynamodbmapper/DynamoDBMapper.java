@@ -19,7 +19,10 @@ import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.AmazonWebServiceRequest;
 import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.ConversionSchemas.ItemCodec;
+import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.ConversionSchemas.StandardItemConverter;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.ConsistentReads;
+import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.ConsumedCapacityListener;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.PaginationLoadingStrategy;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.SaveBehavior;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBTableSchemaParser.TableIndexesInfo;
@@ -36,6 +39,7 @@ import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
 import com.amazonaws.services.dynamodbv2.model.ConditionalOperator;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
 import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
 import com.amazonaws.services.dynamodbv2.model.DeleteRequest;
@@ -48,6 +52,7 @@ import com.amazonaws.services.dynamodbv2.model.PutItemResult;
 import com.amazonaws.services.dynamodbv2.model.PutRequest;
 import com.amazonaws.services.dynamodbv2.model.QueryRequest;
 import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.ReturnValue;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
 import com.amazonaws.services.dynamodbv2.model.ScanResult;
@@ -76,6 +81,17 @@ import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Object mapper for domain-object interaction with DynamoDB.
@@ -177,6 +193,13 @@ public class DynamoDBMapper {
     private final DynamoDBReflector reflector = new DynamoDBReflector();
     private final DynamoDBTableSchemaParser schemaParser = new DynamoDBTableSchemaParser();
     private final VersionIncrementor incrementor = new VersionIncrementor();
+    /**
+     * The converter of each conversion schema used with this mapper. Schemas
+     * are weakly referenced, so that those built for a single call don't
+     * accumulate.
+     */
+    private final Map<ConversionSchema, ItemConverter> converters =
+            Collections.synchronizedMap(new WeakHashMap<ConversionSchema, ItemConverter>());
 
     private final AttributeTransformer transformer;
 
@@ -984,21 +1007,25 @@ public class DynamoDBMapper {
          * The general workflow of a save operation.
          */
         public void execute() {
-            Collection<Method> keyGetters = reflector.getPrimaryKeyGetters(clazz);
+            ItemCodec codec = getCodec(converter, clazz);
 
             /*
              * First handle keys
              */
-            for (Method method : keyGetters) {
+            for (int i = 0; i < codec.getters.length; i++) {
+                if (!codec.keys[i]) {
+                    continue;
+                }
+                Method method = codec.getters[i];
                 Object getterResult = ReflectionUtils.safeInvoke(method, object);
-                String attributeName = reflector.getAttributeName(method);
+                String attributeName = codec.names[i];
 
-                if (getterResult == null && reflector.isAssignableKey(method)) {
+                if (getterResult == null && codec.assignableKeys[i]) {
                     onAutoGenerateAssignableKey(method, attributeName);
                 }
 
                 else {
-                    AttributeValue newAttributeValue = converter.convert(method, getterResult);
+                    AttributeValue newAttributeValue = codec.marshall(converter, i, getterResult);
                     if (newAttributeValue == null) {
                         throw new DynamoDBMappingException(
                                 "Null or empty value for key: " + method);
@@ -1021,27 +1048,27 @@ public class DynamoDBMapper {
             /*
              * Next construct an update for every non-key property
              */
-            for (Method method : reflector.getRelevantGetters(clazz)) {
+            for (int i = 0; i < codec.getters.length; i++) {
 
                 // Skip any key methods, since they are handled separately
-                if (keyGetters.contains(method))
+                if (codec.keys[i])
                     continue;
 
-                Object getterResult = ReflectionUtils.safeInvoke(method, object);
-                String attributeName = reflector.getAttributeName(method);
+                Object getterResult = ReflectionUtils.safeInvoke(codec.getters[i], object);
+                String attributeName = codec.names[i];
 
                 /*
                  * If this is a versioned field, update it
                  */
-                if (reflector.isVersionAttributeGetter(method)) {
-                    onVersionAttribute(method, getterResult, attributeName);
+                if (codec.versions[i]) {
+                    onVersionAttribute(codec, i, getterResult, attributeName);
                 }
 
                 /*
                  * Otherwise apply the update value for this attribute.
                  */
                 else {
-                    AttributeValue currentValue = converter.convert(method, getterResult);
+                    AttributeValue currentValue = codec.marshall(converter, i, getterResult);
                     if (currentValue != null) {
                         onNonKeyAttribute(attributeName, currentValue);
                     } else {
@@ -1219,8 +1246,9 @@ public class DynamoDBMapper {
             }
         }
 
-        private void onVersionAttribute(Method method, Object getterResult,
+        private void onVersionAttribute(ItemCodec codec, int index, Object getterResult,
                 String attributeName) {
+            Method method = codec.getters[index];
             if (getLocalSaveBehavior() != SaveBehavior.CLOBBER
                     && !internalExpectedValueAssertions.containsKey(attributeName)) {
                 // First establish the expected (current) value for the
@@ -1229,7 +1257,7 @@ public class DynamoDBMapper {
 
                 // For new objects, insist that the value doesn't exist.
                 // For existing ones, insist it has the old value.
-                AttributeValue currentValue = converter.convert(method, getterResult);
+                AttributeValue currentValue = codec.marshall(converter, index, getterResult);
                 expected.setExists(currentValue != null);
                 if (currentValue != null) {
                     expected.setValue(currentValue);
@@ -1238,7 +1266,7 @@ public class DynamoDBMapper {
             }
 
             Object newVersion = incrementor.increment(method, getterResult);
-            AttributeValue newVersionValue = converter.convert(method, newVersion);
+            AttributeValue newVersionValue = codec.marshall(converter, index, newVersion);
             updateValues.put(attributeName, new AttributeValueUpdate()
                     .withAction("PUT")
                     .withValue(newVersionValue));
@@ -1301,14 +1329,15 @@ public class DynamoDBMapper {
          */
         Map<String, ExpectedAttributeValue> internalAssertions = new HashMap<String, ExpectedAttributeValue>();
         if (config.getSaveBehavior() != SaveBehavior.CLOBBER) {
-            for (Method method : reflector.getRelevantGetters(clazz)) {
+            ItemCodec codec = getCodec(converter, clazz);
+            for (int i = 0; i < codec.getters.length; i++) {
 
-                if (reflector.isVersionAttributeGetter(method)) {
-                    Object getterResult = ReflectionUtils.safeInvoke(method, object);
-                    String attributeName = reflector.getAttributeName(method);
+                if (codec.versions[i]) {
+                    Object getterResult = ReflectionUtils.safeInvoke(codec.getters[i], object);
+                    String attributeName = codec.names[i];
 
                     ExpectedAttributeValue expected = new ExpectedAttributeValue();
-                    AttributeValue currentValue = converter.convert(method, getterResult);
+                    AttributeValue currentValue = codec.marshall(converter, i, getterResult);
                     expected.setExists(currentValue != null);
                     if (currentValue != null)
                         expected.setValue(currentValue);
@@ -1457,12 +1486,17 @@ public class DynamoDBMapper {
      *            version checks are performed</b>, as required by the
      *            {@link AmazonDynamoDB#batchWriteItem(BatchWriteItemRequest)}
      *            API.
-     * @param config Only {@link DynamoDBMapperConfig#getTableNameOverride()} is
+     * @param config Only {@link DynamoDBMapperConfig#getTableNameOverride()},
+     *            {@link DynamoDBMapperConfig#getBatchConcurrency()} and
+     *            {@link DynamoDBMapperConfig#getConsumedCapacityListener()} are
      *            considered; if specified, all objects in the two parameter
      *            lists will be considered to belong to the given table
      *            override. In particular, this method <b>always acts as if
      *            SaveBehavior.CLOBBER was specified</b> regardless of the value
-     *            of the config parameter.
+     *            of the config parameter. With a batch concurrency above 1,
+     *            batches are written concurrently and, while batches are
+     *            throttled, the following ones back off exponentially instead
+     *            of pausing for a fixed time.
      * @return A list of failed batches which includes the unprocessed items and
      *         the exceptions causing the failure.
      */
@@ -1484,18 +1518,20 @@ public class DynamoDBMapper {
             Map<String, AttributeValue> attributeValues = new HashMap<String, AttributeValue>();
 
             // Look at every getter and construct a value object for it
-            for (Method method : reflector.getRelevantGetters(clazz)) {
+            ItemCodec codec = getCodec(converter, clazz);
+            for (int i = 0; i < codec.getters.length; i++) {
+                Method method = codec.getters[i];
                 Object getterResult =
                         ReflectionUtils.safeInvoke(method, toWrite);
 
-                String attributeName = reflector.getAttributeName(method);
+                String attributeName = codec.names[i];
 
                 AttributeValue currentValue = null;
-                if (getterResult == null && reflector.isAssignableKey(method)) {
+                if (getterResult == null && codec.assignableKeys[i]) {
                     currentValue = getAutoGeneratedKeyAttributeValue(converter, method);
                     inMemoryUpdates.add(new ValueUpdate(method, currentValue, toWrite, converter));
                 } else {
-                    currentValue = converter.convert(method, getterResult);
+                    currentValue = codec.marshall(converter, i, getterResult);
                 }
 
                 if (currentValue != null) {
@@ -1532,6 +1568,8 @@ public class DynamoDBMapper {
         }
 
         // Break into chunks of 25 items and make service requests to DynamoDB
+        List<Map<String, List<WriteRequest>>> batches =
+                new ArrayList<Map<String, List<WriteRequest>>>();
         while (!requestItems.isEmpty()) {
 
             HashMap<String, List<WriteRequest>> batch =
@@ -1561,17 +1599,25 @@ public class DynamoDBMapper {
                 }
             }
 
-            List<FailedBatch> failedBatches = writeOneBatch(batch);
-            if (failedBatches != null) {
-                totalFailedBatches.addAll(failedBatches);
-
-                // If contains throttling exception, we do a backoff
-                if (containsThrottlingException(failedBatches)) {
-                    try {
-                        Thread.sleep(1000 * 2);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new AmazonClientException(e.getMessage(), e);
+            batches.add(batch);
+        }
+
+        if (getBatchConcurrency(config) > 1 && batches.size() > 1) {
+            totalFailedBatches.addAll(writeBatchesConcurrently(batches, config));
+        } else {
+            for (Map<String, List<WriteRequest>> batch : batches) {
+                List<FailedBatch> failedBatches = writeOneBatch(batch, config);
+                if (failedBatches != null) {
+                    totalFailedBatches.addAll(failedBatches);
+
+                    // If contains throttling exception, we do a backoff
+                    if (containsThrottlingException(failedBatches)) {
+                        try {
+                            Thread.sleep(1000 * 2);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new AmazonClientException(e.getMessage(), e);
+                        }
                     }
                 }
             }
@@ -1585,17 +1631,60 @@ public class DynamoDBMapper {
         return totalFailedBatches;
     }
 
+    /**
+     * Writes the batches with up to the configured batch concurrency of them in
+     * flight, and returns their failed batches in the order of the batches.
+     * While batches are throttled, the following ones back off exponentially
+     * before being sent.
+     */
+    private List<FailedBatch> writeBatchesConcurrently(
+            List<Map<String, List<WriteRequest>>> batches,
+            final DynamoDBMapperConfig config) {
+
+        final AtomicInteger throttledBatches = new AtomicInteger();
+        List<Callable<List<FailedBatch>>> tasks =
+                new ArrayList<Callable<List<FailedBatch>>>(batches.size());
+
+        for (final Map<String, List<WriteRequest>> batch : batches) {
+            tasks.add(new Callable<List<FailedBatch>>() {
+                @Override
+                public List<FailedBatch> call() {
+                    pauseExponentially(throttledBatches.get());
+
+                    List<FailedBatch> failedBatches = writeOneBatch(batch, config);
+                    if (containsThrottlingException(failedBatches)) {
+                        throttledBatches.incrementAndGet();
+                    } else {
+                        throttledBatches.set(0);
+                    }
+                    return failedBatches;
+                }
+            });
+        }
+
+        List<FailedBatch> failedBatches = new LinkedList<FailedBatch>();
+        for (List<FailedBatch> batchFailures : runConcurrently(tasks, getBatchConcurrency(config))) {
+            failedBatches.addAll(batchFailures);
+        }
+        return failedBatches;
+    }
+
     /**
      * Process one batch of requests(max 25). It will divide the batch if
      * receives request too large exception(the total size of the request is
      * beyond 1M).
      */
     List<FailedBatch> writeOneBatch(Map<String, List<WriteRequest>> batch) {
+        return writeOneBatch(batch, config);
+    }
+
+    private List<FailedBatch> writeOneBatch(Map<String, List<WriteRequest>> batch,
+            DynamoDBMapperConfig config) {
 
         List<FailedBatch> failedBatches = new LinkedList<FailedBatch>();
         Map<String, List<WriteRequest>> firstHalfBatch = new HashMap<String, List<WriteRequest>>();
         Map<String, List<WriteRequest>> secondHalfBatch = new HashMap<String, List<WriteRequest>>();
-        FailedBatch failedBatch = callUntilCompletion(batch);
+        FailedBatch failedBatch = callUntilCompletion(batch, config);
 
         if (failedBatch != null) {
             // If the exception is request entity too large, we divide the batch
@@ -1613,8 +1702,8 @@ public class DynamoDBMapper {
                     failedBatches.add(failedBatch);
                 } else {
                     divideBatch(batch, firstHalfBatch, secondHalfBatch);
-                    failedBatches.addAll(writeOneBatch(firstHalfBatch));
-                    failedBatches.addAll(writeOneBatch(secondHalfBatch));
+                    failedBatches.addAll(writeOneBatch(firstHalfBatch, config));
+                    failedBatches.addAll(writeOneBatch(secondHalfBatch, config));
                 }
 
             } else {
@@ -1682,20 +1771,28 @@ public class DynamoDBMapper {
      * occurs.
      */
 
-    private FailedBatch callUntilCompletion(Map<String, List<WriteRequest>> batch) {
+    private FailedBatch callUntilCompletion(Map<String, List<WriteRequest>> batch,
+            DynamoDBMapperConfig config) {
         BatchWriteItemResult result = null;
         int retries = 0;
         FailedBatch failedBatch = null;
         while (true) {
             try {
-                result = db.batchWriteItem(applyBatchOperationUserAgent(
-                        new BatchWriteItemRequest().withRequestItems(batch)));
+                BatchWriteItemRequest request = new BatchWriteItemRequest()
+                        .withRequestItems(batch);
+                if (config.getConsumedCapacityListener() != null) {
+                    request.setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+                }
+                result = db.batchWriteItem(applyBatchOperationUserAgent(request));
             } catch (Exception e) {
                 failedBatch = new FailedBatch();
                 failedBatch.setUnprocessedItems(batch);
                 failedBatch.setException(e);
                 return failedBatch;
             }
+            if (config.getConsumedCapacityListener() != null) {
+                reportConsumedCapacity(config, result.getConsumedCapacity());
+            }
             retries++;
             batch = result.getUnprocessedItems();
             if (batch.size() > 0) {
@@ -1726,8 +1823,10 @@ public class DynamoDBMapper {
      *
      * @param itemsToGet Key objects, corresponding to the class to fetch, with
      *            their primary key values set.
-     * @param config Only {@link DynamoDBMapperConfig#getTableNameOverride()}
-     *            and {@link DynamoDBMapperConfig#getConsistentReads()} are
+     * @param config Only {@link DynamoDBMapperConfig#getTableNameOverride()},
+     *            {@link DynamoDBMapperConfig#getConsistentReads()},
+     *            {@link DynamoDBMapperConfig#getBatchConcurrency()} and
+     *            {@link DynamoDBMapperConfig#getConsumedCapacityListener()} are
      *            considered.
      * @return A map of the loaded objects. Each key in the map is the name of a
      *         DynamoDB table. Each value in the map is a list of objects that
@@ -1743,6 +1842,8 @@ public class DynamoDBMapper {
             return new HashMap<String, List<Object>>();
         }
 
+        List<Map<String, KeysAndAttributes>> batches =
+                new ArrayList<Map<String, KeysAndAttributes>>();
         Map<String, KeysAndAttributes> requestItems = new HashMap<String, KeysAndAttributes>();
         Map<String, Class<?>> classesByTableName = new HashMap<String, Class<?>>();
         Map<String, List<Object>> resultSet = new HashMap<String, List<Object>>();
@@ -1770,20 +1871,162 @@ public class DynamoDBMapper {
             // Reach the maximum number which can be handled in a single
             // batchGet
             if (++count == 100) {
-                processBatchGetRequest(classesByTableName, requestItems, resultSet, config,
-                        converter);
-                requestItems.clear();
+                batches.add(requestItems);
+                requestItems = new HashMap<String, KeysAndAttributes>();
                 count = 0;
             }
         }
 
         if (count > 0) {
-            processBatchGetRequest(classesByTableName, requestItems, resultSet, config, converter);
+            batches.add(requestItems);
+        }
+
+        if (getBatchConcurrency(config) > 1 && batches.size() > 1) {
+            loadBatchesConcurrently(classesByTableName, batches, resultSet, config, converter);
+        } else {
+            for (Map<String, KeysAndAttributes> batch : batches) {
+                processBatchGetRequest(classesByTableName, batch, resultSet, config, converter);
+            }
         }
 
         return resultSet;
     }
 
+    /**
+     * Loads the batches with up to the configured batch concurrency of them in
+     * flight, and adds the loaded objects to the result set in the order of the
+     * batches.
+     */
+    private void loadBatchesConcurrently(
+            final Map<String, Class<?>> classesByTableName,
+            List<Map<String, KeysAndAttributes>> batches,
+            Map<String, List<Object>> resultSet,
+            final DynamoDBMapperConfig config,
+            final ItemConverter converter) {
+
+        List<Callable<Map<String, List<Object>>>> tasks =
+                new ArrayList<Callable<Map<String, List<Object>>>>(batches.size());
+
+        for (final Map<String, KeysAndAttributes> batch : batches) {
+            tasks.add(new Callable<Map<String, List<Object>>>() {
+                @Override
+                public Map<String, List<Object>> call() {
+                    Map<String, List<Object>> batchResult = new HashMap<String, List<Object>>();
+                    processBatchGetRequest(classesByTableName, batch, batchResult, config,
+                            converter);
+                    return batchResult;
+                }
+            });
+        }
+
+        for (Map<String, List<Object>> batchResult : runConcurrently(tasks,
+                getBatchConcurrency(config))) {
+            for (Entry<String, List<Object>> entry : batchResult.entrySet()) {
+                List<Object> objects = resultSet.get(entry.getKey());
+                if (objects == null) {
+                    resultSet.put(entry.getKey(), entry.getValue());
+                } else {
+                    objects.addAll(entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the tasks with at most {@code concurrency} of them at a time on a
+     * shared pool of threads, and returns their results in task order. An
+     * exception thrown by a task is rethrown once all tasks are done.
+     */
+    private static <T> List<T> runConcurrently(List<Callable<T>> tasks, int concurrency) {
+        CompletionService<T> completionService =
+                new ExecutorCompletionService<T>(BatchExecutor.INSTANCE);
+        List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+        try {
+            int running = 0;
+            for (Callable<T> task : tasks) {
+                if (running == concurrency) {
+                    completionService.take();
+                    running--;
+                }
+                futures.add(completionService.submit(task));
+                running++;
+            }
+            List<T> results = new ArrayList<T>(futures.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            // get() is called once every task has been submitted; wait for
+            // the others so that none outlives the call
+            for (Future<T> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException ignored) {
+                    // only the first failure is reported
+                }
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new AmazonClientException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Shared pool of daemon threads running the batches of batchWrite and
+     * batchLoad when more than one is sent at a time. Idle threads are
+     * released after a minute.
+     */
+    private static final class BatchExecutor {
+        static final ExecutorService INSTANCE = Executors.newCachedThreadPool(
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r,
+                                "dynamodb-mapper-batch-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    private static int getBatchConcurrency(DynamoDBMapperConfig config) {
+        Integer concurrency = config.getBatchConcurrency();
+        return concurrency == null ? 1 : concurrency;
+    }
+
+    /**
+     * Passes the consumed capacity of a batch to the listener. Callers check
+     * that there is one, as they do when asking for the capacity to be
+     * returned, so that results are not queried for nothing.
+     */
+    private static void reportConsumedCapacity(DynamoDBMapperConfig config,
+            List<ConsumedCapacity> consumedCapacities) {
+        ConsumedCapacityListener listener = config.getConsumedCapacityListener();
+        if (listener == null || consumedCapacities == null) {
+            return;
+        }
+        for (ConsumedCapacity consumedCapacity : consumedCapacities) {
+            listener.consumedCapacity(consumedCapacity);
+        }
+    }
+
     /**
      * Retrieves the attributes for multiple items from multiple tables using
      * their primary keys.
@@ -1849,6 +2092,9 @@ public class DynamoDBMapper {
         BatchGetItemRequest batchGetItemRequest = new BatchGetItemRequest()
                 .withRequestMetricCollector(config.getRequestMetricCollector());
         batchGetItemRequest.setRequestItems(requestItems);
+        if (config.getConsumedCapacityListener() != null) {
+            batchGetItemRequest.setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        }
 
         int retries = 0;
 
@@ -1869,6 +2115,9 @@ public class DynamoDBMapper {
 
             batchGetItemResult = db.batchGetItem(
                     applyBatchOperationUserAgent(batchGetItemRequest));
+            if (config.getConsumedCapacityListener() != null) {
+                reportConsumedCapacity(config, batchGetItemResult.getConsumedCapacity());
+            }
 
             Map<String, List<Map<String, AttributeValue>>> responses = batchGetItemResult
                     .getResponses();
@@ -2071,6 +2320,61 @@ public class DynamoDBMapper {
                 config.getPaginationLoadingStrategy(), config);
     }
 
+    /**
+     * Scans through an Amazon DynamoDB table on logically partitioned segments
+     * in parallel and streams the results, using the default configuration.
+     *
+     * @see DynamoDBMapper#parallelScanIterator(Class, DynamoDBScanExpression,
+     *      int, Executor, int, DynamoDBMapperConfig)
+     */
+    public <T> ParallelScanIterator<T> parallelScanIterator(Class<T> clazz,
+            DynamoDBScanExpression scanExpression, int totalSegments, Executor executor,
+            int prefetchPages) {
+        return parallelScanIterator(clazz, scanExpression, totalSegments, executor,
+                prefetchPages, config);
+    }
+
+    /**
+     * Scans through an Amazon DynamoDB table on logically partitioned segments
+     * in parallel and streams the results instead of accumulating them in a
+     * list. The pages of each segment are scanned and unmarshalled on the
+     * given executor, and the iterator returns the items in the order their
+     * pages arrive. Each segment keeps at most {@code prefetchPages} pages
+     * ahead of the consumer, so memory use is bounded by
+     * {@code totalSegments * prefetchPages} pages rather than by the size of
+     * the table.
+     * <p>
+     * The executor is not shut down by the scan. Call
+     * {@link ParallelScanIterator#close()} to stop a scan that isn't iterated
+     * to the end.
+     *
+     * @param <T> The type of the objects being returned.
+     * @param clazz The class annotated with DynamoDB annotations describing how
+     *            to store the object data in Amazon DynamoDB.
+     * @param scanExpression Details on how to run the scan, including any
+     *            filters to apply to limit results.
+     * @param totalSegments Number of total parallel scan segments. <b>Range:
+     *            </b>1 - 4096
+     * @param executor The executor to run the segment scans on.
+     * @param prefetchPages The maximum number of pages of a segment waiting to
+     *            be consumed, at least 1.
+     * @param config The configuration to use for this scan, which overrides the
+     *            default provided at object construction.
+     * @return An iterator over the objects constructed from the results of the
+     *         scan operation.
+     * @see ParallelScanIterator
+     */
+    public <T> ParallelScanIterator<T> parallelScanIterator(Class<T> clazz,
+            DynamoDBScanExpression scanExpression, int totalSegments, Executor executor,
+            int prefetchPages, DynamoDBMapperConfig config) {
+        config = mergeConfig(config);
+
+        List<ScanRequest> parallelScanRequests = createParallelScanRequestsFromExpression(clazz,
+                scanExpression, totalSegments, config);
+        return new ParallelScanIterator<T>(this, clazz, db, parallelScanRequests, executor,
+                prefetchPages, config);
+    }
+
     /**
      * Scans through an Amazon DynamoDB table and returns a single page of
      * matching results. The table to scan is determined by looking at the
@@ -2897,11 +3201,31 @@ public class DynamoDBMapper {
     ItemConverter getConverter(DynamoDBMapperConfig config) {
         ConversionSchema schema = config.getConversionSchema();
 
+        // The dependencies never change for this mapper, so converters (and
+        // the codecs they compile) are reused for the schema.
+        ItemConverter converter = converters.get(schema);
+        if (converter != null) {
+            return converter;
+        }
+
         ConversionSchema.Dependencies params = new ConversionSchema.Dependencies()
                 .with(DynamoDBReflector.class, reflector)
                 .with(S3ClientCache.class, s3cc);
 
-        return schema.getConverter(params);
+        converter = schema.getConverter(params);
+        converters.put(schema, converter);
+        return converter;
+    }
+
+    /**
+     * Returns the codec of the given class for the converter. The converters
+     * of custom conversion schemas get a codec that converts through them.
+     */
+    private ItemCodec getCodec(ItemConverter converter, Class<?> clazz) {
+        if (converter instanceof StandardItemConverter) {
+            return ((StandardItemConverter) converter).getCodec(clazz);
+        }
+        return ItemCodec.unresolved(reflector, clazz);
     }
 
     private void pauseExponentially(int retries) {
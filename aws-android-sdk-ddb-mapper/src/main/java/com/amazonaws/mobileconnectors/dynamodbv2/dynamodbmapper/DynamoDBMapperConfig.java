@@ -16,6 +16,9 @@
 package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
 
 import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+
+import java.util.concurrent.Executor;
 
 /**
  * Immutable configuration object for service call behavior. An instance of this
@@ -52,6 +55,10 @@ public class DynamoDBMapperConfig {
         private PaginationLoadingStrategy paginationLoadingStrategy;
         private RequestMetricCollector requestMetricCollector;
         private ConversionSchema conversionSchema;
+        private Integer batchConcurrency;
+        private ConsumedCapacityListener consumedCapacityListener;
+        private Integer prefetchPages;
+        private Executor prefetchExecutor;
 
         /**
          * Creates a new builder initialized with the {@link #DEFAULT} values.
@@ -65,6 +72,10 @@ public class DynamoDBMapperConfig {
             paginationLoadingStrategy = DEFAULT.getPaginationLoadingStrategy();
             requestMetricCollector = DEFAULT.getRequestMetricCollector();
             conversionSchema = DEFAULT.getConversionSchema();
+            batchConcurrency = DEFAULT.getBatchConcurrency();
+            consumedCapacityListener = DEFAULT.getConsumedCapacityListener();
+            prefetchPages = DEFAULT.getPrefetchPages();
+            prefetchExecutor = DEFAULT.getPrefetchExecutor();
         }
 
         /**
@@ -255,6 +266,110 @@ public class DynamoDBMapperConfig {
             return this;
         }
 
+        /**
+         * @return the current number of concurrent batch requests
+         */
+        public Integer getBatchConcurrency() {
+            return batchConcurrency;
+        }
+
+        /**
+         * @param value the new number of batch requests that batchWrite and
+         *            batchLoad send concurrently, at least 1
+         */
+        public void setBatchConcurrency(Integer value) {
+            if (value != null && value < 1) {
+                throw new IllegalArgumentException(
+                        "Batch concurrency must be at least 1, got " + value);
+            }
+            batchConcurrency = value;
+        }
+
+        /**
+         * @param value the new number of batch requests that batchWrite and
+         *            batchLoad send concurrently, at least 1
+         * @return this builder
+         */
+        public Builder withBatchConcurrency(Integer value) {
+            setBatchConcurrency(value);
+            return this;
+        }
+
+        /**
+         * @return the currently-configured consumed capacity listener
+         */
+        public ConsumedCapacityListener getConsumedCapacityListener() {
+            return consumedCapacityListener;
+        }
+
+        /**
+         * @param value the new consumed capacity listener
+         */
+        public void setConsumedCapacityListener(ConsumedCapacityListener value) {
+            consumedCapacityListener = value;
+        }
+
+        /**
+         * @param value the new consumed capacity listener
+         * @return this builder
+         */
+        public Builder withConsumedCapacityListener(ConsumedCapacityListener value) {
+            setConsumedCapacityListener(value);
+            return this;
+        }
+
+        /**
+         * @return the current number of pages fetched ahead in PREFETCH mode
+         */
+        public Integer getPrefetchPages() {
+            return prefetchPages;
+        }
+
+        /**
+         * @param value the new maximum number of pages fetched ahead of the
+         *            iterator in PREFETCH mode, at least 1
+         */
+        public void setPrefetchPages(Integer value) {
+            if (value != null && value < 1) {
+                throw new IllegalArgumentException(
+                        "Prefetch pages must be at least 1, got " + value);
+            }
+            prefetchPages = value;
+        }
+
+        /**
+         * @param value the new maximum number of pages fetched ahead of the
+         *            iterator in PREFETCH mode, at least 1
+         * @return this builder
+         */
+        public Builder withPrefetchPages(Integer value) {
+            setPrefetchPages(value);
+            return this;
+        }
+
+        /**
+         * @return the currently-configured prefetch executor
+         */
+        public Executor getPrefetchExecutor() {
+            return prefetchExecutor;
+        }
+
+        /**
+         * @param value the new executor fetching pages in PREFETCH mode
+         */
+        public void setPrefetchExecutor(Executor value) {
+            prefetchExecutor = value;
+        }
+
+        /**
+         * @param value the new executor fetching pages in PREFETCH mode
+         * @return this builder
+         */
+        public Builder withPrefetchExecutor(Executor value) {
+            setPrefetchExecutor(value);
+            return this;
+        }
+
         /**
          * Builds a new {@code DynamoDBMapperConfig} object.
          *
@@ -269,7 +384,11 @@ public class DynamoDBMapperConfig {
                     objectTableNameResolver,
                     paginationLoadingStrategy,
                     requestMetricCollector,
-                    conversionSchema);
+                    conversionSchema,
+                    batchConcurrency,
+                    consumedCapacityListener,
+                    prefetchPages,
+                    prefetchExecutor);
         }
     }
 
@@ -360,7 +479,24 @@ public class DynamoDBMapperConfig {
          * Paginated list will eagerly load all the paginated results from
          * DynamoDB as soon as the list is initialized.
          */
-        EAGER_LOADING
+        EAGER_LOADING,
+
+        /**
+         * Like ITERATION_ONLY, the list can only be iterated once and other
+         * list operations throw UnsupportedOperationException. In addition,
+         * once the iterator is retrieved, the next pages are fetched in the
+         * background while the current one is consumed, so the iterator
+         * doesn't wait for a round trip at every page boundary. At most
+         * {@link DynamoDBMapperConfig#getPrefetchPages()} pages are held ahead
+         * of the iterator; fetching resumes as the iterator consumes them.
+         * <p>
+         * Pages are fetched on
+         * {@link DynamoDBMapperConfig#getPrefetchExecutor()}. Call
+         * {@link PaginatedList#cancelPrefetch()} to stop fetching when the
+         * iteration is abandoned; otherwise at most the configured number of
+         * pages is fetched after the iterator is last used.
+         */
+        PREFETCH
     }
 
     /**
@@ -473,6 +609,24 @@ public class DynamoDBMapperConfig {
 
     }
 
+    /**
+     * Receives the capacity consumed by the batchWrite and batchLoad requests
+     * of a mapper, one table at a time. When a listener is configured, these
+     * requests ask DynamoDB for their total consumed capacity. With a batch
+     * concurrency above 1 the listener is called from several threads at
+     * once, so it must be thread-safe.
+     */
+    public static interface ConsumedCapacityListener {
+
+        /**
+         * Called after each batch request that consumed capacity on a table.
+         *
+         * @param consumedCapacity the table name and the capacity units
+         *            consumed on it by one request
+         */
+        public void consumedCapacity(ConsumedCapacity consumedCapacity);
+    }
+
     /**
      * Default implementation of {@link TableNameResolver} that mimics the
      * behavior of DynamoDBMapper before the addition of
@@ -511,6 +665,10 @@ public class DynamoDBMapperConfig {
     private final PaginationLoadingStrategy paginationLoadingStrategy;
     private final RequestMetricCollector requestMetricCollector;
     private final ConversionSchema conversionSchema;
+    private final Integer batchConcurrency;
+    private final ConsumedCapacityListener consumedCapacityListener;
+    private final Integer prefetchPages;
+    private final Executor prefetchExecutor;
 
     /**
      * Legacy constructor, using default PaginationLoadingStrategy
@@ -591,6 +749,34 @@ public class DynamoDBMapperConfig {
             RequestMetricCollector requestMetricCollector,
             ConversionSchema conversionSchema) {
 
+        this(saveBehavior,
+                consistentReads,
+                tableNameOverride,
+                tableNameResolver,
+                objectTableNameResolver,
+                paginationLoadingStrategy,
+                requestMetricCollector,
+                conversionSchema,
+                null,
+                null,
+                null,
+                null);
+    }
+
+    private DynamoDBMapperConfig(
+            SaveBehavior saveBehavior,
+            ConsistentReads consistentReads,
+            TableNameOverride tableNameOverride,
+            TableNameResolver tableNameResolver,
+            ObjectTableNameResolver objectTableNameResolver,
+            PaginationLoadingStrategy paginationLoadingStrategy,
+            RequestMetricCollector requestMetricCollector,
+            ConversionSchema conversionSchema,
+            Integer batchConcurrency,
+            ConsumedCapacityListener consumedCapacityListener,
+            Integer prefetchPages,
+            Executor prefetchExecutor) {
+
         this.saveBehavior = saveBehavior;
         this.consistentReads = consistentReads;
         this.tableNameOverride = tableNameOverride;
@@ -599,6 +785,10 @@ public class DynamoDBMapperConfig {
         this.paginationLoadingStrategy = paginationLoadingStrategy;
         this.requestMetricCollector = requestMetricCollector;
         this.conversionSchema = conversionSchema;
+        this.batchConcurrency = batchConcurrency;
+        this.consumedCapacityListener = consumedCapacityListener;
+        this.prefetchPages = prefetchPages;
+        this.prefetchExecutor = prefetchExecutor;
     }
 
     /**
@@ -699,6 +889,10 @@ public class DynamoDBMapperConfig {
                     defaults.getPaginationLoadingStrategy();
             this.requestMetricCollector = defaults.getRequestMetricCollector();
             this.conversionSchema = defaults.getConversionSchema();
+            this.batchConcurrency = defaults.getBatchConcurrency();
+            this.consumedCapacityListener = defaults.getConsumedCapacityListener();
+            this.prefetchPages = defaults.getPrefetchPages();
+            this.prefetchExecutor = defaults.getPrefetchExecutor();
 
         } else {
 
@@ -736,6 +930,22 @@ public class DynamoDBMapperConfig {
                     ? defaults.getConversionSchema()
                     : overrides.getConversionSchema();
 
+            this.batchConcurrency = (overrides.getBatchConcurrency() == null)
+                    ? defaults.getBatchConcurrency()
+                    : overrides.getBatchConcurrency();
+
+            this.consumedCapacityListener = (overrides.getConsumedCapacityListener() == null)
+                    ? defaults.getConsumedCapacityListener()
+                    : overrides.getConsumedCapacityListener();
+
+            this.prefetchPages = (overrides.getPrefetchPages() == null)
+                    ? defaults.getPrefetchPages()
+                    : overrides.getPrefetchPages();
+
+            this.prefetchExecutor = (overrides.getPrefetchExecutor() == null)
+                    ? defaults.getPrefetchExecutor()
+                    : overrides.getPrefetchExecutor();
+
         }
     }
 
@@ -812,9 +1022,48 @@ public class DynamoDBMapperConfig {
         return conversionSchema;
     }
 
+    /**
+     * Returns the number of batch requests that
+     * {@link DynamoDBMapper#batchWrite(java.util.List, java.util.List, DynamoDBMapperConfig)}
+     * and {@link DynamoDBMapper#batchLoad(java.util.List, DynamoDBMapperConfig)}
+     * send concurrently, or null if not specified. With the default of 1 the
+     * batches are sent one after the other.
+     */
+    public Integer getBatchConcurrency() {
+        return batchConcurrency;
+    }
+
+    /**
+     * Returns the listener receiving the capacity consumed by batch requests,
+     * or null if not specified.
+     */
+    public ConsumedCapacityListener getConsumedCapacityListener() {
+        return consumedCapacityListener;
+    }
+
+    /**
+     * Returns the maximum number of pages a paginated list fetches ahead of
+     * its iterator with {@link PaginationLoadingStrategy#PREFETCH}, or null if
+     * not specified.
+     */
+    public Integer getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    /**
+     * Returns the executor fetching pages with
+     * {@link PaginationLoadingStrategy#PREFETCH}, or null to use a shared pool
+     * of daemon threads.
+     */
+    public Executor getPrefetchExecutor() {
+        return prefetchExecutor;
+    }
+
     /**
      * Default configuration uses UPDATE behavior for saves and EVENTUALly
      * consistent reads, with no table name override and lazy-loading strategy.
+     * Batch requests are sent one at a time, and up to two pages are fetched
+     * ahead in PREFETCH mode.
      */
     public static final DynamoDBMapperConfig DEFAULT = new DynamoDBMapperConfig(
             SaveBehavior.UPDATE,
@@ -824,5 +1073,9 @@ public class DynamoDBMapperConfig {
             null, // ObjectTableNameResolver
             PaginationLoadingStrategy.LAZY_LOADING,
             null, // RequestMetricCollector
-            ConversionSchemas.DEFAULT);
+            ConversionSchemas.DEFAULT,
+            1, // BatchConcurrency
+            null, // ConsumedCapacityListener
+            2, // PrefetchPages
+            null); // PrefetchExecutor
 }
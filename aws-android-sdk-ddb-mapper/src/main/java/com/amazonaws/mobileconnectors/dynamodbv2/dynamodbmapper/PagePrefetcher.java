@@ -0,0 +1,195 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
+
+import com.amazonaws.AmazonClientException;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches the pages of a {@link PaginatedList} ahead of its iterator, for the
+ * PREFETCH pagination loading strategy. Pages are fetched one after the other,
+ * since each request needs the key returned by the previous one, until
+ * {@code maxPages} pages are waiting to be taken; fetching resumes when the
+ * iterator takes one.
+ * <p>
+ * {@link #take()} must be called from a single thread.
+ */
+final class PagePrefetcher<T> {
+
+    private final PaginatedList<T> list;
+    private final Executor executor;
+    private final int maxPages;
+
+    private final BlockingQueue<Page<T>> pages = new LinkedBlockingQueue<Page<T>>();
+
+    // guarded by this
+    private int queuedPages;
+    private boolean fetching;
+    private boolean done;
+    private boolean cancelled;
+
+    // only accessed by the consuming thread
+    private boolean finished;
+
+    PagePrefetcher(PaginatedList<T> list, Executor executor, int maxPages) {
+        this.list = list;
+        this.executor = executor == null ? DefaultExecutor.INSTANCE : executor;
+        this.maxPages = maxPages;
+        synchronized (this) {
+            if (list.atEndOfResults()) {
+                done = true;
+                finished = true;
+            } else {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * Waits for the next page.
+     *
+     * @return the items of the next page, or null at the end of the results
+     */
+    List<T> take() {
+        if (finished) {
+            return null;
+        }
+        Page<T> page;
+        try {
+            page = pages.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new AmazonClientException("Interrupted while waiting for the next page.", e);
+        }
+
+        if (page.failure != null) {
+            finished = true;
+            throw page.failure;
+        }
+        if (page.items == null) {
+            // cancelled
+            finished = true;
+            return null;
+        }
+        synchronized (this) {
+            queuedPages--;
+            if (!done && !fetching && !cancelled) {
+                schedule();
+            }
+        }
+        if (page.last) {
+            finished = true;
+        }
+        return page.items;
+    }
+
+    /**
+     * Stops fetching further pages and discards the ones not taken yet. A
+     * fetch already in flight completes, and {@link #take()} returns null from
+     * then on.
+     */
+    synchronized void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            pages.clear();
+            pages.add(new Page<T>(null, true, null));
+        }
+    }
+
+    // must be called with the monitor held
+    private void schedule() {
+        fetching = true;
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    fetch();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fetching = false;
+            done = true;
+            pages.add(new Page<T>(null, true, new AmazonClientException(
+                    "The executor rejected a page prefetch task.", e)));
+        }
+    }
+
+    private void fetch() {
+        Page<T> page;
+        try {
+            List<T> items = list.fetchNextPage();
+            page = new Page<T>(items, list.atEndOfResults(), null);
+        } catch (RuntimeException e) {
+            page = new Page<T>(null, true, e);
+        }
+
+        synchronized (this) {
+            done = page.last;
+            if (cancelled) {
+                fetching = false;
+                return;
+            }
+            queuedPages++;
+            pages.add(page);
+            if (!done && queuedPages < maxPages) {
+                schedule();
+            } else {
+                fetching = false;
+            }
+        }
+    }
+
+    private static final class Page<T> {
+        private final List<T> items;
+        private final boolean last;
+        private final RuntimeException failure;
+
+        private Page(List<T> items, boolean last, RuntimeException failure) {
+            this.items = items;
+            this.last = last;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Shared pool of daemon threads used when no prefetch executor is
+     * configured. Idle threads are released after a minute.
+     */
+    private static final class DefaultExecutor {
+        static final ExecutorService INSTANCE = Executors.newCachedThreadPool(
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r,
+                                "dynamodb-mapper-prefetch-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+}
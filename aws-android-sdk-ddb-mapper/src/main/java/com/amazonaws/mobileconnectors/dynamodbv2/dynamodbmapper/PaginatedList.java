@@ -26,6 +26,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
 
 /**
  * Unmodifiable list supporting paginated result sets from Amazon DynamoDB.
@@ -43,6 +44,8 @@ public abstract class PaginatedList<T> implements List<T> {
 
     private static final String ITERATION_ONLY_UNSUPPORTED_OPERATION_MESSAGE = " is not supported when using ITERATION_ONLY configuration.";
 
+    private static final String PREFETCH_UNSUPPORTED_OPERATION_MESSAGE = " is not supported when using PREFETCH configuration.";
+
     /**
      * Reference to the DynamoDB mapper for marshalling DynamoDB attributes back
      * into objects
@@ -76,10 +79,19 @@ public abstract class PaginatedList<T> implements List<T> {
 
     /**
      * Keeps track on whether an iterator of the list has been retrieved. Only
-     * updated and checked when the list is in ITERATION_ONLY mode.
+     * updated and checked when the list is in ITERATION_ONLY or PREFETCH mode.
      */
     private boolean iterationStarted = false;
 
+    /** Maximum number of pages fetched ahead in PREFETCH mode */
+    private final int prefetchPages;
+
+    /** Executor fetching pages in PREFETCH mode, null for the shared pool */
+    private final Executor prefetchExecutor;
+
+    /** Fetches pages ahead of the iterator in PREFETCH mode */
+    private PagePrefetcher<T> prefetcher;
+
     /**
      * Constructs a PaginatedList instance using the default
      * PaginationLoadingStrategy
@@ -103,6 +115,24 @@ public abstract class PaginatedList<T> implements List<T> {
      */
     public PaginatedList(DynamoDBMapper mapper, Class<T> clazz, AmazonDynamoDB dynamo,
             PaginationLoadingStrategy paginationLoadingStrategy) {
+        this(mapper, clazz, dynamo, paginationLoadingStrategy, null);
+    }
+
+    /**
+     * Constructs a PaginatedList instance.
+     *
+     * @param mapper The mapper for marshalling DynamoDB attributes into
+     *            objects.
+     * @param clazz The class of the annotated model.
+     * @param dynamo The DynamoDB client for making low-level request calls.
+     * @param paginationLoadingStrategy The strategy used for loading paginated
+     *            results. If null value is provided, LAZY_LOADING will be set
+     *            by default.
+     * @param config The configuration providing the prefetch settings, or null
+     *            for the defaults.
+     */
+    protected PaginatedList(DynamoDBMapper mapper, Class<T> clazz, AmazonDynamoDB dynamo,
+            PaginationLoadingStrategy paginationLoadingStrategy, DynamoDBMapperConfig config) {
         this.mapper = mapper;
         this.clazz = clazz;
         this.dynamo = dynamo;
@@ -111,6 +141,11 @@ public abstract class PaginatedList<T> implements List<T> {
 
         this.allResults = new ArrayList<T>();
 
+        Integer pages = config == null ? null : config.getPrefetchPages();
+        this.prefetchPages = pages == null
+                ? DynamoDBMapperConfig.DEFAULT.getPrefetchPages() : pages;
+        this.prefetchExecutor = config == null ? null : config.getPrefetchExecutor();
+
         // Ideally, we should eagerly load all results here as soon as
         // EAGER_LOADING is configured.
         // But the implementation of loadAllResults() relies on a fully
@@ -199,13 +234,92 @@ public abstract class PaginatedList<T> implements List<T> {
      * only retrieved once, and any previously loaded results will be cleared in
      * the memory during the iteration.
      * </p>
+     * <p>
+     * If it is configured with PREFETCH mode, the iterator could also be only
+     * retrieved once, and the next pages are fetched in the background as soon
+     * as it is.
+     * </p>
      */
     @Override
     public Iterator<T> iterator() {
+        if (paginationLoadingStrategy == PaginationLoadingStrategy.PREFETCH) {
+            return new PrefetchingIterator();
+        }
         return new PaginatedListIterator(
                 paginationLoadingStrategy == PaginationLoadingStrategy.ITERATION_ONLY);
     }
 
+    /**
+     * Stops fetching pages in the background in PREFETCH mode, for example
+     * when the iteration is abandoned before the end of the results. The
+     * iterator returns no more results afterwards. Has no effect in other
+     * modes.
+     */
+    public synchronized void cancelPrefetch() {
+        if (prefetcher != null) {
+            prefetcher.cancel();
+        }
+    }
+
+    private void startIteration() {
+        synchronized (this) {
+            if (iterationStarted) {
+                throw new UnsupportedOperationException("The list could only be iterated once in "
+                        + paginationLoadingStrategy + " mode.");
+            }
+            iterationStarted = true;
+        }
+    }
+
+    /**
+     * Iterator for the PREFETCH mode. The results already loaded are handed
+     * out first and released, then the pages are taken from the prefetcher as
+     * they arrive.
+     */
+    private class PrefetchingIterator implements Iterator<T> {
+
+        private final PagePrefetcher<T> pages;
+
+        private Iterator<T> innerIterator;
+
+        public PrefetchingIterator() {
+            startIteration();
+
+            innerIterator = new ArrayList<T>(allResults).iterator();
+            allResults.clear();
+            pages = new PagePrefetcher<T>(PaginatedList.this, prefetchExecutor,
+                    prefetchPages);
+            synchronized (PaginatedList.this) {
+                prefetcher = pages;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!innerIterator.hasNext()) {
+                List<T> page = pages.take();
+                if (page == null) {
+                    return false;
+                }
+                innerIterator = page.iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return innerIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(UNMODIFIABLE_MESSAGE);
+        }
+    }
+
     private class PaginatedListIterator implements Iterator<T> {
         /**
          * Whether this iterator is constructed by a PaginatedList in
@@ -228,13 +342,7 @@ public abstract class PaginatedList<T> implements List<T> {
             this.iterationOnly = iterationOnly;
 
             if (iterationOnly) {
-                synchronized (PaginatedList.this) {
-                    if (iterationStarted) {
-                        throw new UnsupportedOperationException(
-                                "The list could only be iterated once in ITERATION_ONLY mode.");
-                    }
-                    iterationStarted = true;
-                }
+                startIteration();
 
                 allResultsCopy = null; // not needed for ITERATION_ONLY mode
                 innerIterator = allResults.iterator();
@@ -509,5 +617,9 @@ public abstract class PaginatedList<T> implements List<T> {
             throw new UnsupportedOperationException(methodSignature
                     + ITERATION_ONLY_UNSUPPORTED_OPERATION_MESSAGE);
         }
+        if (this.paginationLoadingStrategy == PaginationLoadingStrategy.PREFETCH) {
+            throw new UnsupportedOperationException(methodSignature
+                    + PREFETCH_UNSUPPORTED_OPERATION_MESSAGE);
+        }
     };
 }
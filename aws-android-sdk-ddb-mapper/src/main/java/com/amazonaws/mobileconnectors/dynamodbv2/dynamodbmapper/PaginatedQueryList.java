@@ -54,7 +54,7 @@ public class PaginatedQueryList<T> extends PaginatedList<T> {
             QueryResult queryResult,
             PaginationLoadingStrategy paginationLoadingStrategy,
             DynamoDBMapperConfig config) {
-        super(mapper, clazz, dynamo, paginationLoadingStrategy);
+        super(mapper, clazz, dynamo, paginationLoadingStrategy, config);
 
         this.queryRequest = queryRequest;
         this.queryResult = queryResult;
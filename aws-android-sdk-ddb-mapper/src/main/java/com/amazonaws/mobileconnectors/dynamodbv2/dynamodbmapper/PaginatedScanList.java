@@ -54,7 +54,7 @@ public class PaginatedScanList<T> extends PaginatedList<T> {
             ScanResult scanResult,
             PaginationLoadingStrategy paginationLoadingStrategy,
             DynamoDBMapperConfig config) {
-        super(mapper, clazz, dynamo, paginationLoadingStrategy);
+        super(mapper, clazz, dynamo, paginationLoadingStrategy, config);
 
         this.scanRequest = scanRequest;
         this.scanResult = scanResult;
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Streams the results of a parallel scan. Each segment is scanned one page at
+ * a time on a caller-supplied executor, and the pages are handed out in the
+ * order they arrive, whichever segment they come from. Items are not retained
+ * once they have been returned by {@link #next()}.
+ * <p>
+ * A segment stops scanning when it has {@code prefetchPages} pages waiting to
+ * be consumed, and resumes when the consumer takes one of them, so at most
+ * {@code totalSegments * prefetchPages} pages are held in memory regardless of
+ * the size of the table. A segment doesn't occupy an executor thread while it
+ * is paused.
+ * <p>
+ * The iterator should be used from a single thread. Call {@link #close()} to
+ * stop the scan before the end of the table; scans already in flight complete
+ * and their results are discarded. Failures of a segment are thrown by
+ * {@link #hasNext()} or {@link #next()} once the pages before them have been
+ * consumed, and stop the other segments.
+ *
+ * @param <T> The type of the objects being returned.
+ * @see DynamoDBMapper#parallelScanIterator(Class, DynamoDBScanExpression, int,
+ *      Executor, int, DynamoDBMapperConfig)
+ */
+public class ParallelScanIterator<T> implements Iterator<T>, Closeable {
+
+    private final DynamoDBMapper mapper;
+    private final Class<T> clazz;
+    private final AmazonDynamoDB dynamo;
+    private final DynamoDBMapperConfig config;
+    private final Executor executor;
+    private final int prefetchPages;
+    private final List<Segment> segments;
+
+    /** Pages of all segments, in arrival order */
+    private final BlockingQueue<Page> pages = new LinkedBlockingQueue<Page>();
+
+    /** Guards the scheduling state of the segments */
+    private final Object lock = new Object();
+
+    // guarded by lock
+    private boolean closed;
+
+    // only accessed by the consuming thread
+    private Iterator<T> current = Collections.<T> emptyList().iterator();
+    private int finishedSegments;
+    private AmazonClientException failure;
+
+    ParallelScanIterator(DynamoDBMapper mapper, Class<T> clazz, AmazonDynamoDB dynamo,
+            List<ScanRequest> parallelScanRequests, Executor executor, int prefetchPages,
+            DynamoDBMapperConfig config) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        if (prefetchPages < 1) {
+            throw new IllegalArgumentException("prefetchPages must be at least 1");
+        }
+        this.mapper = mapper;
+        this.clazz = clazz;
+        this.dynamo = dynamo;
+        this.config = config;
+        this.executor = executor;
+        this.prefetchPages = prefetchPages;
+        this.segments = new ArrayList<Segment>(parallelScanRequests.size());
+        for (ScanRequest request : parallelScanRequests) {
+            segments.add(new Segment(request));
+        }
+        synchronized (lock) {
+            for (Segment segment : segments) {
+                schedule(segment);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (finishedSegments == segments.size()) {
+                return false;
+            }
+            take();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException(
+                "Parallel scan results can't be removed through the iterator.");
+    }
+
+    /**
+     * Stops scheduling further scans and discards the pages that haven't been
+     * consumed yet. The iterator returns no more items after it is closed.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        pages.clear();
+        current = Collections.<T> emptyList().iterator();
+        finishedSegments = segments.size();
+    }
+
+    /**
+     * Waits for the next page of any segment and resumes its segment if it was
+     * paused because its prefetch limit had been reached.
+     */
+    private void take() {
+        Page page;
+        try {
+            page = pages.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new AmazonClientException(
+                    "Interrupted while waiting for parallel scan results.", e);
+        }
+
+        if (page.failure != null) {
+            close();
+            failure = page.failure;
+            return;
+        }
+
+        Segment segment = page.segment;
+        synchronized (lock) {
+            segment.queuedPages--;
+            if (segment.done) {
+                if (segment.queuedPages == 0) {
+                    finishedSegments++;
+                }
+            } else if (!segment.scanning && !closed) {
+                schedule(segment);
+            }
+        }
+        current = page.items.iterator();
+    }
+
+    // must be called with lock held
+    private void schedule(final Segment segment) {
+        segment.scanning = true;
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    scanNextPage(segment);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            segment.scanning = false;
+            pages.add(new Page(segment, new AmazonClientException(
+                    "The executor rejected a parallel scan task.", e)));
+        }
+    }
+
+    /**
+     * Scans and unmarshalls the next page of a segment on the executor, then
+     * schedules the page after it unless the segment's prefetch limit has been
+     * reached.
+     */
+    private void scanNextPage(Segment segment) {
+        List<T> items;
+        Map<String, AttributeValue> lastEvaluatedKey;
+        try {
+            ScanResult result = dynamo.scan(DynamoDBMapper.applyUserAgent(
+                    segment.request.withExclusiveStartKey(segment.exclusiveStartKey)));
+            items = mapper.marshallIntoObjects(mapper.toParameters(result.getItems(), clazz,
+                    segment.request.getTableName(), config));
+            lastEvaluatedKey = result.getLastEvaluatedKey();
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                segment.scanning = false;
+            }
+            pages.add(new Page(segment, e instanceof AmazonClientException
+                    ? (AmazonClientException) e
+                    : new AmazonClientException("Failed to scan segment "
+                            + segment.request.getSegment() + ": " + e.getMessage(), e)));
+            return;
+        }
+
+        synchronized (lock) {
+            segment.exclusiveStartKey = lastEvaluatedKey;
+            segment.done = lastEvaluatedKey == null;
+            segment.queuedPages++;
+            pages.add(new Page(segment, items));
+            if (!segment.done && !closed && segment.queuedPages < prefetchPages) {
+                schedule(segment);
+            } else {
+                segment.scanning = false;
+            }
+        }
+    }
+
+    /**
+     * The scan state of a segment. Fields are guarded by the iterator's lock,
+     * except for {@code exclusiveStartKey} which is only used by the single
+     * scan of the segment in flight.
+     */
+    private static final class Segment {
+        private final ScanRequest request;
+        private Map<String, AttributeValue> exclusiveStartKey;
+        private int queuedPages;
+        private boolean scanning;
+        private boolean done;
+
+        private Segment(ScanRequest request) {
+            this.request = request;
+        }
+    }
+
+    private final class Page {
+        private final Segment segment;
+        private final List<T> items;
+        private final AmazonClientException failure;
+
+        private Page(Segment segment, List<T> items) {
+            this.segment = segment;
+            this.items = items;
+            this.failure = null;
+        }
+
+        private Page(Segment segment, AmazonClientException failure) {
+            this.segment = segment;
+            this.items = null;
+            this.failure = failure;
+        }
+    }
+}
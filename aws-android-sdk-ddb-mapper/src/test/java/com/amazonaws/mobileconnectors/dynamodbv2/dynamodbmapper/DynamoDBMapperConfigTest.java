@@ -17,20 +17,26 @@ package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
 import com.amazonaws.Request;
 import com.amazonaws.Response;
 import com.amazonaws.metrics.RequestMetricCollector;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.ConsistentReads;
+import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.ConsumedCapacityListener;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.ObjectTableNameResolver;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.PaginationLoadingStrategy;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.SaveBehavior;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.TableNameOverride;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.TableNameResolver;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
 
 import org.junit.Test;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
 public class DynamoDBMapperConfigTest {
 
     @Test
@@ -190,6 +196,67 @@ public class DynamoDBMapperConfigTest {
         assertEquals(copy.getTableNameResolver(), conf.getTableNameResolver());
     }
 
+    @Test
+    public void testBatchOptions() {
+        assertEquals(Integer.valueOf(1), DynamoDBMapperConfig.DEFAULT.getBatchConcurrency());
+
+        ConsumedCapacityListener listener = new ConsumedCapacityListener() {
+            @Override
+            public void consumedCapacity(ConsumedCapacity consumedCapacity) {
+            }
+        };
+        DynamoDBMapperConfig conf = new DynamoDBMapperConfig.Builder()
+                .withBatchConcurrency(8)
+                .withConsumedCapacityListener(listener)
+                .build();
+        assertEquals(Integer.valueOf(8), conf.getBatchConcurrency());
+        assertSame(listener, conf.getConsumedCapacityListener());
+
+        DynamoDBMapperConfig merged = new DynamoDBMapperConfig(DynamoDBMapperConfig.DEFAULT,
+                conf);
+        assertEquals(Integer.valueOf(8), merged.getBatchConcurrency());
+        assertSame(listener, merged.getConsumedCapacityListener());
+
+        merged = new DynamoDBMapperConfig(conf,
+                new DynamoDBMapperConfig(SaveBehavior.CLOBBER));
+        assertEquals(Integer.valueOf(8), merged.getBatchConcurrency());
+        assertSame(listener, merged.getConsumedCapacityListener());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBatchConcurrencyMustBePositive() {
+        new DynamoDBMapperConfig.Builder().withBatchConcurrency(0);
+    }
+
+    @Test
+    public void testPrefetchOptions() {
+        assertEquals(Integer.valueOf(2), DynamoDBMapperConfig.DEFAULT.getPrefetchPages());
+        assertNull(DynamoDBMapperConfig.DEFAULT.getPrefetchExecutor());
+
+        Executor executor = Executors.newSingleThreadExecutor();
+        DynamoDBMapperConfig conf = new DynamoDBMapperConfig.Builder()
+                .withPaginationLoadingStrategy(PaginationLoadingStrategy.PREFETCH)
+                .withPrefetchPages(4)
+                .withPrefetchExecutor(executor)
+                .build();
+
+        DynamoDBMapperConfig merged = new DynamoDBMapperConfig(DynamoDBMapperConfig.DEFAULT,
+                conf);
+        assertEquals(PaginationLoadingStrategy.PREFETCH, merged.getPaginationLoadingStrategy());
+        assertEquals(Integer.valueOf(4), merged.getPrefetchPages());
+        assertSame(executor, merged.getPrefetchExecutor());
+
+        merged = new DynamoDBMapperConfig(conf,
+                new DynamoDBMapperConfig(SaveBehavior.CLOBBER));
+        assertEquals(Integer.valueOf(4), merged.getPrefetchPages());
+        assertSame(executor, merged.getPrefetchExecutor());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPrefetchPagesMustBePositive() {
+        new DynamoDBMapperConfig.Builder().withPrefetchPages(0);
+    }
+
     private static class TestObjectTableNameResolver implements ObjectTableNameResolver {
 
         @Override
@@ -27,6 +27,7 @@ import com.amazonaws.AmazonServiceException;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.HashKeyAutoGenerated;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapper.FailedBatch;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapper.SaveObjectHandler;
+import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.ConsumedCapacityListener;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.PaginationLoadingStrategy;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClient;
@@ -37,22 +38,30 @@ import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
 import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
 import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
 import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
 import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
 import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
 import com.amazonaws.services.dynamodbv2.model.WriteRequest;
 import com.amazonaws.util.StringUtils;
 
 import org.easymock.Capture;
 import org.easymock.CaptureType;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DynamoDBMapperTest {
 
@@ -254,6 +263,109 @@ public class DynamoDBMapperTest {
 
     }
 
+    @Test
+    public void testConcurrentBatchWriteReportsConsumedCapacity() {
+        List<Object> objectsToWrite = new ArrayList<Object>();
+        for (int i = 0; i < 60; i++) {
+            objectsToWrite.add(new MockTwoValuePlusVersionClass("PrimaryKey" + i,
+                    "Value" + i, null));
+        }
+
+        final AtomicInteger capacityReports = new AtomicInteger();
+        DynamoDBMapperConfig batchConfig = new DynamoDBMapperConfig.Builder()
+                .withBatchConcurrency(3)
+                .withConsumedCapacityListener(new ConsumedCapacityListener() {
+                    @Override
+                    public void consumedCapacity(ConsumedCapacity consumedCapacity) {
+                        assertEquals("aws-android-sdk-dynamodbmapper-test",
+                                consumedCapacity.getTableName());
+                        capacityReports.incrementAndGet();
+                    }
+                }).build();
+
+        // Captures aren't thread-safe, so the requests are collected by the
+        // answer instead
+        final List<BatchWriteItemRequest> requests =
+                Collections.synchronizedList(new ArrayList<BatchWriteItemRequest>());
+        EasyMock.reset(mockClient);
+        EasyMock.expect(mockClient.batchWriteItem(anyObject(BatchWriteItemRequest.class)))
+                .andAnswer(new IAnswer<BatchWriteItemResult>() {
+                    @Override
+                    public BatchWriteItemResult answer() {
+                        requests.add((BatchWriteItemRequest) EasyMock.getCurrentArguments()[0]);
+                        return new BatchWriteItemResult()
+                                .withUnprocessedItems(new HashMap<String, List<WriteRequest>>())
+                                .withConsumedCapacity(new ConsumedCapacity()
+                                        .withTableName("aws-android-sdk-dynamodbmapper-test")
+                                        .withCapacityUnits(25.0));
+                    }
+                }).times(3);
+        EasyMock.replay(mockClient);
+
+        List<FailedBatch> failedBatches = mapper.batchWrite(objectsToWrite,
+                new ArrayList<Object>(), batchConfig);
+
+        EasyMock.verify(mockClient);
+        assertEquals(0, failedBatches.size());
+        assertEquals(3, capacityReports.get());
+        int written = 0;
+        for (BatchWriteItemRequest request : requests) {
+            assertEquals("TOTAL", request.getReturnConsumedCapacity());
+            for (List<WriteRequest> writeRequests : request.getRequestItems().values()) {
+                written += writeRequests.size();
+            }
+        }
+        assertEquals(60, written);
+    }
+
+    @Test
+    public void testSaveAndDeleteAssertVersion() {
+        final List<UpdateItemRequest> updates = new ArrayList<UpdateItemRequest>();
+        final List<DeleteItemRequest> deletes = new ArrayList<DeleteItemRequest>();
+        EasyMock.reset(mockClient);
+        EasyMock.expect(mockClient.updateItem(anyObject(UpdateItemRequest.class)))
+                .andAnswer(new IAnswer<UpdateItemResult>() {
+                    @Override
+                    public UpdateItemResult answer() {
+                        UpdateItemRequest request = (UpdateItemRequest) EasyMock
+                                .getCurrentArguments()[0];
+                        updates.add(request);
+                        Map<String, AttributeValue> attributes = new HashMap<String, AttributeValue>(
+                                request.getKey());
+                        attributes.put("version", request.getAttributeUpdates().get("version")
+                                .getValue());
+                        return new UpdateItemResult().withAttributes(attributes);
+                    }
+                });
+        EasyMock.expect(mockClient.deleteItem(anyObject(DeleteItemRequest.class)))
+                .andAnswer(new IAnswer<DeleteItemResult>() {
+                    @Override
+                    public DeleteItemResult answer() {
+                        deletes.add((DeleteItemRequest) EasyMock.getCurrentArguments()[0]);
+                        return new DeleteItemResult();
+                    }
+                });
+        EasyMock.replay(mockClient);
+
+        MockTwoValuePlusVersionClass object = new MockTwoValuePlusVersionClass("id", "first",
+                null);
+        mapper.save(object);
+
+        UpdateItemRequest update = updates.get(0);
+        assertEquals("id", update.getKey().get("id").getS());
+        assertEquals("first", update.getAttributeUpdates().get("firstValue").getValue().getS());
+        assertEquals("1", update.getAttributeUpdates().get("version").getValue().getN());
+        assertFalse(update.getExpected().get("version").isExists());
+        assertEquals(Integer.valueOf(1), object.getVersion());
+
+        mapper.delete(object);
+
+        DeleteItemRequest delete = deletes.get(0);
+        assertEquals("id", delete.getKey().get("id").getS());
+        assertEquals("1", delete.getExpected().get("version").getValue().getN());
+        EasyMock.verify(mockClient);
+    }
+
     @Test
     public void testMergeExpectedAttributeValueConditions() {
         Map<String, ExpectedAttributeValue> internalAssertions = new HashMap<String, ExpectedAttributeValue>();
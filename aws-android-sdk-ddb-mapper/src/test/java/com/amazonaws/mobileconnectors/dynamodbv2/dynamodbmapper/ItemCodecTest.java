@@ -0,0 +1,193 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.ConversionSchemas.ItemCodec;
+import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.ConversionSchemas.StandardItemConverter;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ItemCodecTest {
+
+    private final DynamoDBReflector reflector = new DynamoDBReflector();
+
+    private final StandardItemConverter converter = (StandardItemConverter)
+            ConversionSchemas.V2_COMPATIBLE.getConverter(new ConversionSchema.Dependencies()
+                    .with(DynamoDBReflector.class, reflector));
+
+    @Test
+    public void testCodecIsCompiledOnce() {
+        assertSame(converter.getCodec(NumberAttributeClass.class),
+                converter.getCodec(NumberAttributeClass.class));
+    }
+
+    @Test
+    public void testConvertMatchesPerAttributeConversion() {
+        NumberAttributeClass item = newItem();
+
+        Map<String, AttributeValue> expected = new HashMap<String, AttributeValue>();
+        for (Method getter : reflector.getRelevantGetters(NumberAttributeClass.class)) {
+            Object value = ReflectionUtils.safeInvoke(getter, item);
+            if (value != null) {
+                expected.put(reflector.getAttributeName(getter),
+                        converter.convert(getter, value));
+            }
+        }
+
+        assertEquals(expected, converter.convert(item));
+    }
+
+    @Test
+    public void testKeyAndVersionFlags() {
+        ItemCodec codec = converter.getCodec(HashKeyAutoGenerated.class);
+        for (int i = 0; i < codec.names.length; i++) {
+            String name = codec.names[i];
+            assertEquals(name, !"otherAttribute".equals(name), codec.keys[i]);
+            assertEquals(name, "key".equals(name), codec.assignableKeys[i]);
+            assertFalse(name, codec.versions[i]);
+        }
+
+        codec = converter.getCodec(VersionedClass.class);
+        for (int i = 0; i < codec.names.length; i++) {
+            assertEquals(codec.names[i], "version".equals(codec.names[i]), codec.versions[i]);
+        }
+    }
+
+    @Test
+    public void testUnresolvedCodecConvertsThroughConverter() {
+        NumberAttributeClass item = newItem();
+        ItemCodec codec = ItemCodec.unresolved(reflector, NumberAttributeClass.class);
+        for (int i = 0; i < codec.getters.length; i++) {
+            Object value = ReflectionUtils.safeInvoke(codec.getters[i], item);
+            assertEquals(codec.names[i], converter.convert(codec.getters[i], value),
+                    codec.marshall(converter, i, value));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        NumberAttributeClass item = newItem();
+
+        NumberAttributeClass copy = converter.unconvert(NumberAttributeClass.class,
+                converter.convert(item));
+
+        assertEquals(item.getKey(), copy.getKey());
+        assertEquals(item.getIntAttribute(), copy.getIntAttribute());
+        assertEquals(item.getIntegerAttribute(), copy.getIntegerAttribute());
+        assertEquals(item.getBigDecimalAttribute(), copy.getBigDecimalAttribute());
+        assertEquals(item.getDateAttribute(), copy.getDateAttribute());
+        assertEquals(item.isBooleanAttribute(), copy.isBooleanAttribute());
+        assertNull(copy.getLongObjectAttribute());
+    }
+
+    @Test
+    public void testUnconvertibleAttributeFailsOnlyWhenUsed() {
+        UnsupportedAttributeClass item = new UnsupportedAttributeClass();
+        item.setKey("key");
+
+        Map<String, AttributeValue> values = converter.convert(item);
+        assertEquals(1, values.size());
+        assertEquals("key", converter.unconvert(UnsupportedAttributeClass.class, values)
+                .getKey());
+
+        item.setUnsupported(new Object());
+        try {
+            converter.convert(item);
+            fail("Expected a mapping exception");
+        } catch (DynamoDBMappingException expected) {
+        }
+
+        values.put("unsupported", new AttributeValue("value"));
+        try {
+            converter.unconvert(UnsupportedAttributeClass.class, values);
+            fail("Expected a mapping exception");
+        } catch (DynamoDBMappingException expected) {
+        }
+    }
+
+    private static NumberAttributeClass newItem() {
+        NumberAttributeClass item = new NumberAttributeClass();
+        item.setKey("key");
+        item.setIntAttribute(42);
+        item.setIntegerAttribute(7);
+        item.setBigDecimalAttribute(new BigDecimal("1.5"));
+        item.setDateAttribute(new Date(1000));
+        item.setBooleanAttribute(true);
+        return item;
+    }
+
+    @DynamoDBTable(tableName = "table")
+    public static class VersionedClass {
+
+        private String key;
+        private Long version;
+
+        @DynamoDBHashKey
+        public String getKey() {
+            return key;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+
+        @DynamoDBVersionAttribute
+        public Long getVersion() {
+            return version;
+        }
+
+        public void setVersion(Long version) {
+            this.version = version;
+        }
+    }
+
+    @DynamoDBTable(tableName = "table")
+    public static class UnsupportedAttributeClass {
+
+        private String key;
+        private Object unsupported;
+
+        @DynamoDBHashKey
+        public String getKey() {
+            return key;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+
+        public Object getUnsupported() {
+            return unsupported;
+        }
+
+        public void setUnsupported(Object unsupported) {
+            this.unsupported = unsupported;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ParallelScanIteratorTest {
+
+    private static final int SEGMENTS = 4;
+    private static final int PAGES = 5;
+    private static final int ITEMS_PER_PAGE = 3;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final AtomicInteger scans = new AtomicInteger();
+    private volatile int failingSegment = -1;
+    private ExecutorService executor;
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReturnsEveryItemOnce() {
+        executor = Executors.newFixedThreadPool(2);
+        ParallelScanIterator<StringAttributeClass> iterator = newMapper().parallelScanIterator(
+                StringAttributeClass.class, new DynamoDBScanExpression(), SEGMENTS, executor, 2);
+
+        Set<String> keys = new HashSet<String>();
+        while (iterator.hasNext()) {
+            assertTrue(keys.add(iterator.next().getKey()));
+        }
+        assertEquals(SEGMENTS * PAGES * ITEMS_PER_PAGE, keys.size());
+        assertEquals(SEGMENTS * PAGES, scans.get());
+    }
+
+    @Test
+    public void testSegmentsPauseAtPrefetchLimit() {
+        ParallelScanIterator<StringAttributeClass> iterator = newMapper().parallelScanIterator(
+                StringAttributeClass.class, new DynamoDBScanExpression(), SEGMENTS, DIRECT, 2);
+        assertEquals(SEGMENTS * 2, scans.get());
+
+        // Taking the first page resumes its segment for one more page
+        iterator.next();
+        assertEquals(SEGMENTS * 2 + 1, scans.get());
+        for (int i = 1; i < ITEMS_PER_PAGE; i++) {
+            iterator.next();
+        }
+        assertEquals(SEGMENTS * 2 + 1, scans.get());
+
+        iterator.close();
+        assertFalse(iterator.hasNext());
+        assertEquals(SEGMENTS * 2 + 1, scans.get());
+    }
+
+    @Test
+    public void testSegmentFailureIsThrown() {
+        failingSegment = 2;
+        ParallelScanIterator<StringAttributeClass> iterator = newMapper().parallelScanIterator(
+                StringAttributeClass.class, new DynamoDBScanExpression(), SEGMENTS, DIRECT, 1);
+        try {
+            while (iterator.hasNext()) {
+                iterator.next();
+            }
+            fail("Expected the failure of segment 2");
+        } catch (AmazonServiceException expected) {
+            assertEquals("segment 2", expected.getErrorMessage());
+        }
+        try {
+            iterator.hasNext();
+            fail("Expected the failure to be thrown again");
+        } catch (AmazonClientException expected) {
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPrefetchPagesMustBePositive() {
+        newMapper().parallelScanIterator(StringAttributeClass.class,
+                new DynamoDBScanExpression(), SEGMENTS, DIRECT, 0);
+    }
+
+    private DynamoDBMapper newMapper() {
+        AmazonDynamoDB db = (AmazonDynamoDB) Proxy.newProxyInstance(
+                AmazonDynamoDB.class.getClassLoader(), new Class<?>[] {
+                    AmazonDynamoDB.class
+                }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (!method.getName().equals("scan")) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        return scan((ScanRequest) args[0]);
+                    }
+                });
+        return new DynamoDBMapper(db);
+    }
+
+    /**
+     * Returns {@code PAGES} pages of {@code ITEMS_PER_PAGE} items for each
+     * segment, using the page number as the continuation key.
+     */
+    private ScanResult scan(ScanRequest request) {
+        scans.incrementAndGet();
+        int segment = request.getSegment();
+        if (segment == failingSegment) {
+            throw new AmazonServiceException("segment " + segment);
+        }
+        int page = request.getExclusiveStartKey() == null ? 0
+                : Integer.parseInt(request.getExclusiveStartKey().get("page").getN());
+
+        List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+        for (int i = 0; i < ITEMS_PER_PAGE; i++) {
+            Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+            item.put("key", new AttributeValue(segment + "-" + page + "-" + i));
+            items.add(item);
+        }
+        ScanResult result = new ScanResult().withItems(items);
+        if (page + 1 < PAGES) {
+            result.setLastEvaluatedKey(Collections.singletonMap("page",
+                    new AttributeValue().withN(Integer.toString(page + 1))));
+        }
+        return result;
+    }
+}
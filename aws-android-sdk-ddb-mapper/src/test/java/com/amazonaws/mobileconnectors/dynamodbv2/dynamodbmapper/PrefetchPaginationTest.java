@@ -0,0 +1,197 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.PaginationLoadingStrategy;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PrefetchPaginationTest {
+
+    private static final int PAGES = 5;
+    private static final int ITEMS_PER_PAGE = 3;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final AtomicInteger scans = new AtomicInteger();
+    private volatile int failingPage = -1;
+    private ExecutorService executor;
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReturnsAllItemsInOrder() {
+        executor = Executors.newSingleThreadExecutor();
+        PaginatedScanList<StringAttributeClass> list = scan(executor, 2);
+
+        List<String> keys = new ArrayList<String>();
+        for (StringAttributeClass item : list) {
+            keys.add(item.getKey());
+        }
+        assertEquals(PAGES * ITEMS_PER_PAGE, keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals((i / ITEMS_PER_PAGE) + "-" + (i % ITEMS_PER_PAGE), keys.get(i));
+        }
+        assertEquals(PAGES, scans.get());
+    }
+
+    @Test
+    public void testFetchesAheadUpToPrefetchPages() {
+        PaginatedScanList<StringAttributeClass> list = scan(DIRECT, 2);
+        assertEquals(1, scans.get());
+
+        Iterator<StringAttributeClass> iterator = list.iterator();
+        assertEquals(3, scans.get());
+
+        // The first page was loaded by the scan itself
+        for (int i = 0; i < ITEMS_PER_PAGE; i++) {
+            iterator.next();
+        }
+        assertEquals(3, scans.get());
+
+        // Taking the second page makes room for the fourth one
+        iterator.next();
+        assertEquals(4, scans.get());
+    }
+
+    @Test
+    public void testCancelPrefetch() {
+        PaginatedScanList<StringAttributeClass> list = scan(DIRECT, 1);
+        Iterator<StringAttributeClass> iterator = list.iterator();
+        assertEquals(2, scans.get());
+
+        list.cancelPrefetch();
+        for (int i = 0; i < ITEMS_PER_PAGE; i++) {
+            iterator.next();
+        }
+        assertFalse(iterator.hasNext());
+        assertEquals(2, scans.get());
+    }
+
+    @Test
+    public void testFailureIsThrownByIterator() {
+        failingPage = 2;
+        Iterator<StringAttributeClass> iterator = scan(DIRECT, 2).iterator();
+        for (int i = 0; i < 2 * ITEMS_PER_PAGE; i++) {
+            iterator.next();
+        }
+        try {
+            iterator.hasNext();
+            fail("Expected the failure of page 2");
+        } catch (AmazonServiceException expected) {
+        }
+    }
+
+    @Test
+    public void testListOperationsAreUnsupported() {
+        PaginatedScanList<StringAttributeClass> list = scan(DIRECT, 2);
+        try {
+            list.size();
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException expected) {
+        }
+
+        list.iterator();
+        try {
+            list.iterator();
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    private PaginatedScanList<StringAttributeClass> scan(Executor prefetchExecutor,
+            int prefetchPages) {
+        AmazonDynamoDB db = (AmazonDynamoDB) Proxy.newProxyInstance(
+                AmazonDynamoDB.class.getClassLoader(), new Class<?>[] {
+                    AmazonDynamoDB.class
+                }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (!method.getName().equals("scan")) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        return scan((ScanRequest) args[0]);
+                    }
+                });
+        DynamoDBMapperConfig config = new DynamoDBMapperConfig.Builder()
+                .withPaginationLoadingStrategy(PaginationLoadingStrategy.PREFETCH)
+                .withPrefetchExecutor(prefetchExecutor)
+                .withPrefetchPages(prefetchPages)
+                .build();
+        return new DynamoDBMapper(db).scan(StringAttributeClass.class,
+                new DynamoDBScanExpression(), config);
+    }
+
+    /**
+     * Returns {@code PAGES} pages of {@code ITEMS_PER_PAGE} items, using the
+     * page number as the continuation key.
+     */
+    private ScanResult scan(ScanRequest request) {
+        scans.incrementAndGet();
+        int page = request.getExclusiveStartKey() == null ? 0
+                : Integer.parseInt(request.getExclusiveStartKey().get("page").getN());
+        if (page == failingPage) {
+            throw new AmazonServiceException("page " + page);
+        }
+
+        List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+        for (int i = 0; i < ITEMS_PER_PAGE; i++) {
+            Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+            item.put("key", new AttributeValue(page + "-" + i));
+            items.add(item);
+        }
+        ScanResult result = new ScanResult().withItems(items);
+        if (page + 1 < PAGES) {
+            result.setLastEvaluatedKey(Collections.singletonMap("page",
+                    new AttributeValue().withN(Integer.toString(page + 1))));
+        }
+        return result;
+    }
+}
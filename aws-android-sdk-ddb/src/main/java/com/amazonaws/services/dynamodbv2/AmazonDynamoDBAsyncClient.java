@@ -27,8 +27,10 @@ import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.http.AsyncHttpClient;
 
 import com.amazonaws.services.dynamodbv2.model.*;
+import com.amazonaws.services.dynamodbv2.model.transform.*;
 
 /**
  * Interface for accessing Amazon DynamoDB asynchronously. <fullname>Amazon
@@ -228,7 +230,8 @@ import com.amazonaws.services.dynamodbv2.model.*;
 public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements AmazonDynamoDBAsync {
 
     /**
-     * Executor service for executing asynchronous requests.
+     * Executor service for executing asynchronous requests, or null if they
+     * are executed by an {@link AsyncHttpClient}.
      */
     private ExecutorService executorService;
 
@@ -420,12 +423,44 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
         this.executorService = executorService;
     }
 
+    /**
+     * Constructs a new asynchronous client to invoke service methods on Amazon
+     * DynamoDB using the specified AWS account credentials provider, client
+     * configuration options and asynchronous HTTP client.
+     * <p>
+     * All calls made using this new client object are non-blocking, and will
+     * immediately return a Java Future object that the caller can later check
+     * to see if the service call has actually completed. Unlike the clients
+     * using an executor service, no thread is held for each call while it is
+     * in flight: the request is marshalled and signed on the calling thread,
+     * the HTTP client notifies the result when it arrives, and retries wait on
+     * a shared timer. The Future and the {@link AsyncHandler} are completed
+     * from a thread of the HTTP client, so handlers should not block. A
+     * blocking HTTP client can be used through an
+     * {@link com.amazonaws.http.ExecutorAsyncHttpClient}, which runs it on at
+     * most as many threads as it has connections.
+     *
+     * @param awsCredentialsProvider The AWS credentials provider which will
+     *            provide credentials to authenticate requests with AWS
+     *            services.
+     * @param clientConfiguration Client configuration options (ex: max retry
+     *            limit, proxy settings, etc).
+     * @param asyncHttpClient The HTTP client executing all the requests of
+     *            this client, synchronous and asynchronous.
+     */
+    public AmazonDynamoDBAsyncClient(AWSCredentialsProvider awsCredentialsProvider,
+            ClientConfiguration clientConfiguration, AsyncHttpClient asyncHttpClient) {
+        super(awsCredentialsProvider, clientConfiguration, asyncHttpClient);
+        this.executorService = null;
+    }
+
     /**
      * Returns the executor service used by this async client to execute
      * requests.
      *
      * @return The executor service used by this async client to execute
-     *         requests.
+     *         requests, or null if the client executes them with an
+     *         {@link AsyncHttpClient}.
      */
     public ExecutorService getExecutorService() {
         return executorService;
@@ -441,7 +476,9 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     @Override
     public void shutdown() {
         super.shutdown();
-        executorService.shutdownNow();
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
     }
 
     /**
@@ -543,6 +580,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<BatchGetItemResult> batchGetItemAsync(
             final BatchGetItemRequest batchGetItemRequest) throws AmazonServiceException,
             AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(batchGetItemRequest, new BatchGetItemRequestMarshaller(),
+                    new BatchGetItemResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<BatchGetItemResult>() {
             public BatchGetItemResult call() throws Exception {
                 return batchGetItem(batchGetItemRequest);
@@ -650,6 +691,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final BatchGetItemRequest batchGetItemRequest,
             final AsyncHandler<BatchGetItemRequest, BatchGetItemResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(batchGetItemRequest, new BatchGetItemRequestMarshaller(),
+                    new BatchGetItemResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<BatchGetItemResult>() {
             public BatchGetItemResult call() throws Exception {
                 BatchGetItemResult result = null;
@@ -800,6 +845,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<BatchWriteItemResult> batchWriteItemAsync(
             final BatchWriteItemRequest batchWriteItemRequest) throws AmazonServiceException,
             AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(batchWriteItemRequest, new BatchWriteItemRequestMarshaller(),
+                    new BatchWriteItemResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<BatchWriteItemResult>() {
             public BatchWriteItemResult call() throws Exception {
                 return batchWriteItem(batchWriteItemRequest);
@@ -943,6 +992,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final BatchWriteItemRequest batchWriteItemRequest,
             final AsyncHandler<BatchWriteItemRequest, BatchWriteItemResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(batchWriteItemRequest, new BatchWriteItemRequestMarshaller(),
+                    new BatchWriteItemResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<BatchWriteItemResult>() {
             public BatchWriteItemResult call() throws Exception {
                 BatchWriteItemResult result = null;
@@ -1002,6 +1055,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<CreateTableResult> createTableAsync(final CreateTableRequest createTableRequest)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(createTableRequest, new CreateTableRequestMarshaller(),
+                    new CreateTableResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<CreateTableResult>() {
             public CreateTableResult call() throws Exception {
                 return createTable(createTableRequest);
@@ -1054,6 +1111,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<CreateTableResult> createTableAsync(final CreateTableRequest createTableRequest,
             final AsyncHandler<CreateTableRequest, CreateTableResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(createTableRequest, new CreateTableRequestMarshaller(),
+                    new CreateTableResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<CreateTableResult>() {
             public CreateTableResult call() throws Exception {
                 CreateTableResult result = null;
@@ -1110,6 +1171,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<DeleteItemResult> deleteItemAsync(final DeleteItemRequest deleteItemRequest)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(deleteItemRequest, new DeleteItemRequestMarshaller(),
+                    new DeleteItemResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<DeleteItemResult>() {
             public DeleteItemResult call() throws Exception {
                 return deleteItem(deleteItemRequest);
@@ -1159,6 +1224,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<DeleteItemResult> deleteItemAsync(final DeleteItemRequest deleteItemRequest,
             final AsyncHandler<DeleteItemRequest, DeleteItemResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(deleteItemRequest, new DeleteItemRequestMarshaller(),
+                    new DeleteItemResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<DeleteItemResult>() {
             public DeleteItemResult call() throws Exception {
                 DeleteItemResult result = null;
@@ -1224,6 +1293,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<DeleteTableResult> deleteTableAsync(final DeleteTableRequest deleteTableRequest)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(deleteTableRequest, new DeleteTableRequestMarshaller(),
+                    new DeleteTableResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<DeleteTableResult>() {
             public DeleteTableResult call() throws Exception {
                 return deleteTable(deleteTableRequest);
@@ -1282,6 +1355,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<DeleteTableResult> deleteTableAsync(final DeleteTableRequest deleteTableRequest,
             final AsyncHandler<DeleteTableRequest, DeleteTableResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(deleteTableRequest, new DeleteTableRequestMarshaller(),
+                    new DeleteTableResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<DeleteTableResult>() {
             public DeleteTableResult call() throws Exception {
                 DeleteTableResult result = null;
@@ -1419,6 +1496,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<DescribeLimitsResult> describeLimitsAsync(
             final DescribeLimitsRequest describeLimitsRequest) throws AmazonServiceException,
             AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(describeLimitsRequest, new DescribeLimitsRequestMarshaller(),
+                    new DescribeLimitsResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<DescribeLimitsResult>() {
             public DescribeLimitsResult call() throws Exception {
                 return describeLimits(describeLimitsRequest);
@@ -1549,6 +1630,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final DescribeLimitsRequest describeLimitsRequest,
             final AsyncHandler<DescribeLimitsRequest, DescribeLimitsResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(describeLimitsRequest, new DescribeLimitsRequestMarshaller(),
+                    new DescribeLimitsResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<DescribeLimitsResult>() {
             public DescribeLimitsResult call() throws Exception {
                 DescribeLimitsResult result = null;
@@ -1599,6 +1684,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<DescribeTableResult> describeTableAsync(
             final DescribeTableRequest describeTableRequest) throws AmazonServiceException,
             AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(describeTableRequest, new DescribeTableRequestMarshaller(),
+                    new DescribeTableResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<DescribeTableResult>() {
             public DescribeTableResult call() throws Exception {
                 return describeTable(describeTableRequest);
@@ -1642,6 +1731,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final DescribeTableRequest describeTableRequest,
             final AsyncHandler<DescribeTableRequest, DescribeTableResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(describeTableRequest, new DescribeTableRequestMarshaller(),
+                    new DescribeTableResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<DescribeTableResult>() {
             public DescribeTableResult call() throws Exception {
                 DescribeTableResult result = null;
@@ -1689,6 +1782,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<GetItemResult> getItemAsync(final GetItemRequest getItemRequest)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(getItemRequest, new GetItemRequestMarshaller(),
+                    new GetItemResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<GetItemResult>() {
             public GetItemResult call() throws Exception {
                 return getItem(getItemRequest);
@@ -1729,6 +1826,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<GetItemResult> getItemAsync(final GetItemRequest getItemRequest,
             final AsyncHandler<GetItemRequest, GetItemResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(getItemRequest, new GetItemRequestMarshaller(),
+                    new GetItemResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<GetItemResult>() {
             public GetItemResult call() throws Exception {
                 GetItemResult result = null;
@@ -1767,6 +1868,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<ListTablesResult> listTablesAsync(final ListTablesRequest listTablesRequest)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(listTablesRequest, new ListTablesRequestMarshaller(),
+                    new ListTablesResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<ListTablesResult>() {
             public ListTablesResult call() throws Exception {
                 return listTables(listTablesRequest);
@@ -1798,6 +1903,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<ListTablesResult> listTablesAsync(final ListTablesRequest listTablesRequest,
             final AsyncHandler<ListTablesRequest, ListTablesResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(listTablesRequest, new ListTablesRequestMarshaller(),
+                    new ListTablesResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<ListTablesResult>() {
             public ListTablesResult call() throws Exception {
                 ListTablesResult result = null;
@@ -1875,6 +1984,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<PutItemResult> putItemAsync(final PutItemRequest putItemRequest)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(putItemRequest, new PutItemRequestMarshaller(),
+                    new PutItemResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<PutItemResult>() {
             public PutItemResult call() throws Exception {
                 return putItem(putItemRequest);
@@ -1945,6 +2058,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<PutItemResult> putItemAsync(final PutItemRequest putItemRequest,
             final AsyncHandler<PutItemRequest, PutItemResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(putItemRequest, new PutItemRequestMarshaller(),
+                    new PutItemResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<PutItemResult>() {
             public PutItemResult call() throws Exception {
                 PutItemResult result = null;
@@ -2015,6 +2132,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<QueryResult> queryAsync(final QueryRequest queryRequest)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(queryRequest, new QueryRequestMarshaller(),
+                    new QueryResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<QueryResult>() {
             public QueryResult call() throws Exception {
                 return query(queryRequest);
@@ -2078,6 +2199,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<QueryResult> queryAsync(final QueryRequest queryRequest,
             final AsyncHandler<QueryRequest, QueryResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(queryRequest, new QueryRequestMarshaller(),
+                    new QueryResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<QueryResult>() {
             public QueryResult call() throws Exception {
                 QueryResult result = null;
@@ -2140,6 +2265,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<ScanResult> scanAsync(final ScanRequest scanRequest)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(scanRequest, new ScanRequestMarshaller(),
+                    new ScanResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<ScanResult>() {
             public ScanResult call() throws Exception {
                 return scan(scanRequest);
@@ -2195,6 +2324,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<ScanResult> scanAsync(final ScanRequest scanRequest,
             final AsyncHandler<ScanRequest, ScanResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(scanRequest, new ScanRequestMarshaller(),
+                    new ScanResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<ScanResult>() {
             public ScanResult call() throws Exception {
                 ScanResult result = null;
@@ -2243,6 +2376,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<UpdateItemResult> updateItemAsync(final UpdateItemRequest updateItemRequest)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(updateItemRequest, new UpdateItemRequestMarshaller(),
+                    new UpdateItemResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<UpdateItemResult>() {
             public UpdateItemResult call() throws Exception {
                 return updateItem(updateItemRequest);
@@ -2284,6 +2421,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<UpdateItemResult> updateItemAsync(final UpdateItemRequest updateItemRequest,
             final AsyncHandler<UpdateItemRequest, UpdateItemResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(updateItemRequest, new UpdateItemRequestMarshaller(),
+                    new UpdateItemResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<UpdateItemResult>() {
             public UpdateItemResult call() throws Exception {
                 UpdateItemResult result = null;
@@ -2357,6 +2498,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<UpdateTableResult> updateTableAsync(final UpdateTableRequest updateTableRequest)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(updateTableRequest, new UpdateTableRequestMarshaller(),
+                    new UpdateTableResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<UpdateTableResult>() {
             public UpdateTableResult call() throws Exception {
                 return updateTable(updateTableRequest);
@@ -2423,6 +2568,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<UpdateTableResult> updateTableAsync(final UpdateTableRequest updateTableRequest,
             final AsyncHandler<UpdateTableRequest, UpdateTableResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
+        if (executorService == null) {
+            return invokeAsync(updateTableRequest, new UpdateTableRequestMarshaller(),
+                    new UpdateTableResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<UpdateTableResult>() {
             public UpdateTableResult call() throws Exception {
                 UpdateTableResult result = null;
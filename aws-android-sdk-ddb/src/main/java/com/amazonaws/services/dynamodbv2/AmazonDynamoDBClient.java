@@ -4155,9 +4155,105 @@ public class AmazonDynamoDBClient extends AmazonWebServiceClient implements Amaz
         return client.getResponseMetadataForRequest(request);
     }
 
+    /**
+     * Executes the request with the non-blocking path of the http client,
+     * completing the returned future and the async handler, if any, with the
+     * result or the exception the synchronous operation would have returned or
+     * thrown. Used by {@link AmazonDynamoDBAsyncClient} when it is given an
+     * {@link AsyncHttpClient}. Cancelling the returned future stops further
+     * attempts of the request.
+     */
+    <X, Y extends AmazonWebServiceRequest> java.util.concurrent.Future<X> invokeAsync(
+            final Y originalRequest, Marshaller<Request<Y>, Y> marshaller,
+            Unmarshaller<X, JsonUnmarshallerContext> unmarshaller,
+            final AsyncHandler<Y, X> asyncHandler) {
+        ExecutionContext executionContext = createExecutionContext(originalRequest);
+        final AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+        awsRequestMetrics.startEvent(Field.ClientExecuteTime);
+        final ExecutionFuture<X> future = new ExecutionFuture<X>();
+        Request<Y> request = null;
+        try {
+            awsRequestMetrics.startEvent(Field.RequestMarshallTime);
+            try {
+                request = marshaller.marshall(originalRequest);
+                // Binds the request metrics to the current request.
+                request.setAWSRequestMetrics(awsRequestMetrics);
+            } finally {
+                awsRequestMetrics.endEvent(Field.RequestMarshallTime);
+            }
+            JsonResponseHandler<X> responseHandler = new JsonResponseHandler<X>(unmarshaller);
+
+            prepareInvokeAsync(request, executionContext);
+            final Request<Y> marshalledRequest = request;
+            future.execution = client.executeAsync(request, responseHandler, new JsonErrorResponseHandler(
+                    jsonErrorUnmarshallers), executionContext, new ResponseCallback<X>() {
+                @Override
+                public void onResponse(Response<X> response) {
+                    endClientExecution(awsRequestMetrics, marshalledRequest, response,
+                            LOGGING_AWS_REQUEST_METRIC);
+                    try {
+                        if (asyncHandler != null) {
+                            asyncHandler.onSuccess(originalRequest, response.getAwsResponse());
+                        }
+                    } catch (RuntimeException e) {
+                        future.setException(e);
+                        return;
+                    }
+                    future.set(response.getAwsResponse());
+                }
+
+                @Override
+                public void onError(Exception exception) {
+                    endClientExecution(awsRequestMetrics, marshalledRequest, null,
+                            LOGGING_AWS_REQUEST_METRIC);
+                    if (asyncHandler != null) {
+                        asyncHandler.onError(exception);
+                    }
+                    future.setException(exception);
+                }
+            });
+        } catch (Exception e) {
+            // marshallers only throw AmazonClientExceptions
+            endClientExecution(awsRequestMetrics, request, null, LOGGING_AWS_REQUEST_METRIC);
+            if (asyncHandler != null) {
+                asyncHandler.onError(e);
+            }
+            future.setException(e);
+        }
+        return future;
+    }
+
+    /**
+     * The future returned by {@link #invokeAsync}, which cancels the execution
+     * of the request when cancelled.
+     */
+    private static final class ExecutionFuture<X> extends SettableFuture<X> {
+        volatile java.util.concurrent.Future<?> execution;
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            java.util.concurrent.Future<?> e = execution;
+            if (cancelled && e != null) {
+                e.cancel(mayInterruptIfRunning);
+            }
+            return cancelled;
+        }
+    }
+
     private <X, Y extends AmazonWebServiceRequest> Response<X> invoke(Request<Y> request,
             HttpResponseHandler<AmazonWebServiceResponse<X>> responseHandler,
             ExecutionContext executionContext) {
+        prepareInvoke(request, executionContext);
+        JsonErrorResponseHandler errorResponseHandler = new JsonErrorResponseHandler(
+                jsonErrorUnmarshallers);
+        Response<X> result = client.execute(request, responseHandler,
+                errorResponseHandler, executionContext);
+        return result;
+    }
+
+    private <Y extends AmazonWebServiceRequest> void prepareInvoke(Request<Y> request,
+            ExecutionContext executionContext) {
         request.setEndpoint(endpoint);
         request.setTimeOffset(timeOffset);
 
@@ -4176,10 +4272,22 @@ public class AmazonDynamoDBClient extends AmazonWebServiceClient implements Amaz
         }
 
         executionContext.setCredentials(credentials);
-        JsonErrorResponseHandler errorResponseHandler = new JsonErrorResponseHandler(
-                jsonErrorUnmarshallers);
-        Response<X> result = client.execute(request, responseHandler,
-                errorResponseHandler, executionContext);
-        return result;
+    }
+
+    /**
+     * Like {@link #prepareInvoke}, but leaves fetching the credentials from
+     * the provider to the http client, which does so off the calling thread.
+     */
+    private <Y extends AmazonWebServiceRequest> void prepareInvokeAsync(Request<Y> request,
+            ExecutionContext executionContext) {
+        request.setEndpoint(endpoint);
+        request.setTimeOffset(timeOffset);
+
+        AmazonWebServiceRequest originalRequest = request.getOriginalRequest();
+        if (originalRequest != null && originalRequest.getRequestCredentials() != null) {
+            executionContext.setCredentials(originalRequest.getRequestCredentials());
+        } else {
+            executionContext.setCredentialsProvider(awsCredentialsProvider);
+        }
     }
 }
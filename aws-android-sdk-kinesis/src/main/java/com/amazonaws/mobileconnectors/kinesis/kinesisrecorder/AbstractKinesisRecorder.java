@@ -23,7 +23,23 @@ import com.amazonaws.util.StringUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An abstract class for Amazon Kinesis recorders. It manages local file store
@@ -42,6 +58,30 @@ public abstract class AbstractKinesisRecorder {
      * Maximum size in bytes of records in PutRecordBatch.
      */
     private static final int MAX_BATCH_RECORDS_SIZE_BYTES = 512 * 1024;
+    /**
+     * Number of batches that may fail entirely before submitAllRecords gives
+     * up.
+     */
+    private static final int MAX_RETRY = 3;
+    private static final long SUBMISSION_THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    private static final Executor CALLER_RUNS = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final ThreadFactory SUBMISSION_THREAD_FACTORY = new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "KinesisRecorder-submit-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
 
     /**
      * The configurable options for Kinesis Recorder, includes the
@@ -50,6 +90,13 @@ public abstract class AbstractKinesisRecorder {
     protected KinesisRecorderConfig config;
     protected FileRecordStore recordStore;
 
+    private final ConcurrentMap<String, StreamSubmissionStatistics> statistics =
+            new ConcurrentHashMap<String, StreamSubmissionStatistics>();
+    /** Lazily created, guarded by the lock of this recorder **/
+    private ThreadPoolExecutor submissionExecutor;
+    /** Null unless the config enables auto flush **/
+    private final AutoFlushScheduler autoFlush;
+
     /**
      * Gets the sender to send saved records.
      * 
@@ -69,6 +116,7 @@ public abstract class AbstractKinesisRecorder {
         }
         this.recordStore = recordStore;
         this.config = config;
+        this.autoFlush = AutoFlushScheduler.create(this, config);
     }
 
     /**
@@ -93,8 +141,15 @@ public abstract class AbstractKinesisRecorder {
      * @param streamName The stream to submit the data to.
      */
     public void saveRecord(byte[] data, String streamName) {
+        storeRecord(data, streamName);
+        if (autoFlush != null) {
+            autoFlush.onRecordSaved();
+        }
+    }
+
+    private void storeRecord(byte[] data, String streamName) {
         try {
-            recordStore.put(FileRecordParser.asString(streamName, data));
+            recordStore.put(FileRecordParser.asBytes(streamName, data));
         } catch (IOException e) {
             throw new AmazonClientException("Error saving record", e);
         }
@@ -108,6 +163,11 @@ public abstract class AbstractKinesisRecorder {
      * invalid) will be deleted. Note: Since KinesisRecorder uses synchronous
      * methods to make calls to Amazon Kinesis, do not call submitAll() on the
      * main thread of your application.
+     * <p>
+     * Saved records are grouped into batches per stream, and up to
+     * {@link KinesisRecorderConfig#getMaxConcurrentSubmissions()} batches are
+     * sent at the same time while the next records are read from disk. Only
+     * the records rejected by the service are saved again for a later retry.
      *
      * @throws AmazonClientException Thrown if there was an unrecoverable error
      *             during submission. Note: If the request appears to be
@@ -115,58 +175,36 @@ public abstract class AbstractKinesisRecorder {
      *             to be valid, it will be kept.
      */
     public synchronized void submitAllRecords() {
-        RecordSender sender = getRecordSender();
+        int maxConcurrency = Math.max(1, config.getMaxConcurrentSubmissions());
         RecordIterator iterator = recordStore.iterator();
-        List<byte[]> data = new ArrayList<byte[]>(MAX_RECORDS_PER_BATCH);
-        int retry = 0;
-        int count = 0;
+        Submission submission = new Submission(getRecordSender(), getSubmissionExecutor(),
+                maxConcurrency);
         try {
-            while (iterator.hasNext() && retry < 3) {
-                String streamName = nextBatch(iterator, data, MAX_RECORDS_PER_BATCH,
-                        MAX_BATCH_RECORDS_SIZE_BYTES);
-                if (streamName == null || data.isEmpty()) {
-                    break;
-                }
-
-                try {
-                    iterator.removeReadRecords();
-                } catch (IOException e) {
-                    throw new AmazonClientException("Failed to removed records.", e);
-                }
-
-                try {
-                    List<byte[]> failures = sender.sendBatch(streamName, data);
-                    int successCount = data.size() - failures.size();
-                    count += successCount;
-                    if (successCount == 0) {
-                        // no record went through, increase retry count.
-                        retry++;
+            do {
+                while (!submission.isStopped() && iterator.hasNext()) {
+                    List<Batch> batches = nextBatches(iterator, maxConcurrency);
+                    if (batches.isEmpty()) {
+                        break;
                     }
-                    if (!failures.isEmpty()) {
-                        for (byte[] bytes : failures) {
-                            saveRecord(bytes, streamName);
-                        }
+
+                    try {
+                        iterator.removeReadRecords();
+                    } catch (IOException e) {
+                        throw new AmazonClientException("Failed to removed records.", e);
                     }
-                } catch (AmazonClientException ace) {
-                    if (sender.isRecoverable(ace)) {
-                        for (byte[] bytes : data) {
-                            saveRecord(bytes, streamName);
-                        }
-                        Log.e(TAG,
-                                "ServiceException in submit all, the values of the data inside the requests appears valid.  The request will be kept",
-                                ace);
-                    } else {
-                        // We have reason to believe the values in the request
-                        // is invalid and cannot be sent or recovered.
-                        Log.e(TAG,
-                                "ServiceException in submit all, the last request is presumed to be the cause and will be dropped",
-                                ace);
+
+                    for (Batch batch : batches) {
+                        submission.send(batch);
                     }
-                    throw ace;
                 }
-            }
+                // failed records saved again by the completed batches are
+                // picked up by the next round
+                submission.drain();
+            } while (!submission.isStopped() && iterator.hasNext());
+            submission.rethrowFailure();
         } finally {
-            Log.d(TAG, String.format("submitAllRecords sent %d records", count));
+            submission.drain();
+            Log.d(TAG, String.format(Locale.US, "submitAllRecords sent %d records", submission.sentCount));
             try {
                 iterator.close();
             } catch (IOException e) {
@@ -175,6 +213,292 @@ public abstract class AbstractKinesisRecorder {
         }
     }
 
+    /**
+     * Returns the submission counters of every stream that records have been
+     * submitted to by this recorder.
+     *
+     * @return an unmodifiable map from stream name to its counters
+     */
+    public Map<String, StreamSubmissionStatistics> getSubmissionStatistics() {
+        return Collections.unmodifiableMap(
+                new HashMap<String, StreamSubmissionStatistics>(statistics));
+    }
+
+    /**
+     * Returns the submission counters of the given stream.
+     *
+     * @param streamName stream name
+     * @return the counters, or null if no record has been submitted to the
+     *         stream yet
+     */
+    public StreamSubmissionStatistics getSubmissionStatistics(String streamName) {
+        return statistics.get(streamName);
+    }
+
+    private StreamSubmissionStatistics statisticsOf(String streamName) {
+        StreamSubmissionStatistics stats = statistics.get(streamName);
+        if (stats == null) {
+            StreamSubmissionStatistics newStats = new StreamSubmissionStatistics(streamName);
+            stats = statistics.putIfAbsent(streamName, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the executor that runs {@link RecordSender#sendBatch}. Batches
+     * are sent on the calling thread when only one is allowed in flight.
+     * Callers must hold the lock of this recorder.
+     */
+    private Executor getSubmissionExecutor() {
+        int maxConcurrency = config.getMaxConcurrentSubmissions();
+        if (maxConcurrency <= 1) {
+            return CALLER_RUNS;
+        }
+        if (submissionExecutor == null
+                || submissionExecutor.getMaximumPoolSize() != maxConcurrency) {
+            if (submissionExecutor != null) {
+                submissionExecutor.shutdown();
+            }
+            submissionExecutor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency,
+                    SUBMISSION_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), SUBMISSION_THREAD_FACTORY);
+            submissionExecutor.allowCoreThreadTimeOut(true);
+        }
+        return submissionExecutor;
+    }
+
+    /**
+     * Reads records into batches grouped by stream. Reading stops once
+     * maxBatches batches are full or the records read could fill that many
+     * batches; partially filled batches are returned as well, so that every
+     * record read is in the returned list.
+     *
+     * @param iterator record iterator
+     * @param maxBatches number of batches to read
+     * @return batches in the order in which they were filled
+     */
+    List<Batch> nextBatches(RecordIterator iterator, int maxBatches) {
+        List<Batch> ready = new ArrayList<Batch>(maxBatches);
+        Map<String, Batch> open = new LinkedHashMap<String, Batch>();
+        long maxCount = (long) maxBatches * MAX_RECORDS_PER_BATCH;
+        long maxSize = (long) maxBatches * MAX_BATCH_RECORDS_SIZE_BYTES;
+        long count = 0;
+        long size = 0;
+        FileRecordParser frp = new FileRecordParser();
+        while (ready.size() < maxBatches && count < maxCount && size < maxSize
+                && iterator.hasNext()) {
+            byte[] record = iterator.nextBytes();
+            if (record == null || record.length == 0) {
+                continue;
+            }
+            // parse a record. Skip in case of corrupted data
+            try {
+                frp.parse(record);
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to read record. Skip.", e);
+                continue;
+            }
+
+            Batch batch = open.get(frp.streamName);
+            if (batch == null) {
+                batch = new Batch(frp.streamName);
+                open.put(frp.streamName, batch);
+            }
+            batch.add(frp.bytes);
+            count++;
+            size += frp.bytes.length;
+            if (batch.data.size() >= MAX_RECORDS_PER_BATCH
+                    || batch.size >= MAX_BATCH_RECORDS_SIZE_BYTES) {
+                ready.add(batch);
+                open.remove(frp.streamName);
+            }
+        }
+        ready.addAll(open.values());
+        return ready;
+    }
+
+    /**
+     * Records of a single stream that are sent in one call.
+     */
+    static final class Batch {
+        final String streamName;
+        final List<byte[]> data = new ArrayList<byte[]>();
+        long size;
+
+        Batch(String streamName) {
+            this.streamName = streamName;
+        }
+
+        void add(byte[] bytes) {
+            data.add(bytes);
+            size += bytes.length;
+        }
+    }
+
+    /**
+     * Outcome of sending a {@link Batch}.
+     */
+    private static final class BatchResult {
+        final Batch batch;
+        List<byte[]> failures;
+        RuntimeException exception;
+        long elapsedMillis;
+
+        BatchResult(Batch batch) {
+            this.batch = batch;
+        }
+    }
+
+    /**
+     * State of a single submitAllRecords call. Batches are sent by the
+     * executor, while results are handled, and failed records saved again, on
+     * the submitting thread only.
+     */
+    private final class Submission {
+        private final RecordSender sender;
+        private final ExecutorCompletionService<BatchResult> completionService;
+        private final int maxConcurrency;
+        private int inFlight;
+        private int retry;
+        private RuntimeException failure;
+        int sentCount;
+
+        Submission(RecordSender sender, Executor executor, int maxConcurrency) {
+            this.sender = sender;
+            this.completionService = new ExecutorCompletionService<BatchResult>(executor);
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        /**
+         * @return true if no more batches should be sent, either because of an
+         *         exception or because batches keep failing entirely
+         */
+        boolean isStopped() {
+            return failure != null || retry >= MAX_RETRY;
+        }
+
+        /**
+         * Sends a batch once a slot is free. If the submission has stopped
+         * meanwhile, the batch is saved again instead.
+         */
+        void send(final Batch batch) {
+            while (inFlight >= maxConcurrency) {
+                completeOne();
+            }
+            if (isStopped()) {
+                requeue(batch.streamName, batch.data);
+                return;
+            }
+            completionService.submit(new Callable<BatchResult>() {
+                @Override
+                public BatchResult call() {
+                    BatchResult result = new BatchResult(batch);
+                    long start = System.currentTimeMillis();
+                    try {
+                        result.failures = sender.sendBatch(batch.streamName, batch.data);
+                    } catch (RuntimeException e) {
+                        result.exception = e;
+                    }
+                    result.elapsedMillis = System.currentTimeMillis() - start;
+                    return result;
+                }
+            });
+            inFlight++;
+        }
+
+        /**
+         * Waits for all batches in flight and handles their results.
+         */
+        void drain() {
+            while (inFlight > 0) {
+                completeOne();
+            }
+        }
+
+        void rethrowFailure() {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private void completeOne() {
+            BatchResult result = takeUninterruptibly();
+            inFlight--;
+            Batch batch = result.batch;
+            StreamSubmissionStatistics stats = statisticsOf(batch.streamName);
+            if (result.exception == null) {
+                List<byte[]> failures = result.failures;
+                int failureCount = failures == null ? 0 : failures.size();
+                int successCount = batch.data.size() - failureCount;
+                long failedBytes = 0;
+                if (failureCount > 0) {
+                    for (byte[] bytes : failures) {
+                        failedBytes += bytes.length;
+                    }
+                    requeue(batch.streamName, failures);
+                }
+                stats.recordBatch(successCount, batch.size - failedBytes, failureCount,
+                        result.elapsedMillis);
+                sentCount += successCount;
+                if (successCount == 0) {
+                    // no record went through, increase retry count.
+                    retry++;
+                }
+                return;
+            }
+
+            RuntimeException e = result.exception;
+            boolean recoverable = e instanceof AmazonClientException
+                    && sender.isRecoverable((AmazonClientException) e);
+            if (recoverable) {
+                requeue(batch.streamName, batch.data);
+                stats.recordBatch(0, 0, batch.data.size(), result.elapsedMillis);
+                Log.e(TAG,
+                        "ServiceException in submit all, the values of the data inside the requests appears valid.  The request will be kept",
+                        e);
+            } else {
+                // We have reason to believe the values in the request
+                // is invalid and cannot be sent or recovered.
+                stats.recordBatch(0, 0, 0, result.elapsedMillis);
+                Log.e(TAG,
+                        "ServiceException in submit all, the last request is presumed to be the cause and will be dropped",
+                        e);
+            }
+            if (failure == null) {
+                failure = e;
+            }
+        }
+
+        private BatchResult takeUninterruptibly() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return completionService.take().get();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        // the task catches runtime exceptions itself
+                        throw new AmazonClientException("Failed to send records", e.getCause());
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void requeue(String streamName, List<byte[]> data) {
+            for (byte[] bytes : data) {
+                storeRecord(bytes, streamName);
+            }
+        }
+    }
+
     /**
      * Reads a batch of records belong to the same stream into a list. If data
      * is read successfully, the stream name is returned.
@@ -195,15 +519,17 @@ public abstract class AbstractKinesisRecorder {
         int count = 0;
         FileRecordParser frp = new FileRecordParser();
         while (iterator.hasNext() && count < maxCount && size < maxSize) {
-            String line = iterator.peek();
-            if (line == null || line.isEmpty()) {
+            byte[] record = iterator.peekBytes();
+            if (record == null || record.length == 0) {
+                iterator.nextBytes();
                 continue;
             }
-            // parse a line. Skip in case of corrupted data
+            // parse a record. Skip in case of corrupted data
             try {
-                frp.parse(line);
+                frp.parse(record);
             } catch (Exception e) {
-                Log.w(TAG, "Failed to read line. Skip.", e);
+                Log.w(TAG, "Failed to read record. Skip.", e);
+                iterator.nextBytes();
                 continue;
             }
 
@@ -214,7 +540,7 @@ public abstract class AbstractKinesisRecorder {
                 count++;
                 size += frp.bytes.length;
                 lastStreamName = frp.streamName;
-                iterator.next();
+                iterator.nextBytes();
             } else {
                 break;
             }
@@ -256,6 +582,23 @@ public abstract class AbstractKinesisRecorder {
         return config.getMaxStorageSize();
     }
 
+    /**
+     * Stops the background flush and the threads that send batches
+     * concurrently. Saved records are kept on disk, and the recorder can
+     * still be used; a later submission starts new threads if needed.
+     */
+    public synchronized void shutdown() {
+        if (autoFlush != null) {
+            autoFlush.cancel();
+        }
+        if (submissionExecutor != null) {
+            // batches are only in flight during submitAllRecords, which holds
+            // the same lock
+            submissionExecutor.shutdown();
+            submissionExecutor = null;
+        }
+    }
+
     /**
      * Removes all requests saved to disk in the directory provided this
      * KinesisRecorder
@@ -266,5 +609,8 @@ public abstract class AbstractKinesisRecorder {
         } catch (IOException e) {
             throw new AmazonClientException("Error deleting events", e);
         }
+        if (autoFlush != null) {
+            autoFlush.cancel();
+        }
     }
 }
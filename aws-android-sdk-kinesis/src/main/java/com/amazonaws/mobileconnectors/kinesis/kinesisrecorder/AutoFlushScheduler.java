@@ -0,0 +1,247 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
+
+import com.amazonaws.AmazonClientException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Submits the records of a recorder in the background according to the flush
+ * policy of its {@link KinesisRecorderConfig}. A flush is triggered when the
+ * oldest pending record reaches the configured age, or when the pending bytes
+ * or the records saved since the last flush reach their thresholds.
+ * <p>
+ * All recorders share a single scheduler thread, so flushes of different
+ * recorders never run at the same time and
+ * {@link AbstractKinesisRecorder#saveRecord(byte[], String)} only updates a
+ * few counters. Nothing is scheduled while the record store is empty. When a
+ * flush fails, for example because the stream is throttled or the device is
+ * offline, the next flush is delayed by an exponential backoff with jitter,
+ * and is scheduled even if no threshold of the policy is reached again.
+ */
+class AutoFlushScheduler {
+    private static final Log log = LogFactory.getLog(AutoFlushScheduler.class);
+
+    /**
+     * Delay before a backlog found when the recorder is created is flushed,
+     * so that the recorder can finish its initialization.
+     */
+    static final long STARTUP_DELAY_MILLIS = 1000;
+    static final long BASE_BACKOFF_MILLIS = 1000;
+    static final long MAX_BACKOFF_MILLIS = 5 * 60 * 1000;
+
+    private static ScheduledExecutorService scheduler;
+
+    private final AbstractKinesisRecorder recorder;
+    private final long maxRecordAgeMillis;
+    private final long pendingBytesThreshold;
+    private final int recordCountThreshold;
+    private final Random random = new Random();
+
+    /** Time the oldest pending record was seen, or 0 when the store is empty **/
+    private long oldestRecordTime;
+    private int recordsSinceFlush;
+    private int failedFlushes;
+    private long backoffUntil;
+    private ScheduledFuture<?> scheduledFlush;
+    private long scheduledTime;
+
+    /**
+     * Creates a scheduler for the given recorder, or returns null if the
+     * config doesn't enable auto flush.
+     *
+     * @param recorder the recorder whose records are flushed
+     * @param config config holding the flush policy
+     * @return a scheduler, or null
+     */
+    static AutoFlushScheduler create(AbstractKinesisRecorder recorder,
+            KinesisRecorderConfig config) {
+        if (config == null || !config.isAutoFlushEnabled()) {
+            return null;
+        }
+        AutoFlushScheduler autoFlush = new AutoFlushScheduler(recorder,
+                config.getAutoFlushMaxRecordAge(), config.getAutoFlushPendingBytes(),
+                config.getAutoFlushRecordCount());
+        autoFlush.start();
+        return autoFlush;
+    }
+
+    AutoFlushScheduler(AbstractKinesisRecorder recorder, long maxRecordAgeMillis,
+            long pendingBytesThreshold, int recordCountThreshold) {
+        this.recorder = recorder;
+        this.maxRecordAgeMillis = maxRecordAgeMillis;
+        this.pendingBytesThreshold = pendingBytesThreshold;
+        this.recordCountThreshold = recordCountThreshold;
+    }
+
+    private static synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "KinesisRecorder-autoflush");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return scheduler;
+    }
+
+    /**
+     * Schedules a flush of records left from a previous session. They are
+     * aged from the time the recorder is created.
+     */
+    synchronized void start() {
+        if (recorder.getDiskBytesUsed() > 0) {
+            long now = System.currentTimeMillis();
+            oldestRecordTime = now;
+            schedule(Math.max(nextFlushTime(now), now + STARTUP_DELAY_MILLIS));
+        }
+    }
+
+    /**
+     * Called after a record is saved. It's cheap enough to be called on the
+     * thread that saves records.
+     */
+    synchronized void onRecordSaved() {
+        long now = System.currentTimeMillis();
+        if (oldestRecordTime == 0) {
+            oldestRecordTime = now;
+        }
+        recordsSinceFlush++;
+        schedule(nextFlushTime(now));
+    }
+
+    /**
+     * Cancels the pending flush, if any, once all the records have been
+     * deleted. Records saved afterwards schedule a new one.
+     */
+    synchronized void cancel() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        oldestRecordTime = 0;
+        recordsSinceFlush = 0;
+        failedFlushes = 0;
+        backoffUntil = 0;
+    }
+
+    /**
+     * Returns when the next flush should run according to the policy, or
+     * Long.MAX_VALUE if no threshold applies yet.
+     */
+    private long nextFlushTime(long now) {
+        long time = Long.MAX_VALUE;
+        if ((recordCountThreshold > 0 && recordsSinceFlush >= recordCountThreshold)
+                || (pendingBytesThreshold > 0
+                        && recorder.getDiskBytesUsed() >= pendingBytesThreshold)) {
+            time = now;
+        } else if (maxRecordAgeMillis > 0 && oldestRecordTime > 0) {
+            time = oldestRecordTime + maxRecordAgeMillis;
+        }
+        return time == Long.MAX_VALUE ? time : Math.max(time, backoffUntil);
+    }
+
+    /**
+     * Schedules a flush at the given time unless one is already scheduled
+     * before it.
+     */
+    private void schedule(long time) {
+        if (time == Long.MAX_VALUE) {
+            return;
+        }
+        if (scheduledFlush != null) {
+            if (scheduledTime <= time) {
+                return;
+            }
+            scheduledFlush.cancel(false);
+        }
+        long delay = Math.max(0, time - System.currentTimeMillis());
+        scheduledTime = time;
+        scheduledFlush = getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    void flush() {
+        synchronized (this) {
+            scheduledFlush = null;
+            recordsSinceFlush = 0;
+        }
+
+        boolean failed = false;
+        try {
+            recorder.submitAllRecords();
+        } catch (AmazonClientException ace) {
+            log.warn("Auto flush failed, will retry later", ace);
+            failed = true;
+        } catch (RuntimeException e) {
+            log.error("Unexpected error in auto flush", e);
+            failed = true;
+        }
+
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (recorder.getDiskBytesUsed() == 0) {
+                // nothing left, wait for the next record
+                oldestRecordTime = 0;
+                failedFlushes = 0;
+                backoffUntil = 0;
+                return;
+            }
+            // records are left behind either because the flush failed or
+            // because the service kept rejecting some of them
+            oldestRecordTime = now;
+            if (failed || recordsSinceFlush == 0) {
+                backoffUntil = now + backoff(failedFlushes++);
+                // retry after the backoff even if the policy only counts
+                // records and no new record comes in
+                long time = nextFlushTime(now);
+                schedule(time == Long.MAX_VALUE ? backoffUntil : time);
+            } else {
+                failedFlushes = 0;
+                backoffUntil = 0;
+                schedule(nextFlushTime(now));
+            }
+        }
+    }
+
+    /**
+     * Returns an exponential backoff with jitter: half of the delay is fixed
+     * and the other half random, so that devices coming back online don't
+     * retry in lockstep.
+     */
+    long backoff(int attempt) {
+        long delay = BASE_BACKOFF_MILLIS << Math.min(attempt, 20);
+        delay = Math.min(delay, MAX_BACKOFF_MILLIS);
+        long half = delay / 2;
+        return half + (long) (random.nextDouble() * (delay - half));
+    }
+}
@@ -16,11 +16,18 @@
 package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
 
 import com.amazonaws.util.Base64;
+import com.amazonaws.util.StringUtils;
 
 /**
- * A parser for Kinesis records. It has a helper method to serialize a Kinesis
- * record. The serialized data can be read via {@link #parse(String)}. It's not
+ * A parser for Kinesis records. It has helper methods to serialize a Kinesis
+ * record. The serialized data can be read via {@link #parse(byte[])}. It's not
  * thread safe.
+ * <p>
+ * A record is serialized as a format byte, the length of the UTF-8 encoded
+ * stream name as an unsigned two-byte big-endian number, the stream name, and
+ * the data as is. Records saved by earlier versions are lines of text made of
+ * the stream name and the Base64 encoded data; they are still understood by
+ * {@link #parse(byte[])}.
  */
 class FileRecordParser {
     /**
@@ -28,9 +35,20 @@ class FileRecordParser {
      */
     private static final String DELIMITER = ",";
 
+    /**
+     * First byte of a binary record. Stream names never start with it.
+     */
+    static final byte BINARY_FORMAT = 0x01;
+
+    private static final int BINARY_HEADER_LENGTH = 3;
+    private static final int MAX_STREAM_NAME_LENGTH = 0xffff;
+
     String streamName;
     byte[] bytes;
 
+    /** Encoded form of streamName, so that it isn't decoded for every record **/
+    private byte[] streamNameBytes;
+
     /**
      * Parses a Kinesis record from a line.
      * 
@@ -42,9 +60,50 @@ class FileRecordParser {
             throw new IllegalArgumentException("Invalid line: " + line);
         }
         streamName = parts[0];
+        streamNameBytes = null;
         bytes = Base64.decode(parts[1]);
     }
 
+    /**
+     * Parses a Kinesis record serialized by {@link #asBytes(String, byte[])},
+     * or a line saved by earlier versions.
+     *
+     * @param record the serialized record
+     */
+    void parse(byte[] record) {
+        if (record.length == 0 || record[0] != BINARY_FORMAT) {
+            parse(new String(record, StringUtils.UTF8));
+            return;
+        }
+        if (record.length < BINARY_HEADER_LENGTH) {
+            throw new IllegalArgumentException("Invalid record: too short");
+        }
+        int nameLength = ((record[1] & 0xff) << 8) | (record[2] & 0xff);
+        int dataOffset = BINARY_HEADER_LENGTH + nameLength;
+        if (dataOffset > record.length) {
+            throw new IllegalArgumentException("Invalid record: stream name out of bounds");
+        }
+        if (!sameStreamName(record, BINARY_HEADER_LENGTH, nameLength)) {
+            streamNameBytes = new byte[nameLength];
+            System.arraycopy(record, BINARY_HEADER_LENGTH, streamNameBytes, 0, nameLength);
+            streamName = new String(streamNameBytes, StringUtils.UTF8);
+        }
+        bytes = new byte[record.length - dataOffset];
+        System.arraycopy(record, dataOffset, bytes, 0, bytes.length);
+    }
+
+    private boolean sameStreamName(byte[] record, int offset, int length) {
+        if (streamNameBytes == null || streamNameBytes.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (streamNameBytes[i] != record[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public String toString() {
         return asString(streamName, bytes);
@@ -60,4 +119,25 @@ class FileRecordParser {
     public static String asString(String streamName, byte[] bytes) {
         return streamName + DELIMITER + Base64.encodeAsString(bytes);
     }
+
+    /**
+     * Serializes a Kinesis record into the binary format.
+     *
+     * @param streamName the stream name of the Kinesis record
+     * @param bytes data to be serialized
+     * @return the serialized record
+     */
+    public static byte[] asBytes(String streamName, byte[] bytes) {
+        byte[] name = streamName.getBytes(StringUtils.UTF8);
+        if (name.length > MAX_STREAM_NAME_LENGTH) {
+            throw new IllegalArgumentException("Stream name is too long");
+        }
+        byte[] record = new byte[BINARY_HEADER_LENGTH + name.length + bytes.length];
+        record[0] = BINARY_FORMAT;
+        record[1] = (byte) (name.length >>> 8);
+        record[2] = (byte) name.length;
+        System.arraycopy(name, 0, record, BINARY_HEADER_LENGTH, name.length);
+        System.arraycopy(bytes, 0, record, BINARY_HEADER_LENGTH + name.length, bytes.length);
+        return record;
+    }
 }
@@ -20,36 +20,104 @@ import android.util.Log;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.util.StringUtils;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
 
 /**
  * The FileRecordStore is responsible for recording Kinesis PutRecordRequests to
- * the Android disk. Currently it stores each request as a JSON object
- * representing it's properties. One request per line.
+ * the Android disk. Records are opaque byte arrays, see {@link FileRecordParser}
+ * for how a Kinesis record is laid out.
+ * <p>
+ * Records are appended to a log made of fixed-size segment files, named after
+ * the record file name and a sequence number. Each segment starts with a
+ * four-byte magic header followed by frames of a four-byte big-endian length,
+ * the record bytes, and a CRC32 of the record bytes. Concurrent writers are
+ * grouped into a single write on a long-lived file channel. Once put() returns
+ * the record is in the file, so it survives the process being killed. When
+ * writes are synced, the channel is also forced to the storage device before
+ * put() returns, so the record survives a power loss too; the cost of the
+ * sync is shared by the grouped writers. A write that fails is truncated away
+ * so that it doesn't hide the records appended after it. Consumption is
+ * tracked by a persisted read offset, so acknowledged records are never
+ * rewritten; segments are deleted whole once every record in them has been
+ * read and removed.
+ * <p>
+ * Files written by earlier versions, which stored one record per line of
+ * text, are converted to frames the first time the store is opened.
  */
 class FileRecordStore {
     private static final String TAG = "FileRecordStore";
-    private final ReentrantLock accessLock = new ReentrantLock(true);
 
-    /** The file the requests are stored in **/
-    private File recordFile;
+    /** Default size in bytes after which a new segment is started **/
+    static final long DEFAULT_SEGMENT_SIZE = 1024 * 1024L;
+
+    private static final String OFFSET_FILE_SUFFIX = ".offset";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final byte NEW_LINE = '\n';
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * Magic header of a segment. The leading zero byte can't start a line of
+     * text, which tells segments apart from record files of earlier versions.
+     */
+    private static final byte[] SEGMENT_MAGIC = {
+            0x00, 'K', 'R', 0x01
+    };
+    static final int SEGMENT_HEADER_LENGTH = SEGMENT_MAGIC.length;
+    /** Bytes a frame adds to a record: length prefix and CRC32 **/
+    static final int FRAME_OVERHEAD = 8;
+    /** Upper bound of a sane record length, larger ones indicate corruption **/
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    /** Guards the segment list, read offset, byte counters and pending writes **/
+    private final ReentrantLock accessLock = new ReentrantLock(true);
+    /** Serializes writes to the active segment. Acquired before accessLock **/
+    private final ReentrantLock commitLock = new ReentrantLock();
 
     /** The FileManager used for interacting with the FS **/
     private final FileManager fileManager;
 
     private final String recordFileName;
     private final long maxStorageSize;
+    private final long segmentSize;
+    private final boolean syncWrites;
+
+    /** Directory holding the segments and the offset file **/
+    private File recordsDir;
+    /** Live segments, oldest first. The last one is being appended to **/
+    private final List<Segment> segments = new ArrayList<Segment>();
+    /** Channel on the last segment **/
+    private FileChannel writeChannel;
+
+    /** Sequence number of the segment holding the next unread record **/
+    private long headSequence;
+    /** Position in the head segment of the next unread record **/
+    private long headPosition;
+    /** Bytes of unread records, committed or pending **/
+    private long liveBytes;
+
+    /** Records accepted by put() but not yet written to the active segment **/
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    /** The batch the pending records will be written in **/
+    private PendingBatch pendingBatch = new PendingBatch();
 
     /**
      * Creates the FileRecordStore
@@ -60,137 +128,677 @@ class FileRecordStore {
      * @param maxStorageSize Maximum storage size in bytes
      */
     public FileRecordStore(File workDirectory, String recordFileName, long maxStorageSize) {
+        this(workDirectory, recordFileName, maxStorageSize, false);
+    }
+
+    /**
+     * Creates the FileRecordStore
+     *
+     * @param workDirectory The directory to use to store requests in
+     * @param recordFileName Name of the record file
+     * @param maxStorageSize Maximum storage size in bytes
+     * @param syncWrites Whether saved records are forced to the storage
+     *            device before put() returns
+     */
+    public FileRecordStore(File workDirectory, String recordFileName, long maxStorageSize,
+            boolean syncWrites) {
+        this(workDirectory, recordFileName, maxStorageSize, DEFAULT_SEGMENT_SIZE, syncWrites);
+    }
+
+    /**
+     * Creates the FileRecordStore with a custom segment size.
+     *
+     * @param workDirectory The directory to use to store requests in
+     * @param recordFileName Name of the record file
+     * @param maxStorageSize Maximum storage size in bytes
+     * @param segmentSize Size in bytes after which a new segment is started
+     * @param syncWrites Whether saved records are forced to the storage
+     *            device before put() returns
+     */
+    FileRecordStore(File workDirectory, String recordFileName, long maxStorageSize,
+            long segmentSize, boolean syncWrites) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Segment size must be positive");
+        }
         this.fileManager = new FileManager(workDirectory);
         this.recordFileName = recordFileName;
         this.maxStorageSize = maxStorageSize;
+        this.segmentSize = segmentSize;
+        this.syncWrites = syncWrites;
         try {
-            tryCreateRecordsFile();
+            open();
         } catch (IOException ioe) {
             throw new AmazonClientException("Failed to create fire store", ioe);
         }
     }
 
+    /**
+     * Checks whether a record store of the given name exists in the work
+     * directory, either as segments or as a single record file written by
+     * earlier versions.
+     *
+     * @param workDirectory work directory
+     * @param recordFileName name of the record file
+     * @return true if the store has files on disk
+     */
+    static boolean exists(File workDirectory, String recordFileName) {
+        File dir = new File(workDirectory, Constants.RECORDS_DIRECTORY);
+        return new File(dir, recordFileName).isFile()
+                || !listSegmentSequences(dir, recordFileName).isEmpty();
+    }
+
+    /**
+     * Saves the UTF-8 bytes of a string as a record.
+     *
+     * @param record the record
+     * @return true if saved, false if the store is full
+     * @throws IOException if the record can't be written
+     */
     public boolean put(final String record) throws IOException {
-        boolean success = false;
-        BufferedWriter writer = null;
+        return put(record.getBytes(StringUtils.UTF8));
+    }
+
+    /**
+     * Saves a record.
+     *
+     * @param record the record bytes
+     * @return true if saved, false if the store is full
+     * @throws IOException if the record can't be written
+     */
+    public boolean put(final byte[] record) throws IOException {
+        if (record.length > MAX_RECORD_LENGTH) {
+            throw new IllegalArgumentException("Record is too large: " + record.length);
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(record, 0, record.length);
+        PendingBatch batch;
         accessLock.lock();
         try {
-            writer = tryInitializeWriter();
-            if (recordFile.length() + record.getBytes(StringUtils.UTF8).length <= maxStorageSize) {
-                writer.write(record);
-                writer.newLine();
-                writer.flush();
-                success = true;
+            int frameLength = record.length + FRAME_OVERHEAD;
+            if (liveBytes + frameLength > maxStorageSize) {
+                return false;
             }
+            writeInt(pending, record.length);
+            pending.write(record, 0, record.length);
+            writeInt(pending, (int) crc32.getValue());
+            liveBytes += frameLength;
+            batch = pendingBatch;
         } finally {
-            if (writer != null) {
-                writer.close();
-            }
             accessLock.unlock();
         }
 
-        return success;
+        commit(batch);
+        return true;
     }
 
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xff) << 24)
+                | ((bytes[offset + 1] & 0xff) << 16)
+                | ((bytes[offset + 2] & 0xff) << 8)
+                | (bytes[offset + 3] & 0xff);
+    }
+
+    /**
+     * Returns the number of bytes taken by records that haven't been removed.
+     * A partially consumed segment may keep up to one segment worth of
+     * removed records on disk until it is fully consumed.
+     *
+     * @return size of unread records in bytes
+     */
     public long getFileSize() {
-        return recordFile == null ? 0 : recordFile.length();
+        accessLock.lock();
+        try {
+            return liveBytes;
+        } finally {
+            accessLock.unlock();
+        }
+    }
+
+    /**
+     * Makes sure the given batch is written to the active segment. The first
+     * writer to get here writes the records of every writer that queued up
+     * behind it in one go.
+     *
+     * @throws IOException if the batch couldn't be written
+     */
+    private void commit(PendingBatch batch) throws IOException {
+        if (!batch.done) {
+            commitLock.lock();
+            try {
+                // Batches are only swapped while holding commitLock, so a
+                // batch that isn't done yet is still the pending one
+                if (!batch.done) {
+                    writePending();
+                }
+            } finally {
+                commitLock.unlock();
+            }
+        }
+        IOException failure = batch.failure;
+        if (failure != null) {
+            throw new IOException("Failed to write record: " + failure.getMessage());
+        }
+    }
+
+    /**
+     * Writes everything accepted so far to the active segment. A failure is
+     * reported to the writers of the batch, not to the caller. Must be called
+     * while holding commitLock.
+     */
+    private void writePending() {
+        byte[] bytes;
+        PendingBatch batch;
+        accessLock.lock();
+        try {
+            bytes = pending.toByteArray();
+            pending.reset();
+            batch = pendingBatch;
+            pendingBatch = new PendingBatch();
+        } finally {
+            accessLock.unlock();
+        }
+        try {
+            writeToActiveSegment(bytes);
+        } catch (IOException e) {
+            accessLock.lock();
+            try {
+                liveBytes -= bytes.length;
+            } finally {
+                accessLock.unlock();
+            }
+            batch.failure = e;
+        } finally {
+            batch.done = true;
+        }
     }
 
-    private void tryCreateRecordsFile() throws IOException {
-        if (recordFile != null && recordFile.exists()) {
+    /**
+     * Writes everything accepted so far to the active segment.
+     */
+    private void flush() {
+        commitLock.lock();
+        try {
+            writePending();
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Appends the bytes to the active segment and, if writes are synced,
+     * forces them to the storage device. If that fails, the segment is
+     * truncated back to its committed length, so a torn frame is never
+     * followed by later records.
+     */
+    private void writeToActiveSegment(byte[] batch) throws IOException {
+        if (batch.length == 0) {
             return;
         }
+        Segment active = activeSegment();
+        if (active.length >= segmentSize) {
+            active = rollSegment();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(batch);
+        try {
+            while (buffer.hasRemaining()) {
+                writeChannel.write(buffer);
+            }
+            if (syncWrites) {
+                writeChannel.force(false);
+            }
+        } catch (IOException e) {
+            try {
+                writeChannel.truncate(active.length);
+            } catch (IOException truncateFailure) {
+                Log.e(TAG, "Failed to truncate a partial write in " + active.file.getName(),
+                        truncateFailure);
+            }
+            throw e;
+        }
+        accessLock.lock();
+        try {
+            active.length += batch.length;
+        } finally {
+            accessLock.unlock();
+        }
+    }
 
-        synchronized (this) {
-            if (recordFile != null && recordFile.exists()) {
-                return;
+    private Segment activeSegment() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private Segment rollSegment() throws IOException {
+        Segment next = new Segment(activeSegment().sequence + 1);
+        createSegmentFile(next);
+        FileChannel channel = openWriteChannel(next.file);
+        writeChannel.close();
+        writeChannel = channel;
+        accessLock.lock();
+        try {
+            segments.add(next);
+        } finally {
+            accessLock.unlock();
+        }
+        return next;
+    }
+
+    /**
+     * Creates an empty segment file holding just the header.
+     */
+    private void createSegmentFile(Segment segment) throws IOException {
+        OutputStream out = fileManager.newOutputStream(segment.file, false);
+        try {
+            out.write(SEGMENT_MAGIC);
+        } finally {
+            out.close();
+        }
+        segment.length = SEGMENT_HEADER_LENGTH;
+    }
+
+    /**
+     * Opens the channel records are appended to. Package-private so that
+     * tests can inject write failures.
+     */
+    FileChannel openWriteChannel(File file) throws IOException {
+        OutputStream stream = fileManager.newOutputStream(file, true);
+        return ((FileOutputStream) stream).getChannel();
+    }
+
+    /**
+     * Loads the segments and read offset from disk, converting files written
+     * by earlier versions if needed.
+     */
+    private void open() throws IOException {
+        recordsDir = fileManager.createDirectory(Constants.RECORDS_DIRECTORY);
+        if (recordsDir == null) {
+            throw new IOException("Failed to create records directory");
+        }
+
+        List<Long> sequences = listSegmentSequences(recordsDir, recordFileName);
+        if (sequences.isEmpty()) {
+            Segment first = new Segment(0);
+            File legacyFile = new File(recordsDir, recordFileName);
+            if (legacyFile.isFile()) {
+                if (!legacyFile.renameTo(first.file)) {
+                    throw new IOException("Failed to migrate record file");
+                }
+            } else {
+                createSegmentFile(first);
             }
+            sequences.add(0L);
+        }
+        for (Long sequence : sequences) {
+            Segment segment = new Segment(sequence);
+            segment.length = segment.file.length();
+            segments.add(segment);
+        }
 
-            File recordDir = fileManager.createDirectory(
-                    Constants.RECORDS_DIRECTORY);
-            recordFile = fileManager.createFile(new File(
-                    recordDir, recordFileName));
+        headSequence = segments.get(0).sequence;
+        headPosition = 0;
+        readOffset();
+        while (segments.get(0).sequence < headSequence) {
+            Segment consumed = segments.remove(0);
+            fileManager.deleteFile(consumed.file);
         }
+        for (Segment segment : segments) {
+            if (!hasSegmentHeader(segment)) {
+                convertLegacySegment(segment,
+                        segment.sequence == headSequence ? headPosition : 0);
+            }
+        }
+        headPosition = Math.max(headPosition, SEGMENT_HEADER_LENGTH);
+        truncateIncompleteRecord(activeSegment());
+        headPosition = Math.min(headPosition, findSegment(headSequence).length);
+
+        liveBytes = countBytesAfter(headSequence, headPosition);
+        writeChannel = openWriteChannel(activeSegment().file);
     }
 
-    private BufferedWriter tryInitializeWriter() throws IOException {
-        BufferedWriter writer = null;
-        tryCreateRecordsFile();
-        OutputStream stream = fileManager.newOutputStream(recordFile, true);
-        writer = new BufferedWriter(new OutputStreamWriter(stream, StringUtils.UTF8));
+    private boolean hasSegmentHeader(Segment segment) throws IOException {
+        if (segment.length < SEGMENT_HEADER_LENGTH) {
+            return false;
+        }
+        byte[] header = new byte[SEGMENT_HEADER_LENGTH];
+        RandomAccessFile file = new RandomAccessFile(segment.file, "r");
+        try {
+            file.readFully(header);
+        } finally {
+            file.close();
+        }
+        return Arrays.equals(SEGMENT_MAGIC, header);
+    }
 
-        return writer;
+    /**
+     * Rewrites a file of text lines, as written by earlier versions, into a
+     * segment of frames. Lines before the given position have already been
+     * consumed and are dropped. A trailing line without a line break is an
+     * incomplete write and is dropped too. Must be called before the read
+     * offset is used, as it moves the head to the first frame.
+     */
+    private void convertLegacySegment(Segment segment, long position) throws IOException {
+        File tempFile = new File(recordsDir, segment.file.getName() + TEMP_FILE_SUFFIX);
+        InputStream in = new BufferedInputStream(fileManager.newInputStream(segment.file));
+        OutputStream out = new BufferedOutputStream(fileManager.newOutputStream(tempFile, false));
+        int count = 0;
+        try {
+            long skipped = 0;
+            while (skipped < position) {
+                long n = in.skip(position - skipped);
+                if (n <= 0) {
+                    break;
+                }
+                skipped += n;
+            }
+            out.write(SEGMENT_MAGIC);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            ByteArrayOutputStream frame = new ByteArrayOutputStream();
+            CRC32 crc32 = new CRC32();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b != NEW_LINE) {
+                    line.write(b);
+                    continue;
+                }
+                byte[] record = line.toByteArray();
+                line.reset();
+                crc32.reset();
+                crc32.update(record, 0, record.length);
+                frame.reset();
+                writeInt(frame, record.length);
+                frame.write(record, 0, record.length);
+                writeInt(frame, (int) crc32.getValue());
+                frame.writeTo(out);
+                count++;
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+        if (!segment.file.delete() || !tempFile.renameTo(segment.file)) {
+            throw new IOException("Failed to convert record file " + segment.file.getName());
+        }
+        segment.length = segment.file.length();
+        if (segment.sequence == headSequence) {
+            headPosition = SEGMENT_HEADER_LENGTH;
+        }
+        Log.i(TAG, "Converted " + count + " records of " + segment.file.getName());
     }
 
-    private File deleteAllRecords() throws IOException {
-        File recordsDir = fileManager.createDirectory(
-                Constants.RECORDS_DIRECTORY);
+    /**
+     * Reads the persisted read offset, keeping it within the live segments.
+     */
+    private void readOffset() {
+        File offsetFile = new File(recordsDir, recordFileName + OFFSET_FILE_SUFFIX);
+        if (!offsetFile.isFile()) {
+            return;
+        }
+        String content = null;
+        InputStream in = null;
+        try {
+            in = fileManager.newInputStream(offsetFile);
+            byte[] bytes = new byte[64];
+            int read = in.read(bytes);
+            content = read > 0 ? new String(bytes, 0, read, StringUtils.UTF8).trim() : null;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read offset file. Start from the first record.", e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+        if (content == null) {
+            return;
+        }
+
+        String[] parts = content.split(" ");
+        try {
+            long sequence = Long.parseLong(parts[0]);
+            long position = Long.parseLong(parts[1]);
+            Segment segment = findSegment(sequence);
+            if (segment != null) {
+                headSequence = sequence;
+                headPosition = Math.max(0, Math.min(position, segment.length));
+            } else if (sequence > activeSegment().sequence) {
+                headSequence = activeSegment().sequence;
+                headPosition = activeSegment().length;
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Invalid offset file. Start from the first record.", e);
+        }
+    }
+
+    /**
+     * Persists the read offset. The new offset is written to a temporary file
+     * first and then renamed, so a crash never leaves a torn offset behind.
+     */
+    private void writeOffset() throws IOException {
+        File offsetFile = new File(recordsDir, recordFileName + OFFSET_FILE_SUFFIX);
+        File tempFile = new File(recordsDir, recordFileName + OFFSET_FILE_SUFFIX
+                + TEMP_FILE_SUFFIX);
+        OutputStream out = fileManager.newOutputStream(tempFile, false);
+        try {
+            out.write((headSequence + " " + headPosition).getBytes(StringUtils.UTF8));
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(offsetFile)) {
+            // some file systems don't replace on rename
+            offsetFile.delete();
+            if (!tempFile.renameTo(offsetFile)) {
+                throw new IOException("Failed to persist read offset");
+            }
+        }
+    }
 
-        recordFile.delete();
+    /**
+     * Drops a partially written or corrupted frame at the end of the segment
+     * along with anything after it. This can only be left behind if the
+     * process died in the middle of a write.
+     */
+    private void truncateIncompleteRecord(Segment segment) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(segment.file, "rw");
+        try {
+            long validLength = SEGMENT_HEADER_LENGTH;
+            byte[] record = new byte[READ_BUFFER_SIZE];
+            CRC32 crc32 = new CRC32();
+            file.seek(validLength);
+            while (segment.length - validLength >= FRAME_OVERHEAD) {
+                int length = file.readInt();
+                if (length < 0 || length > MAX_RECORD_LENGTH
+                        || validLength + length + FRAME_OVERHEAD > segment.length) {
+                    break;
+                }
+                if (record.length < length) {
+                    record = new byte[length];
+                }
+                file.readFully(record, 0, length);
+                int crc = file.readInt();
+                crc32.reset();
+                crc32.update(record, 0, length);
+                if (crc != (int) crc32.getValue()) {
+                    break;
+                }
+                validLength += length + FRAME_OVERHEAD;
+            }
+            if (validLength < segment.length) {
+                Log.w(TAG, "Dropping incomplete record at the end of " + segment.file.getName());
+                file.setLength(validLength);
+                segment.length = validLength;
+            }
+        } finally {
+            file.close();
+        }
+    }
 
-        recordFile = fileManager.createFile(new File(
-                recordsDir, recordFileName));
-        return recordFile;
+    private static List<Long> listSegmentSequences(File dir, String recordFileName) {
+        List<Long> sequences = new ArrayList<Long>();
+        String[] names = dir.list();
+        if (names == null) {
+            return sequences;
+        }
+        String prefix = recordFileName + ".";
+        for (String name : names) {
+            if (!name.startsWith(prefix)) {
+                continue;
+            }
+            String suffix = name.substring(prefix.length());
+            if (suffix.length() == 0) {
+                continue;
+            }
+            boolean digits = true;
+            for (int i = 0; i < suffix.length() && digits; i++) {
+                digits = Character.isDigit(suffix.charAt(i));
+            }
+            if (digits) {
+                sequences.add(Long.valueOf(suffix));
+            }
+        }
+        Collections.sort(sequences);
+        return sequences;
     }
 
-    private File deleteReadRecords(final int lineNumber) throws IOException {
-        // Write all records after line number to a temporary file
-        File recordsDir = fileManager.createDirectory(
-                Constants.RECORDS_DIRECTORY);
+    private Segment findSegment(long sequence) {
+        for (Segment segment : segments) {
+            if (segment.sequence == sequence) {
+                return segment;
+            }
+        }
+        return null;
+    }
 
-        File tempRecordsFile = null;
-        File tempFile = new File(
-                recordsDir, recordFileName + ".tmp");
-        if (tempFile.exists()) {
-            if (!tempFile.delete()) {
-                throw new IOException("Failed to delete previous temp file");
+    /**
+     * Counts the committed record bytes from the given position to the end of
+     * the log, leaving out segment headers. Must be called while holding
+     * accessLock.
+     */
+    private long countBytesAfter(long sequence, long position) {
+        long count = 0;
+        for (Segment segment : segments) {
+            if (segment.sequence > sequence) {
+                count += segment.length - SEGMENT_HEADER_LENGTH;
+            } else if (segment.sequence == sequence) {
+                count += segment.length - position;
             }
         }
-        tempRecordsFile = fileManager.createFile(tempFile);
+        return count;
+    }
 
-        if (tempRecordsFile != null && recordFile.exists() && tempRecordsFile.exists()) {
-            BufferedReader reader = null;
-            PrintWriter writer = null;
+    /**
+     * Moves the read offset forward to the given position, deleting segments
+     * that no longer hold any unread record.
+     */
+    private void removeRecordsBefore(long sequence, long position) throws IOException {
+        commitLock.lock();
+        try {
+            flush();
+            accessLock.lock();
             try {
-                reader = new BufferedReader(new InputStreamReader(new FileInputStream(recordFile),
-                        StringUtils.UTF8));
-                writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(
-                        tempRecordsFile, true), StringUtils.UTF8));
-
-                String line = null;
-                int currentLineNumber = 0;
-                while ((line = reader.readLine()) != null) {
-                    currentLineNumber++;
-                    if (currentLineNumber > lineNumber) {
-                        writer.println(line);
-                        writer.flush();
-                    }
+                if (sequence < headSequence
+                        || (sequence == headSequence && position <= headPosition)
+                        || findSegment(sequence) == null) {
+                    // stale position, already removed by another iterator
+                    return;
                 }
+                liveBytes -= countBytesAfter(headSequence, headPosition)
+                        - countBytesAfter(sequence, position);
+                headSequence = sequence;
+                headPosition = position;
+                deleteConsumedSegments();
+                writeOffset();
             } finally {
-                if (writer != null) {
-                    writer.close();
-                }
-                if (reader != null) {
-                    try {
-                        reader.close();
-                    } catch (IOException e) {
+                accessLock.unlock();
+            }
+        } finally {
+            commitLock.unlock();
+        }
+    }
 
-                    }
+    /**
+     * Deletes fully consumed segments. Once everything has been read the
+     * active segment is emptied so the log starts over. Must be called while
+     * holding both locks.
+     */
+    private void deleteConsumedSegments() throws IOException {
+        while (segments.size() > 1) {
+            Segment head = segments.get(0);
+            if (head.sequence < headSequence
+                    || (head.sequence == headSequence && headPosition >= head.length)) {
+                segments.remove(0);
+                if (!fileManager.deleteFile(head.file)) {
+                    Log.e(TAG, "Failed to delete segment " + head.file.getName());
                 }
-
-                if (!recordFile.delete() || !tempRecordsFile.renameTo(recordFile)) {
-                    throw new IOException(
-                            "Failed to delete read records and persist unread records");
+                if (head.sequence == headSequence) {
+                    headSequence = segments.get(0).sequence;
+                    headPosition = SEGMENT_HEADER_LENGTH;
                 }
+            } else {
+                break;
+            }
+        }
+        Segment active = activeSegment();
+        if (active.sequence == headSequence && headPosition >= active.length
+                && active.length > SEGMENT_HEADER_LENGTH) {
+            writeChannel.truncate(SEGMENT_HEADER_LENGTH);
+            active.length = SEGMENT_HEADER_LENGTH;
+            headPosition = SEGMENT_HEADER_LENGTH;
+        }
+    }
+
+    private void deleteAllRecords() throws IOException {
+        commitLock.lock();
+        try {
+            accessLock.lock();
+            try {
+                pending.reset();
+                // The records of the pending batch are deleted with the rest
+                pendingBatch.done = true;
+                pendingBatch = new PendingBatch();
+                headSequence = activeSegment().sequence;
+                headPosition = activeSegment().length;
+                liveBytes = 0;
+                deleteConsumedSegments();
+                writeOffset();
+            } finally {
+                accessLock.unlock();
             }
+        } finally {
+            commitLock.unlock();
+        }
+    }
 
-            if (tempFile.exists()) {
-                if (!tempFile.delete()) {
-                    Log.e(TAG, "Failed to delete temp file");
+    /**
+     * Closes the store and deletes all its files from disk. The store can't
+     * be used afterwards.
+     */
+    void deleteStore() throws IOException {
+        commitLock.lock();
+        try {
+            accessLock.lock();
+            try {
+                writeChannel.close();
+                for (Segment segment : segments) {
+                    fileManager.deleteFile(segment.file);
                 }
+                segments.clear();
+                fileManager.deleteFile(new File(recordsDir, recordFileName + OFFSET_FILE_SUFFIX));
+                liveBytes = 0;
+            } finally {
+                accessLock.unlock();
             }
+        } finally {
+            commitLock.unlock();
         }
-        return recordFile;
     }
 
     public RecordIterator iterator() {
@@ -198,28 +806,77 @@ class FileRecordStore {
 
     }
 
+    /**
+     * A segment file of the log.
+     */
+    private final class Segment {
+        final long sequence;
+        final File file;
+        /** Committed length. Guarded by accessLock **/
+        long length;
+
+        Segment(long sequence) {
+            this.sequence = sequence;
+            this.file = new File(recordsDir, String.format(Locale.US, "%s.%010d", recordFileName,
+                    sequence));
+        }
+    }
+
+    /**
+     * Records accepted by put() that are written together. Whoever writes
+     * the batch sets the failure, if any, before marking it done.
+     */
+    private static final class PendingBatch {
+        volatile boolean done;
+        volatile IOException failure;
+    }
+
     public class RecordIterator implements java.util.Iterator<String> {
-        int linesRead = 0;
-        String nextBuffer = null;
-        BufferedReader reader = null;
-        boolean isEndOfFile = false;
+        /** Position right after the last record returned by next() **/
+        long readSequence;
+        long readPosition;
+        byte[] nextBuffer = null;
+        long nextBufferSequence;
+        long nextBufferEnd;
 
-        private boolean tryOpenReader() throws FileNotFoundException {
-            if (reader != null) {
-                return true;
+        /** Position of the reader, right after the last frame it read **/
+        long readerSequence;
+        long readerPosition;
+        FileInputStream reader = null;
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int bufferStart = 0;
+        int bufferEnd = 0;
+        final CRC32 crc32 = new CRC32();
+
+        RecordIterator() {
+            accessLock.lock();
+            try {
+                resetPosition();
+            } finally {
+                accessLock.unlock();
             }
+        }
 
-            if (!isEndOfFile) {
-                InputStreamReader streamReader = null;
-                streamReader = new InputStreamReader(fileManager.newInputStream(recordFile),
-                        StringUtils.UTF8);
+        private void resetPosition() {
+            readSequence = headSequence;
+            readPosition = headPosition;
+            readerSequence = headSequence;
+            readerPosition = headPosition;
+            nextBuffer = null;
+        }
 
-                if (streamReader != null) {
-                    reader = new BufferedReader(streamReader);
-                    return true;
-                }
+        private void tryOpenReader() throws IOException {
+            if (reader != null) {
+                return;
             }
-            return false;
+            Segment segment = findSegment(readerSequence);
+            if (segment == null) {
+                throw new FileNotFoundException("Segment " + readerSequence + " was removed");
+            }
+            reader = (FileInputStream) fileManager.newInputStream(segment.file);
+            reader.getChannel().position(readerPosition);
+            bufferStart = 0;
+            bufferEnd = 0;
         }
 
         private void tryCloseReader() throws IOException {
@@ -229,96 +886,186 @@ class FileRecordStore {
             }
         }
 
-        @Override
-        public boolean hasNext() {
-            boolean hasNext = false;
-            accessLock.lock();
-            try {
-                // If there is something already buffered then there is a
-                // next
-                if (nextBuffer != null) {
-                    hasNext = true;
-                } else {
-                    if (!tryOpenReader()) {
-                        return hasNext;
-                    }
-                    // Nothing was previously buffered so try to read one
-                    // more line
-                    boolean found = false;
-                    while (!found) {
-                        try {
-                            nextBuffer = reader.readLine();
-                            found = true;
-                        } catch (IOException e) {
-                            nextBuffer = null;
-                            found = true;
-                        }
-                    }
-                    if (nextBuffer != null) {
-                        // There was at least one more line so there is a
-                        // next
-                        hasNext = true;
-                    } else {
-                        // The next line was null so it should be the end of
-                        // the file. Try to close the reader
-                        isEndOfFile = true;
-                        tryCloseReader();
+        /**
+         * Reads the next complete record of the current segment, moving on to
+         * the next segment at the end of a sealed one. Returns null when there
+         * are no more records. Must be called while holding accessLock.
+         */
+        private byte[] readRecord() throws IOException {
+            while (true) {
+                tryOpenReader();
+                byte[] record = readRecordFromSegment();
+                if (record != null) {
+                    return record;
+                }
+                if (readerSequence >= activeSegment().sequence) {
+                    return null;
+                }
+                // end of a sealed segment, continue with the next one
+                int index = segments.indexOf(findSegment(readerSequence));
+                tryCloseReader();
+                readerSequence = segments.get(index + 1).sequence;
+                readerPosition = SEGMENT_HEADER_LENGTH;
+            }
+        }
+
+        /**
+         * Makes sure the buffer holds at least the given number of bytes from
+         * bufferStart on, reading more from the segment if needed.
+         *
+         * @return false if the segment ends before that
+         */
+        private boolean fill(int count) throws IOException {
+            while (bufferEnd - bufferStart < count) {
+                if (buffer.length - bufferStart < count) {
+                    byte[] target = buffer.length < count ? new byte[Math.max(count,
+                            buffer.length * 2)] : buffer;
+                    System.arraycopy(buffer, bufferStart, target, 0, bufferEnd - bufferStart);
+                    bufferEnd -= bufferStart;
+                    bufferStart = 0;
+                    buffer = target;
+                }
+                int read = reader.read(buffer, bufferEnd, buffer.length - bufferEnd);
+                if (read <= 0) {
+                    return false;
+                }
+                bufferEnd += read;
+            }
+            return true;
+        }
+
+        private byte[] readRecordFromSegment() throws IOException {
+            while (true) {
+                if (!fill(4)) {
+                    break;
+                }
+                int length = readInt(buffer, bufferStart);
+                if (length < 0 || length > MAX_RECORD_LENGTH) {
+                    Log.e(TAG, "Corrupted record in segment " + readerSequence
+                            + ". Skip the rest of the segment.");
+                    if (readerSequence >= activeSegment().sequence) {
+                        break;
                     }
+                    tryCloseReader();
+                    return null;
+                }
+                if (!fill(length + FRAME_OVERHEAD)) {
+                    break;
+                }
+                int start = bufferStart + 4;
+                crc32.reset();
+                crc32.update(buffer, start, length);
+                int crc = readInt(buffer, start + length);
+                bufferStart += length + FRAME_OVERHEAD;
+                readerPosition += length + FRAME_OVERHEAD;
+                if (crc != (int) crc32.getValue()) {
+                    Log.e(TAG, "Checksum mismatch in segment " + readerSequence
+                            + ". Skip the record.");
+                    continue;
                 }
-                return hasNext;
+                byte[] record = new byte[length];
+                System.arraycopy(buffer, start, record, 0, length);
+                return record;
+            }
+            // no complete record, forget the partial read so that it's read
+            // again once the record is complete
+            tryCloseReader();
+            return null;
+        }
+
+        /**
+         * Reads the next record into the buffer unless one is already there.
+         * Must be called while holding accessLock.
+         */
+        private boolean bufferNext() {
+            // If there is something already buffered then there is a next
+            if (nextBuffer != null) {
+                return true;
+            }
+            try {
+                nextBuffer = readRecord();
             } catch (FileNotFoundException fnfe) {
                 throw new AmazonClientException("Cannot find records file", fnfe);
             } catch (IOException ioe) {
                 throw new AmazonClientException("IO Error", ioe);
+            }
+            nextBufferSequence = readerSequence;
+            nextBufferEnd = readerPosition;
+            return nextBuffer != null;
+        }
+
+        /**
+         * Writes out pending records so that they are visible to the reader.
+         * Must not be called while holding accessLock.
+         */
+        private void flushPending() {
+            flush();
+        }
+
+        @Override
+        public boolean hasNext() {
+            flushPending();
+            accessLock.lock();
+            try {
+                return bufferNext();
             } finally {
                 accessLock.unlock();
             }
         }
 
+        /**
+         * Returns the next record as a UTF-8 string.
+         *
+         * @return the next record, or null if there are no more records
+         */
         @Override
         public String next() {
-            String next = null;
+            byte[] next = nextBytes();
+            return next == null ? null : new String(next, StringUtils.UTF8);
+        }
+
+        /**
+         * Returns the next record.
+         *
+         * @return the next record, or null if there are no more records
+         */
+        public byte[] nextBytes() {
+            flushPending();
             accessLock.lock();
             try {
-                if (nextBuffer != null) {
-                    next = nextBuffer;
-                    linesRead++;
-                    nextBuffer = null;
-                } else {
-                    if (!tryOpenReader()) {
-                        return next;
-                    }
-                    boolean found = false;
-                    while (!found) {
-                        try {
-                            next = reader.readLine();
-                            found = true;
-                        } catch (IOException e) {
-                            next = null;
-                            found = true;
-                        }
-                    }
-                    if (next != null) {
-                        linesRead++;
-                    } else {
-                        isEndOfFile = true;
-                        tryCloseReader();
-                    }
+                if (!bufferNext()) {
+                    return null;
                 }
+                byte[] next = nextBuffer;
+                nextBuffer = null;
+                readSequence = nextBufferSequence;
+                readPosition = nextBufferEnd;
                 return next;
-            } catch (FileNotFoundException e) {
-                throw new AmazonClientException("Cannot find records file", e);
-            } catch (IOException ioe) {
-                throw new AmazonClientException("IO Error", ioe);
             } finally {
                 accessLock.unlock();
             }
         }
 
+        /**
+         * Returns the next record as a UTF-8 string without consuming it.
+         *
+         * @return the next record, or null if there are no more records
+         */
         public String peek() {
+            byte[] next = peekBytes();
+            return next == null ? null : new String(next, StringUtils.UTF8);
+        }
+
+        /**
+         * Returns the next record without consuming it.
+         *
+         * @return the next record, or null if there are no more records
+         */
+        public byte[] peekBytes() {
+            flushPending();
             accessLock.lock();
             try {
-                hasNext();
+                bufferNext();
                 return nextBuffer;
             } finally {
                 accessLock.unlock();
@@ -332,34 +1079,32 @@ class FileRecordStore {
         }
 
         public void removeReadRecords() throws IOException {
+            removeRecordsBefore(readSequence, readPosition);
+            resetReader();
+        }
+
+        public void removeAllRecords() throws IOException {
+            deleteAllRecords();
+            resetReader();
+        }
+
+        private void resetReader() throws IOException {
             accessLock.lock();
             try {
-                deleteReadRecords(linesRead);
-                resetReader();
+                tryCloseReader();
+                resetPosition();
             } finally {
                 accessLock.unlock();
             }
         }
 
-        public void removeAllRecords() throws IOException {
+        public void close() throws IOException {
             accessLock.lock();
             try {
-                deleteAllRecords();
-                resetReader();
+                tryCloseReader();
             } finally {
                 accessLock.unlock();
             }
         }
-
-        private void resetReader() throws IOException {
-            tryCloseReader();
-            linesRead = 0;
-            nextBuffer = null;
-            isEndOfFile = false;
-        }
-
-        public void close() throws IOException {
-            tryCloseReader();
-        }
     }
 }
@@ -37,9 +37,10 @@ import java.util.regex.Pattern;
  * Warning: You should not create multiple {@link KinesisFirehoseRecorder} given
  * the same directory. Doing so is an error and behavior is undefined.
  * <p/>
- * Note: {@link KinesisFirehoseRecorder} stores the requests in plain-text, and
- * does not perform additional security measures outside of what the Android OS
- * offers by default. Therefore it is recommended you pass a directory that is
+ * Note: {@link KinesisFirehoseRecorder} stores the requests unencrypted, as
+ * binary frames that hold the data of each request as is, and does not perform
+ * additional security measures outside of what the Android OS offers by
+ * default. Therefore it is recommended you pass a directory that is
  * only visible to your application, and additionally do not store highly
  * sensitive information using {@link KinesisFirehoseRecorder}.
  * 
@@ -121,7 +122,7 @@ public class KinesisFirehoseRecorder extends AbstractKinesisRecorder {
      * Note: Kinesis Firehose Recorder is synchronous, and it's methods should
      * not be called on the main thread.
      * <p>
-     * Note: Kinesis Firehose Recorder stores requests in plain-text, we
+     * Note: Kinesis Firehose Recorder stores requests unencrypted, we
      * recommend using a directory that is only readable by your application and
      * not storing highly sensitive information in requests stored by Kinesis
      * Firehose Recorder.
@@ -145,7 +146,7 @@ public class KinesisFirehoseRecorder extends AbstractKinesisRecorder {
      * Note: Kinesis Firehose Recorder is synchronous, and it's methods should
      * not be called on the main thread.
      * <p>
-     * Note: Kinesis Firehose Recorder stores requests in plain-text, we
+     * Note: Kinesis Firehose Recorder stores requests unencrypted, we
      * recommend using a directory that is only readable by your application and
      * not storing highly sensitive information in requests stored by Kinesis
      * Firehose Recorder.
@@ -161,7 +162,7 @@ public class KinesisFirehoseRecorder extends AbstractKinesisRecorder {
     public KinesisFirehoseRecorder(File directory, Regions region,
             AWSCredentialsProvider credentialsProvider, KinesisRecorderConfig config) {
         super(new FileRecordStore(directory, RECORD_FILE_NAME,
-                config.getMaxStorageSize()), config);
+                config.getMaxStorageSize(), config.isSyncWrites()), config);
 
         AmazonKinesisFirehose client = new AmazonKinesisFirehoseClient(credentialsProvider,
                 config.getClientConfiguration());
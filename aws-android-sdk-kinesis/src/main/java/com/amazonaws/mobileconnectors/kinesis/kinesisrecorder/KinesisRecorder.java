@@ -50,9 +50,9 @@ import java.util.regex.Pattern;
  * Warning: You should not create multiple KinesisRecorders given the same
  * directory. Doing so is an error and behavior is undefined.
  * <p/>
- * Note: KinesisRecorder stores the requests in plain-text, and does not perform
- * additional security measures outside of what the Android OS offers by
- * default. Therefore it is recommended you pass a directory that is only
+ * Note: KinesisRecorder stores the requests unencrypted, as binary frames that
+ * hold the data of each request as is, and does not perform additional
+ * security measures outside of what the Android OS offers by default. Therefore it is recommended you pass a directory that is only
  * visible to your application, and additionally do not store highly sensitive
  * information using Kinesis Recorder.
  * <p/>
@@ -103,7 +103,7 @@ public class KinesisRecorder extends AbstractKinesisRecorder {
      * Note: Kinesis Recorder is synchronous, and it's methods should not be
      * called on the main thread.
      * <p>
-     * Note: Kinesis Recorder stores requests in plain-text, we recommend using
+     * Note: Kinesis Recorder stores requests unencrypted, we recommend using
      * a directory that is only readable by your application and not storing
      * highly sensitive information in requests stored by Kinesis Recorder.
      *
@@ -125,7 +125,7 @@ public class KinesisRecorder extends AbstractKinesisRecorder {
      * various aspects of Kinesis Recorder through the KinesisRecorderConfig
      * parameter. Note: Kinesis Recorder is synchronous, and it's methods should
      * not be called on the main thread. Note: Kinesis Recorder stores requests
-     * in plain-text, we recommend using a directory that is only readable by
+     * unencrypted, we recommend using a directory that is only readable by
      * your application and not storing highly sensitive information in requests
      * stored by Kinesis Recorder.
      *
@@ -140,7 +140,7 @@ public class KinesisRecorder extends AbstractKinesisRecorder {
     public KinesisRecorder(File directory, Regions region,
             AWSCredentialsProvider credentialsProvider, KinesisRecorderConfig config) {
         super(new FileRecordStore(directory, RECORD_FILE_NAME,
-                config.getMaxStorageSize()), config);
+                config.getMaxStorageSize(), config.isSyncWrites()), config);
 
         if (directory == null || credentialsProvider == null || region == null || config == null) {
             throw new IllegalArgumentException(
@@ -170,10 +170,8 @@ public class KinesisRecorder extends AbstractKinesisRecorder {
     }
 
     private void checkUpgrade(final File directory) {
-        File recordsDir = new File(directory, Constants.RECORDS_DIRECTORY);
-        File oldRecordsFile = new File(recordsDir, Constants.RECORDS_FILE_NAME);
         // if the records file exists, run upgrade in a background thread
-        if (oldRecordsFile.isFile()) {
+        if (FileRecordStore.exists(directory, Constants.RECORDS_FILE_NAME)) {
             new Thread(new Runnable() {
                 @Override
                 public void run() {
@@ -191,9 +189,7 @@ public class KinesisRecorder extends AbstractKinesisRecorder {
      */
     void upgrade(File directory) {
         synchronized (KinesisRecorder.this) {
-            File recordsDir = new File(directory, Constants.RECORDS_DIRECTORY);
-            File oldRecordsFile = new File(recordsDir, Constants.RECORDS_FILE_NAME);
-            if (!oldRecordsFile.isFile()) {
+            if (!FileRecordStore.exists(directory, Constants.RECORDS_FILE_NAME)) {
                 return;
             }
 
@@ -213,10 +209,10 @@ public class KinesisRecorder extends AbstractKinesisRecorder {
             }
             try {
                 iterator.close();
+                frs.deleteStore();
             } catch (IOException e) {
                 // ignore
             }
-            oldRecordsFile.delete();
         }
     }
 
@@ -23,7 +23,18 @@ import com.amazonaws.ClientConfiguration;
  */
 public class KinesisRecorderConfig {
 
+    /**
+     * Default number of batches that may be sent concurrently by
+     * submitAllRecords: one at a time, on the calling thread.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_SUBMISSIONS = 1;
+
     private long maxStorageSize = 1024 * 1024 * 5L;
+    private int maxConcurrentSubmissions = DEFAULT_MAX_CONCURRENT_SUBMISSIONS;
+    private long autoFlushMaxRecordAge;
+    private long autoFlushPendingBytes;
+    private int autoFlushRecordCount;
+    private boolean syncWrites;
     private ClientConfiguration clientConfiguration;
 
     /**
@@ -56,6 +67,11 @@ public class KinesisRecorderConfig {
      */
     public KinesisRecorderConfig(KinesisRecorderConfig other) {
         this.maxStorageSize = other.getMaxStorageSize();
+        this.maxConcurrentSubmissions = other.getMaxConcurrentSubmissions();
+        this.autoFlushMaxRecordAge = other.getAutoFlushMaxRecordAge();
+        this.autoFlushPendingBytes = other.getAutoFlushPendingBytes();
+        this.autoFlushRecordCount = other.getAutoFlushRecordCount();
+        this.syncWrites = other.isSyncWrites();
         this.clientConfiguration = new ClientConfiguration(other.getClientConfiguration());
     }
 
@@ -79,6 +95,134 @@ public class KinesisRecorderConfig {
         return this.maxStorageSize;
     }
 
+    /**
+     * Sets the maximum number of batches submitAllRecords keeps in flight at
+     * the same time. Batches of different streams, and consecutive batches of
+     * the same stream, are sent in parallel up to this limit, on threads owned
+     * by the recorder until {@link AbstractKinesisRecorder#shutdown()}. The
+     * default of 1 sends one batch at a time on the calling thread.
+     *
+     * @param maxConcurrentSubmissions a positive number of batches
+     * @return This class for chaining
+     */
+    public KinesisRecorderConfig withMaxConcurrentSubmissions(int maxConcurrentSubmissions) {
+        if (maxConcurrentSubmissions < 1) {
+            throw new IllegalArgumentException("maxConcurrentSubmissions must be positive");
+        }
+        this.maxConcurrentSubmissions = maxConcurrentSubmissions;
+        return this;
+    }
+
+    /**
+     * @return The maximum number of batches submitAllRecords keeps in flight
+     *         at the same time.
+     */
+    public int getMaxConcurrentSubmissions() {
+        return this.maxConcurrentSubmissions;
+    }
+
+    /**
+     * Enables flushing records in the background once the oldest saved record
+     * is older than the given age. Records are submitted on a scheduler thread
+     * shared by all recorders, as if submitAllRecords() was called. 0 disables
+     * this trigger.
+     *
+     * @param maxRecordAgeMillis maximum age in milliseconds of a saved record
+     * @return This class for chaining
+     */
+    public KinesisRecorderConfig withAutoFlushMaxRecordAge(long maxRecordAgeMillis) {
+        if (maxRecordAgeMillis < 0) {
+            throw new IllegalArgumentException("maxRecordAgeMillis can't be negative");
+        }
+        this.autoFlushMaxRecordAge = maxRecordAgeMillis;
+        return this;
+    }
+
+    /**
+     * @return The age in milliseconds of the oldest saved record that triggers
+     *         a background flush, or 0 if disabled.
+     */
+    public long getAutoFlushMaxRecordAge() {
+        return this.autoFlushMaxRecordAge;
+    }
+
+    /**
+     * Enables flushing records in the background once the saved records use
+     * at least the given number of bytes on disk. 0 disables this trigger.
+     *
+     * @param pendingBytes number of bytes that triggers a flush
+     * @return This class for chaining
+     */
+    public KinesisRecorderConfig withAutoFlushPendingBytes(long pendingBytes) {
+        if (pendingBytes < 0) {
+            throw new IllegalArgumentException("pendingBytes can't be negative");
+        }
+        this.autoFlushPendingBytes = pendingBytes;
+        return this;
+    }
+
+    /**
+     * @return The number of bytes on disk that triggers a background flush, or
+     *         0 if disabled.
+     */
+    public long getAutoFlushPendingBytes() {
+        return this.autoFlushPendingBytes;
+    }
+
+    /**
+     * Enables flushing records in the background once the given number of
+     * records has been saved since the last flush. 0 disables this trigger.
+     *
+     * @param recordCount number of records that triggers a flush
+     * @return This class for chaining
+     */
+    public KinesisRecorderConfig withAutoFlushRecordCount(int recordCount) {
+        if (recordCount < 0) {
+            throw new IllegalArgumentException("recordCount can't be negative");
+        }
+        this.autoFlushRecordCount = recordCount;
+        return this;
+    }
+
+    /**
+     * @return The number of saved records that triggers a background flush,
+     *         or 0 if disabled.
+     */
+    public int getAutoFlushRecordCount() {
+        return this.autoFlushRecordCount;
+    }
+
+    /**
+     * @return true if any of the background flush triggers is enabled.
+     */
+    public boolean isAutoFlushEnabled() {
+        return autoFlushMaxRecordAge > 0 || autoFlushPendingBytes > 0
+                || autoFlushRecordCount > 0;
+    }
+
+    /**
+     * Sets whether saved records are forced to the storage device before
+     * saveRecord returns. A saved record always survives the app being
+     * killed; syncing also makes it survive a power loss, at the cost of a
+     * storage sync per write. Concurrent writes share a sync. Disabled by
+     * default.
+     *
+     * @param syncWrites true to sync every write
+     * @return This class for chaining
+     */
+    public KinesisRecorderConfig withSyncWrites(boolean syncWrites) {
+        this.syncWrites = syncWrites;
+        return this;
+    }
+
+    /**
+     * @return true if saved records are forced to the storage device before
+     *         saveRecord returns.
+     */
+    public boolean isSyncWrites() {
+        return this.syncWrites;
+    }
+
     /**
      * Returns the client configuration the Kinesis Recorder will use when
      * making requests to Amazon Kinesis
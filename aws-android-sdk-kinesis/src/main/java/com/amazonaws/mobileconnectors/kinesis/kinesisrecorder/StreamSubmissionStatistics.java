@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cumulative submission counters of a single stream (or delivery stream).
+ * Counters are updated by submitAllRecords and can be read from any thread.
+ */
+public final class StreamSubmissionStatistics {
+    private final String streamName;
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong recordsSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong recordsRequeued = new AtomicLong();
+    private final AtomicLong sendTimeMillis = new AtomicLong();
+
+    StreamSubmissionStatistics(String streamName) {
+        this.streamName = streamName;
+    }
+
+    void recordBatch(int sentCount, long sentBytes, int requeuedCount, long elapsedMillis) {
+        batchesSent.incrementAndGet();
+        recordsSent.addAndGet(sentCount);
+        bytesSent.addAndGet(sentBytes);
+        recordsRequeued.addAndGet(requeuedCount);
+        sendTimeMillis.addAndGet(elapsedMillis);
+    }
+
+    /**
+     * @return the name of the stream
+     */
+    public String getStreamName() {
+        return streamName;
+    }
+
+    /**
+     * @return the number of send calls made for this stream, successful or
+     *         not
+     */
+    public long getBatchesSent() {
+        return batchesSent.get();
+    }
+
+    /**
+     * @return the number of records accepted by the service
+     */
+    public long getRecordsSent() {
+        return recordsSent.get();
+    }
+
+    /**
+     * @return the number of data bytes accepted by the service
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * @return the number of records that failed and were saved again to be
+     *         retried later
+     */
+    public long getRecordsRequeued() {
+        return recordsRequeued.get();
+    }
+
+    /**
+     * @return the total time in milliseconds spent in send calls for this
+     *         stream. Calls that overlap in time are each counted in full.
+     */
+    public long getSendTimeMillis() {
+        return sendTimeMillis.get();
+    }
+
+    /**
+     * @return the average number of records accepted per second of send time,
+     *         or 0 if nothing has been sent yet
+     */
+    public double getRecordsPerSecond() {
+        long millis = sendTimeMillis.get();
+        return millis == 0 ? 0 : recordsSent.get() * 1000.0 / millis;
+    }
+
+    @Override
+    public String toString() {
+        return "{StreamName: " + streamName + ", BatchesSent: " + getBatchesSent()
+                + ", RecordsSent: " + getRecordsSent() + ", BytesSent: " + getBytesSent()
+                + ", RecordsRequeued: " + getRecordsRequeued() + ", SendTimeMillis: "
+                + getSendTimeMillis() + "}";
+    }
+}
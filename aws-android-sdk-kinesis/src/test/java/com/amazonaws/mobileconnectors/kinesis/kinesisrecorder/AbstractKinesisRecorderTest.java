@@ -16,6 +16,7 @@
 package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
@@ -32,14 +33,19 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 @RunWith(RobolectricTestRunner.class)
 @Config(manifest = Config.NONE)
@@ -276,6 +282,114 @@ public class AbstractKinesisRecorderTest {
         assertTrue("records removed", recorder.getDiskBytesUsed() > 0);
     }
 
+    @Test
+    public void testNextBatchesGroupsStreams() throws IOException {
+        String anotherStream = "another_stream";
+        for (int i = 0; i < 10; i++) {
+            recorder.saveRecord(randomBytes(1024), STREAM_NAME);
+            recorder.saveRecord(randomBytes(1024), anotherStream);
+        }
+
+        RecordIterator iterator = recorder.recordStore.iterator();
+        List<AbstractKinesisRecorder.Batch> batches = recorder.nextBatches(iterator, 4);
+        assertEquals("one batch per stream", 2, batches.size());
+        assertEquals("stream name", STREAM_NAME, batches.get(0).streamName);
+        assertEquals("records of stream", 10, batches.get(0).data.size());
+        assertEquals("stream name", anotherStream, batches.get(1).streamName);
+        assertEquals("records of stream", 10, batches.get(1).data.size());
+        assertTrue("all records read", recorder.nextBatches(iterator, 4).isEmpty());
+        iterator.close();
+    }
+
+    @Test
+    public void testSubmitAllRecordsInterleavedStreams() {
+        String anotherStream = "another_stream";
+        for (int i = 0; i < 10; i++) {
+            recorder.saveRecord(randomBytes(1024), STREAM_NAME);
+            recorder.saveRecord(randomBytes(1024), anotherStream);
+        }
+        Mockito.when(sender.sendBatch(Mockito.anyString(), Mockito.anyListOf(byte[].class)))
+                .thenReturn(new ArrayList<byte[]>());
+        recorder.submitAllRecords();
+        assertEquals("no records after submitAllRecords", 0, recorder.getDiskBytesUsed());
+        Mockito.verify(sender, Mockito.times(1)).sendBatch(Mockito.eq(STREAM_NAME),
+                Mockito.anyListOf(byte[].class));
+        Mockito.verify(sender, Mockito.times(1)).sendBatch(Mockito.eq(anotherStream),
+                Mockito.anyListOf(byte[].class));
+
+        StreamSubmissionStatistics stats = recorder.getSubmissionStatistics(STREAM_NAME);
+        assertEquals("batches sent", 1, stats.getBatchesSent());
+        assertEquals("records sent", 10, stats.getRecordsSent());
+        assertEquals("bytes sent", 10 * 1024, stats.getBytesSent());
+        assertEquals("two streams", 2, recorder.getSubmissionStatistics().size());
+    }
+
+    @Test
+    public void testSubmitAllRecordsSequentially() {
+        assertEquals("sequential by default", 1,
+                recorder.getKinesisRecorderConfig().getMaxConcurrentSubmissions());
+        for (int i = 0; i < 300; i++) {
+            recorder.saveRecord(randomBytes(16), STREAM_NAME);
+        }
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        Mockito.when(sender.sendBatch(Mockito.anyString(), Mockito.anyListOf(byte[].class)))
+                .thenAnswer(new Answer<List<byte[]>>() {
+                    private boolean failed;
+
+                    @Override
+                    public List<byte[]> answer(InvocationOnMock invocation) {
+                        threads.add(Thread.currentThread());
+                        if (!failed) {
+                            failed = true;
+                            return Arrays.asList(randomBytes(16));
+                        }
+                        return new ArrayList<byte[]>();
+                    }
+                });
+        recorder.submitAllRecords();
+        assertEquals("sent on the calling thread",
+                Collections.singleton(Thread.currentThread()), threads);
+        assertEquals("records removed", 0, recorder.getDiskBytesUsed());
+        StreamSubmissionStatistics stats = recorder.getSubmissionStatistics(STREAM_NAME);
+        assertEquals("records sent", 300, stats.getRecordsSent());
+        assertEquals("records requeued", 1, stats.getRecordsRequeued());
+    }
+
+    @Test
+    public void testShutdownStopsSubmissionThreads() throws InterruptedException {
+        recorder.getKinesisRecorderConfig().withMaxConcurrentSubmissions(4);
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        Mockito.when(sender.sendBatch(Mockito.anyString(), Mockito.anyListOf(byte[].class)))
+                .thenAnswer(new Answer<List<byte[]>>() {
+                    @Override
+                    public List<byte[]> answer(InvocationOnMock invocation) {
+                        threads.add(Thread.currentThread());
+                        return new ArrayList<byte[]>();
+                    }
+                });
+        for (int i = 0; i < 10; i++) {
+            recorder.saveRecord(randomBytes(16), STREAM_NAME + i);
+        }
+        recorder.submitAllRecords();
+        assertEquals("records removed", 0, recorder.getDiskBytesUsed());
+        assertTrue(threads.size() > 0);
+        for (Thread thread : threads) {
+            assertTrue(thread.getName(), thread.getName().startsWith("KinesisRecorder-submit-"));
+        }
+
+        recorder.shutdown();
+        for (Thread thread : threads) {
+            thread.join(5000);
+            assertFalse("thread stopped", thread.isAlive());
+        }
+
+        // the recorder is still usable
+        recorder.saveRecord(randomBytes(16), STREAM_NAME);
+        recorder.submitAllRecords();
+        assertEquals("records removed", 0, recorder.getDiskBytesUsed());
+        recorder.shutdown();
+    }
+
     private byte[] randomBytes(int length) {
         byte[] data = new byte[length];
         new Random().nextBytes(data);
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.AmazonClientException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AutoFlushSchedulerTest {
+
+    private static final File TEST_DIRECTORY = new File("AutoFlushSchedulerTest");
+    private static final String STREAM_NAME = "stream";
+
+    private CountingSender sender;
+
+    static class CountingSender implements RecordSender {
+        final AtomicInteger records = new AtomicInteger();
+        volatile CountDownLatch latch = new CountDownLatch(1);
+
+        @Override
+        public List<byte[]> sendBatch(String streamName, List<byte[]> data) {
+            records.addAndGet(data.size());
+            latch.countDown();
+            return new ArrayList<byte[]>();
+        }
+
+        @Override
+        public boolean isRecoverable(AmazonClientException ace) {
+            return true;
+        }
+    }
+
+    /**
+     * Fails the first batch as if the device were offline.
+     */
+    static class FailingOnceSender extends CountingSender {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        @Override
+        public List<byte[]> sendBatch(String streamName, List<byte[]> data) {
+            if (attempts.incrementAndGet() == 1) {
+                throw new AmazonClientException("offline");
+            }
+            return super.sendBatch(streamName, data);
+        }
+    }
+
+    static class TestRecorder extends AbstractKinesisRecorder {
+        private final RecordSender sender;
+
+        TestRecorder(FileRecordStore recordStore, KinesisRecorderConfig config,
+                RecordSender sender) {
+            super(recordStore, config);
+            this.sender = sender;
+        }
+
+        @Override
+        protected RecordSender getRecordSender() {
+            return sender;
+        }
+    }
+
+    @Before
+    public void setup() {
+        TEST_DIRECTORY.mkdir();
+        sender = new CountingSender();
+    }
+
+    @After
+    public void teardown() {
+        delete(TEST_DIRECTORY);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private TestRecorder newRecorder(KinesisRecorderConfig config) {
+        FileRecordStore store = new FileRecordStore(TEST_DIRECTORY, "records",
+                config.getMaxStorageSize());
+        return new TestRecorder(store, config, sender);
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        assertFalse("disabled", new KinesisRecorderConfig().isAutoFlushEnabled());
+        assertTrue("no scheduler",
+                AutoFlushScheduler.create(null, new KinesisRecorderConfig()) == null);
+    }
+
+    @Test
+    public void testFlushByRecordCount() throws InterruptedException {
+        TestRecorder recorder = newRecorder(new KinesisRecorderConfig()
+                .withAutoFlushRecordCount(5));
+        for (int i = 0; i < 4; i++) {
+            recorder.saveRecord("record" + i, STREAM_NAME);
+        }
+        assertFalse("below threshold", sender.latch.await(200, TimeUnit.MILLISECONDS));
+        recorder.saveRecord("record4", STREAM_NAME);
+        assertTrue("flushed", sender.latch.await(5, TimeUnit.SECONDS));
+        assertEquals("all records sent", 5, sender.records.get());
+    }
+
+    @Test
+    public void testFlushByPendingBytes() throws InterruptedException {
+        TestRecorder recorder = newRecorder(new KinesisRecorderConfig()
+                .withAutoFlushPendingBytes(1024));
+        recorder.saveRecord(new byte[512], STREAM_NAME);
+        assertFalse("below threshold", sender.latch.await(200, TimeUnit.MILLISECONDS));
+        recorder.saveRecord(new byte[512], STREAM_NAME);
+        assertTrue("flushed", sender.latch.await(5, TimeUnit.SECONDS));
+        assertEquals("all records sent", 2, sender.records.get());
+    }
+
+    @Test
+    public void testFlushByRecordAge() throws InterruptedException {
+        TestRecorder recorder = newRecorder(new KinesisRecorderConfig()
+                .withAutoFlushMaxRecordAge(300));
+        long start = System.currentTimeMillis();
+        recorder.saveRecord("record", STREAM_NAME);
+        assertTrue("flushed", sender.latch.await(5, TimeUnit.SECONDS));
+        assertTrue("waited for the record to age", System.currentTimeMillis() - start >= 300);
+        assertEquals("record sent", 1, sender.records.get());
+
+        // nothing is scheduled while the store is empty
+        sender.latch = new CountDownLatch(1);
+        assertFalse("paused", sender.latch.await(500, TimeUnit.MILLISECONDS));
+
+        recorder.saveRecord("record", STREAM_NAME);
+        assertTrue("flushed again", sender.latch.await(5, TimeUnit.SECONDS));
+        assertEquals("record sent", 2, sender.records.get());
+    }
+
+    @Test
+    public void testFailedFlushIsRetriedWithoutNewRecords() throws InterruptedException {
+        sender = new FailingOnceSender();
+        TestRecorder recorder = newRecorder(new KinesisRecorderConfig()
+                .withAutoFlushRecordCount(2));
+        recorder.saveRecord("record0", STREAM_NAME);
+        recorder.saveRecord("record1", STREAM_NAME);
+
+        // the retry comes after the backoff, not after the next two records
+        assertTrue("retried", sender.latch.await(5, TimeUnit.SECONDS));
+        assertEquals("two attempts", 2, ((FailingOnceSender) sender).attempts.get());
+        assertEquals("all records sent", 2, sender.records.get());
+    }
+
+    @Test
+    public void testBackoffWithJitter() {
+        AutoFlushScheduler autoFlush = new AutoFlushScheduler(null, 1000, 0, 0);
+        for (int attempt = 0; attempt < 30; attempt++) {
+            long max = Math.min(AutoFlushScheduler.BASE_BACKOFF_MILLIS << Math.min(attempt, 20),
+                    AutoFlushScheduler.MAX_BACKOFF_MILLIS);
+            long backoff = autoFlush.backoff(attempt);
+            assertTrue("at least half", backoff >= max / 2);
+            assertTrue("at most max", backoff <= max);
+        }
+    }
+
+    @Test
+    public void testConfigCopy() {
+        KinesisRecorderConfig config = new KinesisRecorderConfig()
+                .withAutoFlushMaxRecordAge(1000)
+                .withAutoFlushPendingBytes(2000)
+                .withAutoFlushRecordCount(3);
+        KinesisRecorderConfig copy = new KinesisRecorderConfig(config);
+        assertEquals(1000, copy.getAutoFlushMaxRecordAge());
+        assertEquals(2000, copy.getAutoFlushPendingBytes());
+        assertEquals(3, copy.getAutoFlushRecordCount());
+        assertTrue("enabled", copy.isAutoFlushEnabled());
+    }
+}
@@ -20,6 +20,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.FileRecordStore.RecordIterator;
 import com.amazonaws.util.StringUtils;
@@ -27,20 +28,34 @@ import com.amazonaws.util.StringUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
 
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
 public class FileRecordStoreTest {
 
     private static final File TEST_DIRECTORY = new File("FileRecordStoreTest");
@@ -69,7 +84,6 @@ public class FileRecordStoreTest {
     @Test
     public void testFileRecordStore_putIterateAndRemove() throws IOException {
 
-        FileManager fileManager = new FileManager(TEST_DIRECTORY);
         FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
                 RECORDER_FILE_NAME, MAX_STORAGE_SIZE);
 
@@ -96,7 +110,7 @@ public class FileRecordStoreTest {
             // If we read 5 events remove the 5 last read events
             if (counter % 5 == 0) {
                 iter.removeReadRecords();
-                assertSame(getNumberOfLinesInFile(fileManager), (10 - counter));
+                assertSame(getNumberOfRecords(recordStore), (10 - counter));
             }
         }
 
@@ -119,7 +133,7 @@ public class FileRecordStoreTest {
             assertSame(Integer.valueOf(nextRecord), counter);
         }
         iter.removeReadRecords();
-        assertSame(getNumberOfLinesInFile(fileManager), 0);
+        assertSame(getNumberOfRecords(recordStore), 0);
 
         // Try getting a new iterator while the store is empty and verify
         // that hasNext is false
@@ -183,38 +197,26 @@ public class FileRecordStoreTest {
 
     @Test
     public void testWhenWritingExceedsMaxStorageSize_noMoreRecordsWritten() throws IOException {
-        File recordsDirectory = null;
-        File recordsFile = null;
-
-        FileManager fileManager = new FileManager(TEST_DIRECTORY);
+        long maxStorageSize = 10 * (9 + FileRecordStore.FRAME_OVERHEAD);
         FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
-                RECORDER_FILE_NAME, 100L);
-
-        recordsDirectory = fileManager.getDirectory(Constants.RECORDS_DIRECTORY);
-        recordsFile = new File(recordsDirectory, Constants.RECORDS_FILE_NAME);
+                RECORDER_FILE_NAME, maxStorageSize);
 
         for (int i = 0; i < 10; i++) {
-            recordStore.put("ten bytes");
+            assertTrue(recordStore.put("ten bytes"));
         }
-        assertSame(recordsFile.length(), 100L);
+        assertEquals(maxStorageSize, recordStore.getFileSize());
 
-        recordStore.put("0123456789");
-        assertSame(recordsFile.length(), 100L);
+        assertFalse(recordStore.put("0123456789"));
+        assertEquals(maxStorageSize, recordStore.getFileSize());
 
     }
 
     @Test
     public void testWhenWritingTooManyConcurrentRecords() throws
             InterruptedException, IOException {
-        File recordsDirectory = null;
-        File recordsFile = null;
-        FileManager fileManager = new FileManager(TEST_DIRECTORY);
         final FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
                 RECORDER_FILE_NAME, MAX_STORAGE_SIZE);
 
-        recordsDirectory = fileManager.getDirectory(Constants.RECORDS_DIRECTORY);
-        recordsFile = new File(recordsDirectory, Constants.RECORDS_FILE_NAME);
-
         SecureRandom random = new SecureRandom();
 
         // first fill the disk
@@ -229,8 +231,8 @@ public class FileRecordStoreTest {
             recordStore.put(recordStr);
         }
 
-        long initialSize = recordsFile.length();
-        assertTrue(recordsFile.length() <= MAX_STORAGE_SIZE);
+        long initialSize = recordStore.getFileSize();
+        assertTrue(recordStore.getFileSize() <= MAX_STORAGE_SIZE);
 
         final CountDownLatch latch = new CountDownLatch(1);
         ExecutorService threadPool = Executors.newFixedThreadPool(1);
@@ -259,17 +261,17 @@ public class FileRecordStoreTest {
 
         for (int i = 0; i < 10000; i++) {
             recordStore.put(recordStr);
-            assertTrue(recordsFile.length() <= initialSize);
+            assertTrue(recordStore.getFileSize() <= initialSize);
             recordStore.put(recordStr);
-            assertTrue(recordsFile.length() <= initialSize);
+            assertTrue(recordStore.getFileSize() <= initialSize);
             recordStore.put(recordStr);
-            assertTrue(recordsFile.length() <= initialSize);
+            assertTrue(recordStore.getFileSize() <= initialSize);
             Thread.sleep(1);
         }
 
         latch.await();
-        assertEquals(recordsFile.length(), initialSize);
-        assertTrue(recordsFile.length() < MAX_STORAGE_SIZE);
+        assertEquals(recordStore.getFileSize(), initialSize);
+        assertTrue(recordStore.getFileSize() < MAX_STORAGE_SIZE);
 
     }
 
@@ -328,28 +330,340 @@ public class FileRecordStoreTest {
 
     }
 
-    private int getNumberOfLinesInFile(final FileManager fileManager) throws NumberFormatException,
-            IOException {
-        BufferedReader reader = getRecordsFileReader(fileManager);
+    @Test
+    public void testSegmentsRollAndAreDeletedOnceConsumed() throws IOException {
+        // two records of 9 bytes per segment
+        long frameSize = 9 + FileRecordStore.FRAME_OVERHEAD;
+        FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE,
+                FileRecordStore.SEGMENT_HEADER_LENGTH + 2 * frameSize, false);
+        for (int i = 0; i < 10; i++) {
+            recordStore.put("record 0" + i);
+        }
+        assertEquals(10 * frameSize, recordStore.getFileSize());
+        assertEquals(5, getNumberOfSegments());
+
+        RecordIterator iter = recordStore.iterator();
+        for (int i = 0; i < 5; i++) {
+            assertEquals("record 0" + i, iter.next());
+        }
+        iter.removeReadRecords();
+        assertEquals(5 * frameSize, recordStore.getFileSize());
+        // the third segment is half consumed
+        assertEquals(3, getNumberOfSegments());
+        assertEquals("record 05", iter.next());
+
+        // records put after reading are visible to the same iterator
+        recordStore.put("record 10");
+        int counter = 1;
+        while (iter.next() != null) {
+            counter++;
+        }
+        assertEquals(6, counter);
+        iter.removeReadRecords();
+        assertEquals(0L, recordStore.getFileSize());
+        assertEquals(1, getNumberOfSegments());
+        assertFalse(recordStore.iterator().hasNext());
+    }
+
+    @Test
+    public void testReadOffsetSurvivesReopen() throws IOException {
+        FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE, 20L, false);
+        for (int i = 0; i < 10; i++) {
+            recordStore.put(String.valueOf(i));
+        }
+        RecordIterator iter = recordStore.iterator();
+        for (int i = 0; i < 7; i++) {
+            iter.next();
+        }
+        iter.removeReadRecords();
+        iter.close();
+
+        FileRecordStore reopened = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE, 20L, false);
+        assertEquals(recordStore.getFileSize(), reopened.getFileSize());
+        iter = reopened.iterator();
+        assertEquals("7", iter.next());
+        assertEquals("8", iter.next());
+        assertEquals("9", iter.next());
+        assertNull(iter.next());
+    }
+
+    @Test
+    public void testIncompleteRecordDroppedOnReopen() throws IOException {
+        FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE);
+        recordStore.put("complete");
+        File segment = getSegments()[0];
+        OutputStream out = new FileOutputStream(segment, true);
+        // length prefix of a record that never made it to disk
+        out.write(new byte[] {
+                0, 0, 0, 100, 't', 'o', 'r', 'n'
+        });
+        out.close();
+
+        FileRecordStore reopened = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE);
+        assertEquals(8 + FileRecordStore.FRAME_OVERHEAD, reopened.getFileSize());
+        RecordIterator iter = reopened.iterator();
+        assertEquals("complete", iter.next());
+        assertNull(iter.next());
+    }
+
+    @Test
+    public void testCorruptedRecordIsSkipped() throws IOException {
+        FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE);
+        recordStore.put("first");
+        recordStore.put("second");
+
+        // flip a byte of the first record
+        RandomAccessFile file = new RandomAccessFile(getSegments()[0], "rw");
+        file.seek(FileRecordStore.SEGMENT_HEADER_LENGTH + 4);
+        file.write('F');
+        file.close();
+
+        RecordIterator iter = recordStore.iterator();
+        assertEquals("second", iter.next());
+        assertNull(iter.next());
+    }
+
+    @Test
+    public void testBinaryRecords() throws IOException {
+        FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE);
+        byte[] record = new byte[256];
+        for (int i = 0; i < record.length; i++) {
+            record[i] = (byte) i;
+        }
+        recordStore.put(record);
+        recordStore.put(new byte[0]);
+
+        RecordIterator iter = recordStore.iterator();
+        assertTrue(Arrays.equals(record, iter.peekBytes()));
+        assertTrue(Arrays.equals(record, iter.nextBytes()));
+        assertEquals(0, iter.nextBytes().length);
+        assertNull(iter.nextBytes());
+    }
+
+    @Test
+    public void testLegacyRecordFileIsAdopted() throws IOException {
+        FileManager fileManager = new FileManager(TEST_DIRECTORY);
+        File recordsDirectory = fileManager.createDirectory(Constants.RECORDS_DIRECTORY);
+        File legacyFile = new File(recordsDirectory, RECORDER_FILE_NAME);
+        OutputStream out = fileManager.newOutputStream(legacyFile, false);
+        out.write("1\n2\n".getBytes(StringUtils.UTF8));
+        out.close();
+        assertTrue(FileRecordStore.exists(TEST_DIRECTORY, RECORDER_FILE_NAME));
+
+        FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE);
+        assertFalse(legacyFile.exists());
+        RecordIterator iter = recordStore.iterator();
+        assertEquals("1", iter.next());
+        assertEquals("2", iter.next());
+        assertNull(iter.next());
+
+        recordStore.deleteStore();
+        assertFalse(FileRecordStore.exists(TEST_DIRECTORY, RECORDER_FILE_NAME));
+    }
+
+    @Test
+    public void testFailedWriteIsTruncated() throws IOException {
+        FailingStore recordStore = new FailingStore();
+        recordStore.put("before");
+
+        recordStore.channel.failAfter = 3;
+        try {
+            recordStore.put("failed");
+            fail("Expected the write to fail");
+        } catch (IOException expected) {
+        }
+        assertEquals(6 + FileRecordStore.FRAME_OVERHEAD, recordStore.getFileSize());
+
+        // Records written after the failure are neither hidden nor lost
+        assertTrue(recordStore.put("after"));
+        RecordIterator iter = recordStore.iterator();
+        assertEquals("before", iter.next());
+        assertEquals("after", iter.next());
+        assertNull(iter.next());
+
+        FileRecordStore reopened = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE);
+        assertEquals(recordStore.getFileSize(), reopened.getFileSize());
+        iter = reopened.iterator();
+        assertEquals("before", iter.next());
+        assertEquals("after", iter.next());
+        assertNull(iter.next());
+    }
+
+    @Test
+    public void testWritesAreNotForcedByDefault() throws IOException {
+        FailingStore recordStore = new FailingStore(false);
+        recordStore.put("1");
+        recordStore.put("2");
+        assertEquals(0, recordStore.channel.forces);
+    }
+
+    @Test
+    public void testSyncedWritesAreForced() throws IOException {
+        FailingStore recordStore = new FailingStore(true);
+        recordStore.put("1");
+        recordStore.put("2");
+        assertEquals(2, recordStore.channel.forces);
+    }
+
+    private int getNumberOfRecords(final FileRecordStore recordStore) throws IOException {
+        RecordIterator iter = recordStore.iterator();
         int counter = 0;
-        while (reader.readLine() != null) {
+        while (iter.next() != null) {
             counter++;
         }
+        iter.close();
         return counter;
     }
 
-    private BufferedReader getRecordsFileReader(final FileManager fileManager) {
-        InputStreamReader streamReader = null;
-        try {
-            streamReader = new InputStreamReader(
-                    fileManager.newInputStream(Constants.RECORDS_DIRECTORY + File.separator
-                            + Constants.RECORDS_FILE_NAME), StringUtils.UTF8);
-        } catch (FileNotFoundException e) {
+    /**
+     * A store whose write channel fails once a number of bytes is written.
+     */
+    private static class FailingStore extends FileRecordStore {
+        FailingChannel channel;
+
+        FailingStore() {
+            this(false);
+        }
+
+        FailingStore(boolean syncWrites) {
+            super(TEST_DIRECTORY, RECORDER_FILE_NAME, MAX_STORAGE_SIZE, syncWrites);
         }
 
-        if (streamReader != null) {
-            return new BufferedReader(streamReader);
+        @Override
+        FileChannel openWriteChannel(File file) throws IOException {
+            channel = new FailingChannel(super.openWriteChannel(file));
+            return channel;
+        }
+    }
+
+    private static class FailingChannel extends FileChannel {
+        private final FileChannel channel;
+        /** Number of bytes written before failing, or -1 to never fail **/
+        int failAfter = -1;
+        int forces = 0;
+
+        FailingChannel(FileChannel channel) {
+            this.channel = channel;
         }
-        return null;
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (failAfter < 0) {
+                return channel.write(src);
+            }
+            ByteBuffer partial = src.duplicate();
+            partial.limit(partial.position() + Math.min(failAfter, partial.remaining()));
+            channel.write(partial);
+            failAfter = -1;
+            throw new IOException("No space left on device");
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            forces++;
+            channel.force(metaData);
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target)
+                throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count)
+                throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+
+    private int getNumberOfSegments() {
+        return getSegments().length;
+    }
+
+    private File[] getSegments() {
+        File recordsDirectory = new File(TEST_DIRECTORY, Constants.RECORDS_DIRECTORY);
+        return recordsDirectory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.matches(Pattern.quote(RECORDER_FILE_NAME) + "\\.\\d+");
+            }
+        });
     }
 }
@@ -39,6 +39,46 @@ public class FileRecordTest {
         assertTrue("data bytes", Arrays.equals(bytes, frp.bytes));
     }
 
+    @Test
+    public void testBinaryRecord() {
+        String streamName = "stream";
+        byte[] bytes = new byte[] {
+                0, 1, 2, 3, '\n', ','
+        };
+        byte[] record = FileRecordParser.asBytes(streamName, bytes);
+        assertEquals("format", FileRecordParser.BINARY_FORMAT, record[0]);
+
+        FileRecordParser frp = new FileRecordParser();
+        frp.parse(record);
+        assertEquals("stream name", streamName, frp.streamName);
+        assertTrue("data bytes", Arrays.equals(bytes, frp.bytes));
+
+        byte[] other = FileRecordParser.asBytes("another_stream", new byte[0]);
+        frp.parse(other);
+        assertEquals("stream name", "another_stream", frp.streamName);
+        assertEquals("data bytes", 0, frp.bytes.length);
+    }
+
+    @Test
+    public void testLegacyRecord() {
+        String streamName = "stream";
+        byte[] bytes = "some data".getBytes(StringUtils.UTF8);
+        byte[] record = FileRecordParser.asString(streamName, bytes).getBytes(StringUtils.UTF8);
+
+        FileRecordParser frp = new FileRecordParser();
+        frp.parse(record);
+        assertEquals("stream name", streamName, frp.streamName);
+        assertTrue("data bytes", Arrays.equals(bytes, frp.bytes));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBinaryRecord() {
+        byte[] record = new byte[] {
+                FileRecordParser.BINARY_FORMAT, 0, 10, 's'
+        };
+        new FileRecordParser().parse(record);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testInvalidLineNoData() {
         String line = "line_without_data";
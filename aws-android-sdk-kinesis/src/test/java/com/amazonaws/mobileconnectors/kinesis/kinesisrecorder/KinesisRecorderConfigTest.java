@@ -16,6 +16,8 @@
 package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import com.amazonaws.ClientConfiguration;
 
@@ -58,11 +60,13 @@ public class KinesisRecorderConfigTest {
     public void copyConstructor() {
         KinesisRecorderConfig kConfig = new KinesisRecorderConfig();
         kConfig.withMaxStorageSize(5);
+        kConfig.withSyncWrites(true);
 
         KinesisRecorderConfig copiedConfig = new KinesisRecorderConfig(kConfig);
 
         assertEquals(kConfig.getMaxStorageSize(),
                 copiedConfig.getMaxStorageSize());
+        assertTrue(copiedConfig.isSyncWrites());
 
     }
 
@@ -72,6 +76,11 @@ public class KinesisRecorderConfigTest {
         KinesisRecorderConfig kConfig = new KinesisRecorderConfig();
         kConfig.withMaxStorageSize(100);
         assertEquals(kConfig.getMaxStorageSize(), 100);
+        assertFalse("writes aren't synced by default", kConfig.isSyncWrites());
+        assertEquals("one submission at a time by default", 1,
+                kConfig.getMaxConcurrentSubmissions());
+        kConfig.withSyncWrites(true);
+        assertTrue(kConfig.isSyncWrites());
     }
 
 }
@@ -104,7 +104,7 @@ public class KinesisRecorderTest {
         int count = 0;
         while (iterator.hasNext()) {
             count++;
-            frp.parse(iterator.next());
+            frp.parse(iterator.nextBytes());
             assertEquals("same stream", streamName, frp.streamName);
             assertEquals("same data length", length, frp.bytes.length);
         }
@@ -17,6 +17,8 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
 import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Invocation handler for Lambda.
@@ -31,6 +33,9 @@ class LambdaInvocationHandler implements InvocationHandler {
     private final AWSLambda lambda;
     private final LambdaDataBinder binder;
     private final ClientContext clientContext;
+    // plans of the methods invoked so far
+    private final ConcurrentMap<Method, FunctionPlan> plans =
+            new ConcurrentHashMap<Method, FunctionPlan>();
 
     // -------------------------------------------------------------
     // Constructors
@@ -53,12 +58,12 @@ class LambdaInvocationHandler implements InvocationHandler {
     @Override
     public Object invoke(Object proxy, Method method, Object[] args)
             throws Throwable {
-        validateInterfaceMethod(method, args);
+        FunctionPlan plan = getPlan(method);
 
         // With Android version before Lollipop (API level 22), args can be an
         // empty array when the method takes no arguments.
         final Object buildArg = (args == null || args.length == 0) ? null : args[0];
-        InvokeRequest invokeRequest = buildInvokeRequest(method, buildArg);
+        InvokeRequest invokeRequest = buildInvokeRequest(plan, buildArg);
         InvokeResult invokeResult = lambda.invoke(invokeRequest);
 
         return processInvokeResult(method, invokeResult);
@@ -79,28 +84,35 @@ class LambdaInvocationHandler implements InvocationHandler {
         }
     }
 
-    InvokeRequest buildInvokeRequest(Method method, Object object) throws IOException {
-        LambdaFunction lambdaFunction = method.getAnnotation(LambdaFunction.class);
-
-        InvokeRequest invokeRequest = new InvokeRequest();
-
-        if (lambdaFunction.functionName().isEmpty()) {
-            invokeRequest.setFunctionName(method.getName());
-        } else {
-            invokeRequest.setFunctionName(lambdaFunction.functionName());
+    /**
+     * Gets the plan of the given method, validating the method and building
+     * the plan on first use.
+     */
+    FunctionPlan getPlan(Method method) {
+        FunctionPlan plan = plans.get(method);
+        if (plan == null) {
+            validateInterfaceMethod(method, method.getParameterTypes());
+            plan = new FunctionPlan(method);
+            FunctionPlan existing = plans.putIfAbsent(method, plan);
+            if (existing != null) {
+                plan = existing;
+            }
         }
+        return plan;
+    }
 
-        invokeRequest.setLogType(lambdaFunction.logType());
-
-        // If the log type is other than 'None', force to be RequestResponse.
-        if (!LogType.None.equals(lambdaFunction.logType())) {
-            invokeRequest.setInvocationType(InvocationType.RequestResponse);
-        } else {
-            invokeRequest.setInvocationType(lambdaFunction.invocationType());
-        }
+    InvokeRequest buildInvokeRequest(Method method, Object object) throws IOException {
+        return buildInvokeRequest(getPlan(method), object);
+    }
 
-        if (!lambdaFunction.qualifier().isEmpty()) {
-            invokeRequest.setQualifier(lambdaFunction.qualifier());
+    private InvokeRequest buildInvokeRequest(FunctionPlan plan, Object object)
+            throws IOException {
+        InvokeRequest invokeRequest = new InvokeRequest();
+        invokeRequest.setFunctionName(plan.functionName);
+        invokeRequest.setLogType(plan.logType);
+        invokeRequest.setInvocationType(plan.invocationType);
+        if (plan.qualifier != null) {
+            invokeRequest.setQualifier(plan.qualifier);
         }
 
         // set base64 encoded client context string
@@ -134,4 +146,37 @@ class LambdaInvocationHandler implements InvocationHandler {
         return binder.deserialize(invokeResult.getPayload().array(),
                 method.getReturnType());
     }
+
+    /**
+     * The invoke request settings of a method, read once from its
+     * {@link LambdaFunction} annotation.
+     */
+    static final class FunctionPlan {
+        final String functionName;
+        final String logType;
+        final String invocationType;
+        /** the qualifier, or null if there is none */
+        final String qualifier;
+
+        FunctionPlan(Method method) {
+            LambdaFunction lambdaFunction = method.getAnnotation(LambdaFunction.class);
+
+            if (lambdaFunction.functionName().isEmpty()) {
+                functionName = method.getName();
+            } else {
+                functionName = lambdaFunction.functionName();
+            }
+
+            logType = lambdaFunction.logType();
+
+            // If the log type is other than 'None', force to be RequestResponse.
+            if (!LogType.None.equals(lambdaFunction.logType())) {
+                invocationType = InvocationType.RequestResponse.toString();
+            } else {
+                invocationType = lambdaFunction.invocationType();
+            }
+
+            qualifier = lambdaFunction.qualifier().isEmpty() ? null : lambdaFunction.qualifier();
+        }
+    }
 }
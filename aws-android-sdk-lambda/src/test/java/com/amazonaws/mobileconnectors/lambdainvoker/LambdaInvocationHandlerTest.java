@@ -18,6 +18,7 @@ package com.amazonaws.mobileconnectors.lambdainvoker;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import com.amazonaws.services.lambda.AWSLambda;
 import com.amazonaws.services.lambda.model.InvokeRequest;
@@ -103,6 +104,26 @@ public class LambdaInvocationHandlerTest {
         });
     }
 
+    @Test
+    public void testPlanIsCached() throws Exception {
+        Method echoVersion = getMethod("echoVersion", String.class);
+        LambdaInvocationHandler.FunctionPlan plan = handler.getPlan(echoVersion);
+        assertSame(plan, handler.getPlan(echoVersion));
+        assertEquals("function name", "echoVersion", plan.functionName);
+        assertEquals("qualifier", "version", plan.qualifier);
+        assertNull("default qualifier", handler.getPlan(getMethod("echo", String.class)).qualifier);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testInvokeNoAnnotation() {
+        invoker.noAnnotation();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testInvokeTwoArguments() {
+        invoker.twoArguments("a", "b");
+    }
+
     @Test
     public void testBuildInvokeRequest() throws Exception {
         Method echo = getMethod("echo", String.class);
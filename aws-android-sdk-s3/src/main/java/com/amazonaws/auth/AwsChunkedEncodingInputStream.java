@@ -20,6 +20,7 @@ import static com.amazonaws.util.StringUtils.UTF8;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.internal.SdkInputStream;
 import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.BufferPool;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -42,6 +43,13 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
     private static final String CHUNK_SIGNATURE_HEADER = ";chunk-signature=";
     private static final int SIGNATURE_LENGTH = 64;
     private static final byte[] FINAL_CHUNK = new byte[0];
+    private static final byte[] CLRF_BYTES = CLRF.getBytes(UTF8);
+
+    /**
+     * Chunk buffers shared by all streams, so that uploads, including
+     * concurrent part uploads, reuse the same few buffers.
+     */
+    private static final BufferPool CHUNK_BUFFER_POOL = new BufferPool(DEFAULT_CHUNK_SIZE, 16);
 
     private InputStream is = null;
     private final int maxBufferSize;
@@ -52,6 +60,12 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
     private String priorChunkSignature;
     private final AWS4Signer aws4Signer;
 
+    /**
+     * The buffer the chunk data is read into, taken from the pool while the
+     * stream is being read.
+     */
+    private byte[] chunkBuffer;
+
     /** Iterator on the current chunk that has been signed */
     private ChunkContentIterator currentChunkIterator;
 
@@ -102,6 +116,10 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
             maxBufferSize = Math.max(originalChunkedStream.maxBufferSize, maxBufferSize);
             is = originalChunkedStream.is;
             decodedStreamBuffer = originalChunkedStream.decodedStreamBuffer;
+            chunkBuffer = originalChunkedStream.chunkBuffer;
+            // This stream now owns the buffers of the original one.
+            originalChunkedStream.decodedStreamBuffer = null;
+            originalChunkedStream.chunkBuffer = null;
         }
         else {
             is = in;
@@ -211,6 +229,9 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
                 log.debug("AwsChunkedEncodingInputStream marked at the start of the stream "
                         + "(initializing the buffer since the wrapped stream is not mark-supported).");
             }
+            if (decodedStreamBuffer != null) {
+                decodedStreamBuffer.release();
+            }
             decodedStreamBuffer = new DecodedStreamBuffer(maxBufferSize);
         }
     }
@@ -248,6 +269,19 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
         isTerminating = false;
     }
 
+    /**
+     * Returns the buffers of this stream to their pools. The wrapped stream is
+     * not closed.
+     */
+    @Override
+    public void close() throws IOException {
+        releaseChunkBuffer();
+        if (decodedStreamBuffer != null) {
+            decodedStreamBuffer.release();
+            decodedStreamBuffer = null;
+        }
+    }
+
     public static long calculateStreamContentLength(long originalLength) {
         if (originalLength < 0) {
             throw new IllegalArgumentException("Nonnegative content length expected.");
@@ -276,7 +310,10 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
      * @return Returns true if next chunk is the last empty chunk.
      */
     private boolean setUpNextChunk() throws IOException {
-        byte[] chunkData = new byte[DEFAULT_CHUNK_SIZE];
+        if (chunkBuffer == null) {
+            chunkBuffer = CHUNK_BUFFER_POOL.acquire();
+        }
+        byte[] chunkData = chunkBuffer;
         int chunkSizeInBytes = 0;
         while (chunkSizeInBytes < DEFAULT_CHUNK_SIZE) {
             /** Read from the buffer of the decoded stream */
@@ -298,26 +335,33 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
             }
         }
         if (chunkSizeInBytes == 0) {
-            byte[] signedFinalChunk = createSignedChunk(FINAL_CHUNK);
-            currentChunkIterator = new ChunkContentIterator(signedFinalChunk);
+            // All the data has been read; the buffer is taken again if the
+            // stream is reset.
+            releaseChunkBuffer();
+            currentChunkIterator = createSignedChunk(FINAL_CHUNK, 0);
             return true;
         }
         else {
-            if (chunkSizeInBytes < chunkData.length) {
-                byte[] temp = new byte[chunkSizeInBytes];
-                System.arraycopy(chunkData, 0, temp, 0, chunkSizeInBytes);
-                chunkData = temp;
-            }
-            byte[] signedChunkContent = createSignedChunk(chunkData);
-            currentChunkIterator = new ChunkContentIterator(signedChunkContent);
+            currentChunkIterator = createSignedChunk(chunkData, chunkSizeInBytes);
             return false;
         }
     }
 
-    private byte[] createSignedChunk(byte[] chunkData) {
+    private void releaseChunkBuffer() {
+        if (chunkBuffer != null) {
+            CHUNK_BUFFER_POOL.release(chunkBuffer);
+            chunkBuffer = null;
+        }
+    }
+
+    /**
+     * Signs the chunk data, which is read in place from the given buffer by
+     * the returned iterator.
+     */
+    private ChunkContentIterator createSignedChunk(byte[] chunkData, int chunkLength) {
         StringBuilder chunkHeader = new StringBuilder();
         // chunk-size
-        chunkHeader.append(Integer.toHexString(chunkData.length));
+        chunkHeader.append(Integer.toHexString(chunkLength));
         // nonsig-extension
         String nonsigExtension = "";
         // sig-extension
@@ -327,7 +371,7 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
                         keyPath + "\n" +
                         priorChunkSignature + "\n" +
                         BinaryUtils.toHex(aws4Signer.hash(nonsigExtension)) + "\n" +
-                        BinaryUtils.toHex(aws4Signer.hash(chunkData));
+                        BinaryUtils.toHex(aws4Signer.hash(chunkData, 0, chunkLength));
         String chunkSignature = BinaryUtils.toHex(aws4Signer.sign(chunkStringToSign, kSigning,
                 SigningAlgorithm.HmacSHA256));
         priorChunkSignature = chunkSignature;
@@ -336,14 +380,7 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
 
         try {
             byte[] header = chunkHeader.toString().getBytes(UTF8);
-            byte[] trailer = CLRF.getBytes(UTF8);
-            byte[] signedChunk = new byte[header.length + chunkData.length + trailer.length];
-            System.arraycopy(header, 0, signedChunk, 0, header.length);
-            System.arraycopy(chunkData, 0, signedChunk, header.length, chunkData.length);
-            System.arraycopy(trailer, 0,
-                    signedChunk, header.length + chunkData.length,
-                    trailer.length);
-            return signedChunk;
+            return new ChunkContentIterator(header, chunkData, chunkLength, CLRF_BYTES);
         } catch (Exception e) {
             throw new AmazonClientException("Unable to sign the chunked data. " + e.getMessage(), e);
         }
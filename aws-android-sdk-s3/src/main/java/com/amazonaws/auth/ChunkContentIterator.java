@@ -15,17 +15,42 @@
 
 package com.amazonaws.auth;
 
+/**
+ * Iterates over the bytes of a signed chunk: the chunk header, the chunk data
+ * and the trailer. The chunk data is read in place from the buffer it was
+ * read into, so the signed chunk is never assembled in a new array.
+ */
 class ChunkContentIterator {
 
-    private final byte[] signedChunk;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final byte[] header;
+    private final byte[] data;
+    private final int dataLength;
+    private final byte[] trailer;
+    private final int length;
     private int pos;
 
     public ChunkContentIterator(byte[] signedChunk) {
-        this.signedChunk = signedChunk;
+        this(signedChunk, EMPTY, 0, EMPTY);
+    }
+
+    /**
+     * @param header the chunk header
+     * @param data the buffer holding the chunk data, from index 0
+     * @param dataLength the number of bytes of chunk data
+     * @param trailer the bytes following the chunk data
+     */
+    public ChunkContentIterator(byte[] header, byte[] data, int dataLength, byte[] trailer) {
+        this.header = header;
+        this.data = data;
+        this.dataLength = dataLength;
+        this.trailer = trailer;
+        this.length = header.length + dataLength + trailer.length;
     }
 
     public boolean hasNext() {
-        return pos < signedChunk.length;
+        return pos < length;
     }
 
     public int read(byte[] output, int offset, int length) {
@@ -33,10 +58,37 @@ class ChunkContentIterator {
             return 0;
         if (!hasNext())
             return -1;
-        int remaingBytesNum = signedChunk.length - pos;
-        int bytesToRead = Math.min(remaingBytesNum, length);
-        System.arraycopy(signedChunk, pos, output, offset, bytesToRead);
-        pos += bytesToRead;
-        return bytesToRead;
+        int bytesToRead = Math.min(this.length - pos, length);
+        int bytesRead = 0;
+        while (bytesRead < bytesToRead) {
+            bytesRead += copySegment(output, offset + bytesRead, bytesToRead - bytesRead);
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Copies bytes from the segment at the current position, up to its end.
+     */
+    private int copySegment(byte[] output, int offset, int length) {
+        byte[] segment;
+        int segmentPos;
+        int segmentLength;
+        if (pos < header.length) {
+            segment = header;
+            segmentPos = pos;
+            segmentLength = header.length;
+        } else if (pos < header.length + dataLength) {
+            segment = data;
+            segmentPos = pos - header.length;
+            segmentLength = dataLength;
+        } else {
+            segment = trailer;
+            segmentPos = pos - header.length - dataLength;
+            segmentLength = trailer.length;
+        }
+        int count = Math.min(segmentLength - segmentPos, length);
+        System.arraycopy(segment, segmentPos, output, offset, count);
+        pos += count;
+        return count;
     }
 }
@@ -16,6 +16,7 @@
 package com.amazonaws.auth;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.util.BufferPool;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -23,6 +24,13 @@ import org.apache.commons.logging.LogFactory;
 class DecodedStreamBuffer {
     private static final Log log = LogFactory.getLog(DecodedStreamBuffer.class);
 
+    /**
+     * Buffers of the default maximum size of
+     * {@link AwsChunkedEncodingInputStream}, shared by all streams; buffers of
+     * other sizes are not pooled.
+     */
+    private static final BufferPool BUFFER_POOL = new BufferPool(256 * 1024, 4);
+
     private byte[] bufferArray;
     private int maxBufferSize;
     private int byteBuffered;
@@ -30,19 +38,16 @@ class DecodedStreamBuffer {
     private boolean bufferSizeOverflow;
 
     public DecodedStreamBuffer(int maxBufferSize) {
-        bufferArray = new byte[maxBufferSize];
+        bufferArray = maxBufferSize == BUFFER_POOL.getBufferSize()
+                ? BUFFER_POOL.acquire()
+                : new byte[maxBufferSize];
         this.maxBufferSize = maxBufferSize;
     }
 
     public void buffer(byte read) {
         pos = -1;
-        if (byteBuffered >= maxBufferSize) {
-            if (log.isDebugEnabled()) {
-                log.debug("Buffer size " + maxBufferSize
-                        + " has been exceeded and the input stream "
-                        + "will not be repeatable. Freeing buffer memory");
-            }
-            bufferSizeOverflow = true;
+        if (bufferSizeOverflow || byteBuffered >= maxBufferSize) {
+            overflow();
         }
         else
             bufferArray[byteBuffered++] = read;
@@ -50,13 +55,8 @@ class DecodedStreamBuffer {
 
     public void buffer(byte[] array, int offset, int length) {
         pos = -1;
-        if (byteBuffered + length > maxBufferSize) {
-            if (log.isDebugEnabled()) {
-                log.debug("Buffer size " + maxBufferSize
-                        + " has been exceeded and the input stream "
-                        + "will not be repeatable. Freeing buffer memory");
-            }
-            bufferSizeOverflow = true;
+        if (bufferSizeOverflow || byteBuffered + length > maxBufferSize) {
+            overflow();
         }
         else {
             System.arraycopy(array, offset, bufferArray, byteBuffered, length);
@@ -80,4 +80,25 @@ class DecodedStreamBuffer {
         }
         pos = 0;
     }
+
+    /**
+     * Returns the buffer memory to the pool; the stream is no longer
+     * repeatable afterwards.
+     */
+    public void release() {
+        bufferSizeOverflow = true;
+        if (bufferArray != null) {
+            BUFFER_POOL.release(bufferArray);
+            bufferArray = null;
+        }
+    }
+
+    private void overflow() {
+        if (!bufferSizeOverflow && log.isDebugEnabled()) {
+            log.debug("Buffer size " + maxBufferSize
+                    + " has been exceeded and the input stream "
+                    + "will not be repeatable. Freeing buffer memory");
+        }
+        release();
+    }
 }
@@ -64,6 +64,17 @@ public final class PersistableDownload extends PersistableTransfer {
      */
     private final String file;
 
+    /**
+     * The size of the parts of a download fetched in parallel, or -1 if the
+     * object is downloaded with a single request.
+     */
+    private final long partSize;
+
+    /**
+     * The numbers, starting at 1, of the parts already written to the file.
+     */
+    private final int[] completedParts;
+
     @Deprecated
     public PersistableDownload() {
         this(null, null, null, null, null, false, null);
@@ -77,6 +88,20 @@ public final class PersistableDownload extends PersistableTransfer {
             ResponseHeaderOverrides responseHeaders,
             boolean isRequesterPays,
             String file) {
+        this(bucketName, key, versionId, range, responseHeaders, isRequesterPays, file, -1,
+                null);
+    }
+
+    public PersistableDownload(
+            String bucketName,
+            String key,
+            String versionId,
+            long[] range,
+            ResponseHeaderOverrides responseHeaders,
+            boolean isRequesterPays,
+            String file,
+            long partSize,
+            int[] completedParts) {
         this.bucketName = bucketName;
         this.key = key;
         this.versionId = versionId;
@@ -84,6 +109,8 @@ public final class PersistableDownload extends PersistableTransfer {
         this.responseHeaders = responseHeaders;
         this.isRequesterPays = isRequesterPays;
         this.file = file;
+        this.partSize = partSize;
+        this.completedParts = completedParts == null ? null : completedParts.clone();
     }
 
     /**
@@ -136,6 +163,22 @@ public final class PersistableDownload extends PersistableTransfer {
         return file;
     }
 
+    /**
+     * Returns the size of the parts of a parallel download, or -1 if the
+     * object is downloaded with a single request.
+     */
+    long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Returns the numbers of the parts of a parallel download already written
+     * to the file.
+     */
+    int[] getCompletedParts() {
+        return completedParts == null ? new int[0] : completedParts.clone();
+    }
+
     String getPauseType() {
         return pauseType;
     }
@@ -159,6 +202,16 @@ public final class PersistableDownload extends PersistableTransfer {
                 }
                 writer.endArray();
             }
+            if (partSize > 0) {
+                writer.name("partSize").value(partSize);
+                writer.name("completedParts").beginArray();
+                if (completedParts != null) {
+                    for (int part : completedParts) {
+                        writer.value(part);
+                    }
+                }
+                writer.endArray();
+            }
             if (responseHeaders != null) {
                 writer.name("responseHeaders").beginObject()
                         .name("contentType").value(responseHeaders.getContentType())
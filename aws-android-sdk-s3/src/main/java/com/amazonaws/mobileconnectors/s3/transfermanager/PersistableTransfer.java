@@ -28,6 +28,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Abstract base class for the information of a pausible upload or download;
@@ -79,6 +81,7 @@ public abstract class PersistableTransfer {
         long[] range = null;
         ResponseHeaderOverrides responseHeaders = null;
         boolean isRequesterPays = false;
+        int[] completedParts = null;
 
         AwsJsonReader reader = JsonUtils
                 .getJsonReader(new BufferedReader(new InputStreamReader(in, StringUtils.UTF8)));
@@ -113,6 +116,17 @@ public abstract class PersistableTransfer {
                     range[0] = Long.parseLong(reader.nextString());
                     range[1] = Long.parseLong(reader.nextString());
                     reader.endArray();
+                } else if (name.equals("completedParts")) {
+                    List<Integer> parts = new ArrayList<Integer>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        parts.add(Integer.valueOf(reader.nextString()));
+                    }
+                    reader.endArray();
+                    completedParts = new int[parts.size()];
+                    for (int i = 0; i < completedParts.length; i++) {
+                        completedParts[i] = parts.get(i);
+                    }
                 } else if (name.equals("responseHeaders")) {
                     responseHeaders = new ResponseHeaderOverrides();
                     reader.beginObject();
@@ -148,7 +162,7 @@ public abstract class PersistableTransfer {
 
         if (PersistableDownload.TYPE.equals(type)) {
             return (T) new PersistableDownload(bucketName, key, versionId, range, responseHeaders,
-                    isRequesterPays, file);
+                    isRequesterPays, file, partSize, completedParts);
         } else if (PersistableUpload.TYPE.equals(type)) {
             return (T) new PersistableUpload(bucketName, key, file, multipartUploadId, partSize,
                     mutlipartUploadThreshold);
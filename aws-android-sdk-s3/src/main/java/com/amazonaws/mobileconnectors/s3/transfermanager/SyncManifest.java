@@ -0,0 +1,332 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transfermanager;
+
+import com.amazonaws.mobileconnectors.s3.transfermanager.Transfer.TransferState;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+import com.amazonaws.util.StringUtils;
+import com.amazonaws.util.json.AwsJsonReader;
+import com.amazonaws.util.json.AwsJsonWriter;
+import com.amazonaws.util.json.JsonUtils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A record of the files synchronized by
+ * {@link TransferManager#downloadDirectory(String, String, File, SyncManifest)}
+ * and
+ * {@link TransferManager#uploadDirectory(String, String, File, boolean, ObjectMetadataProvider, SyncManifest)}
+ * , kept in a local file between runs. For each key it holds the size and last
+ * modified time of the local file and the ETag of the object as of the last
+ * transfer, so that files which have not changed since are skipped.
+ * <p>
+ * The manifest is updated as transfers complete; call {@link #save()} once the
+ * synchronization is done to keep it for the next run. A manifest should only
+ * be used for one directory and key prefix, and should not be stored in the
+ * directory being uploaded. Instances are thread-safe.
+ *
+ * @deprecated The Transfer Manager is now deprecated in favor of the
+ *             {@link com.amazonaws.mobileconnectors.s3.transferutility.TransferUtility}
+ */
+@Deprecated
+public final class SyncManifest {
+
+    private static final Log log = LogFactory.getLog(SyncManifest.class);
+
+    private static final int VERSION = 1;
+
+    /** The length of the hex encoded MD5 ETag of a single part object. */
+    private static final int MD5_ETAG_LENGTH = 32;
+
+    private final File file;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /** Transfers whose file is recorded once they have completed. */
+    private final Queue<PendingEntry> pendingEntries = new ConcurrentLinkedQueue<PendingEntry>();
+
+    /**
+     * Constructs a manifest kept in the given file, loading the entries it
+     * holds if it exists.
+     *
+     * @param file the file the manifest is loaded from and saved to
+     * @throws IOException if the file exists but cannot be read
+     */
+    public SyncManifest(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("The manifest file must be specified");
+        }
+        this.file = file;
+        if (file.isFile()) {
+            load();
+        }
+    }
+
+    /**
+     * Returns the file this manifest is loaded from and saved to.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of files recorded by this manifest.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Records the transfers that have completed and saves this manifest to
+     * its file. Call it once the synchronization is done, after
+     * {@link Transfer#waitForCompletion()} has returned or thrown; the entries
+     * of failed or canceled transfers are removed.
+     *
+     * @throws IOException if the file cannot be written
+     * @throws InterruptedException if interrupted while getting the result of
+     *             an upload
+     */
+    public void save() throws IOException, InterruptedException {
+        recordCompletedTransfers();
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        AwsJsonWriter writer = JsonUtils.getJsonWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(tempFile), StringUtils.UTF8)));
+        try {
+            writer.beginObject()
+                    .name("version").value(VERSION)
+                    .name("entries").beginArray();
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                writer.beginObject()
+                        .name("key").value(e.getKey())
+                        .name("size").value(entry.size)
+                        .name("lastModified").value(entry.lastModified);
+                if (entry.eTag != null) {
+                    writer.name("eTag").value(entry.eTag);
+                }
+                writer.endObject();
+            }
+            writer.endArray().endObject();
+        } finally {
+            writer.close();
+        }
+
+        if (!tempFile.renameTo(file)) {
+            // renameTo doesn't replace an existing file on every platform
+            if (!file.delete() || !tempFile.renameTo(file)) {
+                throw new IOException("Unable to replace " + file.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Returns whether the local file of an object to upload is unchanged since
+     * it was last synchronized.
+     */
+    boolean isUnchanged(String key, File localFile) {
+        Entry entry = entries.get(key);
+        return entry != null && entry.matches(localFile);
+    }
+
+    /**
+     * Returns whether the local file already holds the listed object. Without
+     * an entry for the key, the MD5 of a file of the right size is compared
+     * with the ETag of the object, when it is one, and an entry is added if
+     * they match.
+     */
+    boolean isUnchanged(String key, File localFile, long size, String eTag) {
+        if (eTag == null || !localFile.isFile() || localFile.length() != size) {
+            return false;
+        }
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            return eTag.equals(entry.eTag) && entry.matches(localFile);
+        }
+        if (eTag.length() != MD5_ETAG_LENGTH) {
+            // The ETag of a multipart object is not the MD5 of its content
+            return false;
+        }
+        try {
+            String md5 = BinaryUtils.toHex(Md5Utils.computeMD5Hash(localFile));
+            if (md5.equalsIgnoreCase(eTag)) {
+                record(key, localFile, eTag);
+                return true;
+            }
+        } catch (IOException e) {
+            log.debug("Unable to compute the MD5 of " + localFile.getAbsolutePath(), e);
+        }
+        return false;
+    }
+
+    /**
+     * Records the current state of the local file as synchronized with the
+     * object of the given ETag.
+     */
+    void record(String key, File localFile, String eTag) {
+        entries.put(key, new Entry(localFile.length(), localFile.lastModified(), eTag));
+    }
+
+    /**
+     * Records the downloaded file, as it is once written, when the given
+     * download has completed.
+     */
+    void recordOnCompletion(String key, File localFile, String eTag, Download download) {
+        pendingEntries.add(new PendingEntry(key, localFile, eTag, download, null));
+    }
+
+    /**
+     * Records the uploaded file with the size and last modified time it had
+     * when the upload was queued, and the ETag of the resulting object, when
+     * the given upload has completed. A file modified during its upload is
+     * thus uploaded again by the next synchronization.
+     */
+    void recordOnCompletion(String key, long size, long lastModified, Upload upload) {
+        pendingEntries.add(new PendingEntry(key, null, null, upload,
+                new Entry(size, lastModified, null)));
+    }
+
+    private void recordCompletedTransfers() throws InterruptedException {
+        List<PendingEntry> running = new ArrayList<PendingEntry>();
+        PendingEntry pending;
+        while ((pending = pendingEntries.poll()) != null) {
+            TransferState state = pending.transfer.getState();
+            if (state == TransferState.Completed) {
+                String eTag = pending.eTag;
+                if (eTag == null) {
+                    eTag = ((Upload) pending.transfer).waitForUploadResult().getETag();
+                }
+                if (pending.queued != null) {
+                    entries.put(pending.key, new Entry(pending.queued.size,
+                            pending.queued.lastModified, eTag));
+                } else {
+                    record(pending.key, pending.localFile, eTag);
+                }
+            } else if (pending.transfer.isDone()) {
+                // The local file or the object may be incomplete
+                entries.remove(pending.key);
+            } else {
+                running.add(pending);
+            }
+        }
+        pendingEntries.addAll(running);
+    }
+
+    private void load() throws IOException {
+        AwsJsonReader reader = JsonUtils.getJsonReader(new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StringUtils.UTF8)));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("entries".equals(name)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        loadEntry(reader);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void loadEntry(AwsJsonReader reader) throws IOException {
+        String key = null;
+        long size = -1;
+        long lastModified = 0;
+        String eTag = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("key".equals(name)) {
+                key = reader.nextString();
+            } else if ("size".equals(name)) {
+                size = Long.parseLong(reader.nextString());
+            } else if ("lastModified".equals(name)) {
+                lastModified = Long.parseLong(reader.nextString());
+            } else if ("eTag".equals(name)) {
+                eTag = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (key != null && size >= 0) {
+            entries.put(key, new Entry(size, lastModified, eTag));
+        }
+    }
+
+    /**
+     * The state of a local file and of its object when they were last
+     * synchronized.
+     */
+    private static final class Entry {
+        final long size;
+        final long lastModified;
+        final String eTag;
+
+        Entry(long size, long lastModified, String eTag) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.eTag = eTag;
+        }
+
+        boolean matches(File localFile) {
+            return localFile.isFile() && localFile.length() == size
+                    && localFile.lastModified() == lastModified;
+        }
+    }
+
+    private static final class PendingEntry {
+        final String key;
+        final File localFile;
+        final String eTag;
+        final Transfer transfer;
+
+        /** The state of an uploaded file when it was queued. */
+        final Entry queued;
+
+        PendingEntry(String key, File localFile, String eTag, Transfer transfer, Entry queued) {
+            this.key = key;
+            this.localFile = localFile;
+            this.eTag = eTag;
+            this.transfer = transfer;
+            this.queued = queued;
+        }
+    }
+}
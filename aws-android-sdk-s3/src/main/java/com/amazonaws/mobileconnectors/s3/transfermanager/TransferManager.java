@@ -35,7 +35,9 @@ import com.amazonaws.mobileconnectors.s3.transfermanager.internal.CopyImpl;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.CopyMonitor;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.DownloadImpl;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.DownloadMonitor;
+import com.amazonaws.mobileconnectors.s3.transfermanager.internal.MultipartDownloadMonitor;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.MultipleFileDownloadImpl;
+import com.amazonaws.mobileconnectors.s3.transfermanager.internal.MultipleFileTransfer;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.MultipleFileTransferMonitor;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.MultipleFileUploadImpl;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.S3ProgressListener;
@@ -70,13 +72,17 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Stack;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -557,7 +563,7 @@ public class TransferManager {
      *             processing the request.
      */
     public Download download(final GetObjectRequest getObjectRequest, final File file) {
-        return doDownload(getObjectRequest, file, null, null, OVERWRITE_MODE);
+        return doDownload(getObjectRequest, file, null, null, OVERWRITE_MODE, null);
     }
 
     /**
@@ -584,7 +590,7 @@ public class TransferManager {
     public Download download(final GetObjectRequest getObjectRequest,
             final File file, final S3ProgressListener progressListener) {
         return doDownload(getObjectRequest, file, null, progressListener,
-                OVERWRITE_MODE);
+                OVERWRITE_MODE, null);
     }
 
     /**
@@ -596,7 +602,22 @@ public class TransferManager {
     private Download doDownload(final GetObjectRequest getObjectRequest,
             final File file, final TransferStateChangeListener stateListener,
             final S3ProgressListener s3progressListener,
-            final boolean resumeExistingDownload) {
+            final boolean resumeExistingDownload,
+            final PersistableDownload pausedDownload) {
+        return doDownload(getObjectRequest, file, stateListener, s3progressListener,
+                resumeExistingDownload, pausedDownload, null);
+    }
+
+    /**
+     * Same as above, but the metadata of the object can be given when it is
+     * already known, such as from a listing, so that it is not requested.
+     */
+    private Download doDownload(final GetObjectRequest getObjectRequest,
+            final File file, final TransferStateChangeListener stateListener,
+            final S3ProgressListener s3progressListener,
+            final boolean resumeExistingDownload,
+            final PersistableDownload pausedDownload,
+            final ObjectMetadata knownMetadata) {
 
         appendSingleObjectUserAgent(getObjectRequest);
 
@@ -641,12 +662,8 @@ public class TransferManager {
         if (getObjectRequest.getSSECustomerKey() != null) {
             getObjectMetadataRequest.setSSECustomerKey(getObjectRequest.getSSECustomerKey());
         }
-        final ObjectMetadata objectMetadata = s3.getObjectMetadata(getObjectMetadataRequest);
-
-        // We still pass the unfiltered listener chain into DownloadImpl
-        final DownloadImpl download = new DownloadImpl(description,
-                transferProgress, listenerChain, null, stateListener,
-                getObjectRequest, file);
+        final ObjectMetadata objectMetadata = knownMetadata != null ? knownMetadata
+                : s3.getObjectMetadata(getObjectMetadataRequest);
 
         long startingByte = 0;
         long lastByte = objectMetadata.getContentLength() - 1;
@@ -660,6 +677,28 @@ public class TransferManager {
         long totalBytesToDownload = lastByte - startingByte + 1;
         transferProgress.setTotalBytesToTransfer(totalBytesToDownload);
 
+        // A download paused in parts resumes in parts of the same size
+        long partSize = -1;
+        if (pausedDownload != null && pausedDownload.getPartSize() > 0) {
+            partSize = pausedDownload.getPartSize();
+        } else if (!resumeExistingDownload
+                && totalBytesToDownload > configuration.getMultipartDownloadThreshold()
+                && !(s3 instanceof AmazonS3EncryptionClient)) {
+            partSize = TransferManagerUtils.calculateOptimalPartSizeForDownload(configuration,
+                    totalBytesToDownload);
+        }
+
+        // We still pass the unfiltered listener chain into DownloadImpl
+        final DownloadImpl download = new DownloadImpl(description,
+                transferProgress, listenerChain, null, stateListener,
+                getObjectRequest, file, partSize);
+
+        if (partSize > 0) {
+            return doMultipartDownload(getObjectRequest, file, objectMetadata, download,
+                    startingByte, lastByte, partSize,
+                    pausedDownload == null ? null : pausedDownload.getCompletedParts());
+        }
+
         if (resumeExistingDownload) {
             if (file.exists()) {
                 long numberOfBytesRead = file.length();
@@ -684,6 +723,57 @@ public class TransferManager {
         return download;
     }
 
+    /**
+     * Downloads the given range of the object in parts fetched in parallel
+     * into the file, which is first extended to the length of the range.
+     */
+    private Download doMultipartDownload(final GetObjectRequest getObjectRequest,
+            final File file, final ObjectMetadata objectMetadata, final DownloadImpl download,
+            long startingByte, long lastByte, long partSize, int[] completedParts) {
+        long length = lastByte - startingByte + 1;
+        // The parts written by the paused download are lost with the file
+        if (!file.isFile() || file.length() != length) {
+            completedParts = null;
+        }
+        File parentDirectory = file.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists()) {
+            parentDirectory.mkdirs();
+        }
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            randomAccessFile.setLength(length);
+        } catch (IOException e) {
+            throw new AmazonClientException("Unable to allocate "
+                    + file.getAbsolutePath() + ": " + e.getMessage(), e);
+        } finally {
+            try {
+                if (randomAccessFile != null) {
+                    randomAccessFile.close();
+                }
+            } catch (IOException e) {
+            }
+        }
+
+        // Integrity of the parts can only be checked against the whole object
+        boolean performIntegrityCheck = getObjectRequest.getRange() == null
+                && !ServiceUtils.skipMd5CheckPerRequest(getObjectRequest)
+                && !ServiceUtils.skipMd5CheckPerResponse(objectMetadata);
+        MultipartDownloadMonitor monitor = new MultipartDownloadMonitor(s3, threadPool,
+                download, getObjectRequest, file, objectMetadata, startingByte, lastByte,
+                partSize, completedParts, performIntegrityCheck);
+        download.getProgress().updateProgress(monitor.getCompletedBytes());
+
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName(getObjectRequest.getBucketName());
+        s3Object.setKey(getObjectRequest.getKey());
+        s3Object.setObjectMetadata(objectMetadata);
+        download.setS3Object(s3Object);
+        download.setMonitor(monitor);
+        monitor.start();
+        return download;
+    }
+
     private Future<?> submitDownloadTask(
             final GetObjectRequest getObjectRequest, final File file,
             final boolean resumeExistingDownload,
@@ -846,7 +936,7 @@ public class TransferManager {
                             .withGeneralProgressListener(
                             listener),
                     f,
-                    transferListener, null, false));
+                    transferListener, null, false, null));
         }
 
         if (downloads.isEmpty()) {
@@ -861,6 +951,169 @@ public class TransferManager {
         return multipleFileDownload;
     }
 
+    /**
+     * Synchronizes the destination directory with the virtual directory
+     * designated by the keyPrefix given: only the objects that are missing or
+     * have changed locally since the last synchronization recorded in the
+     * manifest are downloaded. All virtual subdirectories are synchronized
+     * recursively.
+     * <p>
+     * The objects are listed in the background and each download starts as
+     * soon as its object has been listed, so this method returns before the
+     * listing is complete. A local file is considered unchanged when its size
+     * and last modified time are those recorded in the manifest along with the
+     * current ETag of the object; without an entry in the manifest, the MD5 of
+     * a file of the right size is compared with the ETag. Local files are
+     * never deleted, and objects whose key ends with the delimiter are
+     * skipped.
+     * <p>
+     * Call {@link SyncManifest#save()} once the returned transfer is done to
+     * keep the state of the synchronization for the next one.
+     *
+     * @param bucketName The bucket containing the virtual directory
+     * @param keyPrefix The key prefix for the virtual directory, or null for
+     *            the entire bucket.
+     * @param destinationDirectory The directory to synchronize.
+     *            Subdirectories will be created as necessary.
+     * @param manifest The record of the previous synchronizations of this
+     *            directory, which is updated by this one.
+     */
+    public MultipleFileDownload downloadDirectory(final String bucketName, String keyPrefix,
+            final File destinationDirectory, final SyncManifest manifest) {
+        assertParameterNotNull(manifest, "The sync manifest must be specified");
+        final String prefix = keyPrefix == null ? "" : keyPrefix;
+
+        /* This is the hook for adding additional progress listeners */
+        ProgressListenerChain additionalListeners = new ProgressListenerChain();
+
+        final TransferProgress transferProgress = new TransferProgress();
+        transferProgress.setTotalBytesToTransfer(0);
+        final ProgressListener listener = new MultipleFileTransferProgressUpdatingListener(
+                transferProgress, additionalListeners);
+
+        // Downloads are added while they run, so they are kept in a queue that
+        // is safe to iterate concurrently.
+        final Collection<DownloadImpl> downloads = new ConcurrentLinkedQueue<DownloadImpl>();
+
+        String description = "Synchronizing from " + bucketName + "/" + prefix;
+        final MultipleFileDownloadImpl multipleFileDownload = new MultipleFileDownloadImpl(
+                description, transferProgress,
+                additionalListeners, prefix, bucketName, downloads);
+        final MultipleFileTransferMonitor monitor = new MultipleFileTransferMonitor(
+                multipleFileDownload, downloads, true);
+        multipleFileDownload.setMonitor(monitor);
+
+        // The monitor is not done before all the downloads are queued, so the
+        // listener has no need to wait for them.
+        final MultipleFileTransferStateChangeListener transferListener = new MultipleFileTransferStateChangeListener(
+                new CountDownLatch(0), multipleFileDownload);
+
+        threadPool.submit(new Callable<Object>() {
+            @Override
+            public Object call() {
+                Throwable failure = null;
+                try {
+                    queueDownloadsForSync(bucketName, prefix, destinationDirectory, manifest,
+                            listener, transferListener, transferProgress, downloads, monitor);
+                } catch (Throwable t) {
+                    log.warn("Unable to list the objects to synchronize", t);
+                    failure = t;
+                }
+                finishQueueing(multipleFileDownload, monitor, failure);
+                return null;
+            }
+        });
+        return multipleFileDownload;
+    }
+
+    /**
+     * Lists the objects under the prefix page by page, starting a download
+     * for each one that has changed.
+     */
+    private void queueDownloadsForSync(String bucketName, String prefix,
+            File destinationDirectory, SyncManifest manifest, ProgressListener listener,
+            TransferStateChangeListener transferListener, TransferProgress transferProgress,
+            Collection<DownloadImpl> downloads, MultipleFileTransferMonitor monitor)
+            throws IOException {
+        long totalSize = 0;
+        int skipped = 0;
+        ObjectListing listing = null;
+        do {
+            if (listing == null) {
+                // Without a delimiter the whole tree is listed in pages of
+                // keys, instead of one listing per virtual directory.
+                listing = s3.listObjects(new ListObjectsRequest()
+                        .withBucketName(bucketName).withPrefix(prefix));
+            } else {
+                listing = s3.listNextBatchOfObjects(listing);
+            }
+
+            for (S3ObjectSummary summary : listing.getObjectSummaries()) {
+                if (monitor.isCancelled()) {
+                    return;
+                }
+                String key = summary.getKey();
+                if (key.endsWith(DEFAULT_DELIMITER)) {
+                    continue;
+                }
+                File f = new File(destinationDirectory, key);
+                if (manifest.isUnchanged(key, f, summary.getSize(), summary.getETag())) {
+                    skipped++;
+                    continue;
+                }
+                File parentFile = f.getParentFile();
+                if (!parentFile.exists() && !parentFile.mkdirs()) {
+                    throw new AmazonClientException("Couldn't create parent directories for "
+                            + f.getAbsolutePath());
+                }
+
+                totalSize += summary.getSize();
+                transferProgress.setTotalBytesToTransfer(totalSize);
+
+                // Objects downloaded with a single request need no metadata
+                // beyond their length, which was listed.
+                ObjectMetadata listedMetadata = null;
+                if (summary.getSize() <= configuration.getMultipartDownloadThreshold()) {
+                    listedMetadata = new ObjectMetadata();
+                    listedMetadata.setContentLength(summary.getSize());
+                }
+                DownloadImpl download = (DownloadImpl) doDownload(
+                        new GetObjectRequest(bucketName, key)
+                                .withGeneralProgressListener(listener),
+                        f, transferListener, null, false, null, listedMetadata);
+                manifest.recordOnCompletion(key, f, summary.getETag(), download);
+                downloads.add(download);
+                if (monitor.isCancelled()) {
+                    download.abort();
+                }
+            }
+        } while (listing.isTruncated());
+        log.debug("Skipped " + skipped + " unchanged objects under " + bucketName + "/" + prefix);
+    }
+
+    /**
+     * Completes a multiple file transfer whose sub-transfers were queued while
+     * it ran, if they are all done.
+     */
+    private static void finishQueueing(MultipleFileTransfer<?> transfer,
+            MultipleFileTransferMonitor monitor, Throwable failure) {
+        monitor.allTransfersQueued(failure);
+        synchronized (transfer) {
+            if (transfer.isDone()) {
+                return;
+            }
+            if (failure != null) {
+                transfer.setState(TransferState.Failed);
+            } else if (monitor.isDone()) {
+                if (monitor.isCancelled()) {
+                    transfer.setState(TransferState.Canceled);
+                } else {
+                    transfer.collateFinalState();
+                }
+            }
+        }
+    }
+
     /**
      * Uploads all files in the directory given to the bucket named, optionally
      * recursing for all subdirectories.
@@ -915,6 +1168,159 @@ public class TransferManager {
                 metadataProvider);
     }
 
+    /**
+     * Synchronizes the virtual directory designated by the key prefix given
+     * with the directory given: only the files that have changed since the
+     * last synchronization recorded in the manifest are uploaded, optionally
+     * recursing for all subdirectories.
+     * <p>
+     * The directory is walked in the background and each upload starts as
+     * soon as its file has been found, so this method returns before the walk
+     * is complete. A file is considered unchanged when its size and last
+     * modified time are those recorded in the manifest; the objects in Amazon
+     * S3 are assumed to be only changed by this synchronization. Objects are
+     * never deleted.
+     * <p>
+     * Call {@link SyncManifest#save()} once the returned transfer is done to
+     * keep the state of the synchronization for the next one.
+     *
+     * @param bucketName The name of the bucket to upload objects to.
+     * @param virtualDirectoryKeyPrefix The key prefix of the virtual directory
+     *            to upload to. Use the null or empty string to upload files to
+     *            the root of the bucket.
+     * @param directory The directory to synchronize.
+     * @param includeSubdirectories Whether to include subdirectories in the
+     *            upload. If true, files found in subdirectories will be
+     *            included with an appropriate concatenation to the key prefix.
+     * @param metadataProvider A callback of type
+     *            <code>ObjectMetadataProvider</code> which is used to provide
+     *            metadata for each file being uploaded, or null.
+     * @param manifest The record of the previous synchronizations of this
+     *            directory, which is updated by this one.
+     */
+    public MultipleFileUpload uploadDirectory(final String bucketName,
+            String virtualDirectoryKeyPrefix, final File directory,
+            final boolean includeSubdirectories, final ObjectMetadataProvider metadataProvider,
+            final SyncManifest manifest) {
+        if (directory == null || !directory.exists() || !directory.isDirectory()) {
+            throw new IllegalArgumentException("Must provide a directory to upload");
+        }
+        assertParameterNotNull(manifest, "The sync manifest must be specified");
+
+        if (virtualDirectoryKeyPrefix == null || virtualDirectoryKeyPrefix.length() == 0) {
+            virtualDirectoryKeyPrefix = "";
+        } else if (!virtualDirectoryKeyPrefix.endsWith("/")) {
+            virtualDirectoryKeyPrefix = virtualDirectoryKeyPrefix + "/";
+        }
+        final String prefix = virtualDirectoryKeyPrefix;
+
+        /* This is the hook for adding additional progress listeners */
+        ProgressListenerChain additionalListeners = new ProgressListenerChain();
+
+        final TransferProgress progress = new TransferProgress();
+        progress.setTotalBytesToTransfer(0);
+        final ProgressListener listener = new MultipleFileTransferProgressUpdatingListener(
+                progress, additionalListeners);
+
+        // Uploads are added while they run, so they are kept in a queue that
+        // is safe to iterate concurrently.
+        final Collection<UploadImpl> uploads = new ConcurrentLinkedQueue<UploadImpl>();
+        final MultipleFileUploadImpl multipleFileUpload = new MultipleFileUploadImpl(
+                "Synchronizing " + directory.getAbsolutePath(),
+                progress, additionalListeners, prefix, bucketName, uploads);
+        final MultipleFileTransferMonitor monitor = new MultipleFileTransferMonitor(
+                multipleFileUpload, uploads, true);
+        multipleFileUpload.setMonitor(monitor);
+
+        // The monitor is not done before all the uploads are queued, so the
+        // listener has no need to wait for them.
+        final MultipleFileTransferStateChangeListener transferListener = new MultipleFileTransferStateChangeListener(
+                new CountDownLatch(0), multipleFileUpload);
+
+        threadPool.submit(new Callable<Object>() {
+            @Override
+            public Object call() {
+                Throwable failure = null;
+                try {
+                    queueUploadsForSync(bucketName, prefix, directory, includeSubdirectories,
+                            metadataProvider, manifest, listener, transferListener, progress,
+                            uploads, monitor);
+                } catch (Throwable t) {
+                    log.warn("Unable to walk the directory to synchronize", t);
+                    failure = t;
+                }
+                finishQueueing(multipleFileUpload, monitor, failure);
+                return null;
+            }
+        });
+        return multipleFileUpload;
+    }
+
+    /**
+     * Walks the directory, starting an upload for each file that has changed.
+     */
+    private void queueUploadsForSync(String bucketName, String prefix, File directory,
+            boolean includeSubdirectories, ObjectMetadataProvider metadataProvider,
+            SyncManifest manifest, ProgressListener listener,
+            TransferStateChangeListener transferListener, TransferProgress progress,
+            Collection<UploadImpl> uploads, MultipleFileTransferMonitor monitor) {
+        // See uploadFileList for the computation of the relative keys
+        int startingPosition = directory.getAbsolutePath().length();
+        if (!(directory.getAbsolutePath().endsWith(File.separator)))
+            startingPosition++;
+
+        long totalSize = 0;
+        int skipped = 0;
+        Stack<File> directories = new Stack<File>();
+        directories.push(directory);
+        while (!directories.isEmpty()) {
+            File[] found = directories.pop().listFiles();
+            if (found == null) {
+                continue;
+            }
+            for (File f : found) {
+                if (monitor.isCancelled()) {
+                    return;
+                }
+                if (f.isDirectory()) {
+                    if (includeSubdirectories) {
+                        directories.push(f);
+                    }
+                    continue;
+                }
+                if (!f.isFile()) {
+                    continue;
+                }
+                String key = prefix + f.getAbsolutePath().substring(startingPosition)
+                        .replaceAll("\\\\", "/");
+                if (manifest.isUnchanged(key, f)) {
+                    skipped++;
+                    continue;
+                }
+
+                // The state of the file before it is read, so that changes
+                // made during the upload are seen by the next synchronization
+                long size = f.length();
+                long lastModified = f.lastModified();
+                totalSize += size;
+                progress.setTotalBytesToTransfer(totalSize);
+
+                ObjectMetadata metadata = new ObjectMetadata();
+                if (metadataProvider != null) {
+                    metadataProvider.provideObjectMetadata(f, metadata);
+                }
+                UploadImpl upload = (UploadImpl) doUpload(
+                        new PutObjectRequest(bucketName, key, f)
+                                .withMetadata(metadata)
+                                .withGeneralProgressListener(listener),
+                        transferListener, null, null);
+                manifest.recordOnCompletion(key, size, lastModified, upload);
+                uploads.add(upload);
+            }
+        }
+        log.debug("Skipped " + skipped + " unchanged files in " + directory.getAbsolutePath());
+    }
+
     /**
      * Uploads all specified files to the bucket named, constructing relative
      * keys depending on the commonParentDirectory given.
@@ -1398,7 +1804,7 @@ public class TransferManager {
         request.setResponseHeaders(persistableDownload.getResponseHeaders());
 
         return doDownload(request, new File(persistableDownload.getFile()), null, null,
-                APPEND_MODE);
+                APPEND_MODE, persistableDownload);
     }
 
     /**
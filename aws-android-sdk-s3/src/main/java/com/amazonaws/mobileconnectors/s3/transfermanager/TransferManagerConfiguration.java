@@ -47,6 +47,12 @@ public class TransferManagerConfiguration {
     /** Default minimum size of each part for multi-part copy. */
     private static final long DEFAULT_MINIMUM_COPY_PART_SIZE = 100 * MB;
 
+    /** Default minimum part size for download parts. */
+    private static final long DEFAULT_MINIMUM_DOWNLOAD_PART_SIZE = 8 * MB;
+
+    /** Default size threshold for when to download parts in parallel. */
+    private static final long DEFAULT_MULTIPART_DOWNLOAD_THRESHOLD = 16 * MB;
+
     /**
      * The minimum part size for upload parts. Decreasing the minimum part size
      * will cause multipart uploads to be split into a larger number of smaller
@@ -85,6 +91,20 @@ public class TransferManagerConfiguration {
      */
     private long multipartCopyPartSize = DEFAULT_MINIMUM_COPY_PART_SIZE;
 
+    /**
+     * The minimum part size for download parts, each of which is fetched with
+     * a ranged GET request.
+     */
+    private long minimumDownloadPartSize = DEFAULT_MINIMUM_DOWNLOAD_PART_SIZE;
+
+    /**
+     * The size threshold, in bytes, for when to download the parts of an
+     * object in parallel. Downloads over this size fetch ranges of the object
+     * on several connections and write them to the file as they arrive, while
+     * smaller downloads use a single connection.
+     */
+    private long multipartDownloadThreshold = DEFAULT_MULTIPART_DOWNLOAD_THRESHOLD;
+
     /**
      * Returns the minimum part size for upload parts. Decreasing the minimum
      * part size causes multipart uploads to be split into a larger number of
@@ -192,4 +212,57 @@ public class TransferManagerConfiguration {
     public void setMultipartCopyThreshold(long multipartCopyThreshold) {
         this.multipartCopyThreshold = multipartCopyThreshold;
     }
+
+    /**
+     * Returns the minimum part size for download parts. Each part is fetched
+     * with a ranged GET request, so a smaller part size spreads a download
+     * over more requests.
+     *
+     * @return The minimum part size for download parts.
+     */
+    public long getMinimumDownloadPartSize() {
+        return minimumDownloadPartSize;
+    }
+
+    /**
+     * Sets the minimum part size for download parts. Each part is fetched with
+     * a ranged GET request, so a smaller part size spreads a download over
+     * more requests.
+     *
+     * @param minimumDownloadPartSize The minimum part size for download parts.
+     */
+    public void setMinimumDownloadPartSize(long minimumDownloadPartSize) {
+        this.minimumDownloadPartSize = minimumDownloadPartSize;
+    }
+
+    /**
+     * Returns the size threshold in bytes for when to download the parts of
+     * an object in parallel. Downloads over this size fetch ranges of the
+     * object on several connections and write them to the file as they
+     * arrive, while smaller downloads use a single connection.
+     * <p>
+     * Downloads through an
+     * {@link com.amazonaws.services.s3.AmazonS3EncryptionClient} always use a
+     * single connection.
+     *
+     * @return The size threshold in bytes for when to download parts in
+     *         parallel.
+     */
+    public long getMultipartDownloadThreshold() {
+        return multipartDownloadThreshold;
+    }
+
+    /**
+     * Sets the size threshold in bytes for when to download the parts of an
+     * object in parallel. Downloads over this size fetch ranges of the object
+     * on several connections and write them to the file as they arrive, while
+     * smaller downloads use a single connection. Set it to
+     * {@link Long#MAX_VALUE} to always download with a single connection.
+     *
+     * @param multipartDownloadThreshold The size threshold in bytes for when
+     *            to download parts in parallel.
+     */
+    public void setMultipartDownloadThreshold(long multipartDownloadThreshold) {
+        this.multipartDownloadThreshold = multipartDownloadThreshold;
+    }
 }
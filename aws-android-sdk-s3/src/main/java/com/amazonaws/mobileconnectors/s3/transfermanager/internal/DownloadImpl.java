@@ -37,13 +37,30 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      */
     private final PersistableDownload persistableDownload;
 
+    private final GetObjectRequest getObjectRequest;
+    private final File file;
+
     public DownloadImpl(String description, TransferProgress transferProgress,
             ProgressListenerChain progressListenerChain, S3Object s3Object,
             TransferStateChangeListener listener,
             GetObjectRequest getObjectRequest, File file) {
+        this(description, transferProgress, progressListenerChain, s3Object, listener,
+                getObjectRequest, file, -1);
+    }
+
+    /**
+     * Constructs a download whose parts of the given size are fetched in
+     * parallel, or fetched with a single request if the part size is -1.
+     */
+    public DownloadImpl(String description, TransferProgress transferProgress,
+            ProgressListenerChain progressListenerChain, S3Object s3Object,
+            TransferStateChangeListener listener,
+            GetObjectRequest getObjectRequest, File file, long partSize) {
         super(description, transferProgress, progressListenerChain, listener);
         this.s3Object = s3Object;
-        this.persistableDownload = captureDownloadState(getObjectRequest, file);
+        this.getObjectRequest = getObjectRequest;
+        this.file = file;
+        this.persistableDownload = captureDownloadState(partSize, null);
         S3ProgressPublisher.publishTransferPersistable(progressListenerChain,
                 persistableDownload);
     }
@@ -88,7 +105,7 @@ public class DownloadImpl extends AbstractTransfer implements Download {
 
         this.monitor.getFuture().cancel(true);
 
-        if (s3Object != null) {
+        if (s3Object != null && s3Object.getObjectContent() != null) {
             s3Object.getObjectContent().abort();
         }
         setState(TransferState.Canceled);
@@ -132,15 +149,15 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      * Returns the captured state of the download; or null if it should not be
      * captured (for security reason).
      */
-    private PersistableDownload captureDownloadState(
-            final GetObjectRequest getObjectRequest, final File file) {
+    private PersistableDownload captureDownloadState(long partSize, int[] completedParts) {
         if (getObjectRequest.getSSECustomerKey() == null) {
             return new PersistableDownload(
                     getObjectRequest.getBucketName(),
                     getObjectRequest.getKey(), getObjectRequest.getVersionId(),
                     getObjectRequest.getRange(),
                     getObjectRequest.getResponseHeaders(),
-                    getObjectRequest.isRequesterPays(), file.getAbsolutePath());
+                    getObjectRequest.isRequesterPays(), file.getAbsolutePath(),
+                    partSize, completedParts);
         }
         return null;
     }
@@ -159,6 +176,12 @@ public class DownloadImpl extends AbstractTransfer implements Download {
             throw new PauseException(TransferManagerUtils.determinePauseStatus(
                     currentState, forceCancel));
         }
+        if (monitor instanceof MultipartDownloadMonitor) {
+            // only the parts not yet written are fetched on resume
+            MultipartDownloadMonitor multipartMonitor = (MultipartDownloadMonitor) monitor;
+            return captureDownloadState(multipartMonitor.getPartSize(),
+                    multipartMonitor.getCompletedParts());
+        }
         return persistableDownload;
     }
 }
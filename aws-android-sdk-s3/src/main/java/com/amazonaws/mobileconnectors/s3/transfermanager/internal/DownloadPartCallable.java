@@ -0,0 +1,66 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transfermanager.internal;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.internal.ServiceUtils;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+
+/**
+ * Fetches one range of an object and writes it to its position in the file of
+ * a download, then reports the part to the {@link MultipartDownloadMonitor}.
+ */
+public class DownloadPartCallable implements Callable<Long> {
+    private final AmazonS3 s3;
+    private final GetObjectRequest request;
+    private final File file;
+    private final long position;
+    private final int partNumber;
+    private final MultipartDownloadMonitor monitor;
+
+    public DownloadPartCallable(AmazonS3 s3, GetObjectRequest request, File file,
+            long position, int partNumber, MultipartDownloadMonitor monitor) {
+        this.s3 = s3;
+        this.request = request;
+        this.file = file;
+        this.position = position;
+        this.partNumber = partNumber;
+        this.monitor = monitor;
+    }
+
+    @Override
+    public Long call() throws Exception {
+        try {
+            S3Object s3Object = s3.getObject(request);
+            if (s3Object == null) {
+                // the ETag constraint of the part isn't met
+                throw new AmazonClientException("The object " + request.getKey()
+                        + " changed while it was being downloaded");
+            }
+            long bytesWritten = ServiceUtils.downloadObjectRangeToFile(s3Object, file, position);
+            monitor.partCompleted(partNumber);
+            return bytesWritten;
+        } catch (Exception e) {
+            monitor.partFailed(e);
+            throw e;
+        }
+    }
+}
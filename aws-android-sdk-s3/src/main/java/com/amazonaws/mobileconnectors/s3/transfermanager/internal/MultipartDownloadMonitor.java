@@ -0,0 +1,274 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transfermanager.internal;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.http.SettableFuture;
+import com.amazonaws.mobileconnectors.s3.transfermanager.Transfer.TransferState;
+import com.amazonaws.mobileconnectors.s3.transfermanager.TransferManager;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.internal.ServiceUtils;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Manages a download split into parts, each fetched with a ranged GET request
+ * on the thread pool and written to its position in the file. No thread waits
+ * for the parts: the last part to complete verifies the file and completes the
+ * download, and the first part to fail fails it and cancels the other parts.
+ */
+public class MultipartDownloadMonitor implements TransferMonitor {
+
+    private final AmazonS3 s3;
+    private final ExecutorService threadPool;
+    private final DownloadImpl download;
+    private final GetObjectRequest getObjectRequest;
+    private final File file;
+    private final ObjectMetadata objectMetadata;
+    private final long startingByte;
+    private final long lastByte;
+    private final long partSize;
+    private final boolean performIntegrityCheck;
+
+    /*
+     * State for tracking the download's progress, guarded by this monitor
+     */
+    private final SortedSet<Integer> completedParts = new TreeSet<Integer>();
+    private final List<Future<Long>> futures = new ArrayList<Future<Long>>();
+
+    private final AtomicInteger remainingParts = new AtomicInteger();
+    private final DownloadFuture future = new DownloadFuture();
+
+    /**
+     * Constructs a new monitor for a download, which starts when
+     * {@link #start()} is called.
+     *
+     * @param s3 The client to use when making requests to Amazon S3.
+     * @param threadPool The thread pool fetching the parts.
+     * @param download The download being processed.
+     * @param getObjectRequest The original request, whose progress listener
+     *            receives the progress of all the parts.
+     * @param file The file to download the object data to, already as long as
+     *            the download.
+     * @param objectMetadata The metadata of the object.
+     * @param startingByte The first byte of the object to download.
+     * @param lastByte The last byte of the object to download.
+     * @param partSize The size of each part but the last one.
+     * @param completedParts The numbers of the parts already written to the
+     *            file by a previous download, or null.
+     * @param performIntegrityCheck Whether to check the MD5 hash of the file
+     *            once all the parts are written.
+     */
+    public MultipartDownloadMonitor(AmazonS3 s3, ExecutorService threadPool,
+            DownloadImpl download, GetObjectRequest getObjectRequest, File file,
+            ObjectMetadata objectMetadata, long startingByte, long lastByte, long partSize,
+            int[] completedParts, boolean performIntegrityCheck) {
+        this.s3 = s3;
+        this.threadPool = threadPool;
+        this.download = download;
+        this.getObjectRequest = getObjectRequest;
+        this.file = file;
+        this.objectMetadata = objectMetadata;
+        this.startingByte = startingByte;
+        this.lastByte = lastByte;
+        this.partSize = partSize;
+        this.performIntegrityCheck = performIntegrityCheck;
+        int partCount = getPartCount();
+        if (completedParts != null) {
+            for (int partNumber : completedParts) {
+                if (partNumber >= 1 && partNumber <= partCount) {
+                    this.completedParts.add(partNumber);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Future<?> getFuture() {
+        return future;
+    }
+
+    @Override
+    public boolean isDone() {
+        return download.isDone();
+    }
+
+    /**
+     * Returns the size of each part but the last one.
+     */
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Returns the numbers of the parts written to the file so far, in
+     * ascending order.
+     */
+    public synchronized int[] getCompletedParts() {
+        int[] parts = new int[completedParts.size()];
+        int i = 0;
+        for (Integer partNumber : completedParts) {
+            parts[i++] = partNumber;
+        }
+        return parts;
+    }
+
+    /**
+     * Returns the number of bytes of the parts written to the file so far.
+     */
+    public synchronized long getCompletedBytes() {
+        long bytes = 0;
+        for (Integer partNumber : completedParts) {
+            bytes += getPartLastByte(partNumber) - getPartFirstByte(partNumber) + 1;
+        }
+        return bytes;
+    }
+
+    /**
+     * Submits the parts not yet written to the file to the thread pool.
+     */
+    public void start() {
+        download.setState(TransferState.InProgress);
+        List<Integer> parts = new ArrayList<Integer>();
+        synchronized (this) {
+            for (int partNumber = 1; partNumber <= getPartCount(); partNumber++) {
+                if (!completedParts.contains(partNumber)) {
+                    parts.add(partNumber);
+                }
+            }
+        }
+        remainingParts.set(parts.size());
+        if (parts.isEmpty()) {
+            threadPool.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    complete();
+                    return null;
+                }
+            });
+            return;
+        }
+        synchronized (this) {
+            for (int partNumber : parts) {
+                // parts failed or canceled before all are submitted
+                if (future.isDone()) {
+                    break;
+                }
+                futures.add(threadPool.submit(new DownloadPartCallable(s3,
+                        newPartRequest(partNumber), file,
+                        getPartFirstByte(partNumber) - startingByte, partNumber, this)));
+            }
+        }
+    }
+
+    void partCompleted(int partNumber) {
+        synchronized (this) {
+            completedParts.add(partNumber);
+        }
+        if (remainingParts.decrementAndGet() == 0) {
+            complete();
+        }
+    }
+
+    synchronized void partFailed(Exception e) {
+        if (future.isDone()) {
+            return;
+        }
+        // Downloads aren't allowed to move from canceled to failed
+        if (download.getState() != TransferState.Canceled) {
+            download.setState(TransferState.Failed);
+        }
+        future.setException(e);
+        cancelParts(true);
+    }
+
+    private void complete() {
+        if (performIntegrityCheck && !future.isDone()) {
+            try {
+                ServiceUtils.verifyDownloadedFile(file, objectMetadata);
+            } catch (AmazonClientException e) {
+                partFailed(e);
+                return;
+            }
+        }
+        synchronized (this) {
+            if (future.isDone()) {
+                return;
+            }
+            download.setState(TransferState.Completed);
+            future.set(Boolean.TRUE);
+        }
+    }
+
+    private synchronized void cancelParts(boolean mayInterruptIfRunning) {
+        for (Future<Long> f : futures) {
+            f.cancel(mayInterruptIfRunning);
+        }
+        futures.clear();
+    }
+
+    private int getPartCount() {
+        return (int) ((lastByte - startingByte + partSize) / partSize);
+    }
+
+    private long getPartFirstByte(int partNumber) {
+        return startingByte + (partNumber - 1) * partSize;
+    }
+
+    private long getPartLastByte(int partNumber) {
+        return Math.min(getPartFirstByte(partNumber) + partSize - 1, lastByte);
+    }
+
+    private GetObjectRequest newPartRequest(int partNumber) {
+        GetObjectRequest request = new GetObjectRequest(getObjectRequest.getBucketName(),
+                getObjectRequest.getKey(), getObjectRequest.getVersionId())
+                .withRange(getPartFirstByte(partNumber), getPartLastByte(partNumber))
+                .withResponseHeaders(getObjectRequest.getResponseHeaders())
+                .withSSECustomerKey(getObjectRequest.getSSECustomerKey())
+                .withGeneralProgressListener(getObjectRequest.getGeneralProgressListener());
+        request.setRequesterPays(getObjectRequest.isRequesterPays());
+        // fail the part rather than mix two versions of the object in the file
+        if (objectMetadata.getETag() != null) {
+            request.setMatchingETagConstraints(Collections.singletonList(objectMetadata
+                    .getETag()));
+        }
+        return TransferManager.appendMultipartUserAgent(request);
+    }
+
+    /**
+     * The future of the whole download, which cancels the parts when it is
+     * canceled.
+     */
+    private final class DownloadFuture extends SettableFuture<Object> {
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean canceled = super.cancel(mayInterruptIfRunning);
+            cancelParts(mayInterruptIfRunning);
+            return canceled;
+        }
+    }
+}
@@ -73,7 +73,8 @@ public class MultipleFileDownloadImpl extends MultipleFileTransfer<Download> imp
     @Override
     public void waitForCompletion()
             throws AmazonClientException, AmazonServiceException, InterruptedException {
-        if (subTransfers.isEmpty())
+        // Sub-transfers may still be queued by an incremental sync
+        if (subTransfers.isEmpty() && getMonitor().isDone())
             return;
         super.waitForCompletion();
     }
@@ -95,6 +96,9 @@ public class MultipleFileDownloadImpl extends MultipleFileTransfer<Download> imp
          * download jobs and then notify the listener.
          */
 
+        // Stop queueing downloads, in case they are still being listed.
+        getMonitor().getFuture().cancel(true);
+
         /*
          * First abort all the download jobs without notifying the state change
          * listener.
@@ -18,6 +18,7 @@ package com.amazonaws.mobileconnectors.s3.transfermanager.internal;
 import com.amazonaws.mobileconnectors.s3.transfermanager.Transfer;
 
 import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -29,10 +30,29 @@ public class MultipleFileTransferMonitor implements TransferMonitor {
     private final AbstractTransfer transfer;
     private final Future<?> future;
 
+    /** Released once all the sub-transfers have been added. */
+    private final CountDownLatch queued;
+    private volatile Throwable queueingFailure;
+    private volatile boolean cancelled;
+
     public MultipleFileTransferMonitor(AbstractTransfer transfer,
             Collection<? extends AbstractTransfer> subTransfers) {
+        this(transfer, subTransfers, false);
+    }
+
+    /**
+     * @param transfer the multiple file transfer
+     * @param subTransfers the sub-transfers, which must be safe to iterate
+     *            while they are added to if queueing is true
+     * @param queueing whether sub-transfers are still being added while the
+     *            transfer runs, in which case the transfer is not done before
+     *            {@link #allTransfersQueued(Throwable)} is called
+     */
+    public MultipleFileTransferMonitor(AbstractTransfer transfer,
+            Collection<? extends AbstractTransfer> subTransfers, boolean queueing) {
         this.subTransfers = subTransfers;
         this.transfer = transfer;
+        this.queued = new CountDownLatch(queueing ? 1 : 0);
 
         /*
          * The future object is not publicly exposed, so we only need to worry
@@ -43,27 +63,34 @@ public class MultipleFileTransferMonitor implements TransferMonitor {
 
             @Override
             public boolean cancel(boolean mayInterruptIfRunning) {
+                cancelled = true;
                 return true;
             }
 
             @Override
             public Object get() throws InterruptedException, ExecutionException {
+                queued.await();
+                checkQueueingFailure();
                 Object result = null;
                 for (AbstractTransfer download : MultipleFileTransferMonitor.this.subTransfers) {
                     result = download.getMonitor().getFuture().get();
                 }
-                return result;
+                return queuedResult(result);
             }
 
             @Override
             public Object get(long timeout, TimeUnit unit) throws InterruptedException,
                     ExecutionException,
                     TimeoutException {
+                if (!queued.await(timeout, unit)) {
+                    throw new TimeoutException();
+                }
+                checkQueueingFailure();
                 Object result = null;
                 for (AbstractTransfer subTransfer : MultipleFileTransferMonitor.this.subTransfers) {
                     result = subTransfer.getMonitor().getFuture().get(timeout, unit);
                 }
-                return result;
+                return queuedResult(result);
             }
 
             @Override
@@ -83,8 +110,44 @@ public class MultipleFileTransferMonitor implements TransferMonitor {
         return future;
     }
 
+    /**
+     * Signals that all the sub-transfers have been added, or that adding them
+     * failed.
+     *
+     * @param failure the cause of the failure, or null
+     */
+    public void allTransfersQueued(Throwable failure) {
+        queueingFailure = failure;
+        queued.countDown();
+    }
+
+    /**
+     * Returns whether the future of this monitor has been canceled, in which
+     * case no more sub-transfers should be added.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void checkQueueingFailure() throws ExecutionException {
+        if (queueingFailure != null) {
+            throw new ExecutionException(queueingFailure);
+        }
+    }
+
+    /**
+     * The transfer may end up with no sub-transfers when they are queued
+     * while it runs; its result must not be null then.
+     */
+    private Object queuedResult(Object result) {
+        return result == null && subTransfers.isEmpty() ? Boolean.TRUE : result;
+    }
+
     @Override
     public synchronized boolean isDone() {
+        if (queued.getCount() > 0) {
+            return false;
+        }
         for (Transfer subTransfer : subTransfers) {
             if (!subTransfer.isDone())
                 return false;
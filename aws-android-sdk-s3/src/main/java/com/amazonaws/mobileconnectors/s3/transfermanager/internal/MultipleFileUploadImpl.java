@@ -72,7 +72,8 @@ public class MultipleFileUploadImpl extends MultipleFileTransfer<Upload> impleme
     @Override
     public void waitForCompletion()
             throws AmazonClientException, AmazonServiceException, InterruptedException {
-        if (subTransfers.isEmpty())
+        // Sub-transfers may still be queued by an incremental sync
+        if (subTransfers.isEmpty() && getMonitor().isDone())
             return;
         super.waitForCompletion();
     }
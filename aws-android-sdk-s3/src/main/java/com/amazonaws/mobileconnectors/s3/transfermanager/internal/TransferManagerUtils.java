@@ -164,6 +164,24 @@ public class TransferManagerUtils {
                 configuration.getMultipartCopyPartSize());
     }
 
+    /**
+     * Calculates the optimal part size of each ranged GET request if the
+     * download is carried out in parallel parts.
+     *
+     * @param configuration configuration containing the minimum part size.
+     * @param bytesToDownload the number of bytes to download.
+     * @return the optimal part size for a download part.
+     */
+    public static long calculateOptimalPartSizeForDownload(
+            TransferManagerConfiguration configuration, long bytesToDownload) {
+        double optimalPartSize = (double) bytesToDownload
+                / (double) MAXIMUM_UPLOAD_PARTS;
+        // round up so the state of a paused download stays bounded
+        optimalPartSize = Math.ceil(optimalPartSize);
+        return (long) Math.max(optimalPartSize,
+                configuration.getMinimumDownloadPartSize());
+    }
+
     /**
      * Determines the pause status based on the current state of transfer.
      */
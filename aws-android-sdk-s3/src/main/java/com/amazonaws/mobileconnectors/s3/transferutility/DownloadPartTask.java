@@ -0,0 +1,87 @@
+/**
+ * Copyright 2015-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transferutility;
+
+import android.util.Log;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.internal.ServiceUtils;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+
+class DownloadPartTask implements Callable<Boolean> {
+
+    private final static String TAG = "DownloadPartTask";
+
+    private final int id;
+    private final GetObjectRequest request;
+    private final File file;
+    private final long fileOffset;
+    private final AmazonS3 s3;
+    private final TransferDBUtil dbUtil;
+
+    /**
+     * Constructs a DownloadPartTask writing the range of the given request to
+     * the file at the given offset.
+     *
+     * @param id The id of the part record
+     * @param request A ranged GET request for the part
+     * @param file The file of the download, already as long as the object
+     * @param fileOffset The offset of the part in the file
+     * @param s3 Low-level S3 client
+     * @param dbUtil database util
+     */
+    public DownloadPartTask(int id, GetObjectRequest request, File file, long fileOffset,
+            AmazonS3 s3, TransferDBUtil dbUtil) {
+        this.id = id;
+        this.request = request;
+        this.file = file;
+        this.fileOffset = fileOffset;
+        this.s3 = s3;
+        this.dbUtil = dbUtil;
+    }
+
+    /*
+     * Runs part download task and returns whether successfully downloaded.
+     */
+    @Override
+    public Boolean call() throws Exception {
+        try {
+            S3Object object = s3.getObject(request);
+            if (object == null) {
+                // the ETag constraint of the part isn't met
+                throw new AmazonClientException("The object " + request.getKey()
+                        + " changed while it was being downloaded");
+            }
+            ServiceUtils.downloadObjectRangeToFile(object, file, fileOffset);
+            dbUtil.updateState(id, TransferState.PART_COMPLETED);
+            return true;
+        } catch (Exception e) {
+            dbUtil.updateState(id, TransferState.FAILED);
+            if (RetryUtils.isInterrupted(e)) {
+                // thread interrupted by user
+                return false;
+            }
+            Log.e(TAG, "Encountered error downloading part " + e.getMessage());
+            throw e;
+        }
+    }
+}
@@ -15,13 +15,20 @@
 
 package com.amazonaws.mobileconnectors.s3.transferutility;
 
+import static com.amazonaws.services.s3.internal.Constants.MAXIMUM_UPLOAD_PARTS;
+
+import android.content.ContentValues;
 import android.util.Log;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.mobileconnectors.s3.transferutility.TransferService.NetworkInfoReceiver;
 import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3EncryptionClient;
+import com.amazonaws.services.s3.internal.ServiceUtils;
 import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
 
 import java.io.BufferedOutputStream;
@@ -30,7 +37,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Performs download operation and returns a Boolean value indicating whether
@@ -39,9 +52,11 @@ import java.util.concurrent.Callable;
 class DownloadTask implements Callable<Boolean> {
 
     private static final String TAG = "DownloadTask";
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
 
     private final AmazonS3 s3;
     private final TransferRecord download;
+    private final TransferDBUtil dbUtil;
     private final TransferStatusUpdater updater;
     private final NetworkInfoReceiver networkInfo;
 
@@ -51,13 +66,15 @@ class DownloadTask implements Callable<Boolean> {
      * @param download A TransferRecord object storing all the information of
      *            the download
      * @param s3 Low-level S3 client
+     * @param dbUtil database util
      * @param updater status updater
      * @param networkInfo network info
      */
-    public DownloadTask(TransferRecord download, AmazonS3 s3, TransferStatusUpdater updater,
-            NetworkInfoReceiver networkInfo) {
+    public DownloadTask(TransferRecord download, AmazonS3 s3, TransferDBUtil dbUtil,
+            TransferStatusUpdater updater, NetworkInfoReceiver networkInfo) {
         this.download = download;
         this.s3 = s3;
+        this.dbUtil = dbUtil;
         this.updater = updater;
         this.networkInfo = networkInfo;
     }
@@ -73,11 +90,19 @@ class DownloadTask implements Callable<Boolean> {
         }
         updater.updateState(download.id, TransferState.IN_PROGRESS);
 
-        final GetObjectRequest getObjectRequest = new GetObjectRequest(download.bucketName,
-                download.key);
-        TransferUtility.appendTransferServiceUserAgentString(getObjectRequest);
         File file = new File(download.file);
+        if (download.isMultipart == 1) {
+            return downloadMultipartAndWaitForCompletion(file);
+        }
+
         long bytesCurrent = file.length();
+        /*
+         * A new download fetches no more than the multipart threshold first.
+         * A larger object is then split into parts, which are fetched in
+         * parallel and can be resumed individually.
+         */
+        boolean isSplittable = bytesCurrent == 0 && !(s3 instanceof AmazonS3EncryptionClient);
+        final GetObjectRequest getObjectRequest = newGetObjectRequest();
         if (bytesCurrent > 0) {
             Log.d(TAG, String.format("Resume transfer %d from %d bytes", download.id,
                     bytesCurrent));
@@ -86,11 +111,22 @@ class DownloadTask implements Callable<Boolean> {
              * from bytesCurrent to the end.
              */
             getObjectRequest.setRange(bytesCurrent, -1);
+        } else if (isSplittable) {
+            getObjectRequest.setRange(0, TransferUtility.MULTIPART_DOWNLOAD_THRESHOLD - 1);
         }
-        getObjectRequest.setGeneralProgressListener(updater.newProgressListener(download.id));
 
         try {
-            S3Object object = s3.getObject(getObjectRequest);
+            S3Object object;
+            try {
+                object = s3.getObject(getObjectRequest);
+            } catch (AmazonServiceException ase) {
+                // an empty object has no byte to satisfy the range
+                if (!isSplittable || ase.getStatusCode() != HTTP_RANGE_NOT_SATISFIABLE) {
+                    throw ase;
+                }
+                isSplittable = false;
+                object = s3.getObject(newGetObjectRequest());
+            }
             if (object == null) {
                 updater.throwError(download.id, new IllegalStateException(
                         "AmazonS3.getObject returns null"));
@@ -99,29 +135,219 @@ class DownloadTask implements Callable<Boolean> {
             }
 
             long bytesTotal = object.getObjectMetadata().getInstanceLength();
+            if (isSplittable && bytesTotal > TransferUtility.MULTIPART_DOWNLOAD_THRESHOLD) {
+                createMultipartDownload(object, file);
+                return downloadMultipartAndWaitForCompletion(file);
+            }
             updater.updateProgress(download.id, bytesCurrent, bytesTotal);
             saveToFile(object.getObjectContent(), file);
             updater.updateProgress(download.id, bytesTotal, bytesTotal);
             updater.updateState(download.id, TransferState.COMPLETED);
             return true;
         } catch (Exception e) {
-            if (RetryUtils.isInterrupted(e)) {
-                /*
-                 * thread is interrupted by user. don't update the state as it's
-                 * set by caller who interrupted
-                 */
-                Log.d(TAG, "Transfer " + download.id + " is interrupted by user");
-            } else if (e.getCause() != null && e.getCause() instanceof IOException
-                    && !networkInfo.isNetworkConnected()) {
-                Log.d(TAG, "Transfer " + download.id + " waits for network");
-                updater.updateState(download.id, TransferState.WAITING_FOR_NETWORK);
+            handleException(e);
+        }
+        return false;
+    }
+
+    private GetObjectRequest newGetObjectRequest() {
+        GetObjectRequest getObjectRequest = new GetObjectRequest(download.bucketName,
+                download.key);
+        TransferUtility.appendTransferServiceUserAgentString(getObjectRequest);
+        getObjectRequest.setGeneralProgressListener(updater.newProgressListener(download.id));
+        return getObjectRequest;
+    }
+
+    /**
+     * Writes the first part of a large object to the file, then inserts a
+     * record for each part of the object into the database and marks the
+     * download as a multipart download. Until the parts are recorded, a paused
+     * download resumes from the end of the file like a single download.
+     *
+     * @param firstPart The response to the ranged GET request of the first
+     *            part
+     * @param file The file to download to
+     */
+    private void createMultipartDownload(S3Object firstPart, File file) {
+        ObjectMetadata metadata = firstPart.getObjectMetadata();
+        long bytesTotal = metadata.getInstanceLength();
+        long firstPartSize = TransferUtility.MULTIPART_DOWNLOAD_THRESHOLD;
+        updater.updateProgress(download.id, 0, bytesTotal);
+        long bytesWritten = ServiceUtils.downloadObjectRangeToFile(firstPart, file, 0);
+        if (bytesWritten != firstPartSize) {
+            throw new AmazonClientException("Unable to download the first part of "
+                    + download.key + ": expected " + firstPartSize + " bytes but got "
+                    + bytesWritten);
+        }
+
+        long bytesRemaining = bytesTotal - firstPartSize;
+        double partSize = Math.ceil((double) bytesRemaining
+                / (double) (MAXIMUM_UPLOAD_PARTS - 1));
+        long optimalPartSize = (long) Math.max(partSize,
+                TransferUtility.MINIMUM_DOWNLOAD_PART_SIZE);
+        int partCount = 1 + (int) Math.ceil((double) bytesRemaining / (double) optimalPartSize);
+
+        ContentValues[] valuesArray = new ContentValues[partCount];
+        valuesArray[0] = dbUtil.generateContentValuesForMultiPartDownload(download.bucketName,
+                download.key, file, 1, 0, firstPartSize - 1, TransferState.PART_COMPLETED);
+        for (int i = 1; i < partCount; i++) {
+            long rangeStart = firstPartSize + (i - 1) * optimalPartSize;
+            long rangeLast = Math.min(rangeStart + optimalPartSize, bytesTotal) - 1;
+            valuesArray[i] = dbUtil.generateContentValuesForMultiPartDownload(
+                    download.bucketName, download.key, file, i + 1, rangeStart, rangeLast,
+                    TransferState.WAITING);
+        }
+        if (dbUtil.bulkInsertPartRecords(download.id, valuesArray) == 0) {
+            throw new AmazonClientException("Unable to record the parts of download "
+                    + download.id);
+        }
+        dbUtil.updateMultipartDownload(download.id, bytesTotal, metadata.getETag());
+        download.isMultipart = 1;
+        download.bytesTotal = bytesTotal;
+        download.eTag = metadata.getETag();
+        Log.d(TAG, "multipart download " + download.id + " in " + partCount + " parts.");
+        allocateFile(file, bytesTotal);
+    }
+
+    private Boolean downloadMultipartAndWaitForCompletion(File file) {
+        if (!file.isFile() || file.length() != download.bytesTotal) {
+            // The parts written before, if any, are lost with the file
+            dbUtil.updatePartStates(download.id, TransferState.WAITING);
+            try {
+                allocateFile(file, download.bytesTotal);
+            } catch (AmazonClientException ace) {
+                handleException(ace);
+                return false;
+            }
+        }
+
+        long bytesAlreadyTransferred = dbUtil.queryBytesTransferredByMainUploadId(download.id);
+        if (bytesAlreadyTransferred > 0) {
+            Log.d(TAG, String.format("Resume transfer %d from %d bytes", download.id,
+                    bytesAlreadyTransferred));
+        }
+        List<TransferRecord> parts = dbUtil.getNonCompletedDownloadPartsFromDB(download.id);
+        long bytesRemaining = 0;
+        for (TransferRecord part : parts) {
+            bytesRemaining += part.rangeLast - part.rangeStart + 1;
+        }
+        if (bytesAlreadyTransferred + bytesRemaining != download.bytesTotal) {
+            updater.throwError(download.id, new IllegalStateException(
+                    "The parts of multipart download " + download.id + " are missing"));
+            updater.updateState(download.id, TransferState.FAILED);
+            return false;
+        }
+        updater.updateProgress(download.id, bytesAlreadyTransferred, download.bytesTotal);
+
+        ArrayList<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+        for (TransferRecord part : parts) {
+            GetObjectRequest request = new GetObjectRequest(download.bucketName, download.key)
+                    .withRange(part.rangeStart, part.rangeLast);
+            if (download.eTag != null) {
+                // fail the part rather than mix two versions of the object
+                request.setMatchingETagConstraints(Collections.singletonList(download.eTag));
+            }
+            TransferUtility.appendMultipartTransferServiceUserAgentString(request);
+            request.setGeneralProgressListener(updater.newProgressListener(download.id));
+            futures.add(TransferThreadPool.submitTask(new DownloadPartTask(part.id, request,
+                    file, part.rangeStart, s3, dbUtil)));
+        }
+        try {
+            boolean isSuccess = true;
+            /*
+             * Future.get() will block the current thread until the method
+             * returns.
+             */
+            for (Future<Boolean> f : futures) {
+                // DownloadPartTask returns false when it's interrupted by user
+                // and the state is set by caller
+                boolean b = f.get();
+                isSuccess &= b;
+            }
+            if (!isSuccess) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            /*
+             * Future.get() will catch InterruptedException, but it's not a
+             * failure, it may be caused by a pause operation from applications.
+             */
+            for (Future<?> f : futures) {
+                f.cancel(true);
+            }
+            // abort by user
+            Log.d(TAG, "Transfer " + download.id + " is interrupted by user");
+            return false;
+        } catch (ExecutionException ee) {
+            for (Future<?> f : futures) {
+                f.cancel(true);
+            }
+            if (ee.getCause() != null && ee.getCause() instanceof Exception) {
+                handleException((Exception) ee.getCause());
             } else {
-                Log.e(TAG, "Failed to download: " + download.id + " due to " + e.getMessage());
-                updater.throwError(download.id, e);
                 updater.updateState(download.id, TransferState.FAILED);
             }
+            return false;
+        }
+
+        updater.updateProgress(download.id, download.bytesTotal, download.bytesTotal);
+        updater.updateState(download.id, TransferState.COMPLETED);
+        return true;
+    }
+
+    /**
+     * Updates the state of the download after an exception.
+     *
+     * @param e The exception thrown by the download
+     */
+    private void handleException(Exception e) {
+        if (RetryUtils.isInterrupted(e)) {
+            /*
+             * thread is interrupted by user. don't update the state as it's
+             * set by caller who interrupted
+             */
+            Log.d(TAG, "Transfer " + download.id + " is interrupted by user");
+        } else if (e.getCause() != null && e.getCause() instanceof IOException
+                && !networkInfo.isNetworkConnected()) {
+            Log.d(TAG, "Transfer " + download.id + " waits for network");
+            updater.updateState(download.id, TransferState.WAITING_FOR_NETWORK);
+        } else {
+            Log.e(TAG, "Failed to download: " + download.id + " due to " + e.getMessage());
+            updater.throwError(download.id, e);
+            updater.updateState(download.id, TransferState.FAILED);
+        }
+    }
+
+    /**
+     * Creates the file of a multipart download with the length of the object,
+     * so that the parts can be written at their offsets in any order.
+     *
+     * @param file file to be allocated
+     * @param length the length of the object
+     */
+    private void allocateFile(File file, long length) {
+        // attempt to create the parent if it doesn't exist
+        File parentDirectory = file.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists()) {
+            parentDirectory.mkdirs();
+        }
+
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            randomAccessFile.setLength(length);
+        } catch (IOException e) {
+            throw new AmazonClientException(
+                    "Unable to allocate " + file + ": " + e.getMessage(), e);
+        } finally {
+            try {
+                if (randomAccessFile != null) {
+                    randomAccessFile.close();
+                }
+            } catch (IOException ioe) {
+                // ignore
+            }
         }
-        return false;
     }
 
     /**
@@ -184,6 +184,17 @@ class TransferDBBase {
                                     + "=" + id + " and " + whereClause, whereArgs);
                 }
                 break;
+            case TRANSFER_PART:
+                String mainUploadId = uri.getLastPathSegment();
+                if (TextUtils.isEmpty(whereClause)) {
+                    rowsUpdated = db.update(TransferTable.TABLE_TRANSFER, values,
+                            TransferTable.COLUMN_MAIN_UPLOAD_ID + "=" + mainUploadId, null);
+                } else {
+                    rowsUpdated = db.update(TransferTable.TABLE_TRANSFER, values,
+                            TransferTable.COLUMN_MAIN_UPLOAD_ID + "=" + mainUploadId + " and "
+                                    + whereClause, whereArgs);
+                }
+                break;
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
@@ -217,6 +228,17 @@ class TransferDBBase {
                                     + id + " and " + selection, selectionArgs);
                 }
                 break;
+            case TRANSFER_PART:
+                String mainUploadId = uri.getLastPathSegment();
+                if (TextUtils.isEmpty(selection)) {
+                    rowsDeleted = db.delete(TransferTable.TABLE_TRANSFER,
+                            TransferTable.COLUMN_MAIN_UPLOAD_ID + "=" + mainUploadId, null);
+                } else {
+                    rowsDeleted = db.delete(TransferTable.TABLE_TRANSFER,
+                            TransferTable.COLUMN_MAIN_UPLOAD_ID + "=" + mainUploadId + " and "
+                                    + selection, selectionArgs);
+                }
+                break;
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
@@ -224,9 +246,15 @@ class TransferDBBase {
     }
 
     /**
+     * Inserts multiple records in one transaction. With the Uri of the table,
+     * the first record is a multipart upload summary and the others are its
+     * parts. With the Uri of the part records of a transfer, the records
+     * replace the parts of that transfer.
+     *
      * @param uri The Uri of a table.
      * @param valuesArray A array of values to insert.
-     * @return Number of rows inserted.
+     * @return The id of the main record of the parts, or 0 if the part records
+     *         of a transfer couldn't be inserted.
      */
     public int bulkInsert(Uri uri, ContentValues[] valuesArray) {
         int uriType = uriMatcher.match(uri);
@@ -250,6 +278,26 @@ class TransferDBBase {
                     db.endTransaction();
                 }
                 break;
+            case TRANSFER_PART:
+                mainUploadId = Integer.parseInt(uri.getLastPathSegment());
+                try {
+                    db.beginTransaction();
+                    db.delete(TransferTable.TABLE_TRANSFER, TransferTable.COLUMN_MAIN_UPLOAD_ID
+                            + "=" + mainUploadId, null);
+                    for (ContentValues values : valuesArray) {
+                        values.put(TransferTable.COLUMN_MAIN_UPLOAD_ID, mainUploadId);
+                        db.insertOrThrow(TransferTable.TABLE_TRANSFER, null, values);
+                    }
+                    db.setTransactionSuccessful();
+                } catch (Exception e) {
+                    Log.e(TransferDBBase.class.getSimpleName(),
+                            "bulkInsert error : " + e.getMessage());
+                    // the transaction is rolled back, so no part is recorded
+                    mainUploadId = 0;
+                } finally {
+                    db.endTransaction();
+                }
+                break;
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
@@ -142,6 +142,18 @@ class TransferDBUtil {
         return transferDBBase.bulkInsert(transferDBBase.getContentUri(), valuesArray);
     }
 
+    /**
+     * Inserts the part records of a multipart download, replacing any part
+     * records the download already has.
+     *
+     * @param mainUploadId The id of the download.
+     * @param valuesArray The values of the parts.
+     * @return The id of the download, or 0 if the parts couldn't be inserted.
+     */
+    public int bulkInsertPartRecords(int mainUploadId, ContentValues[] valuesArray) {
+        return transferDBBase.bulkInsert(getPartUri(mainUploadId), valuesArray);
+    }
+
     /**
      * Writes transfer status including transfer state, current transferred
      * bytes and total bytes into database.
@@ -184,6 +196,36 @@ class TransferDBUtil {
         return transferDBBase.update(getRecordUri(id), values, null, null);
     }
 
+    /**
+     * Marks a download as a multipart download of an object with the given
+     * size and ETag.
+     *
+     * @param id The id of the transfer
+     * @param bytesTotal The total bytes of the download.
+     * @param eTag The ETag of the object being downloaded.
+     * @return Number of rows updated.
+     */
+    public int updateMultipartDownload(int id, long bytesTotal, String eTag) {
+        ContentValues values = new ContentValues();
+        values.put(TransferTable.COLUMN_IS_MULTIPART, 1);
+        values.put(TransferTable.COLUMN_BYTES_TOTAL, bytesTotal);
+        values.put(TransferTable.COLUMN_ETAG, eTag);
+        return transferDBBase.update(getRecordUri(id), values, null, null);
+    }
+
+    /**
+     * Updates the state of all the part records of a multipart transfer.
+     *
+     * @param mainUploadId The id of the multipart transfer.
+     * @param state The new state of the parts.
+     * @return Number of rows updated.
+     */
+    public int updatePartStates(int mainUploadId, TransferState state) {
+        ContentValues values = new ContentValues();
+        values.put(TransferTable.COLUMN_STATE, state.toString());
+        return transferDBBase.update(getPartUri(mainUploadId), values, null, null);
+    }
+
     /**
      * Updates the state but do not notify TransferService to refresh its
      * transfer record list. Therefore, only TransferObserver knows the state
@@ -464,6 +506,16 @@ class TransferDBUtil {
         return transferDBBase.delete(getRecordUri(id), null, null);
     }
 
+    /**
+     * Deletes the part records of a multipart transfer.
+     *
+     * @param mainUploadId The id of the multipart transfer.
+     * @return Number of rows deleted.
+     */
+    public int deletePartRecords(int mainUploadId) {
+        return transferDBBase.delete(getPartUri(mainUploadId), null, null);
+    }
+
     /**
      * Queries all the PartETags of completed parts from the multipart upload
      * specified by the mainUploadId. The list of PartETags is used to complete
@@ -537,6 +589,66 @@ class TransferDBUtil {
         return list;
     }
 
+    /**
+     * Queries the parts of a multipart download that aren't completed yet. It's
+     * used when starting or resuming a multipart download.
+     *
+     * @param mainUploadId The id of the multipart download.
+     * @return A list of TransferRecord, one per part to download.
+     */
+    public List<TransferRecord> getNonCompletedDownloadPartsFromDB(int mainUploadId) {
+        List<TransferRecord> list = new ArrayList<TransferRecord>();
+        Cursor c = transferDBBase.query(getPartUri(mainUploadId), null, null, null, null);
+        try {
+            while (c.moveToNext()) {
+                if (TransferState.PART_COMPLETED.equals(TransferState.getState(c.getString(c
+                        .getColumnIndexOrThrow(TransferTable.COLUMN_STATE))))) {
+                    continue;
+                }
+                TransferRecord part = new TransferRecord(0);
+                part.updateFromDB(c);
+                list.add(part);
+            }
+        } finally {
+            c.close();
+        }
+        return list;
+    }
+
+    /**
+     * Generates a ContentValues object to insert into the database with the
+     * given values for a part of a multipart download. Each part is fetched
+     * with a ranged GET request and written at the same offset in the file.
+     *
+     * @param bucket The name of the bucket to download from.
+     * @param key The key of the object to download.
+     * @param file The file to download to.
+     * @param partNumber The part number of this part, starting at 1.
+     * @param rangeStart The first byte of the part.
+     * @param rangeLast The last byte of the part.
+     * @param state The state of the part, WAITING unless the part is already
+     *            written to the file.
+     * @return The ContentValues object generated.
+     */
+    public ContentValues generateContentValuesForMultiPartDownload(String bucket, String key,
+            File file, int partNumber, long rangeStart, long rangeLast, TransferState state) {
+        ContentValues values = new ContentValues();
+        values.put(TransferTable.COLUMN_TYPE, TransferType.DOWNLOAD.toString());
+        values.put(TransferTable.COLUMN_STATE, state.toString());
+        values.put(TransferTable.COLUMN_BUCKET_NAME, bucket);
+        values.put(TransferTable.COLUMN_KEY, key);
+        values.put(TransferTable.COLUMN_FILE, file.getAbsolutePath());
+        values.put(TransferTable.COLUMN_BYTES_CURRENT, 0l);
+        values.put(TransferTable.COLUMN_BYTES_TOTAL, rangeLast - rangeStart + 1);
+        values.put(TransferTable.COLUMN_IS_MULTIPART, 1);
+        values.put(TransferTable.COLUMN_PART_NUM, partNumber);
+        values.put(TransferTable.COLUMN_FILE_OFFSET, rangeStart);
+        values.put(TransferTable.COLUMN_DATA_RANGE_START, rangeStart);
+        values.put(TransferTable.COLUMN_DATA_RANGE_LAST, rangeLast);
+        values.put(TransferTable.COLUMN_IS_ENCRYPTED, 0);
+        return values;
+    }
+
     /**
      * Generates a ContentValues object to insert into the database with the
      * given values for a multipart upload record.
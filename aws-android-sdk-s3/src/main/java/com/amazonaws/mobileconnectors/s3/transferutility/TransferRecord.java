@@ -161,7 +161,7 @@ class TransferRecord {
         if (!isRunning() && checkIsReadyToRun()) {
             if (type.equals(TransferType.DOWNLOAD)) {
                 submittedTask = TransferThreadPool
-                        .submitTask(new DownloadTask(this, s3, updater, networkInfo));
+                        .submitTask(new DownloadTask(this, s3, dbUtil, updater, networkInfo));
             } else {
                 submittedTask = TransferThreadPool
                         .submitTask(new UploadTask(this, s3, dbUtil, updater, networkInfo));
@@ -194,18 +194,25 @@ class TransferRecord {
      * Cancels a running transfer.
      *
      * @param s3 s3 instance
+     * @param dbUtil database util
      * @param updater status updater
      * @return true if the transfer is running and is canceled successfully,
      *         false otherwise
      */
-    public boolean cancel(final AmazonS3 s3, final TransferStatusUpdater updater) {
+    public boolean cancel(final AmazonS3 s3, final TransferDBUtil dbUtil,
+            final TransferStatusUpdater updater) {
         if (!isFinalState(state)) {
             updater.updateState(id, TransferState.CANCELED);
             if (isRunning()) {
                 submittedTask.cancel(true);
             }
             // additional cleanups
-            if (isMultipart == 1) {
+            if (TransferType.DOWNLOAD.equals(type)) {
+                // remove partially download file
+                new File(file).delete();
+                // and the records of the parts written to it, if any
+                dbUtil.deletePartRecords(id);
+            } else if (isMultipart == 1) {
                 new Thread(new Runnable() {
                     @Override
                     public void run() {
@@ -218,9 +225,6 @@ class TransferRecord {
                         }
                     }
                 }).start();
-            } else if (TransferType.DOWNLOAD.equals(type)) {
-                // remove partially download file
-                new File(file).delete();
             }
             return true;
         }
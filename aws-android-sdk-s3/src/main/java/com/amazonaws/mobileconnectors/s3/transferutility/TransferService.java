@@ -310,7 +310,7 @@ public class TransferService extends Service {
                 transfer = dbUtil.getTransferById(id);
             }
             if (transfer != null) {
-                transfer.cancel(s3, updater);
+                transfer.cancel(s3, dbUtil, updater);
             }
         } else {
             Log.e(TAG, "Unknown action: " + action);
@@ -94,6 +94,19 @@ public class TransferUtility {
      */
     static final int MINIMUM_UPLOAD_PART_SIZE = 5 * MB;
 
+    /**
+     * Minimum part size for download parts, each of which is fetched with a
+     * ranged GET request.
+     */
+    static final int MINIMUM_DOWNLOAD_PART_SIZE = 8 * MB;
+
+    /**
+     * Objects larger than this are downloaded in parts fetched in parallel.
+     * It's also the size of the first part, which is fetched before the size
+     * of the object is known.
+     */
+    static final int MULTIPART_DOWNLOAD_THRESHOLD = 16 * MB;
+
     private final AmazonS3 s3;
     private final Context appContext;
     private final TransferDBUtil dbUtil;
@@ -1576,23 +1576,11 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
             // Always set the content length, even if it's already set
             metadata.setContentLength(file.length());
 
-            final boolean calculateMD5 = metadata.getContentMD5() == null;
-
             // Only set the content type if it hasn't already been set
             if (metadata.getContentType() == null) {
                 metadata.setContentType(Mimetypes.getInstance().getMimetype(file));
             }
 
-            if (calculateMD5 && !skipContentMd5Check) {
-                try {
-                    String contentMd5_b64 = Md5Utils.md5AsBase64(file);
-                    metadata.setContentMD5(contentMd5_b64);
-                } catch (Exception e) {
-                    throw new AmazonClientException(
-                            "Unable to calculate MD5 hash: " + e.getMessage(), e);
-                }
-            }
-
             try {
                 input = new RepeatableFileInputStream(file);
             } catch (FileNotFoundException fnfe) {
@@ -1603,6 +1591,26 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
         Request<PutObjectRequest> request = createRequest(bucketName, key, putObjectRequest,
                 HttpMethodName.PUT);
 
+        /*
+         * A SigV4 upload signs every chunk of the payload, so S3 rejects data
+         * corrupted in transit without a Content-MD5 header; the MD5 is then
+         * calculated while the file is uploaded and checked against the ETag,
+         * and the file is only read once. Other signers need the header, which
+         * is calculated up front from the file.
+         */
+        if (putObjectRequest.getFile() != null
+                && metadata.getContentMD5() == null
+                && !skipContentMd5Check
+                && !(createSigner(request, bucketName, key) instanceof AWSS3V4Signer)) {
+            try {
+                String contentMd5_b64 = Md5Utils.md5AsBase64(putObjectRequest.getFile());
+                metadata.setContentMD5(contentMd5_b64);
+            } catch (Exception e) {
+                throw new AmazonClientException(
+                        "Unable to calculate MD5 hash: " + e.getMessage(), e);
+            }
+        }
+
         if (putObjectRequest.getAccessControlList() != null) {
             addAclHeaders(request, putObjectRequest.getAccessControlList());
         } else if (putObjectRequest.getCannedAcl() != null) {
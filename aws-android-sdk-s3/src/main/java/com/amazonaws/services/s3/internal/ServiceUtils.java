@@ -43,9 +43,12 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.MalformedURLException;
 import java.net.SocketException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -265,20 +268,35 @@ public class ServiceUtils {
             }
         }
 
+        if (performIntegrityCheck) {
+            verifyDownloadedFile(destinationFile, s3Object.getObjectMetadata());
+        }
+    }
+
+    /**
+     * Checks the content of a downloaded file against the MD5 hash Amazon S3
+     * calculated for the object. The check is skipped for objects uploaded in
+     * multiple parts, whose ETag isn't an MD5 hash of their content.
+     *
+     * @param destinationFile The file holding the whole content of the object.
+     * @param metadata The metadata of the downloaded object.
+     * @throws AmazonClientException If the hashes don't match.
+     */
+    public static void verifyDownloadedFile(File destinationFile, ObjectMetadata metadata) {
         byte[] clientSideHash = null;
         byte[] serverSideHash = null;
         try {
             // Multipart Uploads don't have an MD5 calculated on the service
             // side
-            if (ServiceUtils.isMultipartUploadETag(s3Object.getObjectMetadata().getETag()) == false) {
+            if (ServiceUtils.isMultipartUploadETag(metadata.getETag()) == false) {
                 clientSideHash = Md5Utils.computeMD5Hash(new FileInputStream(destinationFile));
-                serverSideHash = BinaryUtils.fromHex(s3Object.getObjectMetadata().getETag());
+                serverSideHash = BinaryUtils.fromHex(metadata.getETag());
             }
         } catch (Exception e) {
             log.warn("Unable to calculate MD5 hash to validate download: " + e.getMessage(), e);
         }
 
-        if (performIntegrityCheck && clientSideHash != null && serverSideHash != null
+        if (clientSideHash != null && serverSideHash != null
                 && !Arrays.equals(clientSideHash, serverSideHash)) {
             throw new AmazonClientException("Unable to verify integrity of data download.  " +
                     "Client calculated content hash didn't match hash calculated by Amazon S3.  " +
@@ -287,6 +305,61 @@ public class ServiceUtils {
         }
     }
 
+    /**
+     * Downloads a range of an S3Object, as returned from
+     * {@link AmazonS3Client#getObject(com.amazonaws.services.s3.model.GetObjectRequest)}
+     * with a range, into the specified file at the given position. The rest of
+     * the file is left untouched, so several ranges of an object can be
+     * written to the same file at the same time.
+     *
+     * @param s3Object The S3Object containing a reference to an InputStream
+     *            containing the data of the range.
+     * @param destinationFile The file to store the data in.
+     * @param position The position in the file of the first byte of the range.
+     * @return The number of bytes written to the file.
+     */
+    public static long downloadObjectRangeToFile(S3Object s3Object,
+            File destinationFile, long position) {
+
+        // attempt to create the parent if it doesn't exist
+        File parentDirectory = destinationFile.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists()) {
+            parentDirectory.mkdirs();
+        }
+
+        RandomAccessFile randomAccessFile = null;
+        long bytesWritten = 0;
+        try {
+            randomAccessFile = new RandomAccessFile(destinationFile, "rw");
+            FileChannel channel = randomAccessFile.getChannel();
+            byte[] buffer = new byte[1024 * 16];
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+            int bytesRead;
+            while ((bytesRead = s3Object.getObjectContent().read(buffer)) > -1) {
+                byteBuffer.clear().limit(bytesRead);
+                while (byteBuffer.hasRemaining()) {
+                    bytesWritten += channel.write(byteBuffer, position + bytesWritten);
+                }
+            }
+        } catch (IOException e) {
+            s3Object.getObjectContent().abort();
+            throw new AmazonClientException(
+                    "Unable to store object contents to disk: " + e.getMessage(), e);
+        } finally {
+            try {
+                if (randomAccessFile != null) {
+                    randomAccessFile.close();
+                }
+            } catch (Exception e) {
+            }
+            try {
+                s3Object.getObjectContent().close();
+            } catch (Exception e) {
+            }
+        }
+        return bytesWritten;
+    }
+
     /**
      * Interface for the task of downloading object from S3 to a specific file,
      * enabling one-time retry mechanism after integrity check failure on the
@@ -0,0 +1,460 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.iterable;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Iterates Amazon S3 objects like {@link S3Objects}, but splits the keys in
+ * partitions whose pages are listed concurrently. For example:
+ *
+ * <pre class="brush: java">
+ * ExecutorService executor = Executors.newFixedThreadPool(8);
+ * for (S3ObjectSummary summary : ParallelS3Objects.withPrefix(s3, &quot;my-bucket&quot;, &quot;photos/&quot;, executor)
+ *         .withDelimiter(&quot;/&quot;).withParallelism(8)) {
+ *     System.out.printf(&quot;Object with key '%s'\n&quot;, summary.getKey());
+ * }
+ * </pre>
+ * <p>
+ * The keys are split either at the split keys given with
+ * {@link #withSplitKeys(String...)}, or at the common prefixes found by
+ * listing the first level of keys with the delimiter given with
+ * {@link #withDelimiter(String)}. Without either, there is a single partition,
+ * whose next pages are still fetched ahead of the caller.
+ * <p>
+ * The summaries are returned in key order, as with {@link S3Objects}: the
+ * partitions are iterated one after the other, while the next ones are listed
+ * in the background. At most {@link #getParallelism()} partitions are listed
+ * at once, and each keeps at most {@link #getPrefetchPages()} pages that the
+ * caller has not reached, so a slow caller bounds the memory used and the
+ * requests sent. The executor is not shut down by this class.
+ */
+public class ParallelS3Objects implements Iterable<S3ObjectSummary> {
+
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final int DEFAULT_PREFETCH_PAGES = 2;
+
+    /**
+     * Compares keys in the order in which Amazon S3 lists them, which is the
+     * order of their UTF-8 bytes, and so of their code points.
+     */
+    private static final Comparator<String> KEY_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(String a, String b) {
+            int i = 0;
+            int j = 0;
+            while (i < a.length() && j < b.length()) {
+                int ca = a.codePointAt(i);
+                int cb = b.codePointAt(j);
+                if (ca != cb) {
+                    return ca < cb ? -1 : 1;
+                }
+                i += Character.charCount(ca);
+                j += Character.charCount(cb);
+            }
+            return (a.length() - i) - (b.length() - j);
+        }
+    };
+
+    private final AmazonS3 s3;
+    private final String bucketName;
+    private final ExecutorService executor;
+    private String prefix = null;
+    private String delimiter = null;
+    private List<String> splitKeys = Collections.emptyList();
+    private Integer batchSize = null;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int prefetchPages = DEFAULT_PREFETCH_PAGES;
+
+    private ParallelS3Objects(AmazonS3 s3, String bucketName, ExecutorService executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("The executor must be specified");
+        }
+        this.s3 = s3;
+        this.bucketName = bucketName;
+        this.executor = executor;
+    }
+
+    /**
+     * Constructs an iterable that covers all the objects in an Amazon S3
+     * bucket.
+     *
+     * @param s3 The Amazon S3 client.
+     * @param bucketName The bucket name.
+     * @param executor The executor listing the partitions.
+     * @return An iterator for object summaries.
+     */
+    public static ParallelS3Objects inBucket(AmazonS3 s3, String bucketName,
+            ExecutorService executor) {
+        return new ParallelS3Objects(s3, bucketName, executor);
+    }
+
+    /**
+     * Constructs an iterable that covers the objects in an Amazon S3 bucket
+     * where the key begins with the given prefix.
+     *
+     * @param s3 The Amazon S3 client.
+     * @param bucketName The bucket name.
+     * @param prefix The prefix.
+     * @param executor The executor listing the partitions.
+     * @return An iterator for object summaries.
+     */
+    public static ParallelS3Objects withPrefix(AmazonS3 s3, String bucketName, String prefix,
+            ExecutorService executor) {
+        ParallelS3Objects objects = new ParallelS3Objects(s3, bucketName, executor);
+        objects.prefix = prefix;
+        return objects;
+    }
+
+    /**
+     * Sets the delimiter used to find the partitions when no split keys are
+     * given: each common prefix of the keys up to the first delimiter after
+     * the prefix is listed as a partition.
+     *
+     * @param delimiter The delimiter, such as "/".
+     */
+    public ParallelS3Objects withDelimiter(String delimiter) {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * Sets the keys at which the keys are split in partitions. Each partition
+     * ends with the objects whose key is a split key, if any, and the last one
+     * covers the keys after the last split key. Keys spread evenly across the
+     * partitions make for the fastest listing.
+     *
+     * @param splitKeys The split keys.
+     */
+    public ParallelS3Objects withSplitKeys(String... splitKeys) {
+        List<String> keys = new ArrayList<String>(Arrays.asList(splitKeys));
+        Collections.sort(keys, KEY_ORDER);
+        this.splitKeys = keys;
+        return this;
+    }
+
+    /**
+     * Sets the batch size, i.e., how many {@link S3ObjectSummary}s will be
+     * fetched at once.
+     *
+     * @param batchSize How many object summaries to fetch at once.
+     */
+    public ParallelS3Objects withBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets how many partitions are listed at once.
+     *
+     * @param parallelism The number of partitions listed at once.
+     */
+    public ParallelS3Objects withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets how many pages of each partition are fetched ahead of the caller.
+     *
+     * @param prefetchPages The number of pages fetched ahead.
+     */
+    public ParallelS3Objects withPrefetchPages(int prefetchPages) {
+        if (prefetchPages < 1) {
+            throw new IllegalArgumentException("The number of pages to prefetch must be positive");
+        }
+        this.prefetchPages = prefetchPages;
+        return this;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    public List<String> getSplitKeys() {
+        return Collections.unmodifiableList(splitKeys);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public AmazonS3 getS3() {
+        return s3;
+    }
+
+    @Override
+    public Iterator<S3ObjectSummary> iterator() {
+        return new ParallelS3ObjectIterator();
+    }
+
+    /**
+     * Lists the first level of keys to make a partition of each common prefix
+     * and of each run of objects between them, which are already listed.
+     */
+    private List<Partition> discoverPartitions() {
+        List<Partition> partitions = new ArrayList<Partition>();
+        List<S3ObjectSummary> run = new ArrayList<S3ObjectSummary>();
+        ListObjectsV2Request request = new ListObjectsV2Request()
+                .withBucketName(bucketName)
+                .withPrefix(prefix)
+                .withDelimiter(delimiter)
+                .withMaxKeys(batchSize);
+        ListObjectsV2Result result;
+        do {
+            result = s3.listObjectsV2(request);
+            Iterator<S3ObjectSummary> summaries = result.getObjectSummaries().iterator();
+            S3ObjectSummary summary = summaries.hasNext() ? summaries.next() : null;
+            for (String commonPrefix : result.getCommonPrefixes()) {
+                while (summary != null && KEY_ORDER.compare(summary.getKey(), commonPrefix) < 0) {
+                    run.add(summary);
+                    summary = summaries.hasNext() ? summaries.next() : null;
+                }
+                if (!run.isEmpty()) {
+                    partitions.add(new Partition(run));
+                    run = new ArrayList<S3ObjectSummary>();
+                }
+                partitions.add(new Partition(commonPrefix, null, null));
+            }
+            while (summary != null) {
+                run.add(summary);
+                summary = summaries.hasNext() ? summaries.next() : null;
+            }
+            request.setContinuationToken(result.getNextContinuationToken());
+        } while (result.isTruncated());
+        if (!run.isEmpty()) {
+            partitions.add(new Partition(run));
+        }
+        return partitions;
+    }
+
+    private List<Partition> createPartitions() {
+        if (!splitKeys.isEmpty()) {
+            List<Partition> partitions = new ArrayList<Partition>();
+            String startAfter = null;
+            for (String splitKey : splitKeys) {
+                partitions.add(new Partition(prefix, startAfter, splitKey));
+                startAfter = splitKey;
+            }
+            partitions.add(new Partition(prefix, startAfter, null));
+            return partitions;
+        } else if (delimiter != null) {
+            return discoverPartitions();
+        } else {
+            return Collections.singletonList(new Partition(prefix, null, null));
+        }
+    }
+
+    /**
+     * A range of keys listed page by page in the background, keeping at most
+     * prefetchPages pages that have not been taken.
+     */
+    private final class Partition implements Runnable {
+
+        private final ListObjectsV2Request request;
+
+        /** The last key of the partition, or null for no bound. */
+        private final String lastKey;
+
+        // Guarded by this
+        private final LinkedList<List<S3ObjectSummary>> pages = new LinkedList<List<S3ObjectSummary>>();
+        private boolean fetching = false;
+        private boolean exhausted = false;
+        private Throwable failure = null;
+
+        Partition(String prefix, String startAfter, String lastKey) {
+            this.request = new ListObjectsV2Request()
+                    .withBucketName(bucketName)
+                    .withPrefix(prefix)
+                    .withStartAfter(startAfter)
+                    .withMaxKeys(batchSize);
+            this.lastKey = lastKey;
+        }
+
+        /** Constructs a partition of objects which are already listed. */
+        Partition(List<S3ObjectSummary> summaries) {
+            this.request = null;
+            this.lastKey = null;
+            this.pages.add(summaries);
+            this.exhausted = true;
+        }
+
+        /**
+         * Fetches the next page in the background, unless enough pages are
+         * already waiting.
+         */
+        synchronized void fetchAhead() {
+            if (fetching || exhausted || failure != null || pages.size() >= prefetchPages) {
+                return;
+            }
+            fetching = true;
+            try {
+                executor.execute(this);
+            } catch (RuntimeException e) {
+                // Such as a rejection by an executor which was shut down
+                failure = e;
+                fetching = false;
+                notifyAll();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                ListObjectsV2Result result = s3.listObjectsV2(request);
+                List<S3ObjectSummary> page = result.getObjectSummaries();
+                boolean last = !result.isTruncated();
+                if (lastKey != null && !page.isEmpty()
+                        && KEY_ORDER.compare(page.get(page.size() - 1).getKey(), lastKey) >= 0) {
+                    // The page reaches the next partition
+                    last = true;
+                    int end = page.size();
+                    while (end > 0 && KEY_ORDER.compare(page.get(end - 1).getKey(), lastKey) > 0) {
+                        end--;
+                    }
+                    page = new ArrayList<S3ObjectSummary>(page.subList(0, end));
+                }
+                synchronized (this) {
+                    request.setContinuationToken(result.getNextContinuationToken());
+                    pages.add(page);
+                    exhausted = last;
+                    fetching = false;
+                    notifyAll();
+                }
+                fetchAhead();
+            } catch (Throwable t) {
+                synchronized (this) {
+                    failure = t;
+                    fetching = false;
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Returns the next page, waiting for it to be fetched, or null once
+         * the partition has been entirely taken.
+         */
+        synchronized List<S3ObjectSummary> takePage() {
+            while (pages.isEmpty() && !exhausted && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AmazonClientException("Interrupted while listing objects", e);
+                }
+            }
+            if (failure != null) {
+                if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                } else if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+                throw new AmazonClientException("Unable to list objects", failure);
+            }
+            List<S3ObjectSummary> page = pages.poll();
+            fetchAhead();
+            return page;
+        }
+    }
+
+    private class ParallelS3ObjectIterator implements Iterator<S3ObjectSummary> {
+
+        private List<Partition> partitions = null;
+
+        /** The partition being iterated. */
+        private int current = 0;
+
+        /** The number of partitions whose listing has been started. */
+        private int started = 0;
+
+        private Iterator<S3ObjectSummary> currentIterator = null;
+
+        @Override
+        public boolean hasNext() {
+            prepareCurrentPage();
+            return currentIterator.hasNext();
+        }
+
+        @Override
+        public S3ObjectSummary next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return currentIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void prepareCurrentPage() {
+            if (partitions == null) {
+                partitions = createPartitions();
+            }
+            while (currentIterator == null || !currentIterator.hasNext()) {
+                // Keep the partitions ahead of the caller listing
+                while (started < partitions.size() && started < current + parallelism) {
+                    partitions.get(started++).fetchAhead();
+                }
+                if (current == partitions.size()) {
+                    currentIterator = Collections.<S3ObjectSummary> emptyList().iterator();
+                    return;
+                }
+                List<S3ObjectSummary> page = partitions.get(current).takePage();
+                if (page == null) {
+                    current++;
+                } else {
+                    currentIterator = page.iterator();
+                }
+            }
+        }
+    }
+}
@@ -34,7 +34,8 @@ import java.util.Iterator;
  * <p>
  * The list of {@link S3ObjectSummary}s will be fetched lazily, a page at a
  * time, as they are needed. The size of the page can be controlled with the
- * {@link S3Objects#withBatchSize(int)} method.
+ * {@link S3Objects#withBatchSize(int)} method. To list the pages of a large
+ * number of objects concurrently, use {@link ParallelS3Objects}.
  */
 public class S3Objects implements Iterable<S3ObjectSummary> {
 
@@ -16,6 +16,7 @@
 package com.amazonaws.auth;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import com.amazonaws.services.s3.internal.AWSS3V4Signer;
@@ -29,6 +30,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 
 public class AwsChunkedEncodingInputStreamTest {
 
@@ -134,6 +138,85 @@ public class AwsChunkedEncodingInputStreamTest {
         assertArrayEquals(expected.toByteArray(), baos.toByteArray());
     }
 
+    @Test
+    public void testAllocationPerUploadedMegabyte() throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) threads;
+        if (!threadMXBean.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        long threadId = Thread.currentThread().getId();
+        byte[] buf = new byte[8192];
+        // Warm up, so the chunk buffer is pooled and signing is initialized.
+        upload(newChunkedStream(1), buf);
+
+        final int megabytes = 32;
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        long uploaded = upload(newChunkedStream(megabytes), buf);
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(AwsChunkedEncodingInputStream
+                .calculateStreamContentLength(megabytes << 20), uploaded);
+        // Only the headers and signatures of the 8 chunks per megabyte are
+        // allocated (about 26 KB); the chunk data is staged in a pooled
+        // buffer instead of the 2 MB allocated per megabyte without the pool.
+        long allocatedPerMegabyte = allocated / megabytes;
+        assertTrue("Allocated " + allocatedPerMegabyte + " bytes per MB",
+                allocatedPerMegabyte < 64 * 1024);
+    }
+
+    private static AwsChunkedEncodingInputStream newChunkedStream(int megabytes) {
+        byte[] key = BinaryUtils.fromBase64("3CzwdoZjnC/7siQkeHrlEmv0PE12RkMFZVG5qKt096s=");
+        return new AwsChunkedEncodingInputStream(new ZeroInputStream(megabytes << 20), key,
+                "20150513T222354Z", "20150513/us-west-2/s3/aws4_request",
+                "c61bd05d152a8ca5ca2a024ec45d0670c0f4aa2aa67ee26be9de8657f6cfea37",
+                new AWSS3V4Signer());
+    }
+
+    private static long upload(InputStream in, byte[] buf) throws IOException {
+        long total = 0;
+        int read;
+        while ((read = in.read(buf)) != -1) {
+            total += read;
+        }
+        in.close();
+        return total;
+    }
+
+    /**
+     * Produces the given number of zero bytes without allocating.
+     */
+    private static class ZeroInputStream extends InputStream {
+        private long remaining;
+
+        ZeroInputStream(long length) {
+            remaining = length;
+        }
+
+        @Override
+        public int read() {
+            if (remaining == 0) {
+                return -1;
+            }
+            remaining--;
+            return 0;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (remaining == 0) {
+                return -1;
+            }
+            int count = (int) Math.min(len, remaining);
+            java.util.Arrays.fill(b, off, off + count, (byte) 0);
+            remaining -= count;
+            return count;
+        }
+    }
+
     private byte[] getExpectedOutput() throws IOException {
         // Get the output we expect
         File written = new File(getClass().getResource("/com/amazonaws/auth/SignedTestData.txt")
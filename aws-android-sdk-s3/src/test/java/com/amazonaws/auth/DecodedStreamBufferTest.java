@@ -90,4 +90,15 @@ public class DecodedStreamBufferTest {
         assertArrayEquals(toBuff, baos.toByteArray());
     }
 
+    @Test(expected = AmazonClientException.class)
+    public void testReleasedBufferIsNotRepeatable() {
+        byte[] toBuff = "0123456789".getBytes(StringUtils.UTF8);
+
+        DecodedStreamBuffer buff = new DecodedStreamBuffer(256 * 1024);
+        buff.buffer(toBuff, 0, toBuff.length);
+        buff.release();
+        buff.buffer(toBuff, 0, toBuff.length);
+
+        buff.startReadBuffer();
+    }
 }
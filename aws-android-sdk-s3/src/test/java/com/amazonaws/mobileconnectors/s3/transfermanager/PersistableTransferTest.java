@@ -15,7 +15,9 @@
 
 package com.amazonaws.mobileconnectors.s3.transfermanager;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import com.amazonaws.services.s3.model.ResponseHeaderOverrides;
@@ -86,4 +88,30 @@ public class PersistableTransferTest {
                 download.getResponseHeaders().getExpires());
     }
 
+    @Test
+    public void testDownloadWithParts() {
+        PersistableDownload target = new PersistableDownload("bucketName", "key", null,
+                null, null, false, "file", 8 * 1024 * 1024, new int[] {
+                        1, 2, 5
+                });
+
+        String json = target.serialize();
+        PersistableDownload download = PersistableTransfer.deserializeFrom(json);
+        assertEquals("partSize", target.getPartSize(), download.getPartSize());
+        assertArrayEquals("completedParts", target.getCompletedParts(),
+                download.getCompletedParts());
+        assertEquals("file", target.getFile(), download.getFile());
+        assertNull("range", download.getRange());
+    }
+
+    @Test
+    public void testDownloadWithoutParts() {
+        PersistableDownload target = new PersistableDownload("bucketName", "key", null,
+                null, null, false, "file");
+
+        String json = target.serialize();
+        PersistableDownload download = PersistableTransfer.deserializeFrom(json);
+        assertEquals("partSize", -1, download.getPartSize());
+        assertEquals("completedParts", 0, download.getCompletedParts().length);
+    }
 }
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transfermanager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+import com.amazonaws.util.StringUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class SyncManifestTest {
+
+    private File directory;
+    private File manifestFile;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("sync-manifest", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+        manifestFile = new File(directory, "manifest.json");
+    }
+
+    @After
+    public void tearDown() {
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Tests that the recorded entries are loaded back from the saved manifest.
+     */
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        File file = writeFile("a.txt", "content");
+        SyncManifest manifest = new SyncManifest(manifestFile);
+        assertEquals(0, manifest.size());
+        manifest.record("prefix/a.txt", file, "etag-1");
+        manifest.save();
+
+        SyncManifest loaded = new SyncManifest(manifestFile);
+        assertEquals(1, loaded.size());
+        assertTrue(loaded.isUnchanged("prefix/a.txt", file));
+        assertTrue(loaded.isUnchanged("prefix/a.txt", file, file.length(), "etag-1"));
+        assertFalse(loaded.isUnchanged("prefix/b.txt", file));
+        assertFalse(new File(manifestFile.getPath() + ".tmp").exists());
+    }
+
+    /**
+     * Tests that a file is transferred again when it or its object changed.
+     */
+    @Test
+    public void testChangesAreDetected() throws Exception {
+        File file = writeFile("a.txt", "content");
+        SyncManifest manifest = new SyncManifest(manifestFile);
+        manifest.record("a.txt", file, "etag-1");
+
+        // The object changed in the bucket
+        assertFalse(manifest.isUnchanged("a.txt", file, file.length(), "etag-2"));
+        assertFalse(manifest.isUnchanged("a.txt", file, file.length() + 1, "etag-1"));
+
+        // The local file changed
+        assertTrue(file.setLastModified(file.lastModified() - 10000));
+        assertFalse(manifest.isUnchanged("a.txt", file));
+        assertFalse(manifest.isUnchanged("a.txt", file, file.length(), "etag-1"));
+
+        assertTrue(file.delete());
+        assertFalse(manifest.isUnchanged("a.txt", file));
+    }
+
+    /**
+     * Tests that a file missing from the manifest is compared with the object
+     * by its MD5, unless the object was uploaded in parts.
+     */
+    @Test
+    public void testMd5IsComparedWithoutEntry() throws Exception {
+        File file = writeFile("a.txt", "content");
+        String md5 = BinaryUtils.toHex(Md5Utils.computeMD5Hash(file));
+        SyncManifest manifest = new SyncManifest(manifestFile);
+
+        assertFalse(manifest.isUnchanged("a.txt", file, file.length(), md5 + "-2"));
+        assertFalse(manifest.isUnchanged("a.txt", file, file.length(),
+                "00000000000000000000000000000000"));
+        assertEquals(0, manifest.size());
+
+        assertTrue(manifest.isUnchanged("a.txt", file, file.length(), md5));
+        assertEquals(1, manifest.size());
+        assertTrue(manifest.isUnchanged("a.txt", file));
+    }
+
+    /**
+     * Tests that a directory upload only uploads the files that changed since
+     * the last synchronization.
+     */
+    @Test
+    public void testUploadDirectorySkipsUnchangedFiles() throws Exception {
+        File source = new File(directory, "source");
+        assertTrue(source.mkdir());
+        File a = writeFile("source/a.txt", "a");
+        writeFile("source/b.txt", "b");
+
+        final List<String> uploadedKeys = new CopyOnWriteArrayList<String>();
+        AmazonS3Client s3 = new AmazonS3Client(new BasicAWSCredentials("access", "secret")) {
+            @Override
+            public PutObjectResult putObject(PutObjectRequest putObjectRequest)
+                    throws AmazonClientException, AmazonServiceException {
+                uploadedKeys.add(putObjectRequest.getKey());
+                PutObjectResult result = new PutObjectResult();
+                result.setETag("etag-" + putObjectRequest.getKey());
+                return result;
+            }
+        };
+        TransferManager tm = new TransferManager(s3);
+        try {
+            SyncManifest manifest = new SyncManifest(manifestFile);
+            MultipleFileUpload upload = tm.uploadDirectory("bucket", "prefix", source, true,
+                    null, manifest);
+            upload.waitForCompletion();
+            manifest.save();
+            assertEquals(2, uploadedKeys.size());
+            assertTrue(uploadedKeys.contains("prefix/a.txt"));
+            assertEquals(2, new SyncManifest(manifestFile).size());
+
+            uploadedKeys.clear();
+            manifest = new SyncManifest(manifestFile);
+            upload = tm.uploadDirectory("bucket", "prefix", source, true, null, manifest);
+            upload.waitForCompletion();
+            assertEquals(0, uploadedKeys.size());
+
+            assertTrue(a.setLastModified(a.lastModified() - 10000));
+            upload = tm.uploadDirectory("bucket", "prefix", source, true, null, manifest);
+            upload.waitForCompletion();
+            assertEquals(1, uploadedKeys.size());
+            assertEquals("prefix/a.txt", uploadedKeys.get(0));
+        } finally {
+            tm.shutdownNow(false);
+        }
+    }
+
+    /**
+     * Tests that a file modified while it is uploaded is uploaded again by
+     * the next synchronization.
+     */
+    @Test
+    public void testFileModifiedDuringUploadIsUploadedAgain() throws Exception {
+        File source = new File(directory, "source");
+        assertTrue(source.mkdir());
+        final File a = writeFile("source/a.txt", "a");
+        final long modified = a.lastModified() + 10000;
+
+        final List<String> uploadedKeys = new CopyOnWriteArrayList<String>();
+        AmazonS3Client s3 = new AmazonS3Client(new BasicAWSCredentials("access", "secret")) {
+            @Override
+            public PutObjectResult putObject(PutObjectRequest putObjectRequest)
+                    throws AmazonClientException, AmazonServiceException {
+                if (uploadedKeys.isEmpty()) {
+                    assertTrue(a.setLastModified(modified));
+                }
+                uploadedKeys.add(putObjectRequest.getKey());
+                PutObjectResult result = new PutObjectResult();
+                result.setETag("etag");
+                return result;
+            }
+        };
+        TransferManager tm = new TransferManager(s3);
+        try {
+            SyncManifest manifest = new SyncManifest(manifestFile);
+            tm.uploadDirectory("bucket", "prefix", source, true, null, manifest)
+                    .waitForCompletion();
+            manifest.save();
+            assertEquals(1, uploadedKeys.size());
+            assertEquals(modified, a.lastModified());
+
+            tm.uploadDirectory("bucket", "prefix", source, true, null, manifest)
+                    .waitForCompletion();
+            manifest.save();
+            assertEquals(2, uploadedKeys.size());
+
+            tm.uploadDirectory("bucket", "prefix", source, true, null, manifest)
+                    .waitForCompletion();
+            assertEquals(2, uploadedKeys.size());
+        } finally {
+            tm.shutdownNow(false);
+        }
+    }
+
+    private File writeFile(String name, String content) throws IOException {
+        File file = new File(directory, name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(StringUtils.UTF8));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
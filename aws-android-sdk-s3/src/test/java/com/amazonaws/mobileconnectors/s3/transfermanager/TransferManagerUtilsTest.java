@@ -47,4 +47,21 @@ public class TransferManagerUtilsTest {
 
         assertTrue(totalParts <= Constants.MAXIMUM_UPLOAD_PARTS);
     }
+
+    /**
+     * Tests that a download is split in parts of at least the configured size,
+     * and in no more parts than an upload could have.
+     */
+    @Test
+    public void testCalculateOptimalPartSizeForDownload() throws Exception {
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        assertTrue(TransferManagerUtils.calculateOptimalPartSizeForDownload(configuration,
+                20 * Constants.MB) == configuration.getMinimumDownloadPartSize());
+
+        long contentLength = 120 * Constants.GB;
+        long partSize = TransferManagerUtils.calculateOptimalPartSizeForDownload(configuration,
+                contentLength);
+        double totalParts = (double) contentLength / (double) partSize;
+        assertTrue(totalParts <= Constants.MAXIMUM_UPLOAD_PARTS);
+    }
 }
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transfermanager.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.event.ProgressListenerChain;
+import com.amazonaws.mobileconnectors.s3.transfermanager.Transfer.TransferState;
+import com.amazonaws.mobileconnectors.s3.transfermanager.TransferProgress;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class MultipartDownloadMonitorTest {
+
+    private static final String BUCKET = "bucket";
+    private static final String KEY = "key";
+    private static final long PART_SIZE = 4;
+
+    private final byte[] data = "0123456789".getBytes();
+    private AmazonS3 s3;
+    private ExecutorService threadPool;
+    private File file;
+    private ObjectMetadata metadata;
+
+    @Before
+    public void setUp() throws IOException {
+        s3 = mock(AmazonS3.class);
+        threadPool = Executors.newFixedThreadPool(2);
+        file = File.createTempFile("MultipartDownloadMonitorTest", ".tmp");
+        allocate(file, data.length);
+        metadata = new ObjectMetadata();
+        metadata.setContentLength(data.length);
+        metadata.setHeader("ETag", BinaryUtils.toHex(Md5Utils.computeMD5Hash(data)));
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        threadPool.shutdownNow();
+        threadPool.awaitTermination(5, TimeUnit.SECONDS);
+        file.delete();
+    }
+
+    @Test
+    public void testDownloadCompletesWhenAllPartsAreWritten() throws Exception {
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(new RangeAnswer());
+
+        DownloadImpl download = newDownload();
+        MultipartDownloadMonitor monitor = startMonitor(download, null);
+        download.waitForCompletion();
+
+        assertEquals(TransferState.Completed, download.getState());
+        assertArrayEquals(data, readFile());
+        assertArrayEquals(new int[] {
+                1, 2, 3
+        }, monitor.getCompletedParts());
+        assertEquals(data.length, monitor.getCompletedBytes());
+
+        ArgumentCaptor<GetObjectRequest> captor = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(s3, times(3)).getObject(captor.capture());
+        for (GetObjectRequest request : captor.getAllValues()) {
+            assertEquals(Collections.singletonList(metadata.getETag()),
+                    request.getMatchingETagConstraints());
+        }
+    }
+
+    @Test
+    public void testFailedPartFailsTheDownload() throws Exception {
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(new RangeAnswer() {
+            @Override
+            public S3Object answer(InvocationOnMock invocation) {
+                GetObjectRequest request = (GetObjectRequest) invocation.getArguments()[0];
+                if (request.getRange()[0] == PART_SIZE) {
+                    throw new AmazonServiceException("part failed");
+                }
+                return super.answer(invocation);
+            }
+        });
+
+        DownloadImpl download = newDownload();
+        MultipartDownloadMonitor monitor = startMonitor(download, null);
+        try {
+            monitor.getFuture().get(5, TimeUnit.SECONDS);
+            fail("The download should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AmazonServiceException);
+        }
+        assertEquals(TransferState.Failed, download.getState());
+    }
+
+    @Test
+    public void testObjectChangedDuringDownloadFailsTheDownload() throws Exception {
+        // getObject returns null when the ETag constraint isn't met
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(new RangeAnswer() {
+            @Override
+            public S3Object answer(InvocationOnMock invocation) {
+                GetObjectRequest request = (GetObjectRequest) invocation.getArguments()[0];
+                if (request.getRange()[0] == 2 * PART_SIZE) {
+                    return null;
+                }
+                return super.answer(invocation);
+            }
+        });
+
+        DownloadImpl download = newDownload();
+        MultipartDownloadMonitor monitor = startMonitor(download, null);
+        try {
+            monitor.getFuture().get(5, TimeUnit.SECONDS);
+            fail("The download should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AmazonClientException);
+            assertTrue(e.getCause().getMessage().contains("changed"));
+        }
+        assertEquals(TransferState.Failed, download.getState());
+    }
+
+    @Test
+    public void testAbortCancelsRunningParts() throws Exception {
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch interrupted = new CountDownLatch(2);
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(new Answer<S3Object>() {
+            @Override
+            public S3Object answer(InvocationOnMock invocation) {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw new AmazonClientException("interrupted", e);
+                }
+                return null;
+            }
+        });
+
+        DownloadImpl download = newDownload();
+        MultipartDownloadMonitor monitor = startMonitor(download, null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        download.abort();
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue(monitor.getFuture().isCancelled());
+        assertEquals(TransferState.Canceled, download.getState());
+        // the third part is never fetched
+        threadPool.shutdown();
+        assertTrue(threadPool.awaitTermination(5, TimeUnit.SECONDS));
+        verify(s3, times(2)).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    public void testResumeFetchesOnlyMissingParts() throws Exception {
+        // the first and last parts were written by the paused download
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data, 0, (int) PART_SIZE);
+            out.write(new byte[(int) PART_SIZE]);
+            out.write(data, (int) (2 * PART_SIZE), data.length - (int) (2 * PART_SIZE));
+        } finally {
+            out.close();
+        }
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(new RangeAnswer());
+
+        DownloadImpl download = newDownload();
+        MultipartDownloadMonitor monitor = startMonitor(download, new int[] {
+                1, 3
+        });
+        assertEquals(data.length - PART_SIZE, monitor.getCompletedBytes());
+        download.waitForCompletion();
+
+        assertEquals(TransferState.Completed, download.getState());
+        assertArrayEquals(data, readFile());
+        ArgumentCaptor<GetObjectRequest> captor = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(s3).getObject(captor.capture());
+        assertArrayEquals(new long[] {
+                PART_SIZE, 2 * PART_SIZE - 1
+        }, captor.getValue().getRange());
+    }
+
+    @Test
+    public void testResumeWithAllPartsCompleted() throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+
+        DownloadImpl download = newDownload();
+        startMonitor(download, new int[] {
+                1, 2, 3
+        });
+        download.waitForCompletion();
+
+        assertEquals(TransferState.Completed, download.getState());
+        verify(s3, times(0)).getObject(any(GetObjectRequest.class));
+    }
+
+    private DownloadImpl newDownload() {
+        return new DownloadImpl("download", new TransferProgress(), new ProgressListenerChain(),
+                null, null, new GetObjectRequest(BUCKET, KEY), file, PART_SIZE);
+    }
+
+    private MultipartDownloadMonitor startMonitor(DownloadImpl download, int[] completedParts) {
+        MultipartDownloadMonitor monitor = new MultipartDownloadMonitor(s3, threadPool,
+                download, new GetObjectRequest(BUCKET, KEY), file, metadata, 0,
+                data.length - 1, PART_SIZE, completedParts, true);
+        download.setMonitor(monitor);
+        monitor.start();
+        return monitor;
+    }
+
+    private byte[] readFile() throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            int read;
+            while (offset < bytes.length
+                    && (read = in.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += read;
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    private static void allocate(File file, long length) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[(int) length]);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Answers a ranged GET request with the bytes of the range.
+     */
+    private class RangeAnswer implements Answer<S3Object> {
+        @Override
+        public S3Object answer(InvocationOnMock invocation) {
+            GetObjectRequest request = (GetObjectRequest) invocation.getArguments()[0];
+            long[] range = request.getRange();
+            byte[] bytes = Arrays.copyOfRange(data, (int) range[0], (int) range[1] + 1);
+            S3Object object = new S3Object();
+            object.setBucketName(BUCKET);
+            object.setKey(KEY);
+            object.setObjectContent(new S3ObjectInputStream(new ByteArrayInputStream(bytes)));
+            return object;
+        }
+    }
+}
@@ -0,0 +1,505 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transferutility;
+
+import static com.amazonaws.mobileconnectors.s3.transferutility.TransferUtility.MINIMUM_DOWNLOAD_PART_SIZE;
+import static com.amazonaws.mobileconnectors.s3.transferutility.TransferUtility.MULTIPART_DOWNLOAD_THRESHOLD;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.ContentValues;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.mobileconnectors.s3.transferutility.TransferService.NetworkInfoReceiver;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class DownloadTaskTest {
+
+    private static final int ID = 1;
+    private static final String BUCKET = "bucket";
+    private static final String KEY = "key";
+    private static final String ETAG = "etag";
+
+    /*
+     * A large object is split into the first part, which has the size of the
+     * threshold, and two more parts.
+     */
+    private static final long LARGE_OBJECT_SIZE = MULTIPART_DOWNLOAD_THRESHOLD
+            + MINIMUM_DOWNLOAD_PART_SIZE + 10;
+
+    private AmazonS3 s3;
+    private TransferDBUtil dbUtil;
+    private TransferStatusUpdater updater;
+    private NetworkInfoReceiver networkInfo;
+    private File file;
+    private TransferRecord download;
+
+    @Before
+    public void setUp() throws IOException {
+        s3 = mock(AmazonS3.class);
+        dbUtil = mock(TransferDBUtil.class);
+        updater = mock(TransferStatusUpdater.class);
+        networkInfo = mock(NetworkInfoReceiver.class);
+        when(networkInfo.isNetworkConnected()).thenReturn(true);
+        when(dbUtil.bulkInsertPartRecords(eq(ID), any(ContentValues[].class))).thenReturn(ID);
+
+        file = File.createTempFile("DownloadTaskTest", ".tmp");
+        file.delete();
+        download = new TransferRecord(ID);
+        download.type = TransferType.DOWNLOAD;
+        download.bucketName = BUCKET;
+        download.key = KEY;
+        download.file = file.getAbsolutePath();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testSmallObjectIsDownloadedWithOneRequest() throws Exception {
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(new RangeAnswer(100));
+
+        assertTrue(newDownloadTask().call());
+
+        ArgumentCaptor<GetObjectRequest> captor = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(s3).getObject(captor.capture());
+        assertArrayEquals(new long[] {
+                0, MULTIPART_DOWNLOAD_THRESHOLD - 1
+        }, captor.getValue().getRange());
+        verify(s3, never()).getObjectMetadata(any(GetObjectMetadataRequest.class));
+        verify(dbUtil, never()).bulkInsertPartRecords(anyInt(), any(ContentValues[].class));
+        verify(updater).updateState(ID, TransferState.COMPLETED);
+        assertFileContent(100);
+    }
+
+    @Test
+    public void testEmptyObjectFallsBackToRequestWithoutRange() throws Exception {
+        final AmazonServiceException invalidRange = new AmazonServiceException("InvalidRange");
+        invalidRange.setStatusCode(416);
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(new RangeAnswer(0) {
+            @Override
+            public S3Object answer(InvocationOnMock invocation) {
+                GetObjectRequest request = (GetObjectRequest) invocation.getArguments()[0];
+                if (request.getRange() != null) {
+                    throw invalidRange;
+                }
+                return super.answer(invocation);
+            }
+        });
+
+        assertTrue(newDownloadTask().call());
+
+        verify(s3, times(2)).getObject(any(GetObjectRequest.class));
+        verify(updater).updateState(ID, TransferState.COMPLETED);
+        assertEquals(0, file.length());
+    }
+
+    @Test
+    public void testLargeObjectIsDownloadedInParts() throws Exception {
+        RangeAnswer answer = new RangeAnswer(LARGE_OBJECT_SIZE);
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(answer);
+        stubRemainingParts(true, true);
+
+        assertTrue(newDownloadTask().call());
+
+        verify(s3, never()).getObjectMetadata(any(GetObjectMetadataRequest.class));
+        verify(dbUtil).generateContentValuesForMultiPartDownload(BUCKET, KEY, file, 1, 0,
+                MULTIPART_DOWNLOAD_THRESHOLD - 1, TransferState.PART_COMPLETED);
+        verify(dbUtil).generateContentValuesForMultiPartDownload(BUCKET, KEY, file, 2,
+                MULTIPART_DOWNLOAD_THRESHOLD,
+                MULTIPART_DOWNLOAD_THRESHOLD + MINIMUM_DOWNLOAD_PART_SIZE - 1,
+                TransferState.WAITING);
+        verify(dbUtil).generateContentValuesForMultiPartDownload(BUCKET, KEY, file, 3,
+                MULTIPART_DOWNLOAD_THRESHOLD + MINIMUM_DOWNLOAD_PART_SIZE,
+                LARGE_OBJECT_SIZE - 1, TransferState.WAITING);
+        verify(dbUtil).updateMultipartDownload(ID, LARGE_OBJECT_SIZE, ETAG);
+        verify(dbUtil).updateState(2, TransferState.PART_COMPLETED);
+        verify(dbUtil).updateState(3, TransferState.PART_COMPLETED);
+        verify(updater).updateState(ID, TransferState.COMPLETED);
+        assertEquals(1, download.isMultipart);
+        assertFileContent(LARGE_OBJECT_SIZE);
+
+        // the parts after the first one fail rather than mix object versions
+        List<GetObjectRequest> requests = answer.getRequests();
+        assertEquals(3, requests.size());
+        for (GetObjectRequest request : requests.subList(1, 3)) {
+            assertEquals(Collections.singletonList(ETAG), request.getMatchingETagConstraints());
+        }
+    }
+
+    @Test
+    public void testFailedPartFailsTheDownload() throws Exception {
+        final AmazonServiceException error = new AmazonServiceException("part failed");
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(
+                new RangeAnswer(LARGE_OBJECT_SIZE) {
+                    @Override
+                    public S3Object answer(InvocationOnMock invocation) {
+                        GetObjectRequest request = (GetObjectRequest) invocation
+                                .getArguments()[0];
+                        if (request.getRange()[0] == MULTIPART_DOWNLOAD_THRESHOLD) {
+                            throw error;
+                        }
+                        return super.answer(invocation);
+                    }
+                });
+        stubRemainingParts(true, true);
+
+        assertFalse(newDownloadTask().call());
+
+        verify(dbUtil).updateState(2, TransferState.FAILED);
+        verify(updater).throwError(ID, error);
+        verify(updater).updateState(ID, TransferState.FAILED);
+        verify(updater, never()).updateState(ID, TransferState.COMPLETED);
+    }
+
+    @Test
+    public void testObjectChangedDuringDownloadFailsTheDownload() throws Exception {
+        // getObject returns null when the ETag constraint isn't met
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(
+                new RangeAnswer(LARGE_OBJECT_SIZE) {
+                    @Override
+                    public S3Object answer(InvocationOnMock invocation) {
+                        GetObjectRequest request = (GetObjectRequest) invocation
+                                .getArguments()[0];
+                        if (request.getMatchingETagConstraints() != null
+                                && !request.getMatchingETagConstraints().isEmpty()) {
+                            return null;
+                        }
+                        return super.answer(invocation);
+                    }
+                });
+        stubRemainingParts(true, true);
+
+        assertFalse(newDownloadTask().call());
+
+        ArgumentCaptor<Exception> captor = ArgumentCaptor.forClass(Exception.class);
+        verify(updater).throwError(eq(ID), captor.capture());
+        assertTrue(captor.getValue() instanceof AmazonClientException);
+        assertTrue(captor.getValue().getMessage().contains("changed"));
+        verify(updater).updateState(ID, TransferState.FAILED);
+    }
+
+    @Test
+    public void testPartsNotRecordedFailsTheDownload() throws Exception {
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(
+                new RangeAnswer(LARGE_OBJECT_SIZE));
+        when(dbUtil.bulkInsertPartRecords(eq(ID), any(ContentValues[].class))).thenReturn(0);
+
+        assertFalse(newDownloadTask().call());
+
+        verify(s3, times(1)).getObject(any(GetObjectRequest.class));
+        verify(dbUtil, never()).updateMultipartDownload(anyInt(), anyLong(), anyString());
+        verify(updater).updateState(ID, TransferState.FAILED);
+        assertEquals(0, download.isMultipart);
+        // a resumed download continues after the first part like a single one
+        assertEquals(MULTIPART_DOWNLOAD_THRESHOLD, file.length());
+    }
+
+    @Test
+    public void testResumeFetchesOnlyMissingParts() throws Exception {
+        RangeAnswer answer = new RangeAnswer(LARGE_OBJECT_SIZE);
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(answer);
+        download.isMultipart = 1;
+        download.bytesTotal = LARGE_OBJECT_SIZE;
+        download.eTag = ETAG;
+        // the first two parts were written before the download was paused
+        writeFile(LARGE_OBJECT_SIZE, 0, MULTIPART_DOWNLOAD_THRESHOLD + MINIMUM_DOWNLOAD_PART_SIZE);
+        stubRemainingParts(false, true);
+
+        assertTrue(newDownloadTask().call());
+
+        List<GetObjectRequest> requests = answer.getRequests();
+        assertEquals(1, requests.size());
+        assertArrayEquals(new long[] {
+                MULTIPART_DOWNLOAD_THRESHOLD + MINIMUM_DOWNLOAD_PART_SIZE,
+                LARGE_OBJECT_SIZE - 1
+        }, requests.get(0).getRange());
+        verify(dbUtil, never()).updatePartStates(anyInt(), any(TransferState.class));
+        verify(updater).updateState(ID, TransferState.COMPLETED);
+        assertFileContent(LARGE_OBJECT_SIZE);
+    }
+
+    @Test
+    public void testResumeWithoutFileFetchesAllParts() throws Exception {
+        RangeAnswer answer = new RangeAnswer(LARGE_OBJECT_SIZE);
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(answer);
+        download.isMultipart = 1;
+        download.bytesTotal = LARGE_OBJECT_SIZE;
+        download.eTag = ETAG;
+        when(dbUtil.queryBytesTransferredByMainUploadId(ID)).thenReturn(0L);
+        when(dbUtil.getNonCompletedDownloadPartsFromDB(ID)).thenReturn(Arrays.asList(
+                newPart(1, 0, MULTIPART_DOWNLOAD_THRESHOLD - 1),
+                newPart(2, MULTIPART_DOWNLOAD_THRESHOLD,
+                        MULTIPART_DOWNLOAD_THRESHOLD + MINIMUM_DOWNLOAD_PART_SIZE - 1),
+                newPart(3, MULTIPART_DOWNLOAD_THRESHOLD + MINIMUM_DOWNLOAD_PART_SIZE,
+                        LARGE_OBJECT_SIZE - 1)));
+
+        assertTrue(newDownloadTask().call());
+
+        verify(dbUtil).updatePartStates(ID, TransferState.WAITING);
+        assertEquals(3, answer.getRequests().size());
+        assertFileContent(LARGE_OBJECT_SIZE);
+    }
+
+    @Test
+    public void testCancelInterruptsRunningParts() throws Exception {
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch interrupted = new CountDownLatch(2);
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(
+                new RangeAnswer(LARGE_OBJECT_SIZE) {
+                    @Override
+                    public S3Object answer(InvocationOnMock invocation) {
+                        GetObjectRequest request = (GetObjectRequest) invocation
+                                .getArguments()[0];
+                        if (request.getRange()[0] == 0) {
+                            return super.answer(invocation);
+                        }
+                        started.countDown();
+                        try {
+                            new CountDownLatch(1).await();
+                        } catch (InterruptedException e) {
+                            interrupted.countDown();
+                            throw new AmazonClientException("interrupted", e);
+                        }
+                        return null;
+                    }
+                });
+        stubRemainingParts(true, true);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> future = executor.submit(newDownloadTask());
+            assertTrue(started.await(30, TimeUnit.SECONDS));
+            future.cancel(true);
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(updater, never()).updateState(ID, TransferState.COMPLETED);
+        verify(updater, never()).updateState(ID, TransferState.FAILED);
+    }
+
+    @Test
+    public void testCancelDeletesFileAndPartRecords() throws Exception {
+        writeFile(LARGE_OBJECT_SIZE, 0, 0);
+        download.isMultipart = 1;
+        download.state = TransferState.IN_PROGRESS;
+
+        assertTrue(download.cancel(s3, dbUtil, updater));
+
+        verify(updater).updateState(ID, TransferState.CANCELED);
+        verify(dbUtil).deletePartRecords(ID);
+        assertFalse(file.exists());
+    }
+
+    private DownloadTask newDownloadTask() {
+        return new DownloadTask(download, s3, dbUtil, updater, networkInfo);
+    }
+
+    /**
+     * Stubs the database with the parts after the first one, or only the last
+     * part if the second one is already completed.
+     */
+    private void stubRemainingParts(boolean includeSecondPart, boolean includeThirdPart) {
+        long secondPartStart = MULTIPART_DOWNLOAD_THRESHOLD;
+        long thirdPartStart = secondPartStart + MINIMUM_DOWNLOAD_PART_SIZE;
+        long bytesCompleted = MULTIPART_DOWNLOAD_THRESHOLD;
+        TransferRecord second = newPart(2, secondPartStart, thirdPartStart - 1);
+        TransferRecord third = newPart(3, thirdPartStart, LARGE_OBJECT_SIZE - 1);
+        List<TransferRecord> parts;
+        if (includeSecondPart) {
+            parts = Arrays.asList(second, third);
+        } else {
+            bytesCompleted += MINIMUM_DOWNLOAD_PART_SIZE;
+            parts = Collections.singletonList(third);
+        }
+        when(dbUtil.queryBytesTransferredByMainUploadId(ID)).thenReturn(bytesCompleted);
+        when(dbUtil.getNonCompletedDownloadPartsFromDB(ID)).thenReturn(parts);
+    }
+
+    private static TransferRecord newPart(int id, long rangeStart, long rangeLast) {
+        TransferRecord part = new TransferRecord(id);
+        part.mainUploadId = ID;
+        part.partNumber = id;
+        part.rangeStart = rangeStart;
+        part.rangeLast = rangeLast;
+        return part;
+    }
+
+    private static byte byteAt(long position) {
+        return (byte) (position % 251);
+    }
+
+    /**
+     * Writes a file of the given length with the content of the object in
+     * the given range and zeros elsewhere.
+     */
+    private void writeFile(long length, long rangeStart, long rangeLength) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+            byte[] bytes = new byte[(int) rangeLength];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = byteAt(rangeStart + i);
+            }
+            raf.seek(rangeStart);
+            raf.write(bytes);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void assertFileContent(long length) throws IOException {
+        assertEquals(length, file.length());
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            long position = 0;
+            int read;
+            while ((read = raf.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] != byteAt(position + i)) {
+                        throw new AssertionError("Unexpected byte at " + (position + i));
+                    }
+                }
+                position += read;
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Answers GET requests with the bytes of an object of the given length,
+     * like Amazon S3 answers ranged requests.
+     */
+    private static class RangeAnswer implements Answer<S3Object> {
+        private final long length;
+        private final List<GetObjectRequest> requests = Collections
+                .synchronizedList(new ArrayList<GetObjectRequest>());
+
+        RangeAnswer(long length) {
+            this.length = length;
+        }
+
+        List<GetObjectRequest> getRequests() {
+            return requests;
+        }
+
+        @Override
+        public S3Object answer(InvocationOnMock invocation) {
+            GetObjectRequest request = (GetObjectRequest) invocation.getArguments()[0];
+            requests.add(request);
+            long first = 0;
+            long last = length - 1;
+            long[] range = request.getRange();
+            if (range != null) {
+                first = range[0];
+                if (range[1] >= 0) {
+                    last = Math.min(range[1], length - 1);
+                }
+            }
+            S3Object object = new S3Object();
+            object.setBucketName(BUCKET);
+            object.setKey(KEY);
+            object.getObjectMetadata().setHeader("ETag", ETAG);
+            object.getObjectMetadata().setContentLength(last - first + 1);
+            if (range != null) {
+                object.getObjectMetadata().setHeader("Content-Range",
+                        "bytes " + first + "-" + last + "/" + length);
+            }
+            object.setObjectContent(new ObjectRangeInputStream(first, last + 1));
+            return object;
+        }
+    }
+
+    /**
+     * Generates the content of the object between two positions.
+     */
+    private static class ObjectRangeInputStream extends InputStream {
+        private long position;
+        private final long end;
+
+        ObjectRangeInputStream(long start, long end) {
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() {
+            if (position >= end) {
+                return -1;
+            }
+            return byteAt(position++) & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= end) {
+                return -1;
+            }
+            int count = (int) Math.min(len, end - position);
+            for (int i = 0; i < count; i++) {
+                b[off + i] = byteAt(position++);
+            }
+            return count;
+        }
+    }
+}
@@ -16,14 +16,20 @@
 package com.amazonaws.services.s3;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.Request;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.auth.Signer;
+import com.amazonaws.http.HttpClient;
 import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.http.HttpRequest;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.internal.StaticCredentialsProvider;
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.internal.AWSS3V4Signer;
@@ -31,11 +37,21 @@ import com.amazonaws.services.s3.internal.Constants;
 import com.amazonaws.services.s3.model.DeleteBucketRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
 
 public class Amazons3ClientTest {
     private AmazonS3Client s3;
@@ -154,4 +170,88 @@ public class Amazons3ClientTest {
         String regionName = authorization.split("/")[2];
         assertEquals(region.getName(), regionName);
     }
+
+    @Test
+    public void testPutObjectFromFileWithSigV4() throws IOException {
+        byte[] content = newContent(100000);
+        FakeHttpClient httpClient = new FakeHttpClient(content);
+        AmazonS3Client client = new AmazonS3Client(new StaticCredentialsProvider(creds),
+                new ClientConfiguration(), httpClient);
+        client.setRegion(Region.getRegion(Regions.US_WEST_2));
+
+        PutObjectResult result = client.putObject(new PutObjectRequest("bucket", "key",
+                newFile(content)));
+
+        // The MD5 is calculated while uploading instead of up front.
+        assertFalse(httpClient.headers.containsKey("Content-MD5"));
+        assertEquals(String.valueOf(content.length),
+                httpClient.headers.get("x-amz-decoded-content-length"));
+        assertEquals(Md5Utils.md5AsBase64(content), result.getContentMd5());
+    }
+
+    @Test
+    public void testPutObjectFromFileWithSigV2() throws IOException {
+        byte[] content = newContent(100000);
+        FakeHttpClient httpClient = new FakeHttpClient(content);
+        AmazonS3Client client = new AmazonS3Client(new StaticCredentialsProvider(creds),
+                new ClientConfiguration(), httpClient);
+
+        PutObjectResult result = client.putObject(new PutObjectRequest("bucket", "key",
+                newFile(content)));
+
+        assertEquals(Md5Utils.md5AsBase64(content), httpClient.headers.get("Content-MD5"));
+        assertEquals(Md5Utils.md5AsBase64(content), result.getContentMd5());
+    }
+
+    private static byte[] newContent(int length) {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return content;
+    }
+
+    private static File newFile(byte[] content) throws IOException {
+        File file = File.createTempFile("Amazons3ClientTest-", ".bin");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Consumes the request content and answers with the ETag of the expected
+     * content.
+     */
+    private static class FakeHttpClient implements HttpClient {
+        private final byte[] expectedContent;
+        final Map<String, String> headers = new HashMap<String, String>();
+
+        FakeHttpClient(byte[] expectedContent) {
+            this.expectedContent = expectedContent;
+        }
+
+        @Override
+        public HttpResponse execute(HttpRequest request) throws IOException {
+            headers.putAll(request.getHeaders());
+            InputStream in = request.getContent();
+            byte[] buffer = new byte[4096];
+            while (in.read(buffer) != -1) {
+                // Drain the content like a real client.
+            }
+            return HttpResponse.builder()
+                    .statusCode(200)
+                    .statusText("OK")
+                    .header("ETag", "\"" + BinaryUtils.toHex(
+                            Md5Utils.computeMD5Hash(expectedContent)) + "\"")
+                    .content(new ByteArrayInputStream(new byte[0]))
+                    .build();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
 }
@@ -15,14 +15,21 @@
 
 package com.amazonaws.services.s3.internal;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import com.amazonaws.DefaultRequest;
 import com.amazonaws.Request;
 import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -81,4 +88,32 @@ public class ServiceUtilsTest {
         assertEquals("quotes", ServiceUtils.removeQuotes(quotes));
     }
 
+    @Test
+    public void testDownloadObjectRangeToFile() throws IOException {
+        File file = File.createTempFile("range", ".tmp");
+        file.deleteOnExit();
+        byte[] first = "first".getBytes("UTF-8");
+        byte[] second = "second".getBytes("UTF-8");
+
+        // Write the second range before the first, as parallel parts may.
+        assertEquals(second.length,
+                ServiceUtils.downloadObjectRangeToFile(newObject(second), file, first.length));
+        assertEquals(first.length,
+                ServiceUtils.downloadObjectRangeToFile(newObject(first), file, 0));
+
+        byte[] content = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            assertEquals(content.length, in.read(content));
+        } finally {
+            in.close();
+        }
+        assertArrayEquals("firstsecond".getBytes("UTF-8"), content);
+    }
+
+    private static S3Object newObject(byte[] content) {
+        S3Object object = new S3Object();
+        object.setObjectContent(new S3ObjectInputStream(new ByteArrayInputStream(content)));
+        return object;
+    }
 }
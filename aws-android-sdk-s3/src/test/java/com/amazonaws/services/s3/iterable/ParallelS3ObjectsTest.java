@@ -0,0 +1,222 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.iterable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ParallelS3ObjectsTest {
+
+    private ExecutorService executor;
+    private FakeS3 s3;
+    private List<String> keys;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        keys = new ArrayList<String>();
+        for (char dir = 'a'; dir <= 'e'; dir++) {
+            for (int i = 0; i < 25; i++) {
+                keys.add(String.format("photos/%s/%03d.jpg", dir, i));
+            }
+        }
+        keys.add("photos/c.txt");
+        keys.add("photos/z.txt");
+        keys.add("videos/a.mp4");
+        s3 = new FakeS3(keys);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSinglePartition() throws Exception {
+        ParallelS3Objects objects = ParallelS3Objects.inBucket(s3, "my-bucket", executor)
+                .withBatchSize(10);
+        assertEquals(new ArrayList<String>(new TreeSet<String>(keys)), list(objects));
+        assertEquals(13, s3.requests.get());
+    }
+
+    @Test
+    public void testPartitionsFromDelimiter() throws Exception {
+        ParallelS3Objects objects = ParallelS3Objects.withPrefix(s3, "my-bucket", "photos/",
+                executor).withDelimiter("/").withBatchSize(10).withParallelism(3);
+
+        List<String> expected = new ArrayList<String>();
+        for (String key : new TreeSet<String>(keys)) {
+            if (key.startsWith("photos/")) {
+                expected.add(key);
+            }
+        }
+        assertEquals(expected, list(objects));
+        assertTrue(s3.maxConcurrentRequests.get() > 1);
+        assertTrue(s3.maxConcurrentRequests.get() <= 3);
+    }
+
+    @Test
+    public void testPartitionsFromSplitKeys() throws Exception {
+        ParallelS3Objects objects = ParallelS3Objects.inBucket(s3, "my-bucket", executor)
+                .withSplitKeys("photos/d/", "photos/b/010.jpg").withBatchSize(7);
+        assertEquals(new ArrayList<String>(new TreeSet<String>(keys)), list(objects));
+    }
+
+    @Test
+    public void testPrefetchIsBounded() throws Exception {
+        ParallelS3Objects objects = ParallelS3Objects.inBucket(s3, "my-bucket", executor)
+                .withBatchSize(10).withPrefetchPages(2);
+        Iterator<S3ObjectSummary> iter = objects.iterator();
+        assertTrue(iter.hasNext());
+        Thread.sleep(200);
+
+        // The page being read and the two fetched ahead of it
+        assertEquals(3, s3.requests.get());
+    }
+
+    @Test
+    public void testListingFailureIsThrown() throws Exception {
+        s3.failure = new AmazonServiceException("Access Denied");
+        ParallelS3Objects objects = ParallelS3Objects.inBucket(s3, "my-bucket", executor);
+        try {
+            objects.iterator().hasNext();
+            fail("Expected the listing failure");
+        } catch (AmazonServiceException e) {
+            assertSame(s3.failure, e);
+        }
+    }
+
+    @Test
+    public void testEmptyBucket() throws Exception {
+        FakeS3 empty = new FakeS3(new ArrayList<String>());
+        Iterator<S3ObjectSummary> iter = ParallelS3Objects
+                .inBucket(empty, "my-bucket", executor).withDelimiter("/").iterator();
+        assertFalse(iter.hasNext());
+    }
+
+    private static List<String> list(ParallelS3Objects objects) {
+        List<String> listed = new ArrayList<String>();
+        for (S3ObjectSummary summary : objects) {
+            listed.add(summary.getKey());
+        }
+        return listed;
+    }
+
+    /**
+     * Lists the given keys as Amazon S3 would, with continuation tokens made
+     * of the last key of the page.
+     */
+    private static class FakeS3 extends AmazonS3Client {
+        final TreeSet<String> keys;
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger concurrentRequests = new AtomicInteger();
+        final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+        volatile AmazonServiceException failure;
+
+        FakeS3(List<String> keys) {
+            super(new BasicAWSCredentials("access", "secret"));
+            this.keys = new TreeSet<String>(keys);
+        }
+
+        @Override
+        public ListObjectsV2Result listObjectsV2(ListObjectsV2Request request)
+                throws AmazonClientException, AmazonServiceException {
+            requests.incrementAndGet();
+            int concurrent = concurrentRequests.incrementAndGet();
+            synchronized (maxConcurrentRequests) {
+                maxConcurrentRequests.set(Math.max(maxConcurrentRequests.get(), concurrent));
+            }
+            try {
+                Thread.sleep(10);
+                if (failure != null) {
+                    throw failure;
+                }
+                return list(request);
+            } catch (InterruptedException e) {
+                throw new AmazonClientException("Interrupted", e);
+            } finally {
+                concurrentRequests.decrementAndGet();
+            }
+        }
+
+        private ListObjectsV2Result list(ListObjectsV2Request request) {
+            String prefix = request.getPrefix() == null ? "" : request.getPrefix();
+            String after = request.getContinuationToken() != null
+                    ? request.getContinuationToken() : request.getStartAfter();
+            int maxKeys = request.getMaxKeys() == null ? 1000 : request.getMaxKeys();
+
+            ListObjectsV2Result result = new ListObjectsV2Result();
+            List<String> commonPrefixes = new ArrayList<String>();
+            String last = null;
+            int count = 0;
+            for (String key : after == null ? keys : keys.tailSet(after, false)) {
+                if (!key.startsWith(prefix)) {
+                    if (key.compareTo(prefix) > 0) {
+                        break;
+                    }
+                    continue;
+                }
+                if (count == maxKeys) {
+                    result.setTruncated(true);
+                    result.setNextContinuationToken(last);
+                    break;
+                }
+                String delimiter = request.getDelimiter();
+                int index = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+                if (index >= 0) {
+                    String commonPrefix = key.substring(0, index + delimiter.length());
+                    if (commonPrefixes.contains(commonPrefix)) {
+                        continue;
+                    }
+                    commonPrefixes.add(commonPrefix);
+                    // The next page starts after all the keys of the prefix
+                    last = commonPrefix + Character.MAX_VALUE;
+                } else {
+                    S3ObjectSummary summary = new S3ObjectSummary();
+                    summary.setKey(key);
+                    result.getObjectSummaries().add(summary);
+                    last = key;
+                }
+                count++;
+            }
+            result.setCommonPrefixes(commonPrefixes);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.sqs.buffered;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tunes the batching of a queue buffer from what it observes, within the
+ * bounds of its {@link QueueBufferConfig}.
+ * <p>
+ * The outbound batch open window is the time the remaining requests of a batch
+ * are expected to take to arrive at the observed arrival rate. When a batch
+ * wouldn't fill within {@code maxBatchOpenMs}, the window drops to the
+ * minimum, so that light traffic isn't delayed for little gain.
+ * <p>
+ * The number of concurrent receive batches follows Little's law: the observed
+ * rate of requested messages times the receive latency, divided by the
+ * messages returned per receive, plus one batch of headroom. It drops to the
+ * minimum while receives mostly come back empty.
+ * <p>
+ * Arrivals are counted with atomic counters; the estimates are updated when a
+ * batch starts or a receive completes. Instances are thread-safe.
+ */
+class AdaptiveQueueBufferTuner {
+    private static Log log = LogFactory.getLog(AdaptiveQueueBufferTuner.class);
+
+    /** Weight of a new sample in the moving averages */
+    private static final double SMOOTHING = 0.3;
+
+    /** Rates are not sampled over shorter periods, they would be too noisy */
+    private static final long MIN_SAMPLE_NANOS = 10 * 1000 * 1000L;
+
+    /** Relative change below which the window is left alone */
+    private static final double WINDOW_HYSTERESIS = 0.2;
+
+    private static final double NANOS_PER_MS = 1000000.0;
+
+    private final String qUrl;
+    private final QueueBufferConfig config;
+
+    private final AtomicLong outboundArrivals = new AtomicLong();
+    private final AtomicLong requestedMessages = new AtomicLong();
+
+    // guarded by this
+    private long outboundSampleNanos;
+    private long outboundSampleArrivals;
+    private double outboundRatePerMs = -1;
+    private long receiveSampleNanos;
+    private long receiveSampleRequested;
+    private double demandRatePerMs = -1;
+    private double receiveLatencyMs = -1;
+    private double messagesPerReceive = -1;
+
+    private volatile long batchOpenMs;
+    private volatile int inflightReceiveBatches;
+
+    AdaptiveQueueBufferTuner(String qUrl, QueueBufferConfig config) {
+        this.qUrl = qUrl;
+        this.config = config;
+        this.batchOpenMs = minBatchOpenMs();
+        this.inflightReceiveBatches = minInflightReceiveBatches();
+    }
+
+    private long minBatchOpenMs() {
+        return Math.min(config.getMinBatchOpenMs(), config.getMaxBatchOpenMs());
+    }
+
+    private int maxInflightReceiveBatches() {
+        return Math.max(1, config.getMaxInflightReceiveBatches());
+    }
+
+    private int minInflightReceiveBatches() {
+        return Math.max(1, Math.min(config.getMinInflightReceiveBatches(),
+                maxInflightReceiveBatches()));
+    }
+
+    /**
+     * Counts an outbound request.
+     */
+    void outboundRequestArrived() {
+        outboundArrivals.incrementAndGet();
+    }
+
+    /**
+     * Counts messages requested by a receive call.
+     */
+    void messagesRequested(int count) {
+        requestedMessages.addAndGet(count);
+    }
+
+    /**
+     * @return the current number of receive batches to keep in flight
+     */
+    int getInflightReceiveBatches() {
+        return inflightReceiveBatches;
+    }
+
+    /**
+     * @return the current outbound batch open window in milliseconds
+     */
+    long getBatchOpenMs() {
+        return batchOpenMs;
+    }
+
+    /**
+     * Updates and returns the window for a batch that is about to wait for
+     * requests.
+     *
+     * @return the batch open window in milliseconds
+     */
+    synchronized long nextBatchOpenMs() {
+        long now = nanoTime();
+        long arrivals = outboundArrivals.get();
+        if (outboundSampleNanos == 0) {
+            outboundSampleNanos = now;
+            outboundSampleArrivals = arrivals;
+        } else if (now - outboundSampleNanos >= MIN_SAMPLE_NANOS) {
+            double rate = (arrivals - outboundSampleArrivals)
+                    / ((now - outboundSampleNanos) / NANOS_PER_MS);
+            outboundRatePerMs = smooth(outboundRatePerMs, rate);
+            outboundSampleNanos = now;
+            outboundSampleArrivals = arrivals;
+        }
+
+        long min = minBatchOpenMs();
+        long max = config.getMaxBatchOpenMs();
+        long target;
+        String reason;
+        if (outboundRatePerMs < 0) {
+            return batchOpenMs;
+        }
+        double fillMs = outboundRatePerMs == 0 ? Double.MAX_VALUE
+                : (config.getMaxBatchSize() - 1) / outboundRatePerMs;
+        if (fillMs > max) {
+            target = min;
+            reason = String.format(Locale.US,
+                    "a batch wouldn't fill within %d ms at %.2f requests/s",
+                    max, outboundRatePerMs * 1000);
+        } else {
+            target = Math.max(min, (long) Math.ceil(fillMs));
+            reason = String.format(Locale.US, "time to fill a batch at %.2f requests/s",
+                    outboundRatePerMs * 1000);
+        }
+
+        long previous = batchOpenMs;
+        boolean atBound = target == min || target == max;
+        if (target != previous
+                && (atBound || Math.abs(target - previous) > previous * WINDOW_HYSTERESIS)) {
+            batchOpenMs = target;
+            if (log.isDebugEnabled()) {
+                log.debug("Queue " + qUrl + " batch open window " + previous + " -> " + target
+                        + " ms: " + reason);
+            }
+            QueueBufferTuningListener listener = config.getTuningListener();
+            if (listener != null) {
+                listener.batchOpenWindowChanged(qUrl, previous, target, reason);
+            }
+        }
+        return batchOpenMs;
+    }
+
+    /**
+     * Records a completed receive and updates the number of receive batches
+     * to keep in flight.
+     *
+     * @param latencyNanos duration of the receive call
+     * @param messageCount messages returned, 0 if the call failed
+     */
+    synchronized void receiveCompleted(long latencyNanos, int messageCount) {
+        long now = nanoTime();
+        receiveLatencyMs = smooth(receiveLatencyMs, latencyNanos / NANOS_PER_MS);
+        messagesPerReceive = smooth(messagesPerReceive, messageCount);
+        long requested = requestedMessages.get();
+        if (receiveSampleNanos == 0) {
+            receiveSampleNanos = now;
+            receiveSampleRequested = requested;
+            return;
+        } else if (now - receiveSampleNanos >= MIN_SAMPLE_NANOS) {
+            double rate = (requested - receiveSampleRequested)
+                    / ((now - receiveSampleNanos) / NANOS_PER_MS);
+            demandRatePerMs = smooth(demandRatePerMs, rate);
+            receiveSampleNanos = now;
+            receiveSampleRequested = requested;
+        }
+        if (demandRatePerMs < 0) {
+            return;
+        }
+
+        int min = minInflightReceiveBatches();
+        int max = maxInflightReceiveBatches();
+        int target;
+        String reason;
+        if (messagesPerReceive < 1) {
+            target = min;
+            reason = String.format(Locale.US, "receives return %.2f messages on average",
+                    messagesPerReceive);
+        } else {
+            double needed = demandRatePerMs * receiveLatencyMs / messagesPerReceive;
+            target = (int) Math.max(min, Math.min(max, Math.ceil(needed) + 1));
+            reason = String.format(Locale.US,
+                    "%.2f messages/s requested, receive latency %.0f ms, "
+                    + "%.2f messages per receive", demandRatePerMs * 1000, receiveLatencyMs,
+                    messagesPerReceive);
+        }
+
+        int previous = inflightReceiveBatches;
+        if (target != previous) {
+            inflightReceiveBatches = target;
+            if (log.isDebugEnabled()) {
+                log.debug("Queue " + qUrl + " inflight receive batches " + previous + " -> "
+                        + target + ": " + reason);
+            }
+            QueueBufferTuningListener listener = config.getTuningListener();
+            if (listener != null) {
+                listener.inflightReceiveBatchesChanged(qUrl, previous, target, reason);
+            }
+        }
+    }
+
+    /**
+     * @return the current time in nanoseconds, overridden by tests
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private static double smooth(double average, double sample) {
+        return average < 0 ? sample : average + SMOOTHING * (sample - average);
+    }
+}
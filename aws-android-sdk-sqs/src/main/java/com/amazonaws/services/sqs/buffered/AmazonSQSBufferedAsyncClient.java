@@ -57,6 +57,8 @@ import com.amazonaws.util.VersionInfoUtils;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
 /**
@@ -81,6 +83,15 @@ import java.util.concurrent.Future;
  * the buffer is empty will the calling thread have to wait for the messages to
  * be fetched. The size of the buffer and the maximum number of threads used for
  * prefetching are configurable. <br>
+ * Outbound batches are sent by a bounded executor shared by all buffered
+ * clients unless one is passed to the constructor. Open batches wait on a
+ * shared timer without holding a thread. Long polls run on an executor of the
+ * client with {@link QueueBufferConfig#getMaxConcurrentLongPolls()} threads,
+ * so that they leave connections of the wrapped client to sends and deletes.
+ * <br>
+ * In adaptive mode (see {@link QueueBufferConfig#setAdaptive(boolean)}) the
+ * batch open window and the number of prefetching threads are tuned from the
+ * observed load, within the bounds of the config. <br>
  * AmazonSQSBufferedAsyncClient is thread-safe.<br>
  */
 public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
@@ -91,17 +102,39 @@ public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
     private final CachingMap buffers = new CachingMap(16, (float) 0.75, true);
     private final AmazonSQSAsync realSQS;
     private final QueueBufferConfig bufferConfigExemplar;
+    private final Executor executor;
+    private final ExecutorService longPollExecutor;
 
     public AmazonSQSBufferedAsyncClient(AmazonSQSAsync paramRealSQS) {
         this(paramRealSQS, new QueueBufferConfig());
     }
 
+    public AmazonSQSBufferedAsyncClient(AmazonSQSAsync paramRealSQS, QueueBufferConfig config) {
+        this(paramRealSQS, config, QueueBuffer.executor);
+    }
+
+    /**
+     * Constructs a buffered client whose outbound batches are sent by the
+     * given executor instead of the bounded executor shared by all buffered
+     * clients. Receives don't use the executor. The executor is not shut
+     * down by {@link #shutdown()}.
+     *
+     * @param paramRealSQS the client making the calls to SQS
+     * @param config the buffer configuration of each queue
+     * @param executor the executor sending the outbound batches
+     */
     // route all future constructors to the most general one, because validation
     // happens here
-    public AmazonSQSBufferedAsyncClient(AmazonSQSAsync paramRealSQS, QueueBufferConfig config) {
+    public AmazonSQSBufferedAsyncClient(AmazonSQSAsync paramRealSQS, QueueBufferConfig config,
+            Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor can't be null");
+        }
         config.validate();
         realSQS = paramRealSQS;
         bufferConfigExemplar = config;
+        this.executor = executor;
+        longPollExecutor = QueueBuffer.newLongPollExecutor(config.getMaxConcurrentLongPolls());
     }
 
     /*
@@ -186,6 +219,7 @@ public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
         for (QueueBuffer buffer : buffers.values()) {
             buffer.shutdown();
         }
+        longPollExecutor.shutdown();
         realSQS.shutdown();
     }
 
@@ -408,7 +442,7 @@ public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
         QueueBuffer toReturn = buffers.get(qUrl);
         if (null == toReturn) {
             QueueBufferConfig config = new QueueBufferConfig(bufferConfigExemplar);
-            toReturn = new QueueBuffer(config, qUrl, realSQS);
+            toReturn = new QueueBuffer(config, qUrl, realSQS, executor, longPollExecutor);
             buffers.put(qUrl, toReturn);
         }
         return toReturn;
@@ -26,10 +26,15 @@ import com.amazonaws.services.sqs.model.SendMessageRequest;
 import com.amazonaws.services.sqs.model.SendMessageResult;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -44,7 +49,10 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <p>
  * When the buffer is not used, all internal processing associated with the
  * buffer stops when any outstanding request to SQS completes. In that idle
- * state, the buffer uses neither connections nor threads.
+ * state, the buffer uses neither connections nor threads. Open batches and
+ * long-poll receives don't hold a thread of the executor either: batches are
+ * closed by a shared timer, and long polls run on a separate executor whose
+ * size caps the connections they hold.
  * <p>
  * Instances of {@code QueueBuffer} are thread-safe.
  */
@@ -57,19 +65,88 @@ class QueueBuffer {
     QueueBufferConfig config;
 
     /**
-     * This executor that will be shared among all queue buffers. Since a single
-     * JVM can access hundreds of queues, it won't do to have hundreds of
-     * executors spinning up hundreds of threads for each queue. The
-     * DaemonThreadFactory creates daemon threads, which means they won't block
-     * the JVM from exiting if only they are still around.
+     * Maximum number of threads of the default executor. Outbound batches are
+     * queued once that many are being sent.
      */
-    static ExecutorService executor = Executors.newCachedThreadPool(new DaemonThreadFactory());;
+    static final int DEFAULT_MAX_THREADS = Math.max(8,
+            2 * Runtime.getRuntime().availableProcessors());
+
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * This executor that will be shared among all queue buffers that are not
+     * given one. Since a single JVM can access hundreds of queues, it won't do
+     * to have hundreds of executors spinning up hundreds of threads for each
+     * queue, so it is bounded to {@link #DEFAULT_MAX_THREADS} threads that
+     * time out when idle. The DaemonThreadFactory creates daemon threads,
+     * which means they won't block the JVM from exiting if only they are still
+     * around.
+     */
+    static final ExecutorService executor = newDefaultExecutor();
+
+    /**
+     * The timer closing the open batches of all queue buffers. Its single
+     * thread only hands batches over to an executor.
+     */
+    private static ScheduledExecutorService timer;
 
     QueueBuffer(QueueBufferConfig paramConfig, String url, AmazonSQSAsync sqs) {
+        this(paramConfig, url, sqs, executor, null);
+    }
+
+    /**
+     * @param paramExecutor executor sending the outbound batches. Receives
+     *            don't take threads from it.
+     * @param longPollExecutor executor making the long poll receive calls,
+     *            see {@link #newLongPollExecutor(int)}, or null to make them
+     *            with the asynchronous calls of {@code sqs}
+     */
+    QueueBuffer(QueueBufferConfig paramConfig, String url, AmazonSQSAsync sqs,
+            Executor paramExecutor, Executor longPollExecutor) {
         realSqs = sqs;
         config = paramConfig;
-        sendBuffer = new SendQueueBuffer(sqs, executor, paramConfig, url);
-        receiveBuffer = new ReceiveQueueBuffer(sqs, executor, paramConfig, url);
+        AdaptiveQueueBufferTuner tuner = paramConfig.isAdaptive()
+                ? new AdaptiveQueueBufferTuner(url, paramConfig)
+                : null;
+        sendBuffer = new SendQueueBuffer(sqs, paramExecutor, getTimer(), paramConfig, url, tuner);
+        receiveBuffer = new ReceiveQueueBuffer(sqs, paramConfig, url, tuner, longPollExecutor);
+    }
+
+    private static ExecutorService newDefaultExecutor() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(DEFAULT_MAX_THREADS,
+                DEFAULT_MAX_THREADS, THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new DaemonThreadFactory("SQSQueueBufferWorkerThread-"));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Creates an executor for the long poll receive calls of the queue
+     * buffers of one client. Each long poll holds a thread and a connection
+     * for up to its wait time, so the number of threads caps the connections
+     * taken by long polls; further receive batches wait in the queue.
+     *
+     * @param maxConcurrentLongPolls the number of threads
+     */
+    static ExecutorService newLongPollExecutor(int maxConcurrentLongPolls) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrentLongPolls,
+                maxConcurrentLongPolls, THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new DaemonThreadFactory("SQSQueueBufferLongPollThread-"));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * @return the timer shared by all queue buffers
+     */
+    static synchronized ScheduledExecutorService getTimer() {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(
+                    new DaemonThreadFactory("SQSQueueBufferTimerThread-"));
+        }
+        return timer;
     }
 
     /**
@@ -258,12 +335,18 @@ class QueueBuffer {
     private static class DaemonThreadFactory implements ThreadFactory {
         static AtomicInteger threadCount = new AtomicInteger(0);
 
+        private final String namePrefix;
+
+        DaemonThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
         @Override
         public Thread newThread(Runnable r) {
             int threadNumber = threadCount.addAndGet(1);
             Thread thread = new Thread(r);
             thread.setDaemon(true);
-            thread.setName("SQSQueueBufferWorkerThread-" + threadNumber);
+            thread.setName(namePrefix + threadNumber);
             return thread;
         }
 
@@ -117,6 +117,51 @@ public class QueueBufferConfig {
 
     public static final int LONGPOLL_WAIT_TIMEOUT_SECONDS_DEFAULT = 20;
 
+    /**
+     * Whether the buffer tunes the batch open window and the number of
+     * inflight receive batches from the observed load, between the minimum
+     * and maximum values of this config.
+     */
+    private boolean adaptive;
+
+    /** false */
+    public static final boolean ADAPTIVE_DEFAULT = false;
+
+    /**
+     * The minimum time (milliseconds) a send batch is held open in adaptive
+     * mode.
+     */
+    private long minBatchOpenMs;
+
+    /** 0 milliseconds */
+    public static final long MIN_BATCH_OPEN_MS_DEFAULT = 0;
+
+    /**
+     * The minimum number of concurrent receive message batches in adaptive
+     * mode.
+     */
+    private int minInflightReceiveBatches;
+
+    /** 1 batch */
+    public static final int MIN_INFLIGHT_RECEIVE_BATCHES_DEFAULT = 1;
+
+    /**
+     * Notified of the changes made in adaptive mode. May be null.
+     */
+    private QueueBufferTuningListener tuningListener;
+
+    /**
+     * The maximum number of long poll receive calls a buffered client makes
+     * at the same time, across all its queues.
+     */
+    private int maxConcurrentLongPolls;
+
+    /**
+     * 5 calls, half of the default maximum connections of a client, so that
+     * long polls can't take all the connections sends and deletes need.
+     */
+    public static final int MAX_CONCURRENT_LONG_POLLS_DEFAULT = 5;
+
     public QueueBufferConfig(long maxBatchOpenMs,
             int maxInflightOutboundBatches,
             int maxInflightReceiveBatches,
@@ -136,6 +181,10 @@ public class QueueBufferConfig {
         this.visibilityTimeoutSeconds = visibilityTimeout;
         this.longPollWaitTimeoutSeconds = longPollTimeout;
         this.maxBatchSize = maxBatch;
+        this.adaptive = ADAPTIVE_DEFAULT;
+        this.minBatchOpenMs = MIN_BATCH_OPEN_MS_DEFAULT;
+        this.minInflightReceiveBatches = MIN_INFLIGHT_RECEIVE_BATCHES_DEFAULT;
+        this.maxConcurrentLongPolls = MAX_CONCURRENT_LONG_POLLS_DEFAULT;
     }
 
     public QueueBufferConfig() {
@@ -161,6 +210,11 @@ public class QueueBufferConfig {
         maxInflightOutboundBatches = other.maxInflightOutboundBatches;
         maxInflightReceiveBatches = other.maxInflightReceiveBatches;
         visibilityTimeoutSeconds = other.visibilityTimeoutSeconds;
+        adaptive = other.adaptive;
+        minBatchOpenMs = other.minBatchOpenMs;
+        minInflightReceiveBatches = other.minInflightReceiveBatches;
+        tuningListener = other.tuningListener;
+        maxConcurrentLongPolls = other.maxConcurrentLongPolls;
     }
 
     @Override
@@ -173,7 +227,10 @@ public class QueueBufferConfig {
                 + maxDoneReceiveBatches + ", maxBatchSizeBytes="
                 + maxBatchSizeBytes + ", visibilityTimeoutSeconds="
                 + visibilityTimeoutSeconds + ", longPollWaitTimeoutSeconds="
-                + longPollWaitTimeoutSeconds + "]";
+                + longPollWaitTimeoutSeconds + ", adaptive=" + adaptive
+                + ", minBatchOpenMs=" + minBatchOpenMs + ", minInflightReceiveBatches="
+                + minInflightReceiveBatches + ", maxConcurrentLongPolls="
+                + maxConcurrentLongPolls + "]";
     }
 
     /**
@@ -427,6 +484,116 @@ public class QueueBufferConfig {
         return this;
     }
 
+    /**
+     * @return true if the buffer tunes the batch open window and the number of
+     *         inflight receive batches from the observed load.
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * Specify "true" for the buffer to tune the batch open window between
+     * minBatchOpenMs and maxBatchOpenMs, and the number of inflight receive
+     * batches between minInflightReceiveBatches and maxInflightReceiveBatches,
+     * from the observed arrival rate of requests and the latency of SQS. The
+     * changes are reported to the tuning listener, if any.
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public QueueBufferConfig withAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+        return this;
+    }
+
+    /**
+     * The minimum time (milliseconds) a send batch is held open in adaptive
+     * mode.
+     */
+    public long getMinBatchOpenMs() {
+        return minBatchOpenMs;
+    }
+
+    /**
+     * The minimum time (milliseconds) a send batch is held open in adaptive
+     * mode.
+     */
+    public void setMinBatchOpenMs(long minBatchOpenMs) {
+        this.minBatchOpenMs = minBatchOpenMs;
+    }
+
+    public QueueBufferConfig withMinBatchOpenMs(long minBatchOpenMs) {
+        this.minBatchOpenMs = minBatchOpenMs;
+        return this;
+    }
+
+    /**
+     * The minimum number of concurrent receive message batches in adaptive
+     * mode.
+     */
+    public int getMinInflightReceiveBatches() {
+        return minInflightReceiveBatches;
+    }
+
+    /**
+     * The minimum number of concurrent receive message batches in adaptive
+     * mode.
+     */
+    public void setMinInflightReceiveBatches(int minInflightReceiveBatches) {
+        this.minInflightReceiveBatches = minInflightReceiveBatches;
+    }
+
+    public QueueBufferConfig withMinInflightReceiveBatches(int minInflightReceiveBatches) {
+        this.minInflightReceiveBatches = minInflightReceiveBatches;
+        return this;
+    }
+
+    /**
+     * The listener notified of the changes made in adaptive mode, or null.
+     */
+    public QueueBufferTuningListener getTuningListener() {
+        return tuningListener;
+    }
+
+    /**
+     * The listener notified of the changes made in adaptive mode, or null.
+     */
+    public void setTuningListener(QueueBufferTuningListener tuningListener) {
+        this.tuningListener = tuningListener;
+    }
+
+    public QueueBufferConfig withTuningListener(QueueBufferTuningListener tuningListener) {
+        this.tuningListener = tuningListener;
+        return this;
+    }
+
+    /**
+     * The maximum number of long poll receive calls a buffered client makes
+     * at the same time, across all its queues. Each long poll holds a thread
+     * and a connection of the wrapped client for up to
+     * longPollWaitTimeoutSeconds; the other receive batches wait for their
+     * turn. Keep it below the maximum connections of the wrapped client so
+     * that sends and deletes still get connections.
+     */
+    public int getMaxConcurrentLongPolls() {
+        return maxConcurrentLongPolls;
+    }
+
+    /**
+     * The maximum number of long poll receive calls a buffered client makes
+     * at the same time, across all its queues.
+     */
+    public void setMaxConcurrentLongPolls(int maxConcurrentLongPolls) {
+        this.maxConcurrentLongPolls = maxConcurrentLongPolls;
+    }
+
+    public QueueBufferConfig withMaxConcurrentLongPolls(int maxConcurrentLongPolls) {
+        this.maxConcurrentLongPolls = maxConcurrentLongPolls;
+        return this;
+    }
+
     /**
      * this method checks the config for validity. If the config is deemed to be
      * invalid, an informative exception is thrown.
@@ -438,6 +605,17 @@ public class QueueBufferConfig {
         if (visibilityTimeoutSeconds == 0) {
             throw new AmazonClientException("Visibility timeout value may not be equal to zero ");
         }
+        if (adaptive && minBatchOpenMs > maxBatchOpenMs) {
+            throw new AmazonClientException(
+                    "minBatchOpenMs may not be greater than maxBatchOpenMs");
+        }
+        if (maxConcurrentLongPolls < 1) {
+            throw new AmazonClientException("maxConcurrentLongPolls must be at least 1");
+        }
+        if (adaptive && minInflightReceiveBatches > maxInflightReceiveBatches) {
+            throw new AmazonClientException(
+                    "minInflightReceiveBatches may not be greater than maxInflightReceiveBatches");
+        }
     }
 
 }
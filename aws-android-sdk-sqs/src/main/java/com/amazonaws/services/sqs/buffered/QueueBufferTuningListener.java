@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.sqs.buffered;
+
+/**
+ * Receives the changes made by a queue buffer running in adaptive mode (see
+ * {@link QueueBufferConfig#setAdaptive(boolean)}). Methods are called on the
+ * threads of the buffer, so implementations should return quickly and must be
+ * thread-safe.
+ */
+public interface QueueBufferTuningListener {
+
+    /**
+     * Called when the time an outbound batch is held open changes.
+     *
+     * @param queueUrl url of the queue of the buffer
+     * @param previousMs previous window in milliseconds
+     * @param currentMs new window in milliseconds
+     * @param reason a human readable reason for the change
+     */
+    void batchOpenWindowChanged(String queueUrl, long previousMs, long currentMs, String reason);
+
+    /**
+     * Called when the number of receive batches fetched concurrently changes.
+     *
+     * @param queueUrl url of the queue of the buffer
+     * @param previous previous number of receive batches
+     * @param current new number of receive batches
+     * @param reason a human readable reason for the change
+     */
+    void inflightReceiveBatchesChanged(String queueUrl, int previous, int current, String reason);
+}
@@ -16,7 +16,8 @@
 package com.amazonaws.services.sqs.buffered;
 
 import com.amazonaws.AmazonClientException;
-import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sqs.AmazonSQSAsync;
 import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
 import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
 import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
@@ -32,15 +33,18 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
  * The ReceiveQueueBuffer class is responsible for dequeueing of messages from a
- * single SQS queue. It uses the provided executor to pre-fetch messages from
- * the server and keeps them in a buffer which it uses to satisfy incoming
- * requests. The number of requests pre-fetched and kept in the buffer, as well
- * as the maximum number of threads used to retrieve the messages are
- * configurable.
+ * single SQS queue. It pre-fetches messages from the server and keeps them in a
+ * buffer which it uses to satisfy incoming requests. Long polls run on the
+ * long poll executor, when one is given, which caps how many of them hold a
+ * connection of the SQS client at the same time. Other receives use the
+ * asynchronous receive call of the SQS client. The number of requests
+ * pre-fetched and kept in the buffer, as well as the maximum number of
+ * concurrent receive calls are configurable.
  * <p>
  * Synchronization strategy: - Threads must hold the TaskSpawnSyncPoint object
  * monitor to spawn a new task or modify the number of inflight tasks - Threads
@@ -57,9 +61,7 @@ public class ReceiveQueueBuffer {
 
     private final String qUrl;
 
-    private final Executor executor;
-
-    private final AmazonSQS sqsClient;
+    private final AmazonSQSAsync sqsClient;
 
     private long bufferCounter = 0;
 
@@ -92,10 +94,27 @@ public class ReceiveQueueBuffer {
     /** finished batches are stored in this list. */
     private LinkedList<ReceiveMessageBatchTask> finishedTasks = new LinkedList<ReceiveMessageBatchTask>();
 
-    ReceiveQueueBuffer(AmazonSQS paramSQS, Executor paramExecutor, QueueBufferConfig paramConfig,
-            String url) {
+    /**
+     * Tunes the number of inflight receive batches in adaptive mode, null
+     * otherwise.
+     */
+    private final AdaptiveQueueBufferTuner tuner;
+
+    /**
+     * Runs the long poll receive calls, or null to make them with the
+     * asynchronous call of the SQS client.
+     */
+    private final Executor longPollExecutor;
+
+    ReceiveQueueBuffer(AmazonSQSAsync paramSQS, QueueBufferConfig paramConfig, String url) {
+        this(paramSQS, paramConfig, url, null, null);
+    }
+
+    ReceiveQueueBuffer(AmazonSQSAsync paramSQS, QueueBufferConfig paramConfig, String url,
+            AdaptiveQueueBufferTuner tuner, Executor longPollExecutor) {
+        this.tuner = tuner;
+        this.longPollExecutor = longPollExecutor;
         config = paramConfig;
-        executor = paramExecutor;
         sqsClient = paramSQS;
         qUrl = url;
 
@@ -135,6 +154,9 @@ public class ReceiveQueueBuffer {
         if (rq.getMaxNumberOfMessages() != null) {
             numMessages = rq.getMaxNumberOfMessages();
         }
+        if (tuner != null) {
+            tuner.messagesRequested(numMessages);
+        }
         QueueBufferFuture<ReceiveMessageRequest, ReceiveMessageResult> toReturn = issueFuture(
                 numMessages, callback);
 
@@ -272,6 +294,7 @@ public class ReceiveQueueBuffer {
                 return;
         }
 
+        ReceiveMessageBatchTask task = null;
         synchronized (taskSpawnSyncPoint) {
             if (visibilityTimeoutNanos == -1) {
                 GetQueueAttributesRequest request = new GetQueueAttributesRequest().
@@ -284,13 +307,15 @@ public class ReceiveQueueBuffer {
                         TimeUnit.SECONDS);
             }
 
-            int max = config.getMaxInflightReceiveBatches();
+            int max = tuner != null
+                    ? tuner.getInflightReceiveBatches()
+                    : config.getMaxInflightReceiveBatches();
             // must allow at least one inflight receive task, or receive won't
             // work at all.
             max = max > 0 ? max : 1;
             int toSpawn = max - inflightReceiveMessageBatches;
             if (toSpawn > 0) {
-                ReceiveMessageBatchTask task = new ReceiveMessageBatchTask(this);
+                task = new ReceiveMessageBatchTask(this);
                 ++inflightReceiveMessageBatches;
                 ++bufferCounter;
                 if (log.isTraceEnabled()) {
@@ -298,9 +323,13 @@ public class ReceiveQueueBuffer {
                             + inflightReceiveMessageBatches
                             + " of " + max + " inflight) for queue " + qUrl);
                 }
-                executor.execute(task);
             }
         }
+        // started outside of the lock, since the completion may be reported
+        // on this thread
+        if (task != null) {
+            task.start();
+        }
     }
 
     /**
@@ -372,7 +401,7 @@ public class ReceiveQueueBuffer {
      * {@code ReceiveMessage} completes. At that point, the batch opens and its
      * messages (if any) become available to read.
      */
-    private class ReceiveMessageBatchTask implements Runnable {
+    private class ReceiveMessageBatchTask {
         private Exception exception = null;
         private List<Message> messages;
         private long visibilityDeadlineNano;
@@ -477,12 +506,12 @@ public class ReceiveQueueBuffer {
         }
 
         /**
-         * Attempts to retrieve messages from SQS and upon completion
-         * (successful or unsuccessful) reports the batch as complete and open
+         * Starts retrieving messages from SQS and upon completion (successful
+         * or unsuccessful) reports the batch as complete and open. The call
+         * doesn't wait for the messages.
          */
-        @Override
-        public void run() {
-
+        void start() {
+            final long start = System.nanoTime();
             try {
                 visibilityDeadlineNano = System.nanoTime() + visibilityTimeoutNanos;
                 ReceiveMessageRequest request = new ReceiveMessageRequest(qUrl)
@@ -498,17 +527,63 @@ public class ReceiveQueueBuffer {
 
                 if (config.isLongPoll()) {
                     request.withWaitTimeSeconds(config.getLongPollWaitTimeoutSeconds());
+                    if (longPollExecutor != null) {
+                        final ReceiveMessageRequest longPollRequest = request;
+                        longPollExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    finish(start, sqsClient.receiveMessage(longPollRequest)
+                                            .getMessages(), null);
+                                } catch (Exception e) {
+                                    finish(start, null, e);
+                                }
+                            }
+                        });
+                        return;
+                    }
                 }
 
-                messages = sqsClient.receiveMessage(request).getMessages();
+                sqsClient.receiveMessageAsync(request,
+                        new AsyncHandler<ReceiveMessageRequest, ReceiveMessageResult>() {
+                            @Override
+                            public void onSuccess(ReceiveMessageRequest request,
+                                    ReceiveMessageResult result) {
+                                finish(start, result.getMessages(), null);
+                            }
+
+                            @Override
+                            public void onError(Exception e) {
+                                finish(start, null, e);
+                            }
+                        });
             } catch (AmazonClientException e) {
-                exception = e;
-            } finally {
-                // whatever happened, we are done and can be considered open
-                open = true;
-                parentBuffer.reportBatchFinished(this);
+                finish(start, null, e);
+            } catch (RejectedExecutionException e) {
+                finish(start, null, new AmazonClientException("Failed to receive messages", e));
             }
+        }
 
+        /**
+         * Whatever happened, we are done and can be considered open.
+         */
+        private void finish(long start, List<Message> result, Exception e) {
+            synchronized (this) {
+                if (open) {
+                    return;
+                }
+                if (e != null) {
+                    exception = e;
+                } else if (result != null) {
+                    messages = result;
+                }
+                if (tuner != null) {
+                    tuner.receiveCompleted(System.nanoTime() - start,
+                            exception == null ? messages.size() : 0);
+                }
+                open = true;
+            }
+            parentBuffer.reportBatchFinished(this);
         }
     }
 } // end of ReceiveQueueBuffer
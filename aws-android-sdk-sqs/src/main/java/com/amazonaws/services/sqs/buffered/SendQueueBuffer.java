@@ -42,9 +42,15 @@ import org.apache.commons.logging.LogFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * This class is responsible for buffering outgoing SQS requests, i.e. requests
@@ -55,11 +61,29 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * timeout expires, the buffer makes a call to SQS to execute the current batch. <br>
  * Internally, the batch objects maintain a list of futures corresponding to the
  * requests added to them. When a batch completes, it loads the results into the
- * futures and marks the futures as complete.
+ * futures and marks the futures as complete. <br>
+ * An open batch doesn't hold a thread: a timer dispatches it to the executor
+ * when its open window expires, unless it fills up and is dispatched first.
+ * <br>
+ * Producers claim slots in the open batch with a compare-and-set on the batch
+ * state, so adding a request doesn't take a lock. The per-operation locks are
+ * only taken to replace a batch that is closed.
  */
 public class SendQueueBuffer {
     private static Log log = LogFactory.getLog(SendQueueBuffer.class);
 
+    /**
+     * Flag in the state of an {@code OutboundBatchTask} telling that the batch
+     * no longer accepts requests.
+     */
+    private static final long BATCH_CLOSED = Long.MIN_VALUE;
+
+    /**
+     * Mask of the bytes reserved in the state of an {@code OutboundBatchTask}.
+     * The number of requests is kept in the bits above.
+     */
+    private static final long BATCH_BYTES_MASK = 0xffffffffL;
+
     // Interface to support event notifications with a parameter.
     private interface Listener<T> {
         void invoke(T o);
@@ -82,38 +106,46 @@ public class SendQueueBuffer {
     private final Executor executor;
 
     /**
-     * Object used to serialize sendMessage calls.
+     * The timer closing batches whose open window has expired.
+     */
+    private final ScheduledExecutorService timer;
+
+    /**
+     * Object used to serialize the creation of sendMessage batches.
      */
     private final Object sendMessageLock = new Object();
 
     /**
-     * Object used to serialize deleteMessage calls.
+     * Object used to serialize the creation of deleteMessage batches.
      */
     private final Object deleteMessageLock = new Object();
 
     /**
-     * Object used to serialize changeMessageVisibility calls.
+     * Object used to serialize the creation of changeMessageVisibility
+     * batches.
      */
     private final Object changeMessageVisibilityLock = new Object();
 
     /**
-     * Current batching task for sendMessage. Using a size 1 array to allow
-     * "passing by reference". Synchronized by {@code sendMessageLock}.
+     * Current batching task for sendMessage. Read without locking, replaced
+     * while holding {@code sendMessageLock}.
      */
-    private final SendMessageBatchTask[] openSendMessageBatchTask = new SendMessageBatchTask[1];
+    private final AtomicReference<SendMessageBatchTask> openSendMessageBatchTask =
+            new AtomicReference<SendMessageBatchTask>();
 
     /**
-     * Current batching task for deleteMessage. Using a size 1 array to allow
-     * "passing by reference". Synchronized by {@code deleteMessageLock}.
+     * Current batching task for deleteMessage. Read without locking, replaced
+     * while holding {@code deleteMessageLock}.
      */
-    private final DeleteMessageBatchTask[] openDeleteMessageBatchTask = new DeleteMessageBatchTask[1];
+    private final AtomicReference<DeleteMessageBatchTask> openDeleteMessageBatchTask =
+            new AtomicReference<DeleteMessageBatchTask>();
 
     /**
-     * Current batching task for changeMessageVisibility. Using a size 1 array
-     * to allow "passing by reference". Synchronized by
-     * {@code changeMessageVisibilityLock}.
+     * Current batching task for changeMessageVisibility. Read without locking,
+     * replaced while holding {@code changeMessageVisibilityLock}.
      */
-    private final ChangeMessageVisibilityBatchTask[] openChangeMessageVisibilityBatchTask = new ChangeMessageVisibilityBatchTask[1];
+    private final AtomicReference<ChangeMessageVisibilityBatchTask> openChangeMessageVisibilityBatchTask =
+            new AtomicReference<ChangeMessageVisibilityBatchTask>();
 
     /**
      * Permits controlling the number of in flight SendMessage batches.
@@ -131,10 +163,22 @@ public class SendQueueBuffer {
      */
     private final Semaphore inflightChangeMessageVisibilityBatches;
 
+    /**
+     * Tunes the batch open window in adaptive mode, null otherwise.
+     */
+    private final AdaptiveQueueBufferTuner tuner;
+
     SendQueueBuffer(AmazonSQS sqsClient, Executor executor, QueueBufferConfig paramConfig,
             String url) {
+        this(sqsClient, executor, QueueBuffer.getTimer(), paramConfig, url, null);
+    }
+
+    SendQueueBuffer(AmazonSQS sqsClient, Executor executor, ScheduledExecutorService timer,
+            QueueBufferConfig paramConfig, String url, AdaptiveQueueBufferTuner tuner) {
         this.sqsClient = sqsClient;
+        this.tuner = tuner;
         this.executor = executor;
+        this.timer = timer;
         this.config = paramConfig;
         qUrl = url;
         int maxBatch = config.getMaxInflightOutboundBatches();
@@ -245,8 +289,8 @@ public class SendQueueBuffer {
      * this buffer.
      * <p>
      *
-     * @param operationLock the lock synchronizing calls for the call type (
-     *            {@code sendMessage}, {@code deleteMessage},
+     * @param operationLock the lock synchronizing the creation of batches for
+     *            the call type ( {@code sendMessage}, {@code deleteMessage},
      *            {@code changeMessageVisibility} )
      * @param openOutboundBatchTask the open batch task for this call type
      * @param request the request to submit
@@ -259,27 +303,39 @@ public class SendQueueBuffer {
     @SuppressWarnings("unchecked")
     <OBT extends OutboundBatchTask<R, Result>, R extends AmazonWebServiceRequest, Result> QueueBufferFuture<R, Result> submitOutboundRequest(
             Object operationLock,
-            OBT[] openOutboundBatchTask,
+            AtomicReference<OBT> openOutboundBatchTask,
             R request,
             final Semaphore inflightOperationBatches,
             QueueBufferCallback<R, Result> callback) {
         /*
          * Callers add requests to a single batch task (openOutboundBatchTask)
-         * until it is full or maxBatchOpenMs elapses. The total number of batch
-         * task in flight is controlled by the inflightOperationBatch semaphore
-         * capped at maxInflightOutboundBatches.
+         * until it is full or maxBatchOpenMs elapses. Adding to the open batch
+         * doesn't lock; only the caller that finds the batch closed replaces it
+         * while holding the operation lock. The total number of batch task in
+         * flight is controlled by the inflightOperationBatch semaphore capped
+         * at maxInflightOutboundBatches.
          */
+        if (tuner != null) {
+            tuner.outboundRequestArrived();
+        }
+        OBT openTask = openOutboundBatchTask.get();
         QueueBufferFuture<R, Result> theFuture = null;
+        if (openTask != null
+                && (theFuture = openTask.addRequest(request, callback)) != null) {
+            return theFuture;
+        }
+
         try {
             synchronized (operationLock) {
-                if (openOutboundBatchTask[0] == null
-                        || ((theFuture = openOutboundBatchTask[0].addRequest(request, callback))) == null) {
+                // another caller may have replaced the batch meanwhile
+                openTask = openOutboundBatchTask.get();
+                if (openTask == null
+                        || ((theFuture = openTask.addRequest(request, callback))) == null) {
                     OBT obt = (OBT) newOutboundBatchTask(request);
                     inflightOperationBatches.acquire();
-                    openOutboundBatchTask[0] = obt;
                     // Register a listener for the event signaling that the
                     // batch task has completed (successfully or not).
-                    openOutboundBatchTask[0].onCompleted = new Listener<OutboundBatchTask<R, Result>>() {
+                    obt.onCompleted = new Listener<OutboundBatchTask<R, Result>>() {
                         @Override
                         public void invoke(OutboundBatchTask<R, Result> task) {
                             inflightOperationBatches.release();
@@ -293,8 +349,11 @@ public class SendQueueBuffer {
                                 + " free slots remain");
                     }
 
-                    theFuture = openOutboundBatchTask[0].addRequest(request, callback);
-                    executor.execute(openOutboundBatchTask[0]);
+                    // take the first slot before other callers can see the
+                    // batch
+                    theFuture = obt.addRequest(request, callback);
+                    openOutboundBatchTask.set(obt);
+                    obt.start();
                     if (null == theFuture) {
                         // this can happen only if the request itself is flawed,
                         // so that it can't be added to any batch, even a brand
@@ -316,12 +375,36 @@ public class SendQueueBuffer {
         return theFuture;
     }
 
+    /**
+     * Returns the number of bytes of the UTF-8 encoding of the given string,
+     * without encoding it.
+     */
+    static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
     /**
      * Task to send a batch of outbound requests to SQS.
      * <p>
      * The batch task is constructed open and accepts requests until full, or
-     * until {@code maxBatchOpenMs} elapses. At that point, the batch closes and
-     * the collected requests are assembled into a single batch request to SQS.
+     * until {@code maxBatchOpenMs} elapses. At that point, the batch closes, is
+     * handed to the executor, and the collected requests are assembled into a
+     * single batch request to SQS. No thread waits while the batch is open.
      * Specialized for each type of outbound request.
      * <p>
      * Instances of this class (and subclasses) are thread-safe.
@@ -332,78 +415,169 @@ public class SendQueueBuffer {
      */
     private abstract class OutboundBatchTask<R extends AmazonWebServiceRequest, Result> implements
             Runnable {
+        /** The requests of the batch, in slot order. Filled once closed. **/
         final List<R> requests;
+        /** The futures of the requests. Filled once closed. **/
         final ArrayList<QueueBufferFuture<R, Result>> futures;
-        AtomicBoolean open = new AtomicBoolean(true);
+
+        private final AtomicReferenceArray<R> requestSlots;
+        private final AtomicReferenceArray<QueueBufferFuture<R, Result>> futureSlots;
+
+        /**
+         * Number of requests and bytes reserved, and the closed flag. Slots
+         * are claimed by a compare-and-set on this value.
+         */
+        private final AtomicLong state = new AtomicLong();
+
+        /** Number of reserved slots whose request has been stored **/
+        private final AtomicInteger published = new AtomicInteger();
+
+        private final int maxBatchSize;
+        private final long maxBatchSizeBytes;
+
+        /** Set once the batch has been handed to the executor **/
+        private final AtomicBoolean dispatched = new AtomicBoolean(false);
+        private volatile ScheduledFuture<?> timeout;
+
         volatile Listener<OutboundBatchTask<R, Result>> onCompleted = null;
 
         OutboundBatchTask() {
-            requests = new ArrayList<R>(config.getMaxBatchSize());
-            futures = new ArrayList<QueueBufferFuture<R, Result>>(config.getMaxBatchSize());
+            maxBatchSize = config.getMaxBatchSize();
+            maxBatchSizeBytes = Math.min(config.getMaxBatchSizeBytes(), BATCH_BYTES_MASK);
+            requests = new ArrayList<R>(maxBatchSize);
+            futures = new ArrayList<QueueBufferFuture<R, Result>>(maxBatchSize);
+            requestSlots = new AtomicReferenceArray<R>(maxBatchSize);
+            futureSlots = new AtomicReferenceArray<QueueBufferFuture<R, Result>>(maxBatchSize);
         }
 
         /**
          * Adds a request to the batch if it is still open and has capacity.
+         * The batch closes as soon as it is full or a request doesn't fit.
          *
          * @return the future that can be used to get the results of the
          *         execution, or null if the addition failed.
          */
-        synchronized QueueBufferFuture<R, Result> addRequest(R request,
+        QueueBufferFuture<R, Result> addRequest(R request,
                 QueueBufferCallback<R, Result> callback) {
-            if (!open.get())
-                return null;
-
-            QueueBufferFuture<R, Result> theFuture = addIfAllowed(request, callback);
+            long size = requestSize(request);
+            while (true) {
+                long current = state.get();
+                if ((current & BATCH_CLOSED) != 0) {
+                    return null;
+                }
+                int count = (int) (current >>> 32);
+                long bytes = current & BATCH_BYTES_MASK;
+                if (count >= maxBatchSize || bytes + size >= maxBatchSizeBytes) {
+                    // the batch request is as full as it will ever be. no
+                    // need to wait for the timeout, we can run it now.
+                    if (state.compareAndSet(current, current | BATCH_CLOSED)) {
+                        dispatch();
+                        return null;
+                    }
+                    continue;
+                }
 
-            // if the addition did not work, or this addition made us full,
-            // we can close the request
-            if ((null == theFuture) || isFull()) {
-                open.set(false);
+                boolean full = count + 1 >= maxBatchSize;
+                long next = ((long) (count + 1) << 32) | (bytes + size);
+                if (full) {
+                    next |= BATCH_CLOSED;
+                }
+                if (state.compareAndSet(current, next)) {
+                    QueueBufferFuture<R, Result> theFuture = new QueueBufferFuture<R, Result>(
+                            callback);
+                    requestSlots.set(count, request);
+                    futureSlots.set(count, theFuture);
+                    published.incrementAndGet();
+                    if (full) {
+                        dispatch();
+                    }
+                    return theFuture;
+                }
             }
-
-            // the batch request is as full as it will ever be. no need to wait
-            // for the timeout, we can run it now.
-            if (!open.get())
-                notify();
-
-            return theFuture;
         }
 
         /**
-         * Adds the request to the batch if capacity allows it.
-         *
-         * @param request
-         * @return the future that will be signaled when the request is
-         *         completed and can be used to retrieve the result. Can be null
-         *         if the addition could not be done
+         * @return the number of bytes the request takes from the byte budget
+         *         of the batch
          */
-        synchronized QueueBufferFuture<R, Result> addIfAllowed(R request,
-                QueueBufferCallback<R, Result> callback) {
-            if (isOkToAdd(request)) {
-                requests.add(request);
-
-                QueueBufferFuture<R, Result> theFuture = new QueueBufferFuture<R, Result>(callback);
+        long requestSize(R request) {
+            // to be overridden by subclasses
+            return 0;
+        }
 
-                futures.add(theFuture);
-                onRequestAdded(request);
-                return theFuture;
-            } else
-                return null;
+        private boolean isClosed() {
+            return (state.get() & BATCH_CLOSED) != 0;
         }
 
-        protected synchronized boolean isOkToAdd(R request) {
-            return requests.size() < config.getMaxBatchSize();
+        /**
+         * Starts the open window of the batch. If the batch fills up first it
+         * is dispatched right away.
+         */
+        void start() {
+            long batchOpenMs = tuner != null
+                    ? tuner.nextBatchOpenMs()
+                    : config.getMaxBatchOpenMs();
+            if (isClosed() || batchOpenMs <= 0) {
+                dispatch();
+                return;
+            }
+            timeout = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    dispatch();
+                }
+            }, batchOpenMs, TimeUnit.MILLISECONDS);
+            if (dispatched.get()) {
+                // filled up while the timer was being scheduled
+                timeout.cancel(false);
+            }
         }
 
-        protected synchronized void onRequestAdded(R request) {
-            // to be overridden by subclasses
+        /**
+         * Hands the batch to the executor, once.
+         */
+        private void dispatch() {
+            if (!dispatched.compareAndSet(false, true)) {
+                return;
+            }
+            ScheduledFuture<?> pendingTimeout = timeout;
+            if (pendingTimeout != null) {
+                pendingTimeout.cancel(false);
+            }
+            try {
+                executor.execute(this);
+            } catch (RuntimeException e) {
+                // the executor refused the batch; fail its requests rather
+                // than leave them waiting forever
+                closeAndCollect();
+                failAll(new AmazonClientException("Failed to execute batch", e));
+                Listener<OutboundBatchTask<R, Result>> completionListener = onCompleted;
+                if (completionListener != null)
+                    completionListener.invoke(this);
+            }
         }
 
         /**
-         * @return whether the buffer is filled to capacity
+         * Closes the batch and moves the requests of all reserved slots into
+         * {@code requests} and {@code futures}, waiting for the callers that
+         * reserved a slot to store their request.
          */
-        synchronized boolean isFull() {
-            return requests.size() >= config.getMaxBatchSize();
+        private void closeAndCollect() {
+            long current;
+            do {
+                current = state.get();
+            } while ((current & BATCH_CLOSED) == 0
+                    && !state.compareAndSet(current, current | BATCH_CLOSED));
+            int count = (int) ((current & ~BATCH_CLOSED) >>> 32);
+            while (published.get() < count) {
+                // a slot was reserved but not yet stored; that's only a few
+                // instructions away
+                Thread.yield();
+            }
+            for (int i = 0; i < count; i++) {
+                requests.add(requestSlots.get(i));
+                futures.add(futureSlots.get(i));
+            }
         }
 
         /**
@@ -412,24 +586,10 @@ public class SendQueueBuffer {
         abstract void process();
 
         @Override
-        public synchronized void run() {
+        public void run() {
             try {
-                long deadlineMs = TimeUnit.MILLISECONDS.convert(System.nanoTime(),
-                        TimeUnit.NANOSECONDS) +
-                        config.getMaxBatchOpenMs() + 1;
-                long t = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-                while (open.get() && (t < deadlineMs)) {
-                    t = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-
-                    // zero means "wait forever", can't have that.
-                    long toWait = Math.max(1, deadlineMs - t);
-                    wait(toWait);
-                }
-
-                open.set(false);
+                closeAndCollect();
                 process();
-            } catch (InterruptedException e) {
-                failAll(e);
             } catch (AmazonClientException e) {
                 failAll(e);
             } catch (RuntimeException e) {
@@ -456,25 +616,10 @@ public class SendQueueBuffer {
 
     private class SendMessageBatchTask extends
             OutboundBatchTask<SendMessageRequest, SendMessageResult> {
-        int batchSizeBytes = 0;
-
-        @Override
-        protected synchronized boolean isOkToAdd(SendMessageRequest request) {
-            return (requests.size() < config.getMaxBatchSize())
-                    &&
-                    ((request.getMessageBody().getBytes().length + batchSizeBytes) < config
-                            .getMaxBatchSizeBytes());
-        }
-
-        @Override
-        protected void onRequestAdded(SendMessageRequest request) {
-            batchSizeBytes += request.getMessageBody().getBytes().length;
-        }
 
         @Override
-        synchronized boolean isFull() {
-            return (requests.size() >= config.getMaxBatchSize()) ||
-                    (batchSizeBytes >= config.getMaxBatchSizeBytes());
+        long requestSize(SendMessageRequest request) {
+            return utf8Length(request.getMessageBody());
         }
 
         @Override
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.sqs.buffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveQueueBufferTunerTest {
+
+    private static final String QUEUE_URL = "https://sqs.us-east-1.amazonaws.com/123/queue";
+
+    private RecordingListener listener;
+    private QueueBufferConfig config;
+
+    @Before
+    public void setUp() {
+        listener = new RecordingListener();
+        config = new QueueBufferConfig()
+                .withAdaptive(true)
+                .withMaxBatchSize(10)
+                .withMinBatchOpenMs(2)
+                .withMaxBatchOpenMs(200)
+                .withMinInflightReceiveBatches(1)
+                .withMaxInflightReceiveBatches(10)
+                .withTuningListener(listener);
+    }
+
+    @Test
+    public void testBatchOpenWindowGrowsAndShrinks() {
+        FakeClockTuner tuner = new FakeClockTuner(config);
+        assertEquals("starts at the minimum", 2, tuner.nextBatchOpenMs());
+
+        // 1 request/ms fills the 9 remaining slots of a batch in 9 ms
+        arrive(tuner, 10);
+        tuner.advanceMs(10);
+        assertEquals(9, tuner.nextBatchOpenMs());
+        assertEquals("2 -> 9", listener.windowChanges.get(0));
+
+        // a burst raises the smoothed rate to 3.7 requests/ms
+        arrive(tuner, 100);
+        tuner.advanceMs(10);
+        assertEquals(3, tuner.nextBatchOpenMs());
+        assertEquals("9 -> 3", listener.windowChanges.get(1));
+        assertEquals(2, listener.windowChanges.size());
+    }
+
+    @Test
+    public void testBatchOpenWindowIgnoresSmallChanges() {
+        FakeClockTuner tuner = new FakeClockTuner(config.withMaxBatchSize(101));
+        tuner.nextBatchOpenMs();
+        arrive(tuner, 10);
+        tuner.advanceMs(10);
+        assertEquals(100, tuner.nextBatchOpenMs());
+
+        // the smoothed rate of 1.09 requests/ms would give 92 ms
+        arrive(tuner, 13);
+        tuner.advanceMs(10);
+        assertEquals(100, tuner.nextBatchOpenMs());
+        assertEquals(1, listener.windowChanges.size());
+    }
+
+    @Test
+    public void testBatchOpenWindowClampedToMinimumForLightTraffic() {
+        FakeClockTuner tuner = new FakeClockTuner(config);
+        tuner.nextBatchOpenMs();
+        arrive(tuner, 10);
+        tuner.advanceMs(10);
+        assertEquals(9, tuner.nextBatchOpenMs());
+
+        // the window grows as the traffic stops, until a batch wouldn't fill
+        // within 200 ms, so it isn't held open
+        long window = 9;
+        for (int i = 0; i < 8; i++) {
+            tuner.advanceMs(10);
+            long next = tuner.nextBatchOpenMs();
+            assertTrue(next + " after " + window, next > window && next <= 200);
+            window = next;
+        }
+        tuner.advanceMs(10);
+        assertEquals(2, tuner.nextBatchOpenMs());
+        String reason = listener.windowReasons.get(listener.windowReasons.size() - 1);
+        assertTrue(reason, reason.startsWith("a batch wouldn't fill within 200 ms"));
+    }
+
+    @Test
+    public void testBatchOpenWindowBoundsAreOrdered() {
+        FakeClockTuner tuner = new FakeClockTuner(config.withMinBatchOpenMs(500));
+        assertEquals("the minimum is capped by the maximum", 200, tuner.getBatchOpenMs());
+    }
+
+    @Test
+    public void testSamplesShorterThanTenMillisecondsAreIgnored() {
+        FakeClockTuner tuner = new FakeClockTuner(config);
+        tuner.nextBatchOpenMs();
+        arrive(tuner, 10);
+        tuner.advanceMs(5);
+        assertEquals(2, tuner.nextBatchOpenMs());
+        assertEquals(0, listener.windowChanges.size());
+    }
+
+    @Test
+    public void testInflightReceiveBatchesGrowAndShrink() {
+        FakeClockTuner tuner = new FakeClockTuner(config);
+        assertEquals("starts at the minimum", 1, tuner.getInflightReceiveBatches());
+        tuner.receiveCompleted(TimeUnit.MILLISECONDS.toNanos(100), 10);
+
+        // 0.5 messages/ms for 100 ms, 10 messages per receive: 5 receives
+        // in flight, plus one
+        tuner.messagesRequested(50);
+        tuner.advanceMs(100);
+        tuner.receiveCompleted(TimeUnit.MILLISECONDS.toNanos(100), 10);
+        assertEquals(6, tuner.getInflightReceiveBatches());
+        assertEquals("1 -> 6", listener.receiveChanges.get(0));
+
+        // no demand lowers the smoothed rate to 0.35 messages/ms
+        tuner.advanceMs(100);
+        tuner.receiveCompleted(TimeUnit.MILLISECONDS.toNanos(100), 10);
+        assertEquals(5, tuner.getInflightReceiveBatches());
+        assertEquals("6 -> 5", listener.receiveChanges.get(1));
+    }
+
+    @Test
+    public void testInflightReceiveBatchesClampedToMaximum() {
+        FakeClockTuner tuner = new FakeClockTuner(config);
+        tuner.receiveCompleted(TimeUnit.MILLISECONDS.toNanos(100), 10);
+        tuner.messagesRequested(100000);
+        tuner.advanceMs(100);
+        tuner.receiveCompleted(TimeUnit.MILLISECONDS.toNanos(100), 10);
+        assertEquals(10, tuner.getInflightReceiveBatches());
+    }
+
+    @Test
+    public void testInflightReceiveBatchesDropToMinimumWhenReceivesAreEmpty() {
+        FakeClockTuner tuner = new FakeClockTuner(config.withMinInflightReceiveBatches(2));
+        tuner.receiveCompleted(TimeUnit.MILLISECONDS.toNanos(100), 10);
+        tuner.messagesRequested(100000);
+        tuner.advanceMs(100);
+        tuner.receiveCompleted(TimeUnit.MILLISECONDS.toNanos(100), 10);
+        assertEquals(10, tuner.getInflightReceiveBatches());
+
+        for (int i = 0; i < 10; i++) {
+            tuner.messagesRequested(100000);
+            tuner.advanceMs(100);
+            tuner.receiveCompleted(TimeUnit.MILLISECONDS.toNanos(100), 0);
+        }
+        assertEquals(2, tuner.getInflightReceiveBatches());
+        String reason = listener.receiveReasons.get(listener.receiveReasons.size() - 1);
+        assertTrue(reason, reason.startsWith("receives return 0.82 messages on average"));
+    }
+
+    @Test
+    public void testInflightReceiveBatchesBoundsAreOrdered() {
+        FakeClockTuner tuner = new FakeClockTuner(config
+                .withMinInflightReceiveBatches(20)
+                .withMaxInflightReceiveBatches(0));
+        assertEquals("at least one, capped by the maximum", 1,
+                tuner.getInflightReceiveBatches());
+    }
+
+    @Test
+    public void testReasonsIgnoreTheDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            FakeClockTuner tuner = new FakeClockTuner(config);
+            tuner.nextBatchOpenMs();
+            arrive(tuner, 10);
+            tuner.advanceMs(10);
+            tuner.nextBatchOpenMs();
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+        assertEquals("time to fill a batch at 1000.00 requests/s",
+                listener.windowReasons.get(0));
+    }
+
+    private static void arrive(AdaptiveQueueBufferTuner tuner, int count) {
+        for (int i = 0; i < count; i++) {
+            tuner.outboundRequestArrived();
+        }
+    }
+
+    private static class FakeClockTuner extends AdaptiveQueueBufferTuner {
+        private long nanos = TimeUnit.SECONDS.toNanos(1);
+
+        FakeClockTuner(QueueBufferConfig config) {
+            super(QUEUE_URL, config);
+        }
+
+        void advanceMs(long ms) {
+            nanos += TimeUnit.MILLISECONDS.toNanos(ms);
+        }
+
+        @Override
+        long nanoTime() {
+            return nanos;
+        }
+    }
+
+    private static class RecordingListener implements QueueBufferTuningListener {
+        final List<String> windowChanges = new ArrayList<String>();
+        final List<String> windowReasons = new ArrayList<String>();
+        final List<String> receiveChanges = new ArrayList<String>();
+        final List<String> receiveReasons = new ArrayList<String>();
+
+        @Override
+        public void batchOpenWindowChanged(String queueUrl, long previousMs, long currentMs,
+                String reason) {
+            assertEquals(QUEUE_URL, queueUrl);
+            windowChanges.add(previousMs + " -> " + currentMs);
+            windowReasons.add(reason);
+        }
+
+        @Override
+        public void inflightReceiveBatchesChanged(String queueUrl, int previous, int current,
+                String reason) {
+            assertEquals(QUEUE_URL, queueUrl);
+            receiveChanges.add(previous + " -> " + current);
+            receiveReasons.add(reason);
+        }
+    }
+}
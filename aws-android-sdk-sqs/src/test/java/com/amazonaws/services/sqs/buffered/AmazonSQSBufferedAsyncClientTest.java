@@ -0,0 +1,189 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.sqs.buffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sqs.AmazonSQSAsyncClient;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageRequest;
+import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.GetQueueAttributesResult;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AmazonSQSBufferedAsyncClientTest {
+
+    private static final String QUEUE_URL = "https://sqs.us-east-1.amazonaws.com/123/queue";
+    private static final int QUEUES = 100;
+    private static final int MAX_CONCURRENT_LONG_POLLS = 5;
+
+    private LongPollSQS sqs;
+    private AmazonSQSBufferedAsyncClient client;
+
+    @Before
+    public void setUp() {
+        sqs = new LongPollSQS();
+        QueueBufferConfig config = new QueueBufferConfig()
+                .withMaxBatchOpenMs(10)
+                .withMaxInflightReceiveBatches(2)
+                .withMaxDoneReceiveBatches(2)
+                .withLongPoll(true)
+                .withMaxConcurrentLongPolls(MAX_CONCURRENT_LONG_POLLS);
+        client = new AmazonSQSBufferedAsyncClient(sqs, config);
+    }
+
+    @After
+    public void tearDown() {
+        sqs.release.countDown();
+        client.shutdown();
+    }
+
+    /**
+     * Tests that pending long polls on many queues neither grow the number of
+     * threads nor hold more than their share of the connections, so that
+     * sends and deletes of every queue still complete while they wait.
+     */
+    @Test
+    public void testLongPollsOnManyQueuesDontStarveSendsAndDeletes() throws Exception {
+        int threadsBefore = Thread.activeCount();
+
+        List<Future<ReceiveMessageResult>> receives = new ArrayList<Future<ReceiveMessageResult>>();
+        for (int i = 0; i < QUEUES; i++) {
+            receives.add(client.receiveMessageAsync(new ReceiveMessageRequest(QUEUE_URL + i)));
+        }
+        assertTrue("long polls started",
+                sqs.longPollsStarted.await(5, TimeUnit.SECONDS));
+
+        List<Future<?>> outbound = new ArrayList<Future<?>>();
+        for (int i = 0; i < QUEUES; i++) {
+            outbound.add(client.sendMessageAsync(new SendMessageRequest(QUEUE_URL + i, "body")));
+            outbound.add(client.deleteMessageAsync(new DeleteMessageRequest(QUEUE_URL + i,
+                    "receipt")));
+        }
+        for (Future<?> future : outbound) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals("long polls capped", MAX_CONCURRENT_LONG_POLLS, sqs.maxLongPolls.get());
+        assertEquals("no long poll on the pool of the wrapped client", 0,
+                sqs.asyncReceives.get());
+        int threadsAdded = Thread.activeCount() - threadsBefore;
+        assertTrue("bounded threads: " + threadsAdded, threadsAdded <= QueueBuffer.DEFAULT_MAX_THREADS
+                + MAX_CONCURRENT_LONG_POLLS + 1);
+
+        sqs.release.countDown();
+        for (Future<ReceiveMessageResult> future : receives) {
+            assertEquals(0, future.get(10, TimeUnit.SECONDS).getMessages().size());
+        }
+        assertTrue(sqs.maxLongPolls.get() <= MAX_CONCURRENT_LONG_POLLS);
+    }
+
+    /**
+     * Answers outbound batches at once and holds long polls until released.
+     */
+    private static class LongPollSQS extends AmazonSQSAsyncClient {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch longPollsStarted = new CountDownLatch(MAX_CONCURRENT_LONG_POLLS);
+        final AtomicInteger longPolls = new AtomicInteger();
+        final AtomicInteger maxLongPolls = new AtomicInteger();
+        final AtomicInteger asyncReceives = new AtomicInteger();
+
+        LongPollSQS() {
+            super(new BasicAWSCredentials("access", "secret"));
+        }
+
+        @Override
+        public GetQueueAttributesResult getQueueAttributes(GetQueueAttributesRequest request)
+                throws AmazonServiceException, AmazonClientException {
+            return new GetQueueAttributesResult().addAttributesEntry("VisibilityTimeout", "30");
+        }
+
+        @Override
+        public ReceiveMessageResult receiveMessage(ReceiveMessageRequest request)
+                throws AmazonServiceException, AmazonClientException {
+            int current = longPolls.incrementAndGet();
+            int max;
+            while (current > (max = maxLongPolls.get())
+                    && !maxLongPolls.compareAndSet(max, current)) {
+                // retry
+            }
+            longPollsStarted.countDown();
+            try {
+                release.await(request.getWaitTimeSeconds(), TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                longPolls.decrementAndGet();
+            }
+            return new ReceiveMessageResult();
+        }
+
+        @Override
+        public Future<ReceiveMessageResult> receiveMessageAsync(ReceiveMessageRequest request,
+                AsyncHandler<ReceiveMessageRequest, ReceiveMessageResult> asyncHandler)
+                throws AmazonServiceException, AmazonClientException {
+            asyncReceives.incrementAndGet();
+            return super.receiveMessageAsync(request, asyncHandler);
+        }
+
+        @Override
+        public SendMessageBatchResult sendMessageBatch(SendMessageBatchRequest request)
+                throws AmazonServiceException, AmazonClientException {
+            SendMessageBatchResult result = new SendMessageBatchResult();
+            for (SendMessageBatchRequestEntry entry : request.getEntries()) {
+                result.getSuccessful().add(new SendMessageBatchResultEntry()
+                        .withId(entry.getId()).withMessageId("message-" + entry.getId()));
+            }
+            return result;
+        }
+
+        @Override
+        public DeleteMessageBatchResult deleteMessageBatch(DeleteMessageBatchRequest request)
+                throws AmazonServiceException, AmazonClientException {
+            DeleteMessageBatchResult result = new DeleteMessageBatchResult();
+            for (DeleteMessageBatchRequestEntry entry : request.getEntries()) {
+                result.getSuccessful().add(new DeleteMessageBatchResultEntry()
+                        .withId(entry.getId()));
+            }
+            return result;
+        }
+    }
+}
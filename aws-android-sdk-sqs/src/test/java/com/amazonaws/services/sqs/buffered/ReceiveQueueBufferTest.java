@@ -0,0 +1,220 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.sqs.buffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sqs.AmazonSQSAsyncClient;
+import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.GetQueueAttributesResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class ReceiveQueueBufferTest {
+
+    private static final String QUEUE_URL = "https://sqs.us-east-1.amazonaws.com/123/queue";
+
+    private StubSQS sqs;
+    private QueueBufferConfig config;
+
+    @Before
+    public void setUp() {
+        sqs = new StubSQS();
+        config = new QueueBufferConfig()
+                .withMaxDoneReceiveBatches(2)
+                .withMaxInflightReceiveBatches(2)
+                .withLongPoll(false);
+    }
+
+    @After
+    public void tearDown() {
+        sqs.shutdown();
+    }
+
+    /**
+     * Tests that messages are received ahead of the requests and that later
+     * requests are served from the pre-fetched batch without calling SQS.
+     */
+    @Test
+    public void testPrefetch() throws Exception {
+        ReceiveQueueBuffer buffer = new ReceiveQueueBuffer(sqs, config, QUEUE_URL);
+
+        Future<ReceiveMessageResult> first = buffer.receiveMessageAsync(request(1), null);
+        assertFalse("waits for the receive", first.isDone());
+        sqs.nextReceive().complete("a", "b", "c");
+        assertEquals(1, first.get(1, TimeUnit.SECONDS).getMessages().size());
+
+        // the next batch is requested while nobody is waiting for it
+        PendingReceive prefetch = sqs.nextReceive();
+        assertEquals(2, sqs.receives);
+
+        Future<ReceiveMessageResult> second = buffer.receiveMessageAsync(request(2), null);
+        assertTrue("served from the buffer", second.isDone());
+        Set<String> ids = new HashSet<String>();
+        for (Message m : first.get().getMessages()) {
+            ids.add(m.getMessageId());
+        }
+        for (Message m : second.get().getMessages()) {
+            ids.add(m.getMessageId());
+        }
+        assertEquals(3, ids.size());
+
+        // the drained batch is replaced, up to the in flight limit
+        assertEquals(3, sqs.receives);
+        prefetch.complete("d");
+        Future<ReceiveMessageResult> third = buffer.receiveMessageAsync(request(1), null);
+        assertTrue("served from the buffer", third.isDone());
+        assertEquals("d", third.get().getMessages().get(0).getMessageId());
+    }
+
+    /**
+     * Tests that pre-fetched messages whose visibility timeout has expired
+     * are not returned, since another consumer may have received them.
+     */
+    @Test
+    public void testExpiredMessagesAreNotReturned() throws Exception {
+        sqs.visibilityTimeoutSeconds = 1;
+        ReceiveQueueBuffer buffer = new ReceiveQueueBuffer(sqs, config, QUEUE_URL);
+
+        Future<ReceiveMessageResult> first = buffer.receiveMessageAsync(request(1), null);
+        sqs.nextReceive().complete("a", "b", "c");
+        assertEquals(1, first.get(1, TimeUnit.SECONDS).getMessages().size());
+
+        Thread.sleep(1100);
+        Future<ReceiveMessageResult> second = buffer.receiveMessageAsync(request(2), null);
+        assertTrue("done", second.isDone());
+        assertEquals("expired messages dropped", 0, second.get().getMessages().size());
+    }
+
+    /**
+     * Tests that shutting down the queue buffer waits for the receives in
+     * flight, delivers their messages, and doesn't start new ones.
+     */
+    @Test
+    public void testShutdownWithReceivesInFlight() throws Exception {
+        final QueueBuffer buffer = new QueueBuffer(config, QUEUE_URL, sqs);
+        Future<ReceiveMessageResult> future = buffer.receiveMessage(
+                new ReceiveMessageRequest(QUEUE_URL), null);
+        PendingReceive pending = sqs.nextReceive();
+
+        Thread shutdown = new Thread() {
+            @Override
+            public void run() {
+                buffer.shutdown();
+            }
+        };
+        shutdown.start();
+        shutdown.join(300);
+        assertTrue("waits for the receive in flight", shutdown.isAlive());
+
+        pending.complete("a");
+        shutdown.join(5000);
+        assertFalse("shut down", shutdown.isAlive());
+        assertEquals("a", future.get(1, TimeUnit.SECONDS).getMessages().get(0).getMessageId());
+        assertEquals("no receive after shutdown", 1, sqs.receives);
+        assertTrue(sqs.pending.isEmpty());
+
+        try {
+            buffer.receiveMessage(new ReceiveMessageRequest(QUEUE_URL), null);
+            fail("Expected the buffer to be shut down");
+        } catch (AmazonClientException e) {
+            // expected
+        }
+    }
+
+    private static ReceiveMessageRequest request(int maxMessages) {
+        return new ReceiveMessageRequest(QUEUE_URL).withMaxNumberOfMessages(maxMessages);
+    }
+
+    /**
+     * A receive call the test completes.
+     */
+    private static class PendingReceive {
+        final ReceiveMessageRequest request;
+        final AsyncHandler<ReceiveMessageRequest, ReceiveMessageResult> handler;
+
+        PendingReceive(ReceiveMessageRequest request,
+                AsyncHandler<ReceiveMessageRequest, ReceiveMessageResult> handler) {
+            this.request = request;
+            this.handler = handler;
+        }
+
+        void complete(String... ids) {
+            List<Message> messages = new ArrayList<Message>();
+            for (String id : ids) {
+                messages.add(new Message().withMessageId(id).withReceiptHandle("receipt-" + id));
+            }
+            handler.onSuccess(request, new ReceiveMessageResult().withMessages(messages));
+        }
+    }
+
+    /**
+     * Holds the asynchronous receive calls until the test completes them.
+     */
+    private static class StubSQS extends AmazonSQSAsyncClient {
+        final BlockingQueue<PendingReceive> pending = new LinkedBlockingQueue<PendingReceive>();
+        volatile int receives;
+        volatile int visibilityTimeoutSeconds = 30;
+
+        StubSQS() {
+            super(new BasicAWSCredentials("access", "secret"));
+        }
+
+        PendingReceive nextReceive() throws InterruptedException {
+            PendingReceive receive = pending.poll(1, TimeUnit.SECONDS);
+            assertTrue("receive requested", receive != null);
+            return receive;
+        }
+
+        @Override
+        public GetQueueAttributesResult getQueueAttributes(GetQueueAttributesRequest request)
+                throws AmazonServiceException, AmazonClientException {
+            return new GetQueueAttributesResult().addAttributesEntry("VisibilityTimeout",
+                    Integer.toString(visibilityTimeoutSeconds));
+        }
+
+        @Override
+        public synchronized Future<ReceiveMessageResult> receiveMessageAsync(
+                ReceiveMessageRequest request,
+                AsyncHandler<ReceiveMessageRequest, ReceiveMessageResult> asyncHandler)
+                throws AmazonServiceException, AmazonClientException {
+            receives++;
+            pending.add(new PendingReceive(request, asyncHandler));
+            return null;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.sqs.buffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.sqs.AmazonSQSClient;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SendQueueBufferTest {
+
+    private static final String QUEUE_URL = "https://sqs.us-east-1.amazonaws.com/123/queue";
+    private static final int THREADS = 16;
+    private static final int REQUESTS_PER_THREAD = 500;
+    private static final int MAX_BATCH_SIZE = 10;
+    private static final long MAX_BATCH_SIZE_BYTES = 1000;
+
+    private ExecutorService producers;
+    private ExecutorService executor;
+    private RecordingSQS sqs;
+    private SendQueueBuffer buffer;
+
+    @Before
+    public void setUp() {
+        producers = Executors.newFixedThreadPool(THREADS);
+        executor = Executors.newFixedThreadPool(4);
+        sqs = new RecordingSQS();
+        QueueBufferConfig config = new QueueBufferConfig()
+                .withMaxBatchSize(MAX_BATCH_SIZE)
+                .withMaxBatchSizeBytes(MAX_BATCH_SIZE_BYTES)
+                .withMaxBatchOpenMs(5)
+                .withMaxInflightOutboundBatches(3);
+        buffer = new SendQueueBuffer(sqs, executor, config, QUEUE_URL);
+    }
+
+    @After
+    public void tearDown() {
+        producers.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that messages sent from many threads are each sent exactly once,
+     * get their own result, and are batched within the count and byte limits.
+     */
+    @Test
+    public void testConcurrentSends() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Future<SendMessageResult>>>> results =
+                new ArrayList<Future<List<Future<SendMessageResult>>>>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            results.add(producers.submit(new Callable<List<Future<SendMessageResult>>>() {
+                @Override
+                public List<Future<SendMessageResult>> call() throws Exception {
+                    start.await();
+                    List<Future<SendMessageResult>> futures =
+                            new ArrayList<Future<SendMessageResult>>();
+                    for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                        futures.add(buffer.sendMessage(
+                                new SendMessageRequest(QUEUE_URL, body(thread, i)), null));
+                    }
+                    return futures;
+                }
+            }));
+        }
+        start.countDown();
+
+        for (int t = 0; t < THREADS; t++) {
+            List<Future<SendMessageResult>> futures = results.get(t).get(30, TimeUnit.SECONDS);
+            for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                SendMessageResult result = futures.get(i).get(30, TimeUnit.SECONDS);
+                assertEquals("result of its own message", body(t, i), result.getMessageId());
+            }
+        }
+
+        assertEquals("no message lost", THREADS * REQUESTS_PER_THREAD, sqs.sent.size());
+        for (AtomicInteger count : sqs.sent.values()) {
+            assertEquals("no message duplicated", 1, count.get());
+        }
+        assertEquals(sqs.violations.toString(), 0, sqs.violations.size());
+        assertTrue("messages were batched",
+                sqs.batches.get() < THREADS * REQUESTS_PER_THREAD / 2);
+    }
+
+    /**
+     * Tests that deletes from many threads are each sent exactly once in
+     * batches of at most the maximum count.
+     */
+    @Test
+    public void testConcurrentDeletes() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Future<Void>>>> results = new ArrayList<Future<List<Future<Void>>>>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            results.add(producers.submit(new Callable<List<Future<Void>>>() {
+                @Override
+                public List<Future<Void>> call() throws Exception {
+                    start.await();
+                    List<Future<Void>> futures = new ArrayList<Future<Void>>();
+                    for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                        futures.add(buffer.deleteMessage(
+                                new DeleteMessageRequest(QUEUE_URL, body(thread, i)), null));
+                    }
+                    return futures;
+                }
+            }));
+        }
+        start.countDown();
+
+        for (Future<List<Future<Void>>> result : results) {
+            for (Future<Void> future : result.get(30, TimeUnit.SECONDS)) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        }
+
+        assertEquals("no delete lost", THREADS * REQUESTS_PER_THREAD, sqs.deleted.size());
+        for (AtomicInteger count : sqs.deleted.values()) {
+            assertEquals("no delete duplicated", 1, count.get());
+        }
+        assertEquals(sqs.violations.toString(), 0, sqs.violations.size());
+    }
+
+    /**
+     * Tests that a message larger than a whole batch fails instead of being
+     * sent.
+     */
+    @Test
+    public void testOversizedMessageIsRejected() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < MAX_BATCH_SIZE_BYTES; i++) {
+            body.append('x');
+        }
+        try {
+            buffer.sendMessage(new SendMessageRequest(QUEUE_URL, body.toString()), null);
+            fail("Expected the message to be rejected");
+        } catch (AmazonClientException e) {
+            // expected
+        }
+        buffer.sendMessage(new SendMessageRequest(QUEUE_URL, "small"), null)
+                .get(30, TimeUnit.SECONDS);
+        assertEquals(1, sqs.sent.size());
+    }
+
+    /**
+     * Returns a message body unique to the thread and index, between about 20
+     * and 220 bytes long, with multi-byte characters in some of them so that
+     * several batches close on their byte limit.
+     */
+    private static String body(int thread, int i) {
+        StringBuilder body = new StringBuilder("message-" + thread + "-" + i + "-");
+        int padding = (thread * 31 + i * 17) % 200;
+        char c = i % 3 == 0 ? '\u00e9' : 'x';
+        for (int j = 0; j < padding; j += c == 'x' ? 1 : 2) {
+            body.append(c);
+        }
+        return body.toString();
+    }
+
+    /**
+     * Records the batches sent to it and answers every entry successfully,
+     * with the message body as the message id.
+     */
+    private static class RecordingSQS extends AmazonSQSClient {
+        final ConcurrentHashMap<String, AtomicInteger> sent =
+                new ConcurrentHashMap<String, AtomicInteger>();
+        final ConcurrentHashMap<String, AtomicInteger> deleted =
+                new ConcurrentHashMap<String, AtomicInteger>();
+        final Queue<String> violations = new ConcurrentLinkedQueue<String>();
+        final AtomicInteger batches = new AtomicInteger();
+
+        RecordingSQS() {
+            super(new BasicAWSCredentials("access", "secret"));
+        }
+
+        @Override
+        public SendMessageBatchResult sendMessageBatch(SendMessageBatchRequest request)
+                throws AmazonServiceException, AmazonClientException {
+            batches.incrementAndGet();
+            List<SendMessageBatchRequestEntry> entries = request.getEntries();
+            long bytes = 0;
+            List<SendMessageBatchResultEntry> successful =
+                    new ArrayList<SendMessageBatchResultEntry>();
+            for (SendMessageBatchRequestEntry entry : entries) {
+                bytes += SendQueueBuffer.utf8Length(entry.getMessageBody());
+                count(sent, entry.getMessageBody());
+                successful.add(new SendMessageBatchResultEntry()
+                        .withId(entry.getId())
+                        .withMessageId(entry.getMessageBody()));
+            }
+            if (entries.isEmpty() || entries.size() > MAX_BATCH_SIZE) {
+                violations.add("batch of " + entries.size() + " messages");
+            }
+            if (bytes > MAX_BATCH_SIZE_BYTES) {
+                violations.add("batch of " + bytes + " bytes");
+            }
+            return new SendMessageBatchResult().withSuccessful(successful);
+        }
+
+        @Override
+        public DeleteMessageBatchResult deleteMessageBatch(DeleteMessageBatchRequest request)
+                throws AmazonServiceException, AmazonClientException {
+            List<DeleteMessageBatchRequestEntry> entries = request.getEntries();
+            List<DeleteMessageBatchResultEntry> successful =
+                    new ArrayList<DeleteMessageBatchResultEntry>();
+            for (DeleteMessageBatchRequestEntry entry : entries) {
+                count(deleted, entry.getReceiptHandle());
+                successful.add(new DeleteMessageBatchResultEntry().withId(entry.getId()));
+            }
+            if (entries.isEmpty() || entries.size() > MAX_BATCH_SIZE) {
+                violations.add("batch of " + entries.size() + " deletes");
+            }
+            return new DeleteMessageBatchResult().withSuccessful(successful);
+        }
+
+        private static void count(ConcurrentHashMap<String, AtomicInteger> counts, String key) {
+            AtomicInteger count = counts.get(key);
+            if (count == null) {
+                AtomicInteger newCount = new AtomicInteger();
+                count = counts.putIfAbsent(key, newCount);
+                if (count == null) {
+                    count = newCount;
+                }
+            }
+            count.incrementAndGet();
+        }
+    }
+}